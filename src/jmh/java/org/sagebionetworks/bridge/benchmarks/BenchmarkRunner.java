@@ -0,0 +1,32 @@
+package org.sagebionetworks.bridge.benchmarks;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks once for each thread count, so contention on shared state shows up as throughput that
+ * stops scaling with the number of threads. Started by the <code>jmh</code> Maven profile; the arguments are a regular
+ * expression selecting the benchmarks and a comma-separated list of thread counts.
+ */
+public class BenchmarkRunner {
+    static final String DEFAULT_INCLUDE = ".*Benchmark.*";
+    static final String DEFAULT_THREADS = "1,2,4,8,16,32,64";
+
+    public static void main(String[] args) throws RunnerException {
+        String include = (args.length > 0) ? args[0] : DEFAULT_INCLUDE;
+        String threadCounts = (args.length > 1) ? args[1] : DEFAULT_THREADS;
+
+        for (String threadCount : threadCounts.split(",")) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(Integer.parseInt(threadCount.trim()))
+                    .forks(1)
+                    .warmupIterations(3)
+                    .measurementIterations(5)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.sagebionetworks.bridge.benchmarks;
+
+import static org.sagebionetworks.bridge.models.accounts.SharingScope.NO_SHARING;
+import static org.sagebionetworks.bridge.services.StudyConsentService.SIGNATURE_BLOCK;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.ClassPathResource;
+
+import org.sagebionetworks.bridge.dynamodb.DynamoApp;
+import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
+import org.sagebionetworks.bridge.models.apps.App;
+import org.sagebionetworks.bridge.models.subpopulations.ConsentSignature;
+import org.sagebionetworks.bridge.services.ConsentPdf;
+
+/**
+ * Consent page assembly for each signer, compared to signing a page template that was assembled once and cached, as
+ * ConsentService now does. The PDF benchmarks include the layout, which is the same in both cases, to show how much
+ * of the total per-participant cost the assembly was.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConsentPageBenchmark {
+    private static final String CONSENT_PARAGRAPH = "<p>You are invited to take part in ${appName}, a research "
+            + "study run by ${sponsorName}. Taking part is voluntary, and you may withdraw at any time by writing to "
+            + "${supportEmail}.</p>";
+    private static final int CONSENT_PARAGRAPH_COUNT = 40;
+
+    private App app;
+    private StudyParticipant signer;
+    private ConsentSignature signature;
+    private String consentDocument;
+    private String xmlTemplateWithSignatureBlock;
+    private String consentPageTemplate;
+
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream stream = new ClassPathResource("conf/app-defaults/consent-page.xhtml").getInputStream()) {
+            xmlTemplateWithSignatureBlock = IOUtils.toString(stream, StandardCharsets.UTF_8);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i=0; i < CONSENT_PARAGRAPH_COUNT; i++) {
+            builder.append(CONSENT_PARAGRAPH);
+        }
+        consentDocument = builder.append(SIGNATURE_BLOCK).toString();
+
+        app = new DynamoApp();
+        app.setIdentifier("benchmark-app");
+        app.setName("Benchmark App");
+        app.setSponsorName("Sponsor Name");
+        app.setSupportEmail("support@example.com");
+        app.setConsentNotificationEmail("consent@example.com");
+        app.setConsentNotificationEmailVerified(true);
+
+        signer = new StudyParticipant.Builder().withEmail("participant@example.com").withEmailVerified(true)
+                .build();
+        signature = new ConsentSignature.Builder().withName("Test Person").withBirthdate("1980-06-06").build();
+        consentPageTemplate = ConsentPdf.createConsentPageTemplate(app, consentDocument,
+                xmlTemplateWithSignatureBlock);
+    }
+
+    @Benchmark
+    public String assembleConsentPage() {
+        return ConsentPdf.createConsentPageTemplate(app, consentDocument, xmlTemplateWithSignatureBlock);
+    }
+
+    @Benchmark
+    public byte[] consentPdfAssemblingPage() {
+        return new ConsentPdf(app, signer, signature, NO_SHARING, consentDocument, xmlTemplateWithSignatureBlock)
+                .getBytes();
+    }
+
+    @Benchmark
+    public byte[] consentPdfFromPageTemplate() {
+        return new ConsentPdf(signer, signature, NO_SHARING, consentPageTemplate).getBytes();
+    }
+}
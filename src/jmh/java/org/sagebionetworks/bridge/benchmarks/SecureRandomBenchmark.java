@@ -0,0 +1,64 @@
+package org.sagebionetworks.bridge.benchmarks;
+
+import static org.sagebionetworks.bridge.BridgeUtils.ENCODER;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.SecureTokenGenerator;
+
+/**
+ * GUID and token generation with a per-thread SHA1PRNG, compared to drawing the same bytes from one shared default
+ * SecureRandom, and from a default SecureRandom per thread. On Linux the default is NativePRNG, whose instances share
+ * one locked source, so both of those stop scaling as threads are added.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SecureRandomBenchmark {
+    private static final SecureRandom SHARED_SECURE_RANDOM = new SecureRandom();
+    private static final ThreadLocal<SecureRandom> THREAD_DEFAULT_SECURE_RANDOM = ThreadLocal
+            .withInitial(SecureRandom::new);
+
+    @Benchmark
+    public String generateGuid() {
+        return BridgeUtils.generateGuid();
+    }
+
+    @Benchmark
+    public String generateGuidSharedSecureRandom() {
+        byte[] buffer = new byte[18];
+        SHARED_SECURE_RANDOM.nextBytes(buffer);
+        return ENCODER.encodeToString(buffer);
+    }
+
+    @Benchmark
+    public String generateGuidThreadDefaultSecureRandom() {
+        byte[] buffer = new byte[18];
+        THREAD_DEFAULT_SECURE_RANDOM.get().nextBytes(buffer);
+        return ENCODER.encodeToString(buffer);
+    }
+
+    @Benchmark
+    public byte[] generateSalt() {
+        return BridgeUtils.generateSalt();
+    }
+
+    @Benchmark
+    public String nextToken() {
+        return SecureTokenGenerator.INSTANCE.nextToken();
+    }
+
+    @Benchmark
+    public String nextPhoneCode() {
+        return SecureTokenGenerator.PHONE_CODE_INSTANCE.nextToken();
+    }
+}
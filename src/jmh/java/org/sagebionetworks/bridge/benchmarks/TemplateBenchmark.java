@@ -0,0 +1,77 @@
+package org.sagebionetworks.bridge.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.ClassPathResource;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.dynamodb.DynamoApp;
+import org.sagebionetworks.bridge.models.apps.App;
+import org.sagebionetworks.bridge.util.CompiledTemplate;
+
+/**
+ * Resolving the default email verification template with a cached {@link CompiledTemplate}, with
+ * {@link BridgeUtils#resolveTemplate} (which compiles the template on every call), and with the
+ * <code>String.replace</code> loop that resolveTemplate used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TemplateBenchmark {
+    private String template;
+    private Map<String,String> values;
+
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream stream = new ClassPathResource("conf/app-defaults/email-verification.txt")
+                .getInputStream()) {
+            template = IOUtils.toString(stream, StandardCharsets.UTF_8);
+        }
+        App app = new DynamoApp();
+        app.setIdentifier("benchmark-app");
+        app.setName("Benchmark App");
+        app.setShortName("Benchmark");
+        app.setSponsorName("Sponsor Name");
+        app.setSupportEmail("support@example.com");
+        app.setTechnicalEmail("technical@example.com");
+        app.setConsentNotificationEmail("consent@example.com");
+
+        values = BridgeUtils.appTemplateVariables(app);
+        values.put("emailVerificationUrl", "https://ws.sagebridge.org/vse?appId=benchmark-app&sptoken=abc123");
+        values.put("emailVerificationExpirationPeriod", "1 day");
+    }
+
+    @Benchmark
+    public String compiledTemplateCached() {
+        return CompiledTemplate.compileCached(template).render(values);
+    }
+
+    @Benchmark
+    public String resolveTemplate() {
+        return BridgeUtils.resolveTemplate(template, values);
+    }
+
+    @Benchmark
+    public String replaceLoop() {
+        String resolved = template;
+        for (Map.Entry<String,String> entry : values.entrySet()) {
+            if (entry.getValue() != null) {
+                String var = "${"+entry.getKey()+"}";
+                resolved = resolved.replace(var, entry.getValue());
+            }
+        }
+        return resolved;
+    }
+}
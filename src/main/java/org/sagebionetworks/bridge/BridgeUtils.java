@@ -29,6 +29,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
@@ -64,6 +68,7 @@ import org.sagebionetworks.bridge.models.schedules.Activity;
 import org.sagebionetworks.bridge.models.schedules.ActivityType;
 import org.sagebionetworks.bridge.models.studies.Enrollment;
 import org.sagebionetworks.bridge.models.templates.TemplateType;
+import org.sagebionetworks.bridge.util.CompiledTemplate;
 
 import org.springframework.core.annotation.AnnotationUtils;
 
@@ -108,7 +113,6 @@ public class BridgeUtils {
     private static final int ONE_MINUTE = 60;
     
     public static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
-    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
     private static final StudyAssociations NO_ASSOCIATIONS = new StudyAssociations(ImmutableSet.of(),
             ImmutableMap.of());
 
@@ -298,7 +302,9 @@ public class BridgeUtils {
     /**
      * A simple means of providing template variables in template strings, in the format <code>${variableName}</code>.
      * This value will be replaced with the value of the variable name. The variable name/value pairs are passed to the
-     * method as a map. Variables that are not found in the map will be left in the string as is.
+     * method as a map. Variables that are not found in the map will be left in the string as is. The template is
+     * resolved in a single pass; for templates that are resolved repeatedly, use
+     * {@link CompiledTemplate#compileCached} so the template is only parsed once.
      *
      * @see <a href="https://sagebionetworks.jira.com/wiki/display/BRIDGE/EmailTemplate"></a>
      * 
@@ -310,27 +316,22 @@ public class BridgeUtils {
         checkNotNull(template);
         checkNotNull(values);
         
-        for (Map.Entry<String,String> entry : values.entrySet()) {
-            if (entry.getValue() != null) {
-                String var = "${"+entry.getKey()+"}";
-                template = template.replace(var, entry.getValue());
-            }
-        }
-        return template;
+        return CompiledTemplate.compile(template).render(values);
     }
     
     public static String generateGuid() {
         // Increases size from 16 to 18 bytes over UUID.randomUUID() while 
         // still being shorter than the prior implementation. 
+        // See SecureTokenGenerator.threadRandom() for why each thread has its own SecureRandom.
         byte[] buffer = new byte[18];
-        SECURE_RANDOM.nextBytes(buffer);
+        SecureTokenGenerator.threadRandom().nextBytes(buffer);
         return ENCODER.encodeToString(buffer);
     }
     
     /** Generate a random 16-byte salt, using a {@link SecureRandom}. */
     public static byte[] generateSalt() {
         byte[] salt = new byte[16];
-        SECURE_RANDOM.nextBytes(salt);
+        SecureTokenGenerator.threadRandom().nextBytes(salt);
         return salt;
     }
 
@@ -368,6 +369,35 @@ public class BridgeUtils {
         }
     }
     
+    /**
+     * Run the tasks concurrently on the executor and wait for all of them to complete, returning their results in
+     * the same order as the tasks. If any task fails, its runtime exception is rethrown (other exceptions are wrapped
+     * in a BridgeServiceException). Tasks that should not fail the whole batch must handle their own errors.
+     */
+    public static <T> List<T> invokeAll(ExecutorService executorService, List<? extends Callable<T>> tasks) {
+        checkNotNull(executorService);
+        checkNotNull(tasks);
+        
+        if (tasks.isEmpty()) {
+            return ImmutableList.of();
+        }
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : executorService.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)ex.getCause();
+            }
+            throw new BridgeServiceException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BridgeServiceException(ex);
+        }
+    }
+    
     public static boolean isEmpty(Collection<?> coll) {
         return (coll == null || coll.isEmpty());
     }
@@ -2,9 +2,8 @@ package org.sagebionetworks.bridge;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.util.Objects;
-import java.util.Random;
 
 /**
  * This code came from Stack Exchange, with some changes to make it thread-safe. Unfortunately I 
@@ -14,23 +13,31 @@ public class SecureTokenGenerator {
 
     private static final String ALPHANUMERIC = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
     
+    static final String THREAD_RANDOM_ALGORITHM = "SHA1PRNG";
+    static final int THREAD_RANDOM_SEED_BYTES = 32;
+    
+    private static final SecureRandom SEED_SOURCE = new SecureRandom();
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(
+            SecureTokenGenerator::createThreadRandom);
+    
     public static final SecureTokenGenerator INSTANCE = new SecureTokenGenerator();
     
-    public static final SecureTokenGenerator PHONE_CODE_INSTANCE = new SecureTokenGenerator(6, new SecureRandom(), "0123456789");
+    public static final SecureTokenGenerator PHONE_CODE_INSTANCE = new SecureTokenGenerator(6, "0123456789");
     
-    public static final SecureTokenGenerator NAME_SCOPE_INSTANCE = new SecureTokenGenerator(5, new SecureRandom(), ALPHANUMERIC);
+    public static final SecureTokenGenerator NAME_SCOPE_INSTANCE = new SecureTokenGenerator(5, ALPHANUMERIC);
 
-    private final Random random;
     private final char[] characters;
     private final int length;
+    // Random bytes at or above this value are discarded, so that every character is equally likely.
+    private final int byteLimit;
 
-    private SecureTokenGenerator(int length, Random random, String characters) {
+    private SecureTokenGenerator(int length, String characters) {
         checkArgument(length > 1);
-        checkArgument(characters != null && characters.length() >= 2);
+        checkArgument(characters != null && characters.length() >= 2 && characters.length() <= 256);
 
         this.length = length;
-        this.random = Objects.requireNonNull(random);
         this.characters = characters.toCharArray();
+        this.byteLimit = 256 - (256 % this.characters.length);
     }
 
     /**
@@ -38,13 +45,49 @@ public class SecureTokenGenerator {
      * for a good session key.
      */
     private SecureTokenGenerator() {
-        this(21, new SecureRandom(), ALPHANUMERIC);
+        this(21, ALPHANUMERIC);
+    }
+    
+    /**
+     * The calling thread's SecureRandom, for tokens, GUIDs and salts. The default SecureRandom on Linux is
+     * NativePRNG, and all its instances read from one static source behind a global lock, so even separate
+     * instances per thread contend on every draw. Each thread instead gets its own SHA1PRNG, which generates bytes
+     * in memory without any shared state. It is seeded once from the default source when the thread first uses it.
+     */
+    static SecureRandom threadRandom() {
+        return RANDOM.get();
+    }
+    
+    static SecureRandom createThreadRandom() {
+        byte[] seed = new byte[THREAD_RANDOM_SEED_BYTES];
+        SEED_SOURCE.nextBytes(seed);
+        try {
+            SecureRandom random = SecureRandom.getInstance(THREAD_RANDOM_ALGORITHM);
+            // Seeding before the first draw replaces SHA1PRNG's own seeding, so it never reads the shared source.
+            random.setSeed(seed);
+            return random;
+        } catch (NoSuchAlgorithmException e) {
+            // Only runtimes without the Sun provider lack SHA1PRNG. The default algorithm is still secure.
+            return new SecureRandom(seed);
+        }
     }
     
     public String nextToken() {
+        final SecureRandom random = threadRandom();
         final char[] buffer = new char[length];
-        for (int i = 0; i < buffer.length; ++i) {
-            buffer[i] = characters[random.nextInt(characters.length)];
+        // Draw random bytes in bulk rather than one call per character. A few bytes more than the length will
+        // almost always be enough, even after discarding bytes over the limit.
+        final byte[] bytes = new byte[length + (length >> 1)];
+        int pos = bytes.length;
+        for (int i = 0; i < buffer.length;) {
+            if (pos == bytes.length) {
+                random.nextBytes(bytes);
+                pos = 0;
+            }
+            int value = bytes[pos++] & 0xFF;
+            if (value < byteLimit) {
+                buffer[i++] = characters[value % characters.length];
+            }
         }
         return new String(buffer);
     }
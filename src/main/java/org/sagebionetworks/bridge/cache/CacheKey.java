@@ -47,6 +47,18 @@ public final class CacheKey {
     public static final CacheKey appConfigList(String appId) {
         return new CacheKey(appId, "AppConfigList");
     }
+    /** The count of a study's external IDs that start with the filter (empty for no filter), cached for paging. */
+    public static final CacheKey externalIdCount(String appId, String studyId, String idFilter) {
+        return new CacheKey(idFilter, studyId, appId, "ExternalIdCount");
+    }
+    /** The set of a study's cached external ID counts, so they can all be removed when the study's IDs change. */
+    public static final CacheKey externalIdCountList(String appId, String studyId) {
+        return new CacheKey(studyId, appId, "ExternalIdCountList");
+    }
+    /** Changes whenever an app's schedule plans change, so servers know to reload their cached copies. */
+    public static final CacheKey schedulePlanVersion(String appId) {
+        return new CacheKey(appId, "SchedulePlanVersion");
+    }
 
     /**
      * Cache key for mapping a used channel sign-in token to the cached session token, used for when a second channel
@@ -59,6 +71,9 @@ public final class CacheKey {
     public static CacheKey channelThrottling(ThrottleRequestType throttleType, String userId) {
         return new CacheKey(userId, throttleType.name().toLowerCase(), "channel-throttling");
     }
+    public static CacheKey rateLimit(String endpointClass, String remoteAddress) {
+        return new CacheKey(remoteAddress, endpointClass, "rate-limit");
+    }
     public static final CacheKey emailSignInRequest(SignIn signIn) {
         return new CacheKey(signIn.getEmail(), signIn.getAppId(), "signInRequest");
     }
@@ -83,6 +98,9 @@ public final class CacheKey {
     public static final CacheKey passwordResetForPhone(String sptoken, String appId) { 
         return new CacheKey(sptoken, "phone", appId); // no type, not great
     }
+    public static final CacheKey participantPurgeProgress(String userId) {
+        return new CacheKey(userId, "ParticipantPurgeProgress");
+    }
     public static final CacheKey phoneSignInRequest(SignIn signIn) {
         return new CacheKey(signIn.getPhone().getNumber(), signIn.getAppId(),"phoneSignInRequest");
     }
@@ -3,6 +3,7 @@ package org.sagebionetworks.bridge.cache;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Resource;
@@ -18,11 +19,14 @@ import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.redis.JedisOps;
 import org.sagebionetworks.bridge.redis.JedisTransaction;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
 
 /**
  * A wrapper around our use of Redis.
@@ -31,6 +35,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 public class CacheProvider {
     private static final String LOCAL_SERVICE_ERROR = "Cannot find cache service, have you started Redis? (original message: %s)";
     private JedisOps jedisOps;
+    private PipelinedJedisOps pipelinedJedisOps;
     private int sessionExpireInSeconds;
 
     @Resource(name = "jedisOps")
@@ -38,6 +43,11 @@ public class CacheProvider {
         this.jedisOps = jedisOps;
     }
 
+    @Autowired
+    final void setPipelinedJedisOps(PipelinedJedisOps pipelinedJedisOps) {
+        this.pipelinedJedisOps = pipelinedJedisOps;
+    }
+
     @Resource(name = "sessionExpireInSeconds")
     final void setSessionExpireInSeconds(@SuppressWarnings("SameParameterValue") int sessionExpireInSeconds) {
         this.sessionExpireInSeconds = sessionExpireInSeconds;
@@ -287,15 +297,14 @@ public class CacheProvider {
     }
     
     /**
-     * Get the object, resetting its expiration period.
+     * Get the object, resetting its expiration period. The read and the reset are made in one round trip to Redis.
      */
     public <T> T getObject(CacheKey cacheKey, Class<T> clazz, int expireInSeconds) {
         checkNotNull(cacheKey);
         checkNotNull(clazz);
         try {
-            String ser = jedisOps.get(cacheKey.toString());
+            String ser = pipelinedJedisOps.getAndExpire(cacheKey.toString(), expireInSeconds);
             if (ser != null) {
-                jedisOps.expire(cacheKey.toString(), expireInSeconds);
                 return BridgeObjectMapper.get().readValue(ser, clazz);
             }
         } catch (Throwable e) {
@@ -305,6 +314,32 @@ public class CacheProvider {
         return null;
     }
 
+    /**
+     * Get several objects of the same type with one read from Redis. Keys that are not in the cache are not 
+     * included in the returned map.
+     */
+    public <T> Map<CacheKey, T> getObjects(List<CacheKey> cacheKeys, Class<T> clazz) {
+        checkNotNull(cacheKeys);
+        checkNotNull(clazz);
+        try {
+            List<String> keys = cacheKeys.stream().map(CacheKey::toString).collect(ImmutableList.toImmutableList());
+            List<String> values = pipelinedJedisOps.mget(keys);
+
+            Map<CacheKey, T> objects = Maps.newHashMap();
+            for (int i=0; i < cacheKeys.size(); i++) {
+                String ser = values.get(i);
+                if (ser != null) {
+                    JsonNode node = adjustJsonWithStudyIdentifier(ser);
+                    objects.put(cacheKeys.get(i), BridgeObjectMapper.get().treeToValue(node, clazz));
+                }
+            }
+            return objects;
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+
     /** Sets the expiration on the given cache object. */
     public void setExpiration(CacheKey cacheKey, int expireInSeconds) {
         checkNotNull(cacheKey);
@@ -334,6 +369,26 @@ public class CacheProvider {
         }
     }
     
+    /**
+     * Set several objects in the cache with one write to Redis, with no expiration.
+     */
+    public void setObjects(Map<CacheKey, ?> objects) {
+        checkNotNull(objects);
+        try {
+            Map<String, String> values = Maps.newHashMap();
+            for (Map.Entry<CacheKey, ?> entry : objects.entrySet()) {
+                values.put(entry.getKey().toString(), BridgeObjectMapper.get().writeValueAsString(entry.getValue()));
+            }
+            String result = pipelinedJedisOps.mset(values);
+            if (!"OK".equals(result)) {
+                throw new BridgeServiceException("Cache storage error");
+            }
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+    
     /**
      * Set an object in the cache with an expiration in seconds
      */
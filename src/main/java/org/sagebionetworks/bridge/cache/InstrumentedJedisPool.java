@@ -0,0 +1,124 @@
+package org.sagebionetworks.bridge.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisException;
+
+import org.sagebionetworks.bridge.metrics.Dependency;
+import org.sagebionetworks.bridge.metrics.MetricsSource;
+
+/**
+ * A Jedis pool that counts how often connections are borrowed, how long callers wait for them, and how often a
+ * connection turns out to be broken. Connections are not validated with a PING when they are borrowed or returned,
+ * so a connection that has gone bad fails the command that uses it, and is then discarded rather than returned to
+ * the pool. The broken connection count shows how often that happens. These counters are reported in the metrics
+ * snapshot, along with the pool's current number of active and idle connections and waiting callers.
+ *
+ * The time from borrowing a connection to returning it (which includes waiting for it) is recorded as a call to
+ * Redis in the metrics of the current request.
+ */
+public class InstrumentedJedisPool extends JedisPool implements MetricsSource {
+
+    // Metrics
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder borrowFailureCount = new LongAdder();
+    private final LongAdder borrowWaitNanos = new LongAdder();
+    private final LongAdder brokenConnectionCount = new LongAdder();
+
+    // When each borrowed connection was requested, from System.nanoTime().
+    private final Map<Jedis, Long> borrowedAt = new ConcurrentHashMap<>();
+
+    public InstrumentedJedisPool(JedisPoolConfig poolConfig, String host, int port, int timeout) {
+        super(poolConfig, host, port, timeout);
+    }
+
+    public InstrumentedJedisPool(JedisPoolConfig poolConfig, String host, int port, int timeout,
+            String password) {
+        super(poolConfig, host, port, timeout, password);
+    }
+
+    @Override
+    public Jedis getResource() {
+        long start = System.nanoTime();
+        try {
+            Jedis jedis = super.getResource();
+            borrowedAt.put(jedis, start);
+            return jedis;
+        } catch (JedisException e) {
+            borrowFailureCount.increment();
+            throw e;
+        } finally {
+            borrowWaitNanos.add(System.nanoTime() - start);
+            borrowCount.increment();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void returnResource(Jedis resource) {
+        recordCall(resource);
+        super.returnResource(resource);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void returnBrokenResource(Jedis resource) {
+        if (resource != null) {
+            brokenConnectionCount.increment();
+        }
+        recordCall(resource);
+        super.returnBrokenResource(resource);
+    }
+
+    private void recordCall(Jedis resource) {
+        if (resource != null) {
+            Long start = borrowedAt.remove(resource);
+            if (start != null) {
+                Dependency.REDIS.recordCall(start);
+            }
+        }
+    }
+
+    /** Number of times a connection was requested from the pool, including requests that failed. */
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    /** Number of times a connection could not be borrowed, because Redis couldn't be reached or the wait timed out. */
+    public long getBorrowFailureCount() {
+        return borrowFailureCount.sum();
+    }
+
+    /** Total time callers have spent waiting to borrow connections, in milliseconds. */
+    public long getBorrowWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(borrowWaitNanos.sum());
+    }
+
+    /** Number of connections that were discarded because a command failed on them. */
+    public long getBrokenConnectionCount() {
+        return brokenConnectionCount.sum();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "redisPool";
+    }
+
+    @Override
+    public void writeMetrics(ObjectNode node) {
+        node.put("borrows", getBorrowCount());
+        node.put("borrowFailures", getBorrowFailureCount());
+        node.put("borrowWaitMillis", getBorrowWaitMillis());
+        node.put("brokenConnections", getBrokenConnectionCount());
+        node.put("active", getNumActive());
+        node.put("idle", getNumIdle());
+        node.put("waiters", getNumWaiters());
+    }
+}
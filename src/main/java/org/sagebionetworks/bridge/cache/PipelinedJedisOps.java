@@ -0,0 +1,76 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Resource;
+
+import com.google.common.collect.ImmutableList;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+/**
+ * Redis operations that read or write several keys, or run several commands, in a single round trip to Redis.
+ * Each operation borrows one connection from the pool for all of its commands. Errors are not handled here; they
+ * are thrown to the caller as Jedis exceptions.
+ */
+@Component
+public class PipelinedJedisOps {
+    private JedisPool jedisPool;
+
+    @Resource(name = "jedisPool")
+    final void setJedisPool(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    /**
+     * Get the values of all the keys with one MGET. The values are returned in the order of the keys, with null for
+     * any key that doesn't exist.
+     */
+    public List<String> mget(List<String> keys) {
+        checkNotNull(keys);
+        if (keys.isEmpty()) {
+            return ImmutableList.of();
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.mget(keys.toArray(new String[0]));
+        }
+    }
+
+    /** Set the values of all the keys with one MSET. The keys do not expire. */
+    public String mset(Map<String, String> values) {
+        checkNotNull(values);
+        if (values.isEmpty()) {
+            return "OK";
+        }
+        String[] keysAndValues = new String[values.size() * 2];
+        int i = 0;
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            keysAndValues[i++] = entry.getKey();
+            keysAndValues[i++] = entry.getValue();
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.mset(keysAndValues);
+        }
+    }
+
+    /**
+     * Get the value of the key and reset its expiration, pipelining the GET and EXPIRE. Returns null if the key
+     * doesn't exist (in which case the EXPIRE does nothing).
+     */
+    public String getAndExpire(String key, int expireInSeconds) {
+        checkNotNull(key);
+        try (Jedis jedis = jedisPool.getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            Response<String> value = pipeline.get(key);
+            pipeline.expire(key, expireInSeconds);
+            pipeline.sync();
+            return value.get();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Resource;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import org.joda.time.DateTimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import org.sagebionetworks.bridge.metrics.MetricsSource;
+
+/**
+ * Limits the number of requests made under a key within a window of time, across all servers. Each request
+ * increments a counter in Redis with a single atomic script. A request is allowed while the counter is within the
+ * limit, and every allowed request restarts the window, so callers can't get extra requests through by bursting
+ * at the end of a window. Once a key is over its limit, this server remembers that until the window ends, and
+ * rejects further requests for the key without calling Redis. If Redis can't be reached, requests are allowed.
+ */
+@Component
+public class RateLimiter implements MetricsSource {
+    private static final Logger LOG = LoggerFactory.getLogger(RateLimiter.class);
+
+    // KEYS[1] is the counter, ARGV[1] the limit, and ARGV[2] the window in seconds. Returns the count and, if the
+    // count is over the limit, the milliseconds left in the window.
+    static final String SCRIPT = "local count = redis.call('INCR', KEYS[1]) "
+            + "if count <= tonumber(ARGV[1]) then "
+            + "redis.call('EXPIRE', KEYS[1], ARGV[2]) "
+            + "return {count, -1} "
+            + "end "
+            + "return {count, redis.call('PTTL', KEYS[1])}";
+
+    static final int LOCAL_BLOCK_CACHE_MAX_SIZE = 100000;
+    static final long LOCAL_BLOCK_CACHE_EXPIRE_HOURS = 1;
+
+    // Keys that are over their limit, and the time at which their window ends.
+    private final Cache<String, Long> blockedUntil = CacheBuilder.newBuilder()
+            .maximumSize(LOCAL_BLOCK_CACHE_MAX_SIZE)
+            .expireAfterWrite(LOCAL_BLOCK_CACHE_EXPIRE_HOURS, TimeUnit.HOURS).build();
+
+    // Metrics
+    private final LongAdder allowedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder rejectedLocallyCount = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+
+    private JedisPool jedisPool;
+
+    @Resource(name = "jedisPool")
+    final void setJedisPool(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    /**
+     * Count a request under the given key, returning true if it is within the limit of requests for the window, and
+     * false if it should be rejected.
+     */
+    public boolean tryAcquire(CacheKey key, int limit, int windowSeconds) {
+        return getRetryAfterSeconds(key, limit, windowSeconds) == 0;
+    }
+
+    /**
+     * Count a request under the given key. Returns 0 if the request is within the limit of requests for the window.
+     * Otherwise the request should be rejected, and this returns the number of seconds until the window ends.
+     */
+    public int getRetryAfterSeconds(CacheKey key, int limit, int windowSeconds) {
+        checkNotNull(key);
+        checkArgument(limit > 0);
+        checkArgument(windowSeconds > 0);
+
+        String keyString = key.toString();
+        long now = DateTimeUtils.currentTimeMillis();
+        Long blockedUntilMillis = blockedUntil.getIfPresent(keyString);
+        if (blockedUntilMillis != null) {
+            if (blockedUntilMillis > now) {
+                rejectedLocallyCount.increment();
+                rejectedCount.increment();
+                return toSeconds(blockedUntilMillis - now);
+            }
+            blockedUntil.invalidate(keyString);
+        }
+
+        List<?> result;
+        try (Jedis jedis = jedisPool.getResource()) {
+            result = (List<?>) jedis.eval(SCRIPT, ImmutableList.of(keyString),
+                    ImmutableList.of(Integer.toString(limit), Integer.toString(windowSeconds)));
+        } catch (RuntimeException ex) {
+            // Don't fail requests because the limit can't be checked.
+            errorCount.increment();
+            LOG.warn("Error checking rate limit for " + keyString + ": " + ex.getMessage(), ex);
+            allowedCount.increment();
+            return 0;
+        }
+        long count = (Long) result.get(0);
+        if (count <= limit) {
+            allowedCount.increment();
+            return 0;
+        }
+        long remainingMillis = (Long) result.get(1);
+        if (remainingMillis <= 0) {
+            remainingMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+        }
+        blockedUntil.put(keyString, now + remainingMillis);
+        rejectedCount.increment();
+        return toSeconds(remainingMillis);
+    }
+
+    private static int toSeconds(long millis) {
+        return (int) Math.max(1L, (millis + 999L) / 1000L);
+    }
+
+    /** The number of requests allowed. */
+    public long getAllowedCount() {
+        return allowedCount.sum();
+    }
+
+    /** The number of requests rejected, including those rejected without calling Redis. */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /** The number of requests rejected by this server without calling Redis. */
+    public long getRejectedLocallyCount() {
+        return rejectedLocallyCount.sum();
+    }
+
+    /** The number of requests that were allowed because Redis could not be reached. */
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "rateLimiter";
+    }
+
+    @Override
+    public void writeMetrics(ObjectNode node) {
+        node.put("allowed", getAllowedCount());
+        node.put("rejected", getRejectedCount());
+        node.put("rejectedLocally", getRejectedLocallyCount());
+        node.put("errors", getErrorCount());
+    }
+}
@@ -15,6 +15,9 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Resource;
 import javax.servlet.Filter;
@@ -64,6 +67,7 @@ import org.springframework.core.annotation.Order;
 import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.cache.InstrumentedJedisPool;
 import org.sagebionetworks.bridge.cache.ViewCache;
 import org.sagebionetworks.bridge.crypto.CmsEncryptor;
 import org.sagebionetworks.bridge.crypto.CmsEncryptorCacheLoader;
@@ -117,6 +121,8 @@ import org.sagebionetworks.bridge.hibernate.SponsorPersistenceExceptionConverter
 import org.sagebionetworks.bridge.hibernate.TagEventListener;
 import org.sagebionetworks.bridge.hibernate.BasicPersistenceExceptionConverter;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.metrics.Dependency;
+import org.sagebionetworks.bridge.metrics.DependencyRequestHandler;
 import org.sagebionetworks.bridge.models.RequestInfo;
 import org.sagebionetworks.bridge.models.Tag;
 import org.sagebionetworks.bridge.models.assessments.HibernateAssessment;
@@ -131,6 +137,7 @@ import org.sagebionetworks.bridge.models.schedules2.timelines.TimelineMetadata;
 import org.sagebionetworks.bridge.redis.JedisOps;
 import org.sagebionetworks.bridge.s3.S3Helper;
 import org.sagebionetworks.bridge.spring.filters.MetricsFilter;
+import org.sagebionetworks.bridge.spring.filters.RateLimitFilter;
 import org.sagebionetworks.bridge.spring.filters.RequestFilter;
 import org.sagebionetworks.bridge.spring.filters.StaticHeadersFilter;
 import org.sagebionetworks.bridge.upload.DecryptHandler;
@@ -146,7 +153,6 @@ import org.sagebionetworks.bridge.upload.UploadValidationHandler;
 import org.sagebionetworks.client.SynapseAdminClientImpl;
 import org.sagebionetworks.client.SynapseClient;
 
-import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 
 @ComponentScan("org.sagebionetworks.bridge")
@@ -188,6 +194,12 @@ public class SpringConfig {
         return filterRegistration(filter);
     }
 
+    @Bean
+    @Order(4)
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter filter) {
+        return filterRegistration(filter);
+    }
+
     // This will replace Spring Boot's default configuration using Jackson2ObjectMapperBuilder.
     // See: https://docs.spring.io/spring-boot/docs/current-SNAPSHOT/reference
     //      /html/howto.html#howto-customize-the-jackson-objectmapper
@@ -220,7 +232,9 @@ public class SpringConfig {
         int maxRetries = bridgeConfig().getPropertyAsInt("ddb.max.retries");
         ClientConfiguration awsClientConfig = PredefinedClientConfigurations.dynamoDefault()
                 .withMaxErrorRetry(maxRetries);
-        return new AmazonDynamoDBClient(awsCredentials(), awsClientConfig);
+        AmazonDynamoDBClient dynamoDbClient = new AmazonDynamoDBClient(awsCredentials(), awsClientConfig);
+        dynamoDbClient.addRequestHandler(new DependencyRequestHandler(Dependency.DYNAMO_DB));
+        return dynamoDbClient;
     }
     
     @Bean(name = "snsClient")
@@ -239,7 +253,9 @@ public class SpringConfig {
     @Resource(name = "awsCredentials")
     public AmazonS3Client s3Client(BasicAWSCredentials awsCredentials) {
         // Setting region is necessary to prevent bug BRIDGE-2910. Don't remove.
-        return new AmazonS3Client(awsCredentials).withRegion(US_EAST_1);
+        AmazonS3Client s3Client = new AmazonS3Client(awsCredentials).withRegion(US_EAST_1);
+        s3Client.addRequestHandler(new DependencyRequestHandler(Dependency.S3));
+        return s3Client;
     }
 
     // This client needs to be configured to handle S3 file paths differently, so we can use bucket
@@ -248,7 +264,8 @@ public class SpringConfig {
     @Resource(name = "awsCredentials")
     public AmazonS3 fileUploadS3Client(BasicAWSCredentials awsCredentials) {
         return AmazonS3ClientBuilder.standard().withPathStyleAccessEnabled(true).withRegion(US_EAST_1)
-                .withCredentials(new AWSStaticCredentialsProvider(awsCredentials)).build();
+                .withCredentials(new AWSStaticCredentialsProvider(awsCredentials))
+                .withRequestHandlers(new DependencyRequestHandler(Dependency.S3)).build();
     }
     
     @Bean(name ="uploadTokenServiceClient")
@@ -288,6 +305,59 @@ public class SpringConfig {
         return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("async.worker.thread.count"));
     }
 
+    @Bean(name = "participantPurgeExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService participantPurgeExecutorService(BridgeConfig bridgeConfig) {
+        return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("participant.purge.thread.count"));
+    }
+
+    @Bean(name = "consentDeliveryExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService consentDeliveryExecutorService(BridgeConfig bridgeConfig) {
+        // The queue is bounded. When it's full, new deliveries are rejected, and ConsentService sends the consent
+        // on the request thread instead, so a signed consent is never dropped.
+        int threadCount = bridgeConfig.getPropertyAsInt("consent.delivery.thread.count");
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(bridgeConfig.getPropertyAsInt("consent.delivery.queue.capacity")),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Bean(name = "emailSendExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService emailSendExecutorService(BridgeConfig bridgeConfig) {
+        // The email outbox threads. Each one receives and sends email from the outbox for the life of the server.
+        return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("email.send.thread.count"));
+    }
+
+    @Bean(name = "smsSendExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService smsSendExecutorService(BridgeConfig bridgeConfig) {
+        // The queue is bounded. When it's full, new messages are rejected, so request threads never wait on SNS.
+        int threadCount = bridgeConfig.getPropertyAsInt("sms.send.thread.count");
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(bridgeConfig.getPropertyAsInt("sms.send.queue.capacity")),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Bean(name = "subscriptionReconcileExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService subscriptionReconcileExecutorService(BridgeConfig bridgeConfig) {
+        // Requests are coalesced per participant, so the queue holds at most one task per participant.
+        return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("notification.reconcile.thread.count"));
+    }
+
+    @Bean(name = "notificationSendExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService notificationSendExecutorService(BridgeConfig bridgeConfig) {
+        return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("notification.send.thread.count"));
+    }
+
+    @Bean(name = "snsExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService snsExecutorService(BridgeConfig bridgeConfig) {
+        return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("sns.thread.count"));
+    }
+
     @Bean(name = "supportEmail")
     @Resource(name = "bridgeConfig")
     public String supportEmail(BridgeConfig bridgeConfig) {
@@ -751,23 +821,29 @@ public class SpringConfig {
     }
 
     @Bean(name = "jedisPool")
-    public JedisPool jedisPool() throws URISyntaxException {
+    public InstrumentedJedisPool jedisPool() throws URISyntaxException {
         return createJedisPool("elasticache.url");
     }
 
-    private JedisPool createJedisPool(@SuppressWarnings("SameParameterValue") String redisServerProperty)
+    private InstrumentedJedisPool createJedisPool(@SuppressWarnings("SameParameterValue") String redisServerProperty)
             throws URISyntaxException {
         final JedisPoolConfig poolConfig = new JedisPoolConfig();
         poolConfig.setMaxTotal(bridgeConfig().getPropertyAsInt("redis.max.total"));
         poolConfig.setMinIdle(bridgeConfig().getPropertyAsInt("redis.min.idle"));
         poolConfig.setMaxIdle(bridgeConfig().getPropertyAsInt("redis.max.idle"));
-        poolConfig.setTestOnCreate(true);
-        poolConfig.setTestOnBorrow(true);
-        poolConfig.setTestOnReturn(true);
+        poolConfig.setMaxWaitMillis(bridgeConfig().getPropertyAsInt("redis.max.wait.millis"));
+        // Validating connections with a PING on every borrow and return doubles the round trips of each command.
+        // Idle connections are checked in the background instead, and a connection that fails a command is dropped.
+        poolConfig.setTestOnCreate(false);
+        poolConfig.setTestOnBorrow(false);
+        poolConfig.setTestOnReturn(false);
         poolConfig.setTestWhileIdle(true);
+        poolConfig.setTimeBetweenEvictionRunsMillis(
+                bridgeConfig().getPropertyAsInt("redis.idle.check.seconds") * 1000L);
+        poolConfig.setNumTestsPerEvictionRun(-1);
         
         final String url = bridgeConfig().get(redisServerProperty);
-        final JedisPool jedisPool = constructJedisPool(url, poolConfig);
+        final InstrumentedJedisPool jedisPool = constructJedisPool(url, poolConfig);
 
         // Shutdown hook
         Runtime.getRuntime().addShutdownHook(new Thread(jedisPool::destroy));
@@ -775,17 +851,17 @@ public class SpringConfig {
         return jedisPool;
     }
     
-    private JedisPool constructJedisPool(final String url, final JedisPoolConfig poolConfig)
+    private InstrumentedJedisPool constructJedisPool(final String url, final JedisPoolConfig poolConfig)
             throws URISyntaxException {
 
         URI redisURI = new URI(url);
         String password = BridgeUtils.extractPasswordFromURI(redisURI);
         
         if (password != null) {
-            return new JedisPool(poolConfig, redisURI.getHost(), redisURI.getPort(),
+            return new InstrumentedJedisPool(poolConfig, redisURI.getHost(), redisURI.getPort(),
                     bridgeConfig().getPropertyAsInt("redis.timeout"), password);
         }
-        return new JedisPool(poolConfig, redisURI.getHost(), redisURI.getPort(),
+        return new InstrumentedJedisPool(poolConfig, redisURI.getHost(), redisURI.getPort(),
                 bridgeConfig().getPropertyAsInt("redis.timeout"));
     }   
     
@@ -2,6 +2,7 @@ package org.sagebionetworks.bridge.dao;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.PagedResourceList;
@@ -44,6 +45,18 @@ public interface AccountDao {
      */
     Optional<Account> getAccount(AccountId accountId);
     
+    /**
+     * Get the accounts in an app with the given user IDs, in a single query. IDs that don't match an account in 
+     * the app are skipped.
+     */
+    List<Account> getAccounts(String appId, Set<String> userIds);
+    
+    /**
+     * Get the ID, health code and time zone of the accounts in an app with the given user IDs, in a single query. 
+     * No other fields are loaded. IDs that don't match an account in the app are skipped.
+     */
+    List<Account> getAccountHealthCodes(String appId, Set<String> userIds);
+    
     /**
      * Delete an account along with the authentication credentials.
      */
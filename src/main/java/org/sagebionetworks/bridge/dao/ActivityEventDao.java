@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.List;
 import java.util.Map;
 
 import org.joda.time.DateTime;
@@ -18,6 +19,13 @@ public interface ActivityEventDao {
      */
     boolean publishEvent(ActivityEvent event);
     
+    /**
+     * Publish a batch of events into users' event streams. Each event is recorded under the same 
+     * rules as {@link #publishEvent(ActivityEvent)}, applied in the order of the list, but the 
+     * events are read and written in batches.
+     */
+    void publishEvents(List<ActivityEvent> events);
+    
     /**
      * Get a map of events, where the string key is an event identifier, and the value 
      * is the timestamp of the event. If studyId is null, only events that are not scoped
@@ -1,5 +1,8 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.Collection;
+import java.util.Map;
+
 import org.sagebionetworks.bridge.models.Criteria;
 
 public interface CriteriaDao {
@@ -16,6 +19,12 @@ public interface CriteriaDao {
      */
     Criteria getCriteria(String key);
 
+    /**
+     * Get all the criteria objects for the supplied keys in one batch call, mapped by key. Keys 
+     * with no criteria object are absent from the map (does not throw an EntityNotFoundException).
+     */
+    Map<String, Criteria> batchGetCriteria(Collection<String> keys);
+
     /**
      * Delete the criteria if it exists (if criteria does not exist, does not throw
      * EntityNotFoundException).
@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.dao;
 
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.ExternalIdentifier;
 import org.sagebionetworks.bridge.models.accounts.ExternalIdentifierInfo;
@@ -15,6 +16,14 @@ public interface ExternalIdDao {
      */
     PagedResourceList<ExternalIdentifierInfo> getPagedExternalIds(String appId, String studyId, String idFilter,
             Integer offsetBy, Integer pageSize);
+    
+    /**
+     * Get a page of external IDs associated to the indicated study, starting after the external ID encoded in the 
+     * offset key (or at the beginning of the list if the key is null). Does not count the total number of IDs, so 
+     * the cost of each page does not grow with the size of the study.
+     */
+    ForwardCursorPagedResourceList<ExternalIdentifierInfo> getPagedExternalIdsByOffsetKey(String appId,
+            String studyId, String idFilter, String offsetKey, int pageSize);
 
     /**
      * Delete an external identifier.
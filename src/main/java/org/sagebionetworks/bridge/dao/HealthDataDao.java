@@ -3,6 +3,7 @@ package org.sagebionetworks.bridge.dao;
 import javax.annotation.Nonnull;
 import java.util.List;
 
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
 
 /** DAO for health data records. */
@@ -43,9 +44,28 @@ public interface HealthDataDao {
      * @param uploadDate
      *         upload date in YYYY-MM-DD format, must be non-null, non-empty, and must represent a valid date
      * @return list of all health records uploaded on that date
+     * @deprecated holds the whole day's records in memory; use
+     *         {@link #getRecordsForUploadDate(String, String, int)} to page through them instead
      */
+    @Deprecated
     List<HealthDataRecord> getRecordsForUploadDate(@Nonnull String uploadDate);
 
+    /**
+     * DAO method used by worker apps to page through the health data records uploaded for a specific date. Unlike
+     * {@link #getRecordsForUploadDate(String)}, only one page of records is ever held in memory, so this can be used
+     * for days with arbitrarily many uploads.
+     *
+     * @param uploadDate
+     *         upload date in YYYY-MM-DD format, must be non-null, non-empty, and must represent a valid date
+     * @param offsetKey
+     *         the nextPageOffsetKey returned by the previous page, or null for the first page
+     * @param pageSize
+     *         maximum number of records to return in this page, already validated by the caller
+     * @return a page of health records uploaded on that date, with an offset key if there are more records
+     */
+    ForwardCursorPagedResourceList<HealthDataRecord> getRecordsForUploadDate(@Nonnull String uploadDate,
+            String offsetKey, int pageSize);
+
     /** Gets a list of records for the given healthCode between the specified createdOn times (inclusive). */
     List<HealthDataRecord> getRecordsByHealthCodeCreatedOn(String healthCode, long createdOnStart, long createdOnEnd);
 }
@@ -1,6 +1,8 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -28,6 +30,13 @@ public interface ScheduledActivityDao {
      * Load an individual activity.
      */
     ScheduledActivity getActivity(DateTimeZone timeZone, String healthCode, String guid, boolean throwException);
+    
+    /**
+     * Load a set of a user's activities by GUID, in batches. The map is keyed by GUID, and does not contain 
+     * activities that don't exist.
+     */
+    Map<String, ScheduledActivity> getActivitiesByGuid(DateTimeZone timeZone, String healthCode,
+            Collection<String> guids);
    
     /**
      * Get a list of activities for a user. The list is derived from the scheduler.
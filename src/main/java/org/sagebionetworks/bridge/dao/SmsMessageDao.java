@@ -1,5 +1,7 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.List;
+
 import org.sagebionetworks.bridge.models.sms.SmsMessage;
 
 /** DAO to keep a log of sent SMS messages and to retrieve the most recent SMS message. */
@@ -9,4 +11,7 @@ public interface SmsMessageDao {
 
     /** Logs an SMS message. */
     void logMessage(SmsMessage smsMessage);
+
+    /** Logs a batch of SMS messages. */
+    void logMessages(List<SmsMessage> smsMessages);
 }
@@ -2,6 +2,8 @@ package org.sagebionetworks.bridge.dynamodb;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,9 +20,9 @@ import org.sagebionetworks.bridge.models.activities.ActivityEventType;
 import org.springframework.stereotype.Component;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedQueryList;
-import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
 import com.google.common.collect.Lists;
@@ -70,6 +72,48 @@ public class DynamoActivityEventDao implements ActivityEventDao {
         }
         return false;
     }
+    
+    @Override
+    public void publishEvents(List<ActivityEvent> events) {
+        checkNotNull(events);
+        if (events.isEmpty()) {
+            return;
+        }
+        // Several events can share a key (e.g. finishing several instances of the same activity), and
+        // DynamoDB rejects batch reads with duplicate keys, so load each saved event once.
+        Map<String, Object> hashKeys = new LinkedHashMap<>();
+        for (ActivityEvent event : events) {
+            hashKeys.computeIfAbsent(getEventKey(event), key -> {
+                DynamoActivityEvent hashKey = new DynamoActivityEvent();
+                hashKey.setHealthCode(event.getHealthCode());
+                hashKey.setStudyId(event.getStudyId());
+                hashKey.setEventId(event.getEventId());
+                return hashKey;
+            });
+        }
+        Map<String, ActivityEvent> savedEvents = new HashMap<>();
+        for (List<Object> resultList : mapper.batchLoad(Lists.newArrayList(hashKeys.values())).values()) {
+            for (Object result : resultList) {
+                ActivityEvent savedEvent = (ActivityEvent)result;
+                savedEvents.put(getEventKey(savedEvent), savedEvent);
+            }
+        }
+        
+        // Apply the events in order, as publishEvent() would one at a time, and save the last accepted 
+        // version of each event.
+        Map<String, ActivityEvent> eventsToSave = new LinkedHashMap<>();
+        for (ActivityEvent event : events) {
+            String key = getEventKey(event);
+            if (event.getUpdateType().canUpdate(savedEvents.get(key), event)) {
+                savedEvents.put(key, event);
+                eventsToSave.put(key, event);
+            }
+        }
+        if (!eventsToSave.isEmpty()) {
+            List<FailedBatch> failures = mapper.batchSave(Lists.newArrayList(eventsToSave.values()));
+            BridgeUtils.ifFailuresThrowException(failures);
+        }
+    }
 
     @Override
     public Map<String, DateTime> getActivityEventMap(String healthCode, String studyId) {
@@ -100,17 +144,17 @@ public class DynamoActivityEventDao implements ActivityEventDao {
         DynamoDBQueryExpression<DynamoActivityEvent> query = new DynamoDBQueryExpression<DynamoActivityEvent>()
             .withHashKeyValues(hashKey);
 
-        PaginatedQueryList<DynamoActivityEvent> queryResults = mapper.query(DynamoActivityEvent.class, query);
-        
-        List<DynamoActivityEvent> objectsToDelete = Lists.newArrayList();
-        objectsToDelete.addAll(queryResults);
-        
-        if (!objectsToDelete.isEmpty()) {
-            List<FailedBatch> failures = mapper.batchDelete(objectsToDelete);
-            BridgeUtils.ifFailuresThrowException(failures);
-        }
+        // Delete each page of events as it is read, rather than loading all of them first.
+        PaginatedQueryList<DynamoActivityEvent> queryResults = mapper.query(DynamoActivityEvent.class, query,
+                DynamoBatchDeleteHelper.ITERATION_ONLY_CONFIG);
+        DynamoBatchDeleteHelper.batchDelete(mapper, queryResults);
     }
 
+    private static String getEventKey(ActivityEvent event) {
+        // The health code of a study-scoped event includes the study ID.
+        return event.getHealthCode() + "|" + event.getEventId();
+    }
+    
     /**
      * Answer events do schedule against a specific answer, which is added to the key in the
      * map only. A change in the value is continued to be a change to the same event.
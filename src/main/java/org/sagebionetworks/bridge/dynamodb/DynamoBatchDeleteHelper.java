@@ -0,0 +1,66 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import java.util.List;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.PaginationLoadingStrategy;
+import com.google.common.collect.Iterables;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+
+/**
+ * Deletes DynamoDB items in batches as their keys are read from a query, so a DAO never has to hold every key for a
+ * participant in memory. A batch that comes back with unprocessed items is retried with exponential backoff before
+ * the failure is reported.
+ */
+final class DynamoBatchDeleteHelper {
+    /** The maximum number of items DynamoDB accepts in one BatchWriteItem request. */
+    static final int BATCH_SIZE = 25;
+    static final int MAX_RETRIES = 3;
+    static final long INITIAL_BACKOFF_MILLIS = 50L;
+
+    /**
+     * Mapper config for queries whose results are iterated once and then discarded. The returned list does not keep
+     * the pages it has already loaded.
+     */
+    static final DynamoDBMapperConfig ITERATION_ONLY_CONFIG = DynamoDBMapperConfig.builder()
+            .withPaginationLoadingStrategy(PaginationLoadingStrategy.ITERATION_ONLY).build();
+
+    private DynamoBatchDeleteHelper() {
+    }
+
+    /**
+     * Deletes the given key objects in batches. The keys are consumed lazily, so if the iterable is backed by a
+     * paginated query, only one page of keys is in memory at a time.
+     *
+     * @return the number of items deleted
+     */
+    static int batchDelete(DynamoDBMapper mapper, Iterable<?> keys) {
+        int count = 0;
+        for (List<?> batch : Iterables.partition(keys, BATCH_SIZE)) {
+            deleteBatchWithRetry(mapper, batch);
+            count += batch.size();
+        }
+        return count;
+    }
+
+    private static void deleteBatchWithRetry(DynamoDBMapper mapper, List<?> batch) {
+        // Deletes are idempotent, so it's safe to re-submit the whole batch.
+        List<FailedBatch> failures = mapper.batchDelete(batch);
+        long backoffMillis = INITIAL_BACKOFF_MILLIS;
+        for (int retry = 0; !failures.isEmpty() && retry < MAX_RETRIES; retry++) {
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BridgeServiceException(e);
+            }
+            backoffMillis *= 2;
+            failures = mapper.batchDelete(batch);
+        }
+        BridgeUtils.ifFailuresThrowException(failures);
+    }
+}
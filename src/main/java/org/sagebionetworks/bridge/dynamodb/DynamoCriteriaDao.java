@@ -2,13 +2,20 @@ package org.sagebionetworks.bridge.dynamodb;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import javax.annotation.Resource;
 
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.dao.CriteriaDao;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.models.Criteria;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
@@ -46,6 +53,37 @@ public class DynamoCriteriaDao implements CriteriaDao {
         return criteriaMapper.load(hashKey);
     }
 
+    @Override
+    public Map<String, Criteria> batchGetCriteria(Collection<String> keys) {
+        checkNotNull(keys);
+        
+        Map<String, Criteria> criteriaMap = new HashMap<>();
+        if (keys.isEmpty()) {
+            return criteriaMap;
+        }
+        List<DynamoCriteria> hashKeys = keys.stream().map(key -> {
+            checkArgument(isNotBlank(key));
+            DynamoCriteria hashKey = new DynamoCriteria();
+            hashKey.setKey(key);
+            return hashKey;
+        }).collect(toList());
+        
+        // The mapper splits the request into batches of the maximum size and retries unprocessed keys
+        Map<String, List<Object>> resultMap = criteriaMapper.batchLoad(hashKeys);
+        for (List<Object> resultList : resultMap.values()) {
+            for (Object oneResult : resultList) {
+                if (!(oneResult instanceof DynamoCriteria)) {
+                    // This should never happen, but just in case.
+                    throw new BridgeServiceException("DynamoDB returned objects of type " +
+                            oneResult.getClass().getName() + " instead of DynamoCriteria");
+                }
+                Criteria criteria = (Criteria)oneResult;
+                criteriaMap.put(criteria.getKey(), criteria);
+            }
+        }
+        return criteriaMap;
+    }
+
     @Override
     public void deleteCriteria(String key) {
         checkArgument(isNotBlank(key));
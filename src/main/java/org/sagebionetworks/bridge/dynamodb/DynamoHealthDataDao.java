@@ -2,21 +2,29 @@ package org.sagebionetworks.bridge.dynamodb;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
 import com.amazonaws.services.dynamodbv2.document.Index;
 import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.KeyAttribute;
+import com.amazonaws.services.dynamodbv2.document.QueryOutcome;
+import com.amazonaws.services.dynamodbv2.document.spec.QuerySpec;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
+import com.google.common.collect.Iterables;
 
 import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.dao.HealthDataDao;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
+import org.sagebionetworks.bridge.models.ResourceList;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
@@ -26,6 +34,9 @@ import org.springframework.stereotype.Component;
 /** DynamoDB implementation of {@link org.sagebionetworks.bridge.dao.HealthDataDao}. */
 @Component
 public class DynamoHealthDataDao implements HealthDataDao {
+    static final String ID = "id";
+    static final String UPLOAD_DATE = "uploadDate";
+
     private DynamoDBMapper mapper;
     private DynamoIndexHelper healthCodeIndex;
     private DynamoIndexHelper uploadDateIndex;
@@ -75,21 +86,16 @@ public class DynamoHealthDataDao implements HealthDataDao {
     public int deleteRecordsForHealthCode(@Nonnull String healthCode) {
         // query for the keys we need to delete. The index returns all fields which are
         // not correctly deserialized by IndexHelper, so do it manually.
+        // The query results are paged lazily, so keys are deleted a batch at a time as they are read.
         Index index = healthCodeIndex.getIndex();
         Iterable<Item> iter = index.query("healthCode", healthCode);
         
-        List<DynamoHealthDataRecord> keysToDelete = Lists.newArrayList();
-        for (Item item : iter) {
+        Iterable<DynamoHealthDataRecord> keysToDelete = Iterables.transform(iter, item -> {
             DynamoHealthDataRecord oneRecord = new DynamoHealthDataRecord();
-            oneRecord.setId(item.getString("id"));
-            keysToDelete.add(oneRecord);
-        }
-
-        // and then delete
-        List<DynamoDBMapper.FailedBatch> failureList = mapper.batchDelete(keysToDelete);
-        BridgeUtils.ifFailuresThrowException(failureList);
-
-        return keysToDelete.size();
+            oneRecord.setId(item.getString(ID));
+            return oneRecord;
+        });
+        return DynamoBatchDeleteHelper.batchDelete(mapper, keysToDelete);
     }
 
     /** {@inheritDoc} */
@@ -99,9 +105,63 @@ public class DynamoHealthDataDao implements HealthDataDao {
     }
 
     /** {@inheritDoc} */
+    @Deprecated
     @Override
     public List<HealthDataRecord> getRecordsForUploadDate(@Nonnull String uploadDate) {
-        return uploadDateIndex.query(HealthDataRecord.class, "uploadDate", uploadDate, null);
+        return uploadDateIndex.query(HealthDataRecord.class, UPLOAD_DATE, uploadDate, null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ForwardCursorPagedResourceList<HealthDataRecord> getRecordsForUploadDate(@Nonnull String uploadDate,
+            String offsetKey, int pageSize) {
+        // The uploadDate index has no range key, so the exclusive start key is the index hash key plus the table's
+        // hash key. The offset key is the ID of the last record of the previous page.
+        QuerySpec spec = new QuerySpec()
+                .withHashKey(UPLOAD_DATE, uploadDate)
+                .withMaxPageSize(pageSize);
+        if (offsetKey != null) {
+            spec.withExclusiveStartKey(new KeyAttribute(UPLOAD_DATE, uploadDate), new KeyAttribute(ID, offsetKey));
+        }
+        QueryOutcome outcome = uploadDateIndex.query(spec);
+
+        // The index only projects keys. Keep the index order, so that paging is stable, and re-query the table for
+        // the full records.
+        Map<String, HealthDataRecord> recordsById = new LinkedHashMap<>();
+        List<Object> keysToLoad = new ArrayList<>(pageSize);
+        for (Item item : outcome.getItems()) {
+            String id = item.getString(ID);
+            DynamoHealthDataRecord key = new DynamoHealthDataRecord();
+            key.setId(id);
+            keysToLoad.add(key);
+            recordsById.put(id, null);
+        }
+        if (!keysToLoad.isEmpty()) {
+            Map<String, List<Object>> resultMap = mapper.batchLoad(keysToLoad);
+            for (List<Object> resultList : resultMap.values()) {
+                for (Object oneResult : resultList) {
+                    HealthDataRecord record = (HealthDataRecord) oneResult;
+                    recordsById.put(record.getId(), record);
+                }
+            }
+        }
+        // A record can be deleted between the index query and the batch load. Skip those.
+        List<HealthDataRecord> records = new ArrayList<>(recordsById.size());
+        for (HealthDataRecord record : recordsById.values()) {
+            if (record != null) {
+                records.add(record);
+            }
+        }
+
+        String nextPageOffsetKey = null;
+        Map<String, AttributeValue> lastEvaluatedKey = outcome.getQueryResult().getLastEvaluatedKey();
+        if (lastEvaluatedKey != null && lastEvaluatedKey.containsKey(ID)) {
+            nextPageOffsetKey = lastEvaluatedKey.get(ID).getS();
+        }
+
+        return new ForwardCursorPagedResourceList<>(records, nextPageOffsetKey)
+                .withRequestParam(ResourceList.OFFSET_KEY, offsetKey)
+                .withRequestParam(ResourceList.PAGE_SIZE, pageSize);
     }
 
     /** {@inheritDoc} */
@@ -51,13 +51,10 @@ public class DynamoHealthDataEx3Dao implements HealthDataEx3Dao {
         DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query = new DynamoDBQueryExpression<DynamoHealthDataRecordEx3>()
                 .withConsistentRead(false).withIndexName(DynamoHealthDataRecordEx3.HEALTHCODE_CREATEDON_INDEX)
                 .withHashKeyValues(key);
-        List<DynamoHealthDataRecordEx3> recordsToDelete = queryHelper(query);
+        Iterable<DynamoHealthDataRecordEx3> recordsToDelete = iterationQueryHelper(query);
 
-        // Next, batch delete.
-        if (!recordsToDelete.isEmpty()) {
-            List<DynamoDBMapper.FailedBatch> failures = mapper.batchDelete(recordsToDelete);
-            BridgeUtils.ifFailuresThrowException(failures);
-        }
+        // Next, batch delete, one batch at a time as the query pages are read.
+        DynamoBatchDeleteHelper.batchDelete(mapper, recordsToDelete);
     }
 
     @Override
@@ -154,4 +151,10 @@ public class DynamoHealthDataEx3Dao implements HealthDataEx3Dao {
     List<DynamoHealthDataRecordEx3> queryHelper(DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query) {
         return mapper.query(DynamoHealthDataRecordEx3.class, query);
     }
+
+    // Like queryHelper(), but the results can only be iterated once and pages are discarded after they are read.
+    Iterable<DynamoHealthDataRecordEx3> iterationQueryHelper(
+            DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query) {
+        return mapper.query(DynamoHealthDataRecordEx3.class, query, DynamoBatchDeleteHelper.ITERATION_ONLY_CONFIG);
+    }
 }
@@ -6,6 +6,7 @@ import static org.sagebionetworks.bridge.BridgeUtils.createReferentGuidIndex;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +39,8 @@ import com.amazonaws.services.dynamodbv2.document.QueryOutcome;
 import com.amazonaws.services.dynamodbv2.document.RangeKeyCondition;
 import com.amazonaws.services.dynamodbv2.document.spec.QuerySpec;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -266,6 +269,39 @@ public class DynamoScheduledActivityDao implements ScheduledActivityDao {
         return dbActivity;
     }
     
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, ScheduledActivity> getActivitiesByGuid(DateTimeZone timeZone, String healthCode,
+            Collection<String> guids) {
+        checkNotNull(timeZone);
+        checkNotNull(healthCode);
+        checkNotNull(guids);
+        
+        if (guids.isEmpty()) {
+            return ImmutableMap.of();
+        }
+        // DynamoDB rejects batch reads with duplicate keys. The mapper splits the keys into batches of 
+        // 100 and retries any keys DynamoDB does not process.
+        List<Object> keysToLoad = new ArrayList<>();
+        for (String guid : ImmutableSet.copyOf(guids)) {
+            DynamoScheduledActivity hashKey = new DynamoScheduledActivity();
+            hashKey.setHealthCode(healthCode);
+            hashKey.setGuid(guid);
+            keysToLoad.add(hashKey);
+        }
+        Map<String, List<Object>> resultMap = mapper.batchLoad(keysToLoad);
+        
+        Map<String, ScheduledActivity> results = Maps.newHashMapWithExpectedSize(keysToLoad.size());
+        for (List<Object> list : resultMap.values()) {
+            for (Object oneResult : list) {
+                ScheduledActivity activity = (ScheduledActivity)oneResult;
+                activity.setTimeZone(timeZone);
+                results.put(activity.getGuid(), activity);
+            }
+        }
+        return results;
+    }
+    
     /** {@inheritDoc} */
     @Override
     public List<ScheduledActivity> getActivities(DateTimeZone timeZone, List<ScheduledActivity> activities) {
@@ -321,10 +357,7 @@ public class DynamoScheduledActivityDao implements ScheduledActivityDao {
             
             QueryResultPage<DynamoScheduledActivity> queryResults = mapper.queryPage(DynamoScheduledActivity.class, query);
             List<DynamoScheduledActivity> activities = queryResults.getResults();
-            if (!activities.isEmpty()) {
-                List<FailedBatch> failures = mapper.batchDelete(activities);
-                BridgeUtils.ifFailuresThrowException(failures);
-            }
+            DynamoBatchDeleteHelper.batchDelete(mapper, activities);
             lastKey = queryResults.getLastEvaluatedKey();
         } while(lastKey != null);        
     }
@@ -4,10 +4,12 @@ import java.util.List;
 import javax.annotation.Resource;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
 import org.springframework.stereotype.Component;
 
+import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.dao.SmsMessageDao;
 import org.sagebionetworks.bridge.models.sms.SmsMessage;
 
@@ -45,4 +47,13 @@ public class DynamoSmsMessageDao implements SmsMessageDao {
     public void logMessage(SmsMessage smsMessage) {
         mapper.save(smsMessage);
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public void logMessages(List<SmsMessage> smsMessages) {
+        if (!smsMessages.isEmpty()) {
+            List<FailedBatch> failures = mapper.batchSave(smsMessages);
+            BridgeUtils.ifFailuresThrowException(failures);
+        }
+    }
 }
@@ -56,6 +56,30 @@ public class DynamoUploadSchema implements UploadSchema {
     private Long version;
     private boolean deleted;
 
+    public DynamoUploadSchema() {
+    }
+
+    /**
+     * This copy constructor copies all fields. Field definitions are immutable and the app version maps are copied, so
+     * changes to the copy don't affect the original. This is used to hand out copies of cached schemas.
+     */
+    public DynamoUploadSchema(DynamoUploadSchema schema) {
+        this.fieldDefList = schema.fieldDefList;
+        this.maxAppVersions = new HashMap<>(schema.maxAppVersions);
+        this.minAppVersions = new HashMap<>(schema.minAppVersions);
+        this.moduleId = schema.moduleId;
+        this.moduleVersion = schema.moduleVersion;
+        this.name = schema.name;
+        this.rev = schema.rev;
+        this.schemaId = schema.schemaId;
+        this.schemaType = schema.schemaType;
+        this.surveyGuid = schema.surveyGuid;
+        this.surveyCreatedOn = schema.surveyCreatedOn;
+        this.appId = schema.appId;
+        this.version = schema.version;
+        this.deleted = schema.deleted;
+    }
+
     /** {@inheritDoc} */
     @DynamoDBIgnore
     @JsonIgnore
@@ -108,6 +108,16 @@ public class HibernateAccount implements Account {
      */
     public HibernateAccount() {}
     
+    /**
+     * Constructor to load only the health code and time zone of an account, to log and record the messages sent to 
+     * it. This avoids loading any of the ancillary tables.
+     */
+    public HibernateAccount(String id, String healthCode, DateTimeZone timeZone) {
+        this.id = id;
+        this.healthCode = healthCode;
+        this.timeZone = timeZone;
+    }
+    
     /**
      * Constructor to load information for the AccountSummary object. Could not find a way to 
      * construct this object with just the indicated fields using a select clause, without also 
@@ -16,15 +16,20 @@ import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.BridgeUtils.StudyAssociations;
 import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.dao.AccountDao;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.time.DateUtils;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.PagedResourceList;
@@ -33,6 +38,7 @@ import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
 import org.sagebionetworks.bridge.models.accounts.AccountSummary;
 import org.sagebionetworks.bridge.models.apps.App;
+import org.sagebionetworks.bridge.models.studies.Enrollment;
 
 /** Hibernate implementation of Account Dao. */
 @Component
@@ -46,7 +52,15 @@ public class HibernateAccountDao implements AccountDao {
     
     static final String COUNT_QUERY = "SELECT COUNT(DISTINCT acct.id) FROM HibernateAccount AS acct";
     
+    static final String IDS_QUERY = FULL_QUERY + " WHERE acct.appId = :appId AND acct.id IN (:ids)";
+    
+    static final String HEALTH_CODES_QUERY = "SELECT new org.sagebionetworks.bridge.hibernate.HibernateAccount("
+            + "acct.id, acct.healthCode, acct.timeZone) FROM HibernateAccount AS acct "
+            + "WHERE acct.appId = :appId AND acct.id IN (:ids)";
+    
     private HibernateHelper hibernateHelper;
+    
+    private CacheProvider cacheProvider;
 
     /** This makes interfacing with Hibernate easier. */
     @Resource(name = "accountHibernateHelper")
@@ -54,6 +68,12 @@ public class HibernateAccountDao implements AccountDao {
         this.hibernateHelper = hibernateHelper;
     }
     
+    /** Used to remove the cached external ID counts of the studies an account is enrolled in. */
+    @Autowired
+    public final void setCacheProvider(CacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+    
     // Provided to override in tests
     protected String generateGUID() {
         return BridgeUtils.generateGuid();
@@ -75,12 +95,14 @@ public class HibernateAccountDao implements AccountDao {
     @Override
     public void createAccount(App app, Account account) {
         hibernateHelper.create(account);
+        removeExternalIdCounts(account);
     }
 
     /** {@inheritDoc} */
     @Override
     public void updateAccount(Account account) {
         hibernateHelper.update(account);
+        removeExternalIdCounts(account);
     }
     
     /** {@inheritDoc} */
@@ -115,6 +137,34 @@ public class HibernateAccountDao implements AccountDao {
         return Optional.of(account);
     }
     
+    /** {@inheritDoc} */
+    @Override
+    public List<Account> getAccounts(String appId, Set<String> userIds) {
+        if (userIds.isEmpty()) {
+            return ImmutableList.of();
+        }
+        List<HibernateAccount> accounts = hibernateHelper.queryGet(IDS_QUERY,
+                ImmutableMap.of("appId", appId, "ids", userIds), null, null, HibernateAccount.class);
+        for (HibernateAccount account : accounts) {
+            if (validateHealthCode(account)) {
+                Account updated = hibernateHelper.update(account);
+                account.setVersion(updated.getVersion());
+            }
+        }
+        return ImmutableList.<Account>copyOf(accounts);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public List<Account> getAccountHealthCodes(String appId, Set<String> userIds) {
+        if (userIds.isEmpty()) {
+            return ImmutableList.of();
+        }
+        List<HibernateAccount> accounts = hibernateHelper.queryGet(HEALTH_CODES_QUERY,
+                ImmutableMap.of("appId", appId, "ids", userIds), null, null, HibernateAccount.class);
+        return ImmutableList.<Account>copyOf(accounts);
+    }
+    
     QueryBuilder makeQuery(String prefix, String appId, AccountId accountId, AccountSummarySearch search, boolean isCount) {
         RequestContext context = RequestContext.get();
         Set<String> callerStudies = context.getOrgSponsoredStudies();
@@ -183,7 +233,26 @@ public class HibernateAccountDao implements AccountDao {
     /** {@inheritDoc} */
     @Override
     public void deleteAccount(String userId) {
+        HibernateAccount account = hibernateHelper.getById(HibernateAccount.class, userId);
         hibernateHelper.deleteById(HibernateAccount.class, userId);
+        if (account != null) {
+            removeExternalIdCounts(account);
+        }
+    }
+    
+    // External IDs are stored on enrollments, so any account write may add, change or remove one. The cached
+    // external ID counts (see HibernateExternalIdDao) of every study the account is enrolled in are removed. A Redis
+    // error doesn't fail the write, since the counts expire shortly anyway.
+    private void removeExternalIdCounts(Account account) {
+        for (Enrollment enrollment : account.getEnrollments()) {
+            try {
+                cacheProvider.removeSetOfCacheKeys(CacheKey.externalIdCountList(enrollment.getAppId(),
+                        enrollment.getStudyId()));
+            } catch (BridgeServiceException e) {
+                LOG.warn("Could not remove cached external ID counts for app " + enrollment.getAppId() +
+                        ", study " + enrollment.getStudyId() + ": " + e.getMessage());
+            }
+        }
     }
 
     /** {@inheritDoc} */
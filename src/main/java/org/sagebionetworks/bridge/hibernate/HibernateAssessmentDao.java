@@ -15,6 +15,7 @@ import javax.annotation.Resource;
 
 import com.google.common.collect.ImmutableMap;
 
+import org.hibernate.Session;
 import org.hibernate.query.NativeQuery;
 import org.springframework.stereotype.Component;
 
@@ -45,6 +46,16 @@ class HibernateAssessmentDao implements AssessmentDao {
             +"identifier = :identifier";
     static final String GET_REVISIONS2 = "ORDER BY revision DESC";
     static final String EXCLUDE_DELETED = "AND deleted = 0";
+    
+    // AssessmentLatestRevisions holds the GUID of the highest revision of each assessment (logically deleted or
+    // not), so listings don't have to find it with a GROUP BY. It is updated in the same transaction as any
+    // change that adds or removes a revision. The marker row is upserted in one statement, so two transactions
+    // changing the same assessment can't both find the row missing and then collide on the primary key. If the
+    // marked revision is deleted, the foreign key cascade removes the row and this inserts it again.
+    static final String UPSERT_LATEST_REVISION_SQL = "INSERT INTO AssessmentLatestRevisions (appId, identifier, "
+            + "guid) SELECT a.appId, a.identifier, a.guid FROM Assessments AS a WHERE a.appId = :appId AND "
+            + "a.identifier = :identifier ORDER BY a.revision DESC LIMIT 1 ON DUPLICATE KEY UPDATE guid = "
+            + "VALUES(guid)";
 
     private HibernateHelper hibernateHelper;
     
@@ -59,34 +70,32 @@ class HibernateAssessmentDao implements AssessmentDao {
         
         boolean includeTags = !isEmpty(tags);
         
-        // Not sure pulling this out into constants is any easier to understand...
         QueryBuilder builder = new QueryBuilder();
-        builder.append("FROM (");
-        builder.append("SELECT DISTINCT identifier as id, MAX(revision) AS rev FROM Assessments");
-        builder.append("WHERE appId = :appId GROUP BY identifier) AS latest_assessments");
-        builder.append("INNER JOIN Assessments AS a ON a.identifier = latest_assessments.id AND");
-        builder.append("a.revision = latest_assessments.rev");
-        
-        List<String> clauses = new ArrayList<>();
-        clauses.add("WHERE appId = :appId");
+        builder.append("FROM AssessmentLatestRevisions AS latest");
+        builder.append("INNER JOIN Assessments AS a ON a.guid = latest.guid");
         if (includeTags) {
-            clauses.add("guid IN (SELECT DISTINCT assessmentGuid FROM AssessmentTags WHERE tagValue IN :tags)");
-            builder.getParameters().put("tags", tags);
+            builder.append("INNER JOIN AssessmentTags AS t ON t.assessmentGuid = a.guid AND t.tagValue IN :tags",
+                    "tags", tags);
         }
+        List<String> clauses = new ArrayList<>();
+        clauses.add("WHERE latest.appId = :appId");
         if (!includeDeleted) {
-            clauses.add("deleted = 0");
+            clauses.add("a.deleted = 0");
         }
         builder.append(AND_JOINER.join(clauses), "appId", appId);
-        builder.append("ORDER BY createdOn DESC");
+        builder.append("ORDER BY a.createdOn DESC");
+        
+        // An assessment with more than one of the tags is joined to more than one tag row.
+        String count = includeTags ? "SELECT count(DISTINCT a.guid) " : "SELECT count(*) ";
+        String select = includeTags ? "SELECT DISTINCT a.* " : "SELECT a.* ";
         
-        int count = hibernateHelper.nativeQueryCount(
-                "SELECT count(*) " + builder.getQuery(), builder.getParameters());
+        int total = hibernateHelper.nativeQueryCount(count + builder.getQuery(), builder.getParameters());
         List<HibernateAssessment> assessments = hibernateHelper.nativeQueryGet(
-                "SELECT * " + builder.getQuery(), builder.getParameters(), 
+                select + builder.getQuery(), builder.getParameters(), 
                 offsetBy, pageSize, HibernateAssessment.class);
         
         List<Assessment> dtos = assessments.stream().map(Assessment::create).collect(toList());
-        return new PagedResourceList<Assessment>(dtos, count, true);
+        return new PagedResourceList<Assessment>(dtos, total, true);
     }
     
     public PagedResourceList<Assessment> getAssessmentRevisions(String appId, String identifier, 
@@ -136,7 +145,9 @@ class HibernateAssessmentDao implements AssessmentDao {
         
         HibernateAssessment retValue = hibernateHelper.executeWithExceptionHandling(hibernateAssessment, (session) -> {
             session.persist(hibernateConfig);
-            return (HibernateAssessment)session.merge(hibernateAssessment);
+            HibernateAssessment merged = (HibernateAssessment)session.merge(hibernateAssessment);
+            updateLatestRevision(session, appId, hibernateAssessment.getIdentifier());
+            return merged;
         });
         return Assessment.create(retValue);
     }
@@ -148,8 +159,11 @@ class HibernateAssessmentDao implements AssessmentDao {
         // convert it to a non-managed object, the version will not be updated. It appears that the update of the 
         // Java object happens as part of the transaction commit, or something like that.
         HibernateAssessment hibernateAssessment = HibernateAssessment.create(appId, assessment);
-        HibernateAssessment retValue = hibernateHelper.executeWithExceptionHandling(hibernateAssessment, 
-                (session) -> (HibernateAssessment)session.merge(hibernateAssessment));
+        HibernateAssessment retValue = hibernateHelper.executeWithExceptionHandling(hibernateAssessment, (session) -> {
+            HibernateAssessment merged = (HibernateAssessment)session.merge(hibernateAssessment);
+            updateLatestRevision(session, appId, hibernateAssessment.getIdentifier());
+            return merged;
+        });
         return Assessment.create(retValue);
     }
 
@@ -172,6 +186,7 @@ class HibernateAssessmentDao implements AssessmentDao {
             query.executeUpdate();
             
             session.remove(hibernateAssessment);
+            updateLatestRevision(session, appId, assessmentId);
             return null;
         });
     }
@@ -187,7 +202,9 @@ class HibernateAssessmentDao implements AssessmentDao {
             // And persist all of the resources
             session.saveOrUpdate(hibernateDestConfig);
             session.saveOrUpdate(hibernateDest);
-            return (HibernateAssessment)session.merge(hibernateOrigin);
+            HibernateAssessment merged = (HibernateAssessment)session.merge(hibernateOrigin);
+            updateLatestRevision(session, SHARED_APP_ID, hibernateDest.getIdentifier());
+            return merged;
         });
         return Assessment.create(retValue);
     }
@@ -200,11 +217,26 @@ class HibernateAssessmentDao implements AssessmentDao {
         HibernateAssessment retValue = hibernateHelper.executeWithExceptionHandling(hibernateDest, (session) -> {
             session.saveOrUpdate(hibernateConfig);
             session.merge(hibernateDest);
+            updateLatestRevision(session, destAppId, hibernateDest.getIdentifier());
             return hibernateDest;
         });
         return Assessment.create(retValue);
     }
 
+    /**
+     * Point the assessment's latest revision marker at its highest revision. Called at the end of each transaction
+     * that changes the assessment's revisions.
+     */
+    private void updateLatestRevision(Session session, String appId, String identifier) {
+        // Flush so the upsert sees the revisions written (or removed) earlier in this transaction.
+        session.flush();
+        
+        NativeQuery<?> query = session.createNativeQuery(UPSERT_LATEST_REVISION_SQL);
+        query.setParameter(APP_ID, appId);
+        query.setParameter(IDENTIFIER, identifier);
+        query.executeUpdate();
+    }
+
     @Override
     public boolean hasAssessmentFromOrg(String appId, String orgId) {
         QueryBuilder builder = new QueryBuilder();
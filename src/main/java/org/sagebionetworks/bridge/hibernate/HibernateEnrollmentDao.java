@@ -3,10 +3,17 @@ package org.sagebionetworks.bridge.hibernate;
 import static java.util.stream.Collectors.toList;
 import static org.sagebionetworks.bridge.BridgeConstants.TEST_USER_GROUP;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Resource;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
@@ -23,7 +30,16 @@ public class HibernateEnrollmentDao implements EnrollmentDao {
     
     static final String REF_QUERY = "SELECT new org.sagebionetworks.bridge.hibernate.HibernateAccount("
             + "a.firstName, a.lastName, a.email, a.phone, a.synapseUserId, a.orgMembership, a.id) FROM "
-            + "org.sagebionetworks.bridge.hibernate.HibernateAccount a WHERE a.appId = :appId AND a.id = :id";
+            + "org.sagebionetworks.bridge.hibernate.HibernateAccount a WHERE a.appId = :appId AND a.id IN (:ids)";
+    
+    // The staff accounts that enroll participants are the same few accounts over and over, so their references
+    // are cached briefly. Changes to a staff member's name or contact information show up once this expires.
+    static final int ENROLLED_BY_CACHE_MAX_SIZE = 1000;
+    static final long ENROLLED_BY_CACHE_EXPIRE_MINUTES = 5;
+
+    private final Cache<String, AccountRef> enrolledByCache = CacheBuilder.newBuilder()
+            .maximumSize(ENROLLED_BY_CACHE_MAX_SIZE)
+            .expireAfterWrite(ENROLLED_BY_CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).build();
 
     private HibernateHelper hibernateHelper;
     
@@ -50,12 +66,7 @@ public class HibernateEnrollmentDao implements EnrollmentDao {
         List<HibernateEnrollment> enrollments = hibernateHelper.queryGet("SELECT h " + builder.getQuery(),
                 builder.getParameters(), offsetBy, pageSize, HibernateEnrollment.class);
         
-        List<EnrollmentDetail> dtos = enrollments.stream().map(enrollment -> {
-            AccountRef participantRef = nullSafeAccountRef(appId, enrollment.getAccountId());
-            AccountRef enrolledByRef = nullSafeAccountRef(appId, enrollment.getEnrolledBy());
-            AccountRef withdrawnByRef = nullSafeAccountRef(appId, enrollment.getWithdrawnBy());
-            return new EnrollmentDetail(enrollment, participantRef, enrolledByRef, withdrawnByRef);
-        }).collect(toList());
+        List<EnrollmentDetail> dtos = toEnrollmentDetails(appId, enrollments);
         return new PagedResourceList<>(dtos, total, true);
     }
     
@@ -67,23 +78,68 @@ public class HibernateEnrollmentDao implements EnrollmentDao {
         
         List<HibernateEnrollment> enrollments = hibernateHelper.queryGet(builder.getQuery(),
                 builder.getParameters(), null, null, HibernateEnrollment.class);
+        return toEnrollmentDetails(appId, enrollments);
+    }
+    
+    private List<EnrollmentDetail> toEnrollmentDetails(String appId, List<HibernateEnrollment> enrollments) {
+        Map<String, AccountRef> refs = getAccountRefs(appId, enrollments);
         return enrollments.stream().map(enrollment -> {
-            AccountRef participantRef = nullSafeAccountRef(appId, enrollment.getAccountId());
-            AccountRef enrolledByRef = nullSafeAccountRef(appId, enrollment.getEnrolledBy());
-            AccountRef withdrawnByRef = nullSafeAccountRef(appId, enrollment.getWithdrawnBy());
+            AccountRef participantRef = nullSafeAccountRef(refs, enrollment.getAccountId());
+            AccountRef enrolledByRef = nullSafeAccountRef(refs, enrollment.getEnrolledBy());
+            AccountRef withdrawnByRef = nullSafeAccountRef(refs, enrollment.getWithdrawnBy());
             return new EnrollmentDetail(enrollment, participantRef, enrolledByRef, withdrawnByRef);
         }).collect(toList());
     }
     
-    private AccountRef nullSafeAccountRef(String appId, String id) {
-        if (id == null) {
-            return null;
+    /**
+     * Look up all of the accounts referenced by the enrollments in a single query, rather than one query per 
+     * reference. Accounts that can't be found are absent from the returned map.
+     */
+    private Map<String, AccountRef> getAccountRefs(String appId, List<HibernateEnrollment> enrollments) {
+        Map<String, AccountRef> refs = new HashMap<>();
+        Set<String> enrolledByIds = new HashSet<>();
+        Set<String> ids = new HashSet<>();
+        for (HibernateEnrollment enrollment : enrollments) {
+            addIfNotNull(ids, enrollment.getAccountId());
+            addIfNotNull(ids, enrollment.getWithdrawnBy());
+            String enrolledBy = enrollment.getEnrolledBy();
+            if (enrolledBy != null) {
+                AccountRef ref = enrolledByCache.getIfPresent(cacheKey(appId, enrolledBy));
+                if (ref != null) {
+                    refs.put(enrolledBy, ref);
+                } else {
+                    enrolledByIds.add(enrolledBy);
+                }
+            }
+        }
+        ids.addAll(enrolledByIds);
+        ids.removeAll(refs.keySet());
+        if (ids.isEmpty()) {
+            return refs;
         }
         List<HibernateAccount> accounts = hibernateHelper.queryGet(REF_QUERY, 
-                ImmutableMap.of("appId", appId, "id", id), null, 1, HibernateAccount.class);
-        if (accounts.isEmpty()) {
-            return null;
+                ImmutableMap.of("appId", appId, "ids", ids), null, null, HibernateAccount.class);
+        for (HibernateAccount account : accounts) {
+            AccountRef ref = new AccountRef(account);
+            refs.put(account.getId(), ref);
+            if (enrolledByIds.contains(account.getId())) {
+                enrolledByCache.put(cacheKey(appId, account.getId()), ref);
+            }
         }
-        return new AccountRef(accounts.get(0));
+        return refs;
+    }
+    
+    private static void addIfNotNull(Set<String> ids, String id) {
+        if (id != null) {
+            ids.add(id);
+        }
+    }
+    
+    private static String cacheKey(String appId, String id) {
+        return appId + ":" + id;
+    }
+    
+    private static AccountRef nullSafeAccountRef(Map<String, AccountRef> refs, String id) {
+        return (id == null) ? null : refs.get(id);
     }
 }
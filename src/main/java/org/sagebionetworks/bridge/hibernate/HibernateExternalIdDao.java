@@ -2,19 +2,25 @@ package org.sagebionetworks.bridge.hibernate;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import javax.annotation.Resource;
 
+import com.google.common.io.BaseEncoding;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.dao.AccountDao;
 import org.sagebionetworks.bridge.dao.ExternalIdDao;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
@@ -28,12 +34,27 @@ public class HibernateExternalIdDao implements ExternalIdDao {
     private static final String BASE_QUERY = "from HibernateEnrollment as en "
             + "WHERE en.appId = :appId AND en.studyId = :studyId "
             + "AND en.externalId IS NOT NULL";
+    // In the offset-paged list, % and _ in the filter are wildcards, as they always have been.
     private static final String FILTER_QUERY = "AND en.externalId LIKE :idFilter";
+    // In the offset-key-paged list, the filter is escaped so it is always a literal prefix, which MySQL can look up
+    // in the AccountsSubstudies-Study-ExternalId index rather than scanning all of the study's enrollments.
+    private static final String PREFIX_FILTER_QUERY = "AND en.externalId LIKE :idFilter ESCAPE '!'";
+    private static final String OFFSET_KEY_QUERY = "AND en.externalId > :offsetKey";
     private static final String ORDER_QUERY = "ORDER BY en.externalId";
+    
+    static final String INVALID_OFFSET_KEY_ERROR = "Invalid offsetKey: %s";
+    
+    // Counting all of a large study's external IDs is as slow as reading them, so the total is cached briefly 
+    // rather than being recounted as a caller pages through the list. The counts are kept in Redis so every server
+    // sees the same total, and HibernateAccountDao removes a study's counts whenever an account in the study is 
+    // written.
+    static final int COUNT_CACHE_SECONDS = 60;
 
     private HibernateHelper hibernateHelper;
     
     private AccountDao accountDao;
+    
+    private CacheProvider cacheProvider;
 
     @Resource(name = "accountHibernateHelper")
     final void setHibernateHelper(HibernateHelper hibernateHelper) {
@@ -44,14 +65,19 @@ public class HibernateExternalIdDao implements ExternalIdDao {
     final void setAccountDao(AccountDao accountDao) {
         this.accountDao = accountDao;
     }
+    
+    @Autowired
+    final void setCacheProvider(CacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
 
     @Override
     public PagedResourceList<ExternalIdentifierInfo> getPagedExternalIds(String appId, String studyId, String idFilter,
             Integer offsetBy, Integer pageSize) {
         checkNotNull(appId);
         checkNotNull(studyId);
-        checkNotNull(offsetBy);
         checkNotNull(pageSize);
+        int offset = (offsetBy == null) ? 0 : offsetBy;
         
         QueryBuilder query = new QueryBuilder();
         query.append(BASE_QUERY, "appId", appId, "studyId", studyId);
@@ -61,16 +87,80 @@ public class HibernateExternalIdDao implements ExternalIdDao {
         query.append(ORDER_QUERY);
 
         List<HibernateEnrollment> enrollments = hibernateHelper.queryGet("SELECT en " + query.getQuery(), 
-                query.getParameters(), offsetBy, pageSize, HibernateEnrollment.class);
+                query.getParameters(), offset, pageSize, HibernateEnrollment.class);
 
         List<ExternalIdentifierInfo> infos = enrollments.stream()
                 .map(en -> new ExternalIdentifierInfo(en.getExternalId(), en.getStudyId(), true))
                 .collect(Collectors.toList());
 
-        int count = hibernateHelper.queryCount("SELECT count(en) " + query.getQuery(), query.getParameters());
-
+        // A partial page is the last page, so the total is known without counting.
+        Integer count;
+        if (infos.size() < pageSize && (!infos.isEmpty() || offset == 0)) {
+            count = offset + infos.size();
+        } else {
+            CacheKey countKey = CacheKey.externalIdCount(appId, studyId, StringUtils.defaultString(idFilter));
+            count = cacheProvider.getObject(countKey, Integer.class);
+            if (count == null) {
+                count = hibernateHelper.queryCount("SELECT count(en) " + query.getQuery(), query.getParameters());
+                cacheProvider.setObject(countKey, count, COUNT_CACHE_SECONDS);
+                
+                // Track the count so it can be removed with the study's other counts. The set outlives its members.
+                CacheKey countListKey = CacheKey.externalIdCountList(appId, studyId);
+                cacheProvider.addCacheKeyToSet(countListKey, countKey.toString());
+                cacheProvider.setExpiration(countListKey, COUNT_CACHE_SECONDS);
+            }
+        }
         return new PagedResourceList<>(infos, count, true);
     }
+    
+    @Override
+    public ForwardCursorPagedResourceList<ExternalIdentifierInfo> getPagedExternalIdsByOffsetKey(String appId,
+            String studyId, String idFilter, String offsetKey, int pageSize) {
+        checkNotNull(appId);
+        checkNotNull(studyId);
+        
+        QueryBuilder query = new QueryBuilder();
+        query.append(BASE_QUERY, "appId", appId, "studyId", studyId);
+        if (StringUtils.isNotBlank(idFilter)) {
+            query.append(PREFIX_FILTER_QUERY, "idFilter", escapeLike(idFilter) + "%");
+        }
+        if (offsetKey != null) {
+            query.append(OFFSET_KEY_QUERY, "offsetKey", decodeOffsetKey(offsetKey));
+        }
+        query.append(ORDER_QUERY);
+        
+        // Read one record past the page to learn whether there is a next page.
+        List<HibernateEnrollment> enrollments = hibernateHelper.queryGet("SELECT en " + query.getQuery(), 
+                query.getParameters(), null, pageSize + 1, HibernateEnrollment.class);
+        
+        String nextPageOffsetKey = null;
+        if (enrollments.size() > pageSize) {
+            enrollments = enrollments.subList(0, pageSize);
+            nextPageOffsetKey = encodeOffsetKey(enrollments.get(pageSize - 1).getExternalId());
+        }
+        List<ExternalIdentifierInfo> infos = enrollments.stream()
+                .map(en -> new ExternalIdentifierInfo(en.getExternalId(), en.getStudyId(), true))
+                .collect(Collectors.toList());
+        
+        return new ForwardCursorPagedResourceList<>(infos, nextPageOffsetKey, true);
+    }
+    
+    static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+    
+    // The offset key is the last external ID of the previous page. It is encoded so callers treat it as opaque.
+    static String encodeOffsetKey(String externalId) {
+        return BaseEncoding.base64Url().omitPadding().encode(externalId.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    static String decodeOffsetKey(String offsetKey) {
+        try {
+            return new String(BaseEncoding.base64Url().omitPadding().decode(offsetKey), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(String.format(INVALID_OFFSET_KEY_ERROR, offsetKey));
+        }
+    }
 
     @Override
     public void deleteExternalId(ExternalIdentifier extId) {
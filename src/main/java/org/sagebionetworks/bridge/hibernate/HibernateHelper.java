@@ -14,6 +14,7 @@ import org.hibernate.Transaction;
 import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.metrics.Dependency;
 
 /** Encapsulates common scenarios for using Hibernate to make it easier to use. */
 public class HibernateHelper {
@@ -204,14 +205,17 @@ public class HibernateHelper {
         }
     }
 
-    // Helper function, which handles opening and closing sessions and transactions.
-    // Package-scoped to facilitate unit tests.
+    // Helper function, which handles opening and closing sessions and transactions, and records the time spent in
+    // the request's metrics. Package-scoped to facilitate unit tests.
     <T> T execute(Function<Session, T> function) {
+        long start = System.nanoTime();
         T retval;
         try (Session session = hibernateSessionFactory.openSession()) {
             Transaction transaction = session.beginTransaction();
             retval = function.apply(session);
             transaction.commit();
+        } finally {
+            Dependency.MYSQL.recordCall(start);
         }
         return retval;
     }
@@ -0,0 +1,230 @@
+package org.sagebionetworks.bridge.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.joda.time.DateTimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
+import org.sagebionetworks.bridge.models.Metrics;
+
+/**
+ * Makes calls to partners' APIs. Each partner gets its own connection pool and timeouts, so a slow partner can only
+ * tie up as many request threads as its pool has connections, and only for as long as its timeouts. Idempotent calls
+ * are retried with exponential backoff when they fail or the partner returns a server error. After a number of
+ * failures in a row, calls to the partner fail immediately for a while (the circuit is "open"), rather than waiting
+ * on a partner that is down. Every call is recorded in the request's metrics, and in the latency histogram and error
+ * counts that the {@link MetricsRegistry} keeps for the partner.
+ *
+ * Settings are read from <code>partner.http.[destination].[setting]</code>, falling back to
+ * <code>partner.http.[setting]</code>.
+ */
+@Component
+public class PartnerHttpClient {
+    private static final Logger LOG = LoggerFactory.getLogger(PartnerHttpClient.class);
+
+    static final String CONFIG_PREFIX = "partner.http.";
+    static final String MAX_CONNECTIONS = "max.connections";
+    static final String CONNECT_TIMEOUT_MILLIS = "connect.timeout.millis";
+    static final String SOCKET_TIMEOUT_MILLIS = "socket.timeout.millis";
+    static final String MAX_RETRIES = "max.retries";
+    static final String RETRY_BACKOFF_MILLIS = "retry.backoff.millis";
+    static final String CIRCUIT_FAILURE_THRESHOLD = "circuit.failure.threshold";
+    static final String CIRCUIT_OPEN_SECONDS = "circuit.open.seconds";
+
+    /** The partners we call. */
+    public enum Destination {
+        CUIMC, GBF, GEOCODING;
+
+        String configName() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final Map<Destination, Endpoint> endpoints = new EnumMap<>(Destination.class);
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    final void setBridgeConfig(BridgeConfig bridgeConfig) {
+        for (Destination destination : Destination.values()) {
+            endpoints.put(destination, new Endpoint(bridgeConfig, destination));
+        }
+    }
+
+    @Autowired
+    final void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Endpoint endpoint : endpoints.values()) {
+            try {
+                endpoint.client.close();
+            } catch (IOException e) {
+                LOG.warn("Error closing HTTP client for " + endpoint.destination.configName(), e);
+            }
+        }
+    }
+
+    /**
+     * Execute a request against a partner's API and return the response, with its content read into memory. The
+     * request is retried if it is idempotent and fails with an I/O error or a server error; once retries are used
+     * up, the last server error response is returned, or the last I/O error thrown. If the partner's circuit is
+     * open, this throws an IOException without making the request.
+     */
+    public HttpResponse execute(Destination destination, Request request, boolean idempotent) throws IOException {
+        checkNotNull(destination);
+        checkNotNull(request);
+
+        Endpoint endpoint = endpoints.get(destination);
+        if (endpoint.isCircuitOpen()) {
+            metricsRegistry.recordPartnerCallRejected(destination.configName());
+            throw new IOException("Not calling " + destination.configName()
+                    + " because of repeated failures; it will be tried again shortly");
+        }
+        request.connectTimeout(endpoint.connectTimeoutMillis).socketTimeout(endpoint.socketTimeoutMillis);
+
+        int attempts = idempotent ? endpoint.maxRetries + 1 : 1;
+        long startNanos = System.nanoTime();
+        HttpResponse response = null;
+        IOException error = null;
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            if (attempt > 0) {
+                sleep(endpoint.retryBackoffMillis << (attempt - 1));
+            }
+            try {
+                response = send(destination, request);
+                error = null;
+                if (!isServerError(response)) {
+                    break;
+                }
+            } catch (IOException e) {
+                response = null;
+                error = e;
+            }
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        int status = (response == null) ? 0 : response.getStatusLine().getStatusCode();
+        boolean succeeded = error == null && !isServerError(response);
+
+        endpoint.recordCall(succeeded);
+        metricsRegistry.recordPartnerCall(destination.configName(), TimeUnit.NANOSECONDS.toMicros(elapsedNanos),
+                !succeeded);
+        Metrics metrics = RequestContext.get().getMetrics();
+        if (metrics != null) {
+            metrics.addPartnerCall(destination.configName(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), status);
+        }
+        if (error != null) {
+            throw error;
+        }
+        return response;
+    }
+
+    /** True if calls to the partner are currently failing without being made. */
+    public boolean isCircuitOpen(Destination destination) {
+        return endpoints.get(destination).isCircuitOpen();
+    }
+
+    // Package-scoped so unit tests can stub out the network call.
+    HttpResponse send(Destination destination, Request request) throws IOException {
+        return endpoints.get(destination).executor.execute(request).returnResponse();
+    }
+
+    // Package-scoped so unit tests don't have to wait.
+    void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean isServerError(HttpResponse response) {
+        return response != null && response.getStatusLine().getStatusCode() >= 500;
+    }
+
+    private static final class Endpoint {
+        private final Destination destination;
+        private final CloseableHttpClient client;
+        private final Executor executor;
+        private final int connectTimeoutMillis;
+        private final int socketTimeoutMillis;
+        private final int maxRetries;
+        private final long retryBackoffMillis;
+        private final int circuitFailureThreshold;
+        private final long circuitOpenMillis;
+
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile long circuitOpenUntil;
+
+        Endpoint(BridgeConfig bridgeConfig, Destination destination) {
+            this.destination = destination;
+            int maxConnections = getSetting(bridgeConfig, destination, MAX_CONNECTIONS);
+            this.connectTimeoutMillis = getSetting(bridgeConfig, destination, CONNECT_TIMEOUT_MILLIS);
+            this.socketTimeoutMillis = getSetting(bridgeConfig, destination, SOCKET_TIMEOUT_MILLIS);
+            this.maxRetries = getSetting(bridgeConfig, destination, MAX_RETRIES);
+            this.retryBackoffMillis = getSetting(bridgeConfig, destination, RETRY_BACKOFF_MILLIS);
+            this.circuitFailureThreshold = getSetting(bridgeConfig, destination, CIRCUIT_FAILURE_THRESHOLD);
+            this.circuitOpenMillis = TimeUnit.SECONDS.toMillis(
+                    getSetting(bridgeConfig, destination, CIRCUIT_OPEN_SECONDS));
+
+            // All calls to a partner go to one host, so the pool and the per-route limit are the same.
+            PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+            connectionManager.setMaxTotal(maxConnections);
+            connectionManager.setDefaultMaxPerRoute(maxConnections);
+            RequestConfig requestConfig = RequestConfig.custom()
+                    .setConnectionRequestTimeout(connectTimeoutMillis)
+                    .setConnectTimeout(connectTimeoutMillis)
+                    .setSocketTimeout(socketTimeoutMillis).build();
+            this.client = HttpClients.custom().setConnectionManager(connectionManager)
+                    .setDefaultRequestConfig(requestConfig).disableAutomaticRetries().build();
+            this.executor = Executor.newInstance(client);
+        }
+
+        boolean isCircuitOpen() {
+            return DateTimeUtils.currentTimeMillis() < circuitOpenUntil;
+        }
+
+        void recordCall(boolean succeeded) {
+            if (succeeded) {
+                consecutiveFailures.set(0);
+                return;
+            }
+            // The count isn't reset when the circuit opens, so the first failure after it closes opens it again.
+            if (consecutiveFailures.incrementAndGet() >= circuitFailureThreshold) {
+                circuitOpenUntil = DateTimeUtils.currentTimeMillis() + circuitOpenMillis;
+                LOG.warn("Calls to " + destination.configName() + " have failed " + consecutiveFailures.get()
+                        + " times in a row; not calling it for " + circuitOpenMillis + " ms");
+            }
+        }
+
+        private static int getSetting(BridgeConfig bridgeConfig, Destination destination, String setting) {
+            String value = bridgeConfig.get(CONFIG_PREFIX + destination.configName() + "." + setting);
+            if (value == null) {
+                value = bridgeConfig.get(CONFIG_PREFIX + setting);
+            }
+            return Integer.parseInt(value.trim());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.sagebionetworks.bridge.metrics;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.models.Metrics;
+
+/** The backing services whose calls are timed in each request's metrics. */
+public enum Dependency {
+    REDIS("redis"),
+    DYNAMO_DB("dynamodb"),
+    MYSQL("mysql"),
+    S3("s3");
+
+    private final String metricName;
+
+    Dependency(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /** The name used for this dependency in logged and reported metrics. */
+    public String getMetricName() {
+        return metricName;
+    }
+
+    /**
+     * Record a call to this dependency that started at the given time (from System.nanoTime()) and has just ended,
+     * in the metrics of the current request. Does nothing if the call was not made while handling a request.
+     */
+    public void recordCall(long startNanos) {
+        Metrics metrics = RequestContext.get().getMetrics();
+        if (metrics != null) {
+            metrics.addDependencyCall(this, System.nanoTime() - startNanos);
+        }
+    }
+}
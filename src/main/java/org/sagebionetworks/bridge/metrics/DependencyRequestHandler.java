@@ -0,0 +1,44 @@
+package org.sagebionetworks.bridge.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.handlers.RequestHandler2;
+
+/**
+ * Added to an AWS client to record each of its calls (with any retries) in the metrics of the current request. The
+ * client must be synchronous, so that the call completes on the thread that made it.
+ */
+public class DependencyRequestHandler extends RequestHandler2 {
+    static final HandlerContextKey<Long> START_NANOS = new HandlerContextKey<>("BridgeDependencyStartNanos");
+
+    private final Dependency dependency;
+
+    public DependencyRequestHandler(Dependency dependency) {
+        this.dependency = checkNotNull(dependency);
+    }
+
+    @Override
+    public void beforeRequest(Request<?> request) {
+        request.addHandlerContext(START_NANOS, System.nanoTime());
+    }
+
+    @Override
+    public void afterResponse(Request<?> request, Response<?> response) {
+        recordCall(request);
+    }
+
+    @Override
+    public void afterError(Request<?> request, Response<?> response, Exception e) {
+        recordCall(request);
+    }
+
+    private void recordCall(Request<?> request) {
+        Long start = request.getHandlerContext(START_NANOS);
+        if (start != null) {
+            dependency.recordCall(start);
+        }
+    }
+}
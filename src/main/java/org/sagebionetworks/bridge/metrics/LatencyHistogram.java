@@ -0,0 +1,104 @@
+package org.sagebionetworks.bridge.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size histogram of latencies in microseconds that can be recorded to concurrently without locking. Like an
+ * HDR histogram, values are counted in buckets that are linear within each power of two (16 buckets per power of
+ * two), so percentiles are accurate to within about 6% at any scale. Values of an hour or more are counted in the
+ * last bucket. Reading percentiles while values are being recorded is safe, but may be slightly inconsistent.
+ */
+public class LatencyHistogram {
+    // Each power of two is divided into 2^SUB_BUCKET_BITS buckets.
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // 2^32 microseconds is a little over an hour.
+    static final int MAX_EXPONENT = 31;
+    static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Long::max, 0L);
+
+    /** Record one latency, in microseconds. Negative values are recorded as 0. */
+    public void record(long micros) {
+        long value = Math.min(Math.max(micros, 0L), MAX_VALUE);
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.increment();
+        totalMicros.add(value);
+        maxMicros.accumulate(value);
+    }
+
+    /** The number of values recorded. */
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    /** The mean of the recorded values in microseconds, or 0 if no values have been recorded. */
+    public long getMeanMicros() {
+        long count = totalCount.sum();
+        return (count == 0) ? 0L : totalMicros.sum() / count;
+    }
+
+    /** The largest value recorded, in microseconds. */
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * The value at the given percentile (from 0 to 100), in microseconds. This is the highest value that falls in
+     * the same bucket as the value at the percentile, but no higher than the largest value recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        checkArgument(percentile >= 0.0 && percentile <= 100.0);
+        long count = totalCount.sum();
+        if (count == 0) {
+            return 0L;
+        }
+        long target = Math.max(1L, (long) Math.ceil(count * percentile / 100.0));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts.get(i);
+            if (cumulative >= target) {
+                return Math.min(bucketUpperBound(i), getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+
+    /** Clear all recorded values. */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0L);
+        }
+        totalCount.reset();
+        totalMicros.reset();
+        maxMicros.reset();
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        long lowerBound = (SUB_BUCKET_COUNT + subBucket) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,253 @@
+package org.sagebionetworks.bridge.metrics;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.Metrics;
+
+/**
+ * Aggregates the metrics of every request handled by this server, so latency percentiles can be reported without
+ * shipping each request's log line to another tool. For each route (HTTP method and URL pattern), this keeps a
+ * latency histogram and counts of responses by status class. For each dependency, it keeps the number of calls and
+ * a histogram of the time each request spent calling it. Only calls made while handling requests are counted.
+ * For each partner API, it keeps a histogram of the time each call took (with any retries), and counts of failed
+ * calls and of calls not made because the partner's circuit was open.
+ * Components that keep their own counters (such as the Redis pool and the rate limiter) implement
+ * {@link MetricsSource}, and their counters are included in the snapshot under "components".
+ *
+ * Totals are kept from the time the server starts, or from the last reset. If metrics.snapshot.log.minutes is
+ * greater than zero, a snapshot is also written to the log on that interval.
+ */
+@Component
+public class MetricsRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    // Routes come from the URL patterns of the controllers, so there should never be this many. But if there are,
+    // further routes are counted together.
+    static final int MAX_ROUTES = 1000;
+    static final String OTHER_ROUTE = "other";
+    static final double[] PERCENTILES = { 50.0, 90.0, 99.0 };
+
+    private final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private final Map<Dependency, DependencyMetrics> dependencies = new EnumMap<>(Dependency.class);
+    private final ConcurrentMap<String, PartnerMetrics> partners = new ConcurrentHashMap<>();
+    private volatile DateTime since = DateTime.now();
+    private List<MetricsSource> metricsSources = ImmutableList.of();
+
+    private int snapshotLogMinutes;
+    private ScheduledExecutorService snapshotLogExecutor;
+
+    public MetricsRegistry() {
+        for (Dependency dependency : Dependency.values()) {
+            dependencies.put(dependency, new DependencyMetrics());
+        }
+    }
+
+    @Autowired
+    final void setBridgeConfig(BridgeConfig bridgeConfig) {
+        this.snapshotLogMinutes = bridgeConfig.getInt("metrics.snapshot.log.minutes");
+    }
+
+    @Autowired(required = false)
+    final void setMetricsSources(List<MetricsSource> metricsSources) {
+        this.metricsSources = ImmutableList.copyOf(metricsSources);
+    }
+
+    /** Starts logging snapshots, if configured to do so. */
+    @PostConstruct
+    public void start() {
+        if (snapshotLogMinutes > 0) {
+            snapshotLogExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("metrics-snapshot-logger").setDaemon(true).build());
+            snapshotLogExecutor.scheduleAtFixedRate(this::logSnapshot, snapshotLogMinutes, snapshotLogMinutes,
+                    TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (snapshotLogExecutor != null) {
+            snapshotLogExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Record a completed request. The request's metrics must have ended, so its elapsed time and the time spent in
+     * each dependency are known.
+     */
+    public void recordRequest(String route, int status, Metrics metrics) {
+        RouteMetrics routeMetrics = routes.get(route);
+        if (routeMetrics == null) {
+            String key = (routes.size() < MAX_ROUTES) ? route : OTHER_ROUTE;
+            routeMetrics = routes.computeIfAbsent(key, k -> new RouteMetrics());
+        }
+        routeMetrics.record(status, TimeUnit.NANOSECONDS.toMicros(metrics.getElapsedNanos()));
+
+        for (Map.Entry<Dependency, DependencyMetrics> entry : dependencies.entrySet()) {
+            long calls = metrics.getDependencyCalls(entry.getKey());
+            if (calls > 0) {
+                entry.getValue().record(calls,
+                        TimeUnit.NANOSECONDS.toMicros(metrics.getDependencyNanos(entry.getKey())));
+            }
+        }
+    }
+
+    /** Record a call to a partner's API, including any retries, and whether it failed. */
+    public void recordPartnerCall(String destination, long micros, boolean failed) {
+        PartnerMetrics partnerMetrics = partners.computeIfAbsent(destination, k -> new PartnerMetrics());
+        partnerMetrics.latency.record(micros);
+        if (failed) {
+            partnerMetrics.errors.increment();
+        }
+    }
+
+    /** Record a call to a partner's API that was not made, because calls to the partner were failing. */
+    public void recordPartnerCallRejected(String destination) {
+        partners.computeIfAbsent(destination, k -> new PartnerMetrics()).rejected.increment();
+    }
+
+    /**
+     * A snapshot of the metrics, with the request count, response counts by status class, and latency percentiles
+     * in milliseconds for each route, the call count and time spent per request for each dependency, the call
+     * latency and error counts for each partner, and the counters of each {@link MetricsSource}.
+     */
+    public ObjectNode getSnapshot() {
+        ObjectNode snapshot = BridgeObjectMapper.get().createObjectNode();
+        snapshot.put("since", since.toString());
+
+        ObjectNode routesNode = snapshot.putObject("routes");
+        for (Map.Entry<String, RouteMetrics> entry : new TreeMap<>(routes).entrySet()) {
+            RouteMetrics routeMetrics = entry.getValue();
+            ObjectNode routeNode = routesNode.putObject(entry.getKey());
+            routeNode.put("requests", routeMetrics.latency.getCount());
+            ObjectNode statusNode = routeNode.putObject("status");
+            for (int i = 0; i < routeMetrics.statusCounts.length; i++) {
+                long count = routeMetrics.statusCounts[i].sum();
+                if (count > 0) {
+                    statusNode.put((i + 1) + "xx", count);
+                }
+            }
+            putLatency(routeNode, routeMetrics.latency);
+        }
+
+        ObjectNode dependenciesNode = snapshot.putObject("dependencies");
+        for (Map.Entry<Dependency, DependencyMetrics> entry : dependencies.entrySet()) {
+            DependencyMetrics dependencyMetrics = entry.getValue();
+            ObjectNode dependencyNode = dependenciesNode.putObject(entry.getKey().getMetricName());
+            dependencyNode.put("requests", dependencyMetrics.latency.getCount());
+            dependencyNode.put("calls", dependencyMetrics.calls.sum());
+            putLatency(dependencyNode, dependencyMetrics.latency);
+        }
+
+        ObjectNode partnersNode = snapshot.putObject("partners");
+        for (Map.Entry<String, PartnerMetrics> entry : new TreeMap<>(partners).entrySet()) {
+            PartnerMetrics partnerMetrics = entry.getValue();
+            ObjectNode partnerNode = partnersNode.putObject(entry.getKey());
+            partnerNode.put("calls", partnerMetrics.latency.getCount());
+            partnerNode.put("errors", partnerMetrics.errors.sum());
+            partnerNode.put("rejected", partnerMetrics.rejected.sum());
+            putLatency(partnerNode, partnerMetrics.latency);
+        }
+
+        ObjectNode componentsNode = snapshot.putObject("components");
+        for (MetricsSource metricsSource : metricsSources) {
+            metricsSource.writeMetrics(componentsNode.putObject(metricsSource.getMetricsName()));
+        }
+        return snapshot;
+    }
+
+    /** Clear all metrics, so that they are kept from now on. */
+    public void reset() {
+        routes.clear();
+        partners.clear();
+        for (DependencyMetrics dependencyMetrics : dependencies.values()) {
+            dependencyMetrics.reset();
+        }
+        since = DateTime.now();
+    }
+
+    void logSnapshot() {
+        try {
+            LOG.info(getSnapshot().toString());
+        } catch (RuntimeException e) {
+            LOG.error("Error logging metrics snapshot", e);
+        }
+    }
+
+    private static void putLatency(ObjectNode node, LatencyHistogram latency) {
+        node.put("meanMillis", toMillis(latency.getMeanMicros()));
+        for (double percentile : PERCENTILES) {
+            node.put("p" + (int) percentile + "Millis", toMillis(latency.getValueAtPercentile(percentile)));
+        }
+        node.put("maxMillis", toMillis(latency.getMaxMicros()));
+    }
+
+    private static double toMillis(long micros) {
+        // Report to a tenth of a millisecond.
+        return Math.round(micros / 100.0) / 10.0;
+    }
+
+    private static class RouteMetrics {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        // Counts of 1xx, 2xx, 3xx, 4xx and 5xx responses.
+        private final LongAdder[] statusCounts = new LongAdder[5];
+
+        RouteMetrics() {
+            for (int i = 0; i < statusCounts.length; i++) {
+                statusCounts[i] = new LongAdder();
+            }
+        }
+
+        void record(int status, long micros) {
+            int statusClass = status / 100;
+            if (statusClass >= 1 && statusClass <= statusCounts.length) {
+                statusCounts[statusClass - 1].increment();
+            }
+            latency.record(micros);
+        }
+    }
+
+    private static class PartnerMetrics {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+    }
+
+    private static class DependencyMetrics {
+        // Time spent calling the dependency, per request.
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder calls = new LongAdder();
+
+        void record(long callCount, long micros) {
+            calls.add(callCount);
+            latency.record(micros);
+        }
+
+        void reset() {
+            latency.reset();
+            calls.reset();
+        }
+    }
+}
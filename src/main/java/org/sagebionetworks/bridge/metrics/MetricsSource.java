@@ -0,0 +1,16 @@
+package org.sagebionetworks.bridge.metrics;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A component that keeps its own counters, reported under its name in the {@link MetricsRegistry} snapshot. These
+ * counters are kept by the component, so resetting the registry does not reset them.
+ */
+public interface MetricsSource {
+
+    /** The name of this component's metrics in the snapshot. */
+    String getMetricsName();
+
+    /** Write the current values of this component's metrics to the given node. */
+    void writeMetrics(ObjectNode node);
+}
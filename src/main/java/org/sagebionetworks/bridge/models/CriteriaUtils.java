@@ -65,15 +65,8 @@ public class CriteriaUtils {
         checkNotNull(criteria.getAllOfStudyIds());
         checkNotNull(criteria.getNoneOfStudyIds());
         
-        Integer appVersion = context.getClientInfo().getAppVersion();
-        String appOs = context.getClientInfo().getOsName();
-        if (appVersion != null && appOs != null) {
-            Integer minAppVersion = criteria.getMinAppVersion(appOs);
-            Integer maxAppVersion = criteria.getMaxAppVersion(appOs);
-            if ((minAppVersion != null && appVersion < minAppVersion) ||
-                (maxAppVersion != null && appVersion > maxAppVersion)) {
-                return false;
-            }
+        if (!matchAppVersion(context.getClientInfo(), criteria)) {
+            return false;
         }
         Set<String> dataGroups = context.getUserDataGroups();
         if (!dataGroups.containsAll(criteria.getAllOfGroups())) {
@@ -95,6 +88,24 @@ public class CriteriaUtils {
         return true;
     }
 
+    /**
+     * Match only the application making the request against the criteria's app version ranges. True if the client 
+     * does not report its OS or app version.
+     */
+    public static boolean matchAppVersion(ClientInfo clientInfo, Criteria criteria) {
+        Integer appVersion = clientInfo.getAppVersion();
+        String appOs = clientInfo.getOsName();
+        if (appVersion != null && appOs != null) {
+            Integer minAppVersion = criteria.getMinAppVersion(appOs);
+            Integer maxAppVersion = criteria.getMaxAppVersion(appOs);
+            if ((minAppVersion != null && appVersion < minAppVersion) ||
+                (maxAppVersion != null && appVersion > maxAppVersion)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Validate that the criteria are correct (e.g. including the same data group in both required and prohibited sets,
      * or having a min-max version range out of order, are obviously incorrect because they can never match).
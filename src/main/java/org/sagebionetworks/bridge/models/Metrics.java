@@ -3,13 +3,18 @@ package org.sagebionetworks.bridge.models;
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import com.google.common.collect.Multimap;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.sagebionetworks.bridge.metrics.Dependency;
 import org.sagebionetworks.bridge.time.DateUtils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.sagebionetworks.bridge.json.JsonUtils;
 
 /**
  * Request-scoped metrics.
@@ -23,6 +28,16 @@ public class Metrics {
 
     private final ObjectNode json;
 
+    // Elapsed time is calculated from these, rather than from the start time in the JSON.
+    private long startMillis;
+    private long startNanos;
+    private long elapsedNanos;
+
+    // Calls to, and time spent in, each dependency, indexed by the dependency's ordinal. Calls may be recorded from
+    // more than one thread, for example when a request completes asynchronously.
+    private final AtomicLongArray dependencyCalls = new AtomicLongArray(Dependency.values().length);
+    private final AtomicLongArray dependencyNanos = new AtomicLongArray(Dependency.values().length);
+
     public static String getCacheKey(String requestId) {
         checkArgument(isNotBlank(requestId), "Request ID cannot be blank.");
         return requestId + ":" + Metrics.class.getSimpleName();
@@ -49,6 +64,8 @@ public class Metrics {
     }
 
     public void start() {
+        startMillis = DateTimeUtils.currentTimeMillis();
+        startNanos = System.nanoTime();
         json.put("start", DateUtils.getCurrentISODateTime());
     }
 
@@ -58,13 +75,43 @@ public class Metrics {
         json.put("end", endDateTime.toString());
 
         // Calculate elapsed time.
-        DateTime startDateTime = JsonUtils.asDateTime(json, "start");
-        if (startDateTime == null) {
-            // This should not be possible, but if it happens, don't throw an NPE.
-            return;
+        elapsedNanos = System.nanoTime() - startNanos;
+        json.put("elapsedMillis", endDateTime.getMillis() - startMillis);
+
+        // Time spent in each dependency that was called.
+        ObjectNode dependencies = null;
+        for (Dependency dependency : Dependency.values()) {
+            long calls = dependencyCalls.get(dependency.ordinal());
+            if (calls > 0) {
+                if (dependencies == null) {
+                    dependencies = json.putObject("dependencies");
+                }
+                ObjectNode node = dependencies.putObject(dependency.getMetricName());
+                node.put("calls", calls);
+                node.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(getDependencyNanos(dependency)));
+            }
         }
-        long elapsedMillis = endDateTime.getMillis() - startDateTime.getMillis();
-        json.put("elapsedMillis", elapsedMillis);
+    }
+
+    /** The time between start() and end(), measured with System.nanoTime(). 0 until end() is called. */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /** Record a call to a dependency, and the time it took. */
+    public void addDependencyCall(Dependency dependency, long elapsedNanos) {
+        dependencyCalls.incrementAndGet(dependency.ordinal());
+        dependencyNanos.addAndGet(dependency.ordinal(), elapsedNanos);
+    }
+
+    /** The number of calls made to the dependency while handling this request. */
+    public long getDependencyCalls(Dependency dependency) {
+        return dependencyCalls.get(dependency.ordinal());
+    }
+
+    /** The total time spent in calls to the dependency while handling this request. */
+    public long getDependencyNanos(Dependency dependency) {
+        return dependencyNanos.get(dependency.ordinal());
     }
 
     /** Record ID, used for synchronous health data submission API. */
@@ -121,6 +168,24 @@ public class Metrics {
         json.put("upload_size", uploadSize);
     }
 
+    /**
+     * Record a call made to a partner's API while handling this request.
+     *
+     * @param destination The partner that was called.
+     * @param elapsedMillis How long the call took, including any retries.
+     * @param status The HTTP status of the response, or 0 if no response was received.
+     */
+    public void addPartnerCall(String destination, long elapsedMillis, int status) {
+        ArrayNode calls = (ArrayNode) json.get("partner_calls");
+        if (calls == null) {
+            calls = json.putArray("partner_calls");
+        }
+        ObjectNode call = calls.addObject();
+        call.put("destination", destination);
+        call.put("elapsedMillis", elapsedMillis);
+        call.put("status", status);
+    }
+
     /**
      * Set the query params from the url request to json.
      *
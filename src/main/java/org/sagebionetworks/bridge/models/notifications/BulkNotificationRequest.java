@@ -0,0 +1,31 @@
+package org.sagebionetworks.bridge.models.notifications;
+
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The JSON payload submitted to send the same notification to many participants at once.
+ */
+public class BulkNotificationRequest {
+
+    private final Set<String> userIds;
+    private final NotificationMessage message;
+    
+    @JsonCreator
+    public BulkNotificationRequest(@JsonProperty("userIds") Set<String> userIds,
+            @JsonProperty("message") NotificationMessage message) {
+        this.userIds = (userIds != null) ? userIds : ImmutableSet.of();
+        this.message = message;
+    }
+    
+    public Set<String> getUserIds() {
+        return userIds;
+    }
+    
+    public NotificationMessage getMessage() {
+        return message;
+    }
+}
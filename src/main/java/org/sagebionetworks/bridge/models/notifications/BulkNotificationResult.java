@@ -0,0 +1,92 @@
+package org.sagebionetworks.bridge.models.notifications;
+
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Report of a notification sent to many participants. Each of a participant's registrations is a separate publish 
+ * to SNS; failures are counted and reported here, rather than failing the whole send. Requested participants who 
+ * could not be found are listed in missingParticipants. They are not included in any of the counts.
+ */
+public class BulkNotificationResult {
+
+    private final int participantCount;
+    private final int unregisteredParticipantCount;
+    private final int successCount;
+    private final int failureCount;
+    private final Set<String> erroredRegistrations;
+    private final long averageLatencyMillis;
+    private final long maxLatencyMillis;
+    private final long elapsedMillis;
+    private final Set<String> missingParticipants;
+
+    public BulkNotificationResult(@JsonProperty("participantCount") int participantCount,
+            @JsonProperty("unregisteredParticipantCount") int unregisteredParticipantCount,
+            @JsonProperty("successCount") int successCount,
+            @JsonProperty("failureCount") int failureCount,
+            @JsonProperty("erroredRegistrations") Set<String> erroredRegistrations,
+            @JsonProperty("averageLatencyMillis") long averageLatencyMillis,
+            @JsonProperty("maxLatencyMillis") long maxLatencyMillis,
+            @JsonProperty("elapsedMillis") long elapsedMillis,
+            @JsonProperty("missingParticipants") Set<String> missingParticipants) {
+        this.participantCount = participantCount;
+        this.unregisteredParticipantCount = unregisteredParticipantCount;
+        this.successCount = successCount;
+        this.failureCount = failureCount;
+        this.erroredRegistrations = erroredRegistrations;
+        this.averageLatencyMillis = averageLatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.elapsedMillis = elapsedMillis;
+        this.missingParticipants = missingParticipants;
+    }
+
+    /**
+     * A copy of this result that also lists the given participants, who could not be found. The counts are not 
+     * changed.
+     */
+    public BulkNotificationResult withMissingParticipants(Set<String> missingParticipants) {
+        return new BulkNotificationResult(participantCount, unregisteredParticipantCount, successCount, failureCount,
+                erroredRegistrations, averageLatencyMillis, maxLatencyMillis, elapsedMillis, missingParticipants);
+    }
+
+    /** The number of participants the notification was sent to. */
+    public int getParticipantCount() {
+        return participantCount;
+    }
+    /** The number of participants who have not registered to receive notifications, and were skipped. */
+    public int getUnregisteredParticipantCount() {
+        return unregisteredParticipantCount;
+    }
+    /** The number of registrations SNS accepted the notification for. */
+    public int getSuccessCount() {
+        return successCount;
+    }
+    /** The number of registrations SNS returned an error for. */
+    public int getFailureCount() {
+        return failureCount;
+    }
+    /** The GUIDs of the registrations SNS returned an error for. */
+    public Set<String> getErroredRegistrations() {
+        return erroredRegistrations;
+    }
+    /** The average time of a call to SNS, in milliseconds. */
+    public long getAverageLatencyMillis() {
+        return averageLatencyMillis;
+    }
+    /** The longest time of a call to SNS, in milliseconds. */
+    public long getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+    /** The total time to send the notification to all participants, in milliseconds. */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+    /**
+     * The IDs of requested participants who do not exist, or are not visible to the caller. The notification was 
+     * not sent to these participants.
+     */
+    public Set<String> getMissingParticipants() {
+        return missingParticipants;
+    }
+}
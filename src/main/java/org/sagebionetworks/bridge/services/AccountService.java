@@ -20,6 +20,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import org.apache.commons.lang3.StringUtils;
@@ -308,6 +309,36 @@ public class AccountService {
         return accountDao.getAccount(accountId);
     }
     
+    /**
+     * Get the accounts in an app with the given user IDs, using a single query. Accounts that can't be found, or 
+     * that the caller does not have the study associations to access, are not returned. 
+     */
+    public List<Account> getAccounts(String appId, Set<String> userIds) {
+        checkNotNull(appId);
+        checkNotNull(userIds);
+        
+        List<Account> accounts = Lists.newArrayListWithCapacity(userIds.size());
+        for (Account account : accountDao.getAccounts(appId, userIds)) {
+            Account filtered = filterForStudy(account);
+            if (filtered != null) {
+                accounts.add(filtered);
+            }
+        }
+        return accounts;
+    }
+    
+    /**
+     * Get the ID, health code and time zone of the accounts in an app with the given user IDs, using a single query 
+     * that loads no other fields. This is not filtered by the caller's study associations, so it is only for 
+     * background work done on behalf of the server, like logging sent SMS messages.
+     */
+    public List<Account> getAccountHealthCodesNoFilter(String appId, Set<String> userIds) {
+        checkNotNull(appId);
+        checkNotNull(userIds);
+        
+        return accountDao.getAccountHealthCodes(appId, userIds);
+    }
+    
     /**
      * Delete an account along with the authentication credentials.
      */
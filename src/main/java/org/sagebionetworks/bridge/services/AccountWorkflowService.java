@@ -27,6 +27,7 @@ import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.SecureTokenGenerator;
 import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.RateLimiter;
 import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
@@ -115,6 +116,7 @@ public class AccountWorkflowService {
     private SendMailService sendMailService;
     private AccountService accountService;
     private CacheProvider cacheProvider;
+    private RateLimiter rateLimiter;
     private TemplateService templateService;
 
     /** Bridge config, used to get config values such as throttle configuration. */
@@ -149,6 +151,11 @@ public class AccountWorkflowService {
     final void setCacheProvider(CacheProvider cacheProvider) {
         this.cacheProvider = cacheProvider;
     }
+
+    @Autowired
+    final void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
     
     @Autowired
     final void setTemplateService(TemplateService templateService) {
@@ -657,28 +664,13 @@ public class AccountWorkflowService {
 
     // Check if the request is throttled. Key is either email address or phone, depending on the type.
     private boolean isRequestThrottled(ThrottleRequestType type, String userId) {
-        // Generate key, which is in the form of channel-throttling:[type]:[userId].
+        // Generate key, which is in the form of channel-throttling:[type]:[userId]. The limiter counts and checks
+        // the request in one atomic step, so concurrent requests on different servers can't all get through. Each
+        // allowed request resets the expiration so that participants can't exceed the throttle limit by making a
+        // bunch of requests at the end of the throttle window; throttled requests don't, since we throttle
+        // email/SMS sent, not requests.
         CacheKey cacheKey = CacheKey.channelThrottling(type, userId);
-
-        Integer numRequests = cacheProvider.getObject(cacheKey, Integer.class);
-        if (numRequests == null) {
-            // Fall back to 0.
-            numRequests = 0;
-        }
-
-        if (numRequests < channelThrottleMaxRequests) {
-            // We've seen less than the maximum number of requests. We can let this request through without throttling.
-            // But we should increment the request count in Redis. Reset the expiration so that participants can't
-            // exceed the throttle limit by making a bunch of requests at the end of the throttle window.
-            cacheProvider.setObject(cacheKey, numRequests + 1, channelThrottleTimeoutSeconds);
-            return false;
-        } else {
-            // We've seen at least as many requests as our limit (or more), so this next request will push us over the
-            // limit. Throttle this.
-            // Don't update Redis, since we throttle email/SMS sent, not requests. This allows the expiration to expire
-            // naturally.
-            return true;
-        }
+        return !rateLimiter.tryAcquire(cacheKey, channelThrottleMaxRequests, channelThrottleTimeoutSeconds);
     }
     
     long getDateTimeInMillis() {
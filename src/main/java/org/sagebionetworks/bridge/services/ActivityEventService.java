@@ -217,24 +217,51 @@ public class ActivityEventService {
     public void publishActivityFinishedEvent(ScheduledActivity schActivity) {
         checkNotNull(schActivity);
         
+        ActivityEvent event = createActivityFinishedEvent(schActivity);
+        if (event != null) {
+            activityEventDao.publishEvent(event);
+        }
+    }
+    
+    /**
+     * Publishes the finished events for a batch of activities, e.g. when a client submits the activities 
+     * it finished while offline. The events are the same as those of {@link #publishActivityFinishedEvent}, 
+     * applied in the order of the list, but they are read and written in batches.
+     */
+    public void publishActivityFinishedEvents(List<ScheduledActivity> schActivities) {
+        checkNotNull(schActivities);
+        
+        List<ActivityEvent> events = Lists.newArrayListWithCapacity(schActivities.size());
+        for (ScheduledActivity schActivity : schActivities) {
+            ActivityEvent event = createActivityFinishedEvent(schActivity);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        if (!events.isEmpty()) {
+            activityEventDao.publishEvents(events);
+        }
+    }
+    
+    private ActivityEvent createActivityFinishedEvent(ScheduledActivity schActivity) {
         // If there's no colon, this is an existing activity and it cannot fire an 
         // activity event. Quietly ignore this until we have migrated activities.
-        if (schActivity.getGuid().contains(":")) {
-            String activityGuid = schActivity.getGuid().split(":")[0];
-            
-            ActivityEvent event = new DynamoActivityEvent.Builder()
-                .withHealthCode(schActivity.getHealthCode())
-                .withObjectType(ACTIVITY)
-                .withObjectId(activityGuid)
-                .withEventType(FINISHED)
-                .withTimestamp(schActivity.getFinishedOn())
-                .build();
-
-            // If the globalEvent is valid, all other derivations are valid 
-            Validate.entityThrowingException(INSTANCE, event);
-            
-            activityEventDao.publishEvent(event);
+        if (!schActivity.getGuid().contains(":")) {
+            return null;
         }
+        String activityGuid = schActivity.getGuid().split(":")[0];
+        
+        ActivityEvent event = new DynamoActivityEvent.Builder()
+            .withHealthCode(schActivity.getHealthCode())
+            .withObjectType(ACTIVITY)
+            .withObjectId(activityGuid)
+            .withEventType(FINISHED)
+            .withTimestamp(schActivity.getFinishedOn())
+            .build();
+
+        // If the globalEvent is valid, all other derivations are valid 
+        Validate.entityThrowingException(INSTANCE, event);
+        return event;
     }
     
     /**
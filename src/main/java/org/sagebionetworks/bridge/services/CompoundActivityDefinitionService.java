@@ -24,6 +24,8 @@ public class CompoundActivityDefinitionService {
     private SchedulePlanService schedulePlanService;
     
     private CompoundActivityDefinitionDao compoundActivityDefDao;
+    
+    private ReferenceResolutionCache referenceResolutionCache;
 
     @Autowired
     public final void setSchedulePlanService(SchedulePlanService schedulePlanService) {
@@ -35,6 +37,11 @@ public class CompoundActivityDefinitionService {
     public final void setCompoundActivityDefDao(CompoundActivityDefinitionDao compoundActivityDefDao) {
         this.compoundActivityDefDao = compoundActivityDefDao;
     }
+    
+    @Autowired
+    final void setReferenceResolutionCache(ReferenceResolutionCache referenceResolutionCache) {
+        this.referenceResolutionCache = referenceResolutionCache;
+    }
 
     /** Creates a compound activity definition. */
     public CompoundActivityDefinition createCompoundActivityDefinition(String appId,
@@ -46,7 +53,10 @@ public class CompoundActivityDefinitionService {
         Validate.entityThrowingException(CompoundActivityDefinitionValidator.INSTANCE, compoundActivityDefinition);
 
         // call through to dao
-        return compoundActivityDefDao.createCompoundActivityDefinition(compoundActivityDefinition);
+        CompoundActivityDefinition created = compoundActivityDefDao.createCompoundActivityDefinition(
+                compoundActivityDefinition);
+        referenceResolutionCache.invalidateCompoundActivity(appId, compoundActivityDefinition.getTaskId());
+        return created;
     }
 
     /** Deletes a compound activity definition. */
@@ -59,6 +69,7 @@ public class CompoundActivityDefinitionService {
         
         // call through to dao
         compoundActivityDefDao.deleteCompoundActivityDefinition(appId, taskId);
+        referenceResolutionCache.invalidateCompoundActivity(appId, taskId);
     }
 
     /** Deletes all compound activity definitions in the specified app. Used when we physically delete an app. */
@@ -67,6 +78,7 @@ public class CompoundActivityDefinitionService {
 
         // call through to dao
         compoundActivityDefDao.deleteAllCompoundActivityDefinitionsInApp(appId);
+        referenceResolutionCache.invalidateCompoundActivities(appId);
     }
 
     /** List all compound activity definitions in an app. */
@@ -105,7 +117,10 @@ public class CompoundActivityDefinitionService {
         Validate.entityThrowingException(CompoundActivityDefinitionValidator.INSTANCE, compoundActivityDefinition);
 
         // call through to dao
-        return compoundActivityDefDao.updateCompoundActivityDefinition(compoundActivityDefinition);
+        CompoundActivityDefinition updated = compoundActivityDefDao.updateCompoundActivityDefinition(
+                compoundActivityDefinition);
+        referenceResolutionCache.invalidateCompoundActivity(appId, taskId);
+        return updated;
     }
     
     private void checkConstraintViolations(String appId, String taskId) {
@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.Boolean.TRUE;
 import static java.nio.charset.Charset.defaultCharset;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.codec.binary.Base64;
@@ -19,6 +20,7 @@ import org.sagebionetworks.bridge.models.accounts.SharingScope;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.subpopulations.ConsentSignature;
+import org.sagebionetworks.bridge.util.CompiledTemplate;
 import org.xhtmlrenderer.pdf.ITextRenderer;
 
 import com.fasterxml.jackson.core.util.ByteArrayBuilder;
@@ -33,35 +35,72 @@ public final class ConsentPdf {
 
     public static final DateTimeFormatter FORMATTER = DateTimeFormat.forPattern("MMMM d, yyyy");
     
-    private final App app;
     private final StudyParticipant signer;
     private final ConsentSignature consentSignature;
     private final SharingScope sharingScope;
-    private final String studyConsentAgreement;
-    private final String xmlTemplateWithSignatureBlock;
+    private final String consentPageTemplate;
     private String formattedConsentDocument;
+    private byte[] bytes;
 
     public ConsentPdf(App app, StudyParticipant signer, ConsentSignature consentSignature,
             SharingScope sharingScope, String studyConsentAgreement, String xmlTemplateWithSignatureBlock) {
-        this.app = checkNotNull(app);
+        this(signer, consentSignature, sharingScope,
+                createConsentPageTemplate(app, studyConsentAgreement, xmlTemplateWithSignatureBlock));
+    }
+
+    /**
+     * Creates a consent PDF from a page template previously assembled with {@link #createConsentPageTemplate}. The
+     * page template only depends on the app and the consent document, so it can be shared by all participants
+     * signing the same consent.
+     */
+    public ConsentPdf(StudyParticipant signer, ConsentSignature consentSignature, SharingScope sharingScope,
+            String consentPageTemplate) {
         this.signer = signer;
         this.consentSignature = checkNotNull(consentSignature);
         this.sharingScope = checkNotNull(sharingScope);
-        this.studyConsentAgreement = checkNotNull(studyConsentAgreement);
-        this.xmlTemplateWithSignatureBlock = checkNotNull(xmlTemplateWithSignatureBlock);
+        this.consentPageTemplate = checkNotNull(consentPageTemplate);
+    }
+
+    /**
+     * Consent documents were originally whole XHTML documents (they must be valid XML because PDF support from Java
+     * libraries is limited and bad, and the tool we're using only works with XML as an input). In order to edit these
+     * documents, we are moving to a system where only the content portion of the consent document, excluding the
+     * signature block at the end, is available to researchers to edit. We then assemble the complete HTML document at
+     * runtime. This resolves the app's template variables and places the consent body in the page, leaving only the
+     * participant variables of the signature block to be filled in for each signer.
+     */
+    public static String createConsentPageTemplate(App app, String studyConsentAgreement,
+            String xmlTemplateWithSignatureBlock) {
+        checkNotNull(app);
+        checkNotNull(studyConsentAgreement);
+        checkNotNull(xmlTemplateWithSignatureBlock);
+
+        // A prior format using '@@' as a delimiter is no longer used by any app in production.
+        Map<String,String> map = BridgeUtils.appTemplateVariables(app);
+        String resolvedStudyConsentAgreement = BridgeUtils.resolveTemplate(studyConsentAgreement, map);
+
+        map.put("consent.body", resolvedStudyConsentAgreement);
+        return BridgeUtils.resolveTemplate(xmlTemplateWithSignatureBlock, map);
     }
     
     /**
      * Get the final, formatted string we supply to the PDF renderer. For unit tests. 
      */
-    protected String getFormattedConsentDocument() { 
+    protected synchronized String getFormattedConsentDocument() { 
         if (formattedConsentDocument == null) {
             getBytes();
         }
         return formattedConsentDocument;
     }
 
-    public byte[] getBytes() {
+    /**
+     * Renders the signed consent to PDF. Layout is expensive, so the rendered bytes are kept and returned to any
+     * subsequent callers (for example, the email attachment and the S3 copy for SMS delivery).
+     */
+    public synchronized byte[] getBytes() {
+        if (bytes != null) {
+            return bytes;
+        }
         final String consentDoc = createSignedDocument();
 
         String imageMimeType = consentSignature.getImageMimeType();
@@ -76,7 +115,8 @@ public final class ConsentPdf {
                     "data:" + imageMimeType + ";base64," + imageData);
         }
 
-        return createPdf(formattedConsentDocument);
+        bytes = createPdf(formattedConsentDocument);
+        return bytes;
     }
 
     private byte[] createPdf(final String consentDoc) {
@@ -92,13 +132,7 @@ public final class ConsentPdf {
         }
     }
 
-    /**
-     * Consent documents were originally whole XHTML documents (they must be valid XML because PDF support from Java
-     * libraries is limited and bad, and the tool we're using only works with XML as an input). In order to edit these
-     * documents, we are moving to a system where only the content portion of the consent document, excluding the
-     * signature block at the end, is available to researchers to edit. We then assemble the complete HTML document at
-     * runtime. Here we branch based on the detection of a complete HTML document and do either one or the other.
-     */
+    /** Fills in the signer's details in the signature block of the consent page. */
     private String createSignedDocument() {
         DateTime localSignedOn = new DateTime(consentSignature.getSignedOn());
         String signingDate = FORMATTER.print(localSignedOn) + " (GMT)";
@@ -107,8 +141,6 @@ public final class ConsentPdf {
         // User's name may contain HTML. Clean it up
         String username = Jsoup.clean(consentSignature.getName(), Whitelist.none());
         
-        // A prior format using '@@' as a delimiter is no longer used by any app in production.
-        
         String contactInfo = "";
         String contactLabel = "";
         if (signer.getEmail() != null && TRUE.equals(signer.getEmailVerified())) {
@@ -122,17 +154,13 @@ public final class ConsentPdf {
             contactLabel = "ID";
         }
         
-        // This is now a fragment, assemble accordingly
-        Map<String,String> map = BridgeUtils.appTemplateVariables(app);
+        Map<String,String> map = new HashMap<>();
         map.put("participant.name", username);
         map.put("participant.signing.date", signingDate);
         map.put("participant.contactInfo", contactInfo);
         map.put("participant.contactLabel", contactLabel);
         map.put("participant.sharing", sharingLabel);
-        String resolvedStudyConsentAgreement = BridgeUtils.resolveTemplate(studyConsentAgreement, map);
-        
-        map.put("consent.body", resolvedStudyConsentAgreement);
-        return BridgeUtils.resolveTemplate(xmlTemplateWithSignatureBlock, map);
+        return CompiledTemplate.compileCached(consentPageTemplate).render(map);
     }
 
     // Helper method to check if the given string is a valid Base64 string. Returns false for null or blank strings.
@@ -13,22 +13,31 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.annotation.Resource;
 
 import org.apache.commons.io.IOUtils;
 import org.joda.time.DateTime;
 import org.sagebionetworks.bridge.BridgeConstants;
+import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.SecureTokenGenerator;
+import org.sagebionetworks.bridge.async.AsyncHandler;
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
+import org.sagebionetworks.bridge.metrics.MetricsSource;
 import org.sagebionetworks.bridge.models.CriteriaContext;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
@@ -55,9 +64,15 @@ import org.sagebionetworks.bridge.validators.Validate;
 
 import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -67,10 +82,29 @@ import org.springframework.stereotype.Component;
  * session should be updated.
  */
 @Component
-public class ConsentService {
+public class ConsentService implements MetricsSource {
+    private static final Logger LOG = LoggerFactory.getLogger(ConsentService.class);
     
     protected static final String USERSIGNED_CONSENTS_BUCKET = BridgeConfigFactory.getConfig()
             .get("usersigned.consents.bucket");
+    static final int CONSENT_DELIVERY_MAX_ATTEMPTS = 3;
+    static final long CONSENT_DELIVERY_INITIAL_BACKOFF_MILLIS = 500L;
+
+    static final int CONSENT_PAGE_TEMPLATE_CACHE_MAX_SIZE = 200;
+    static final long CONSENT_PAGE_TEMPLATE_CACHE_EXPIRE_MINUTES = 60;
+
+    // Keys (userId, subpopulation, signedOn) of signed consents that are queued or being delivered on this server.
+    // This only de-duplicates deliveries within one server. Requests for the same consent that reach different
+    // servers are each delivered.
+    private final Set<String> pendingConsentDeliveries = ConcurrentHashMap.newKeySet();
+    private final LongAdder failedConsentDeliveryCount = new LongAdder();
+    private final LongAdder synchronousConsentDeliveryCount = new LongAdder();
+    
+    // Consent pages with the app variables and consent body already resolved, keyed by app version and consent 
+    // document. Only the signature block is filled in per participant.
+    private final Cache<String, String> consentPageTemplateCache = CacheBuilder.newBuilder()
+            .maximumSize(CONSENT_PAGE_TEMPLATE_CACHE_MAX_SIZE)
+            .expireAfterAccess(CONSENT_PAGE_TEMPLATE_CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).build();
     private AccountService accountService;
     private SendMailService sendMailService;
     private SmsService smsService;
@@ -82,6 +116,37 @@ public class ConsentService {
     private UrlShortenerService urlShortenerService;
     private TemplateService templateService;
     private EnrollmentService enrollmentService;
+    private ExecutorService consentDeliveryExecutorService;
+    
+    /** The number of signed consent deliveries that are queued or being delivered on this server. */
+    public int getPendingConsentDeliveryCount() {
+        return pendingConsentDeliveries.size();
+    }
+
+    /** The number of signed consent deliveries that failed after all their retries. */
+    public long getFailedConsentDeliveryCount() {
+        return failedConsentDeliveryCount.sum();
+    }
+
+    /**
+     * The number of signed consent deliveries that were sent on the request thread, because the delivery queue was
+     * full.
+     */
+    public long getSynchronousConsentDeliveryCount() {
+        return synchronousConsentDeliveryCount.sum();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "consentDelivery";
+    }
+
+    @Override
+    public void writeMetrics(ObjectNode node) {
+        node.put("pending", getPendingConsentDeliveryCount());
+        node.put("failed", getFailedConsentDeliveryCount());
+        node.put("synchronous", getSynchronousConsentDeliveryCount());
+    }
     
     @Value("classpath:conf/app-defaults/consent-page.xhtml")
     final void setConsentTemplate(org.springframework.core.io.Resource resource) throws IOException {
@@ -130,6 +195,11 @@ public class ConsentService {
     final void setEnrollmentService(EnrollmentService enrollmentService) {
         this.enrollmentService = enrollmentService;
     }
+    /** Bounded pool that renders and delivers signed consents off the request thread. */
+    @Resource(name = "consentDeliveryExecutorService")
+    final void setConsentDeliveryExecutorService(ExecutorService consentDeliveryExecutorService) {
+        this.consentDeliveryExecutorService = consentDeliveryExecutorService;
+    }
     
     /**
      * Get the user's active consent signature (a signature that has not been withdrawn).
@@ -155,7 +225,8 @@ public class ConsentService {
      * Consent this user to research. User will be updated to reflect consent. This method will ensure the 
      * user is not already consented to this subpopulation, but it does not validate that the user is a 
      * validate member of this subpopulation (that is checked in the controller). Will optionally send 
-     * a signed copy of the consent to the user via email or phone (whichever is verified).
+     * a signed copy of the consent to the user via email or phone (whichever is verified). The signed copy 
+     * is rendered and sent asynchronously.
      * 
      * @param sendSignedConsent
      *      if true, send the consent document to the user's email address
@@ -212,8 +283,8 @@ public class ConsentService {
 
         // Administrative actions, almost exclusively for testing, will send no consent documents
         if (sendSignedConsent) {
-            ConsentPdf consentPdf = new ConsentPdf(app, participant, withConsentCreatedOnSignature, sharingScope,
-                    studyConsent.getDocumentContent(), xmlTemplateWithSignatureBlock);
+            ConsentPdf consentPdf = new ConsentPdf(participant, withConsentCreatedOnSignature, sharingScope,
+                    getConsentPageTemplate(app, subpopGuid, studyConsent));
             
             boolean verifiedEmail = (participant.getEmail() != null
                     && Boolean.TRUE.equals(participant.getEmailVerified()));
@@ -227,23 +298,18 @@ public class ConsentService {
                 recipientEmails.add(participant.getEmail());    
             }
             addStudyConsentRecipients(app, recipientEmails);
+            
+            ImmutableList.Builder<Runnable> deliverySteps = ImmutableList.builder();
             if (!recipientEmails.isEmpty()) {
-                TemplateRevision revision = templateService.getRevisionForUser(app, EMAIL_SIGNED_CONSENT);
-                
-                BasicEmailProvider.Builder consentEmailBuilder = new BasicEmailProvider.Builder()
-                        .withApp(app)
-                        .withTemplateRevision(revision)
-                        .withBinaryAttachment("consent.pdf", MimeType.PDF, consentPdf.getBytes())
-                        .withType(EmailType.SIGN_CONSENT);
-                for (String recipientEmail : recipientEmails) {
-                    consentEmailBuilder.withRecipientEmail(recipientEmail);
-                }
-                sendMailService.sendEmail(consentEmailBuilder.build());
+                deliverySteps.add(() -> sendConsentViaEmail(app, consentPdf, recipientEmails,
+                        EmailType.SIGN_CONSENT));
             }
             // Otherwise if there's no verified email but there is a phone and we're not suppressing, send it there
             if (!subpop.isAutoSendConsentSuppressed() && !verifiedEmail && verifiedPhone) {
-                sendConsentViaSMS(app, subpop, participant, consentPdf);    
+                deliverySteps.add(() -> sendConsentViaSMS(app, subpop, participant, consentPdf));
             }
+            submitConsentDelivery(participant.getId(), subpopGuid, withConsentCreatedOnSignature,
+                    deliverySteps.build());
         }
     }
 
@@ -343,9 +409,16 @@ public class ConsentService {
         AccountId accountId = AccountId.forId(app.getIdentifier(), participant.getId());
         Account account = accountService.getAccount(accountId);
         
+        Set<SubpopulationGuid> withdrawnSubpopGuids = Sets.newHashSet();
         for (SubpopulationGuid subpopGuid : account.getAllConsentSignatureHistories().keySet()) {
             if (withdrawSignatures(account, subpopGuid, withdrewOn)) {
-                Subpopulation subpop = subpopService.getSubpopulation(app.getIdentifier(), subpopGuid);
+                withdrawnSubpopGuids.add(subpopGuid);
+            }
+        }
+        if (!withdrawnSubpopGuids.isEmpty()) {
+            Map<SubpopulationGuid, Subpopulation> subpops = subpopService.getSubpopulations(app.getIdentifier(),
+                    withdrawnSubpopGuids);
+            for (Subpopulation subpop : subpops.values()) {
                 account.getDataGroups().removeAll(subpop.getDataGroupsAssignedWhileConsented());
             }
         }
@@ -406,31 +479,143 @@ public class ConsentService {
         ConsentSignature consentSignature = getConsentSignature(app, subpopGuid, participant.getId());
         SharingScope sharingScope = participant.getSharingScope();
         Subpopulation subpop = subpopService.getSubpopulation(app.getIdentifier(), subpopGuid);
-        String studyConsentDocument = studyConsentService.getActiveConsent(subpop).getDocumentContent();
+        StudyConsentView studyConsent = studyConsentService.getActiveConsent(subpop);
 
         boolean verifiedEmail = (participant.getEmail() != null
                 && Boolean.TRUE.equals(participant.getEmailVerified()));
         boolean verifiedPhone = (participant.getPhone() != null
                 && Boolean.TRUE.equals(participant.getPhoneVerified()));
         
-        ConsentPdf consentPdf = new ConsentPdf(app, participant, consentSignature, sharingScope, studyConsentDocument,
-                xmlTemplateWithSignatureBlock);
+        ConsentPdf consentPdf = new ConsentPdf(participant, consentSignature, sharingScope,
+                getConsentPageTemplate(app, subpopGuid, studyConsent));
         
+        Runnable deliveryStep;
         if (verifiedEmail) {
-            TemplateRevision revision = templateService.getRevisionForUser(app, EMAIL_SIGNED_CONSENT);
-            
-            BasicEmailProvider provider = new BasicEmailProvider.Builder()
-                    .withApp(app)
-                    .withTemplateRevision(revision)
-                    .withBinaryAttachment("consent.pdf", MimeType.PDF, consentPdf.getBytes())
-                    .withRecipientEmail(participant.getEmail())
-                    .withType(EmailType.RESEND_CONSENT).build();
-            sendMailService.sendEmail(provider);
+            deliveryStep = () -> sendConsentViaEmail(app, consentPdf, ImmutableList.of(participant.getEmail()),
+                    EmailType.RESEND_CONSENT);
         } else if (verifiedPhone) {
-            sendConsentViaSMS(app, subpop, participant, consentPdf);
+            deliveryStep = () -> sendConsentViaSMS(app, subpop, participant, consentPdf);
         } else {
             throw new BadRequestException("Participant does not have a valid email address or phone number");
         }
+        submitConsentDelivery(participant.getId(), subpopGuid, consentSignature, ImmutableList.of(deliveryStep));
+    }
+    
+    // Queues the delivery steps for a signed consent. If a delivery for the same signature is already pending on
+    // this server, the request is dropped, so a repeated resend doesn't send the participant duplicate copies. If
+    // the delivery queue is full, the consent is delivered on the calling thread instead, so it is never dropped.
+    private void submitConsentDelivery(String userId, SubpopulationGuid subpopGuid, ConsentSignature signature,
+            List<Runnable> deliverySteps) {
+        if (deliverySteps.isEmpty()) {
+            return;
+        }
+        String deliveryKey = userId + ":" + subpopGuid.getGuid() + ":" + signature.getSignedOn();
+        if (!pendingConsentDeliveries.add(deliveryKey)) {
+            LOG.info("Signed consent delivery already pending for user " + userId + ", subpopulation " +
+                    subpopGuid.getGuid());
+            return;
+        }
+        ConsentDeliveryHandler handler = new ConsentDeliveryHandler(deliveryKey, RequestContext.get(),
+                deliverySteps);
+        try {
+            consentDeliveryExecutorService.execute(handler);
+        } catch (RejectedExecutionException e) {
+            synchronousConsentDeliveryCount.increment();
+            LOG.warn("Signed consent delivery queue is full, sending consent on the request thread for user " +
+                    userId + ", subpopulation " + subpopGuid.getGuid());
+            // The handler logs a failed delivery and clears the pending key, just as it does on the executor.
+            handler.run();
+        } catch (RuntimeException e) {
+            pendingConsentDeliveries.remove(deliveryKey);
+            throw e;
+        }
+    }
+    
+    /**
+     * Async handler that runs each delivery step of a signed consent, retrying a failed step with exponential 
+     * backoff. The caller's request context is carried over so templates are selected for the caller's languages 
+     * and client. Package-scoped for unit tests.
+     */
+    class ConsentDeliveryHandler extends AsyncHandler {
+        private final String deliveryKey;
+        private final RequestContext requestContext;
+        private final List<Runnable> deliverySteps;
+
+        ConsentDeliveryHandler(String deliveryKey, RequestContext requestContext, List<Runnable> deliverySteps) {
+            this.deliveryKey = deliveryKey;
+            this.requestContext = requestContext;
+            this.deliverySteps = deliverySteps;
+        }
+
+        @Override
+        protected void handle() throws Exception {
+            RequestContext callerContext = RequestContext.get();
+            RequestContext.set(requestContext);
+            try {
+                for (Runnable step : deliverySteps) {
+                    runWithRetries(step);
+                }
+            } catch (RuntimeException e) {
+                failedConsentDeliveryCount.increment();
+                throw e;
+            } finally {
+                RequestContext.set(callerContext);
+                pendingConsentDeliveries.remove(deliveryKey);
+            }
+        }
+
+        private void runWithRetries(Runnable step) throws InterruptedException {
+            long backoffMillis = CONSENT_DELIVERY_INITIAL_BACKOFF_MILLIS;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    step.run();
+                    return;
+                } catch (RuntimeException e) {
+                    if (attempt >= CONSENT_DELIVERY_MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    LOG.warn("Signed consent delivery attempt " + attempt + " failed for " + deliveryKey +
+                            ", retrying: " + e.getMessage());
+                }
+                sleepBeforeRetry(backoffMillis);
+                backoffMillis *= 2;
+            }
+        }
+    }
+    
+    // Package-scoped so unit tests can skip the wait.
+    void sleepBeforeRetry(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+    
+    private void sendConsentViaEmail(App app, ConsentPdf consentPdf, Collection<String> recipientEmails,
+            EmailType emailType) {
+        TemplateRevision revision = templateService.getRevisionForUser(app, EMAIL_SIGNED_CONSENT);
+        
+        BasicEmailProvider.Builder consentEmailBuilder = new BasicEmailProvider.Builder()
+                .withApp(app)
+                .withTemplateRevision(revision)
+                .withBinaryAttachment("consent.pdf", MimeType.PDF, consentPdf.getBytes())
+                .withType(emailType);
+        for (String recipientEmail : recipientEmails) {
+            consentEmailBuilder.withRecipientEmail(recipientEmail);
+        }
+        // Sent now, so a failure is retried by the delivery handler.
+        sendMailService.sendEmailNow(consentEmailBuilder.build());
+    }
+    
+    // Consent documents are immutable once created, and app updates bump the app version, so this key identifies
+    // the assembled page exactly.
+    private String getConsentPageTemplate(App app, SubpopulationGuid subpopGuid, StudyConsentView studyConsent) {
+        String cacheKey = app.getIdentifier() + ":" + app.getVersion() + ":" + subpopGuid.getGuid() + ":" +
+                studyConsent.getCreatedOn();
+        String pageTemplate = consentPageTemplateCache.getIfPresent(cacheKey);
+        if (pageTemplate == null) {
+            pageTemplate = ConsentPdf.createConsentPageTemplate(app, studyConsent.getDocumentContent(),
+                    xmlTemplateWithSignatureBlock);
+            consentPageTemplateCache.put(cacheKey, pageTemplate);
+        }
+        return pageTemplate;
     }
     
     private void sendConsentViaSMS(App app, Subpopulation subpop, StudyParticipant participant,
@@ -458,7 +643,8 @@ public class ConsentService {
                 .withTemplateRevision(revision)
                 .withToken(BridgeConstants.CONSENT_URL, shortUrl)
                 .build();
-        smsService.sendSmsMessage(participant.getId(), provider);
+        // Sent now, so a failure is retried by the delivery handler.
+        smsService.sendSmsMessageNow(participant.getId(), provider);
     }
     
     protected String getSignedConsentUrl() {
@@ -0,0 +1,34 @@
+package org.sagebionetworks.bridge.services;
+
+import java.util.List;
+
+import org.sagebionetworks.bridge.services.email.EmailOutboxMessage;
+
+/**
+ * A persistent queue of email waiting to be sent to SES. A received message stays in the outbox until it is removed,
+ * so a message that a server was sending when it stopped is received again, by this server or another one.
+ */
+public interface EmailOutbox {
+
+    /**
+     * False if the outbox can't be used on this server, in which case email is sent directly to SES instead. The
+     * outbox holds whole messages, including sign-in links and password reset tokens, so it is only used when its
+     * storage is encrypted.
+     */
+    boolean isEnabled();
+
+    /** The largest raw message, in bytes, that the outbox can hold. */
+    int getMaxMessageBytes();
+
+    /** Add a message to the outbox. Throws a BridgeServiceException if the message can't be stored. */
+    void add(EmailOutboxMessage message);
+
+    /**
+     * Receive messages from the outbox, waiting briefly if none are available. Returns an empty list if no message
+     * arrives while waiting.
+     */
+    List<EmailOutboxMessage> receive();
+
+    /** Remove a received message from the outbox, once it has been sent or can never be sent. */
+    void remove(EmailOutboxMessage message);
+}
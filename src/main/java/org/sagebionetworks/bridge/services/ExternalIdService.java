@@ -5,6 +5,7 @@ import static org.sagebionetworks.bridge.BridgeConstants.API_MAXIMUM_PAGE_SIZE;
 import static org.sagebionetworks.bridge.BridgeConstants.NEGATIVE_OFFSET_ERROR;
 import static org.sagebionetworks.bridge.models.ResourceList.ID_FILTER;
 import static org.sagebionetworks.bridge.models.ResourceList.OFFSET_BY;
+import static org.sagebionetworks.bridge.models.ResourceList.OFFSET_KEY;
 import static org.sagebionetworks.bridge.models.ResourceList.PAGE_SIZE;
 
 import java.util.Optional;
@@ -14,6 +15,7 @@ import org.sagebionetworks.bridge.dao.AccountDao;
 import org.sagebionetworks.bridge.dao.ExternalIdDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
@@ -62,6 +64,17 @@ public class ExternalIdService {
                 .withRequestParam(OFFSET_BY, offsetBy)
                 .withRequestParam(PAGE_SIZE, pageSize);
     }
+    
+    public ForwardCursorPagedResourceList<ExternalIdentifierInfo> getPagedExternalIdsByOffsetKey(String appId,
+            String studyId, String idFilter, String offsetKey, int pageSize) {
+        if (pageSize < 1 || pageSize > API_MAXIMUM_PAGE_SIZE) {
+            throw new BadRequestException(PAGE_SIZE_ERROR);
+        }
+        return externalIdDao.getPagedExternalIdsByOffsetKey(appId, studyId, idFilter, offsetKey, pageSize)
+                .withRequestParam(ID_FILTER, idFilter)
+                .withRequestParam(OFFSET_KEY, offsetKey)
+                .withRequestParam(PAGE_SIZE, pageSize);
+    }
 
     public void deleteExternalIdPermanently(App app, ExternalIdentifier externalId) {
         checkNotNull(app);
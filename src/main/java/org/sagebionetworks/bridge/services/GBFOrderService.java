@@ -17,6 +17,7 @@ import org.joda.time.LocalDate;
 import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.http.PartnerHttpClient;
 import org.sagebionetworks.bridge.models.crc.gbf.external.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +29,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 import static org.apache.http.entity.ContentType.APPLICATION_JSON;
+import static org.sagebionetworks.bridge.http.PartnerHttpClient.Destination.GBF;
 
 @Component
 public class GBFOrderService {
@@ -53,6 +55,13 @@ public class GBFOrderService {
 
     public static final ObjectMapper XML_MAPPER = new XmlMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
 
+    private PartnerHttpClient partnerHttpClient;
+
+    @Autowired
+    final void setPartnerHttpClient(PartnerHttpClient partnerHttpClient) {
+        this.partnerHttpClient = partnerHttpClient;
+    }
+
     @Autowired
     final void setBridgeConfig(BridgeConfig config) {
         this.gbfApiKey = config.get(GBF_API_KEY);
@@ -70,7 +79,7 @@ public class GBFOrderService {
             throw new BridgeServiceException(GBF_SERVICE_ERROR_MESSAGE);
         }
 
-        HttpResponse httpResponse = postJson(gbfOrderUrl, gbfApiKey, new PlaceOrderRequest(orderXml, isTest));
+        HttpResponse httpResponse = postJson(gbfOrderUrl, gbfApiKey, new PlaceOrderRequest(orderXml, isTest), false);
 
         handleGbfHttpStatusErrors(httpResponse);
         
@@ -94,7 +103,7 @@ public class GBFOrderService {
     public CheckOrderStatusResponse checkOrderStatus(String... orderIds) {
         CheckOrderStatusRequest request = new CheckOrderStatusRequest(Arrays.asList(orderIds));
 
-        HttpResponse httpResponse = postJson(getGbfOrderStatusUrl, gbfApiKey, request);
+        HttpResponse httpResponse = postJson(getGbfOrderStatusUrl, gbfApiKey, request, true);
     
         handleGbfHttpStatusErrors(httpResponse);
     
@@ -110,7 +119,7 @@ public class GBFOrderService {
     public ShippingConfirmations requestShippingConfirmations(LocalDate startDate, LocalDate endDate) {
         ConfirmShippingRequest requestBody = new ConfirmShippingRequest(startDate, endDate);
 
-        HttpResponse response = postJson(gbfConfirmationUrl, gbfApiKey, requestBody);
+        HttpResponse response = postJson(gbfConfirmationUrl, gbfApiKey, requestBody, true);
     
         handleGbfHttpStatusErrors(response);
 
@@ -173,7 +182,8 @@ public class GBFOrderService {
     }
 
 
-    HttpResponse postJson(String url, String bearerToken, Object jsonObj) {
+    // Placing an order is not idempotent, so it is never retried. The other calls only read from GBF.
+    HttpResponse postJson(String url, String bearerToken, Object jsonObj, boolean idempotent) {
         Request request = null;
         try {
             request = Request.Post(url)
@@ -185,7 +195,7 @@ public class GBFOrderService {
         request.addHeader("Authorization", "Bearer " + bearerToken);
 
         try {
-            return request.execute().returnResponse();
+            return partnerHttpClient.execute(GBF, request, idempotent);
         } catch (IOException e) {
             LOG.error("Error posting Json to url: {}", url, e);
             throw new BridgeServiceException(GBF_SERVICE_ERROR_MESSAGE);
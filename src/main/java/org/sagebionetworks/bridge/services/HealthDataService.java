@@ -1,5 +1,9 @@
 package org.sagebionetworks.bridge.services;
 
+import static org.sagebionetworks.bridge.BridgeConstants.API_MAXIMUM_PAGE_SIZE;
+import static org.sagebionetworks.bridge.BridgeConstants.API_MINIMUM_PAGE_SIZE;
+import static org.sagebionetworks.bridge.BridgeConstants.PAGE_SIZE_ERROR;
+
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
@@ -15,6 +19,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.exceptions.NotFoundException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolder;
 import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolderImpl;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
@@ -380,9 +385,40 @@ public class HealthDataService {
      * @param uploadDate
      *         an upload date in YYYY-MM-DD format, must be non-null, non-empty, and represent a valid date
      * @return list of health data records
+     * @deprecated holds the whole day's records in memory; use
+     *         {@link #getRecordsForUploadDate(String, String, int)} to page through them instead
      */
+    @Deprecated
     public List<HealthDataRecord> getRecordsForUploadDate(String uploadDate) {
-        // validate upload date
+        validateUploadDate(uploadDate);
+
+        // call through to DAO
+        return healthDataDao.getRecordsForUploadDate(uploadDate);
+    }
+
+    /**
+     * Returns one page of the health data records with the given upload date. Callers iterate through all records
+     * for the day by passing the nextPageOffsetKey of each page to the next call. Unlike
+     * {@link #getRecordsForUploadDate(String)}, memory use is bounded by the page size rather than the day's volume.
+     *
+     * @param uploadDate
+     *         an upload date in YYYY-MM-DD format, must be non-null, non-empty, and represent a valid date
+     * @param offsetKey
+     *         offset key from the previous page, or null to start at the first page
+     * @param pageSize
+     *         number of records per page
+     * @return page of health data records
+     */
+    public ForwardCursorPagedResourceList<HealthDataRecord> getRecordsForUploadDate(String uploadDate,
+            String offsetKey, int pageSize) {
+        validateUploadDate(uploadDate);
+        if (pageSize < API_MINIMUM_PAGE_SIZE || pageSize > API_MAXIMUM_PAGE_SIZE) {
+            throw new BadRequestException(PAGE_SIZE_ERROR);
+        }
+        return healthDataDao.getRecordsForUploadDate(uploadDate, offsetKey, pageSize);
+    }
+
+    private static void validateUploadDate(String uploadDate) {
         if (StringUtils.isBlank(uploadDate)) {
             throw new BadRequestException(String.format(Validate.CANNOT_BE_BLANK, "uploadDate"));
         }
@@ -394,9 +430,6 @@ public class HealthDataService {
         } catch (IllegalArgumentException ex) {
             throw new BadRequestException(String.format("Expected date format YYYY-MM-DD, received %s", uploadDate));
         }
-
-        // call through to DAO
-        return healthDataDao.getRecordsForUploadDate(uploadDate);
     }
 
     /** Gets a list of records for the given healthCode between the specified createdOn times (inclusive). */
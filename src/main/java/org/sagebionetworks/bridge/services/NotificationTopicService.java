@@ -3,15 +3,24 @@ package org.sagebionetworks.bridge.services;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.sagebionetworks.bridge.BridgeUtils.invokeAll;
 import static org.sagebionetworks.bridge.models.CriteriaUtils.filterByCriteria;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.annotation.Resource;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +52,21 @@ public class NotificationTopicService {
 
     private static final Logger LOG = LoggerFactory.getLogger(NotificationTopicService.class);
     
+    // Criteria-managed topics are read every time a participant's subscriptions are reconciled. Topics rarely 
+    // change, so they are cached per app. Changes through this server invalidate immediately; entries expire so 
+    // that changes through other servers are eventually picked up.
+    static final int CRITERIA_TOPIC_CACHE_MAX_SIZE = 1000;
+    static final long CRITERIA_TOPIC_CACHE_EXPIRE_SECONDS = 60;
+    
+    private final Cache<String, List<NotificationTopic>> criteriaTopicCache = CacheBuilder.newBuilder()
+            .maximumSize(CRITERIA_TOPIC_CACHE_MAX_SIZE)
+            .expireAfterWrite(CRITERIA_TOPIC_CACHE_EXPIRE_SECONDS, TimeUnit.SECONDS).build();
+    
+    // The latest background reconciliation requested for each participant (by health code), while a reconciliation
+    // task for that participant is queued or running. The entry stays until the task finishes with no newer request,
+    // so a participant has at most one reconciliation task queued or running at a time.
+    private final ConcurrentMap<String, SubscriptionReconciliation> pendingReconciliations = new ConcurrentHashMap<>();
+    
     private NotificationRegistrationDao registrationDao;
     
     private NotificationTopicDao topicDao;
@@ -51,6 +75,10 @@ public class NotificationTopicService {
     
     private AmazonSNSClient snsClient;
     
+    private ExecutorService subscriptionReconcileExecutorService;
+    
+    private ExecutorService snsExecutorService;
+    
     @Autowired
     final void setNotificationRegistrationDao(NotificationRegistrationDao registrationDao) {
         this.registrationDao = registrationDao;
@@ -71,6 +99,18 @@ public class NotificationTopicService {
         this.snsClient = snsClient;
     }
     
+    /** Runs background subscription reconciliation, one participant at a time per thread. */
+    @Resource(name = "subscriptionReconcileExecutorService")
+    final void setSubscriptionReconcileExecutorService(ExecutorService subscriptionReconcileExecutorService) {
+        this.subscriptionReconcileExecutorService = subscriptionReconcileExecutorService;
+    }
+    
+    /** Bounds the number of concurrent SNS calls made while managing subscriptions. */
+    @Resource(name = "snsExecutorService")
+    final void setSnsExecutorService(ExecutorService snsExecutorService) {
+        this.snsExecutorService = snsExecutorService;
+    }
+    
     public List<NotificationTopic> listTopics(String appId, boolean includeDeleted) {
         checkNotNull(appId);
         
@@ -89,7 +129,9 @@ public class NotificationTopicService {
         
         Validate.entityThrowingException(NotificationTopicValidator.INSTANCE, topic);
         
-        return topicDao.createTopic(topic);
+        NotificationTopic created = topicDao.createTopic(topic);
+        criteriaTopicCache.invalidate(topic.getAppId());
+        return created;
     }
     
     public NotificationTopic updateTopic(NotificationTopic topic) {
@@ -97,7 +139,9 @@ public class NotificationTopicService {
         
         Validate.entityThrowingException(NotificationTopicValidator.INSTANCE, topic);
         
-        return topicDao.updateTopic(topic);
+        NotificationTopic updated = topicDao.updateTopic(topic);
+        criteriaTopicCache.invalidate(topic.getAppId());
+        return updated;
     }
     
     public void deleteTopic(String appId, String guid) {
@@ -105,6 +149,7 @@ public class NotificationTopicService {
         checkNotNull(guid);
         
         topicDao.deleteTopic(appId, guid);
+        criteriaTopicCache.invalidate(appId);
     }
     
     public void deleteTopicPermanently(String appId, String guid) {
@@ -112,6 +157,7 @@ public class NotificationTopicService {
         checkNotNull(guid);
         
         topicDao.deleteTopicPermanently(appId, guid);
+        criteriaTopicCache.invalidate(appId);
     }
     
     /**
@@ -121,6 +167,7 @@ public class NotificationTopicService {
         checkNotNull(appId);
         
         topicDao.deleteAllTopics(appId);
+        criteriaTopicCache.invalidate(appId);
     }
     
     public void sendNotification(String appId, String guid, NotificationMessage message) {
@@ -170,11 +217,7 @@ public class NotificationTopicService {
         checkNotNull(healthCode);
         checkArgument(isNotBlank(healthCode));
 
-        // Check app for topics. Only consider topics with criteria. Include logically deleted topics 
-        // so that if they are undeleted, the user's subscription state is correct
-        List<NotificationTopic> allTopicList = topicDao.listTopics(appId, true);
-        List<NotificationTopic> criteriaTopicList = allTopicList.stream()
-                .filter(topic -> topic.getCriteria() != null).collect(Collectors.toList());
+        List<NotificationTopic> criteriaTopicList = getCriteriaTopics(appId);
         if (criteriaTopicList.isEmpty()) {
             // Short cut: No topics in the app means nothing to manage.
             return;
@@ -197,6 +240,48 @@ public class NotificationTopicService {
         }
     }
 
+    /**
+     * Manages criteria-based subscriptions for the given participant in the background (see 
+     * {@link #manageCriteriaBasedSubscriptions}). If a reconciliation is already waiting for this participant, it is 
+     * replaced by this one, so that repeated changes to a participant result in one reconciliation with the latest 
+     * criteria context.
+     */
+    public void requestCriteriaBasedSubscriptionUpdate(String appId, CriteriaContext context, String healthCode) {
+        checkNotNull(appId);
+        checkNotNull(context);
+        checkArgument(isNotBlank(healthCode));
+        
+        SubscriptionReconciliation reconciliation = new SubscriptionReconciliation(appId, context);
+        if (pendingReconciliations.put(healthCode, reconciliation) == null) {
+            try {
+                subscriptionReconcileExecutorService.execute(() -> reconcileSubscriptions(healthCode));
+            } catch (RejectedExecutionException ex) {
+                pendingReconciliations.remove(healthCode, reconciliation);
+                LOG.error("Could not schedule subscription reconciliation for app " + appId, ex);
+            }
+        }
+    }
+    
+    // Runs on the reconcile executor. Package-scoped for unit tests.
+    void reconcileSubscriptions(String healthCode) {
+        while (true) {
+            SubscriptionReconciliation reconciliation = pendingReconciliations.get(healthCode);
+            if (reconciliation == null) {
+                return;
+            }
+            try {
+                manageCriteriaBasedSubscriptions(reconciliation.appId, reconciliation.context, healthCode);
+            } catch (RuntimeException ex) {
+                LOG.error("Error reconciling subscriptions for app " + reconciliation.appId + ": " +
+                        ex.getMessage(), ex);
+            }
+            // If another request arrived while this one was running, go around again with the latest context.
+            if (pendingReconciliations.remove(healthCode, reconciliation)) {
+                return;
+            }
+        }
+    }
+    
     /**
      * Unsubscribe the given registration from all topics. This is generally used before deleting a registration, to
      * clean up any orphaned subscriptions.
@@ -264,23 +349,30 @@ public class NotificationTopicService {
         // Get set of currently subscribed. While we're at it, do some sanity checking on subscriptions.
         Set<String> subscribedTopicGuidSet = cleanupSubscriptions(registration);
 
-        // Set the subscription status of each topic accordingly.
-        List<SubscriptionStatus> statuses = new ArrayList<>(eligibleTopicList.size());
+        // Set the subscription status of each topic accordingly. Subscribes and unsubscribes are SNS calls, which 
+        // are made concurrently.
+        List<Callable<Boolean>> calls = new ArrayList<>(eligibleTopicList.size());
         for (NotificationTopic oneTopic : eligibleTopicList) {
             boolean wantsSubscription = desiredTopicGuidSet.contains(oneTopic.getGuid());
             boolean isCurrentlySubscribed = subscribedTopicGuidSet.contains(oneTopic.getGuid());
 
-            Boolean isSubscribed = null;
             if (wantsSubscription && isCurrentlySubscribed) {
-                isSubscribed = Boolean.TRUE;
+                calls.add(() -> Boolean.TRUE);
             } else if (!wantsSubscription && !isCurrentlySubscribed) {
-                isSubscribed = Boolean.FALSE;
+                calls.add(() -> Boolean.FALSE);
             } else if (wantsSubscription && !isCurrentlySubscribed) {
-                isSubscribed = doSubscribe(registration, oneTopic);
+                calls.add(() -> doSubscribe(registration, oneTopic));
             } else /* logically, this is: if (!wantsSubscription && isCurrentlySubscribed) */ {
-                isSubscribed = doUnsubscribe(registration, oneTopic);
+                calls.add(() -> doUnsubscribe(registration, oneTopic));
             }
-            SubscriptionStatus status = new SubscriptionStatus(oneTopic.getGuid(), oneTopic.getName(), isSubscribed);
+        }
+        List<Boolean> subscribedList = invokeAll(snsExecutorService, calls);
+        
+        List<SubscriptionStatus> statuses = new ArrayList<>(eligibleTopicList.size());
+        for (int i=0; i < eligibleTopicList.size(); i++) {
+            NotificationTopic oneTopic = eligibleTopicList.get(i);
+            SubscriptionStatus status = new SubscriptionStatus(oneTopic.getGuid(), oneTopic.getName(),
+                    subscribedList.get(i));
             statuses.add(status);
         }
         return statuses;
@@ -314,22 +406,54 @@ public class NotificationTopicService {
      * and we're trying here again to finish them.
      */
     private Set<String> cleanupSubscriptions(NotificationRegistration registration) {
-        Set<String> subscribedTopicGuids = Sets.newHashSet();
-        
         List<? extends TopicSubscription> subscriptions = subscriptionDao.listSubscriptions(registration);
+        List<Callable<String>> calls = new ArrayList<>(subscriptions.size());
         for (TopicSubscription subscription : subscriptions) {
-            try {
-                snsClient.getSubscriptionAttributes(subscription.getSubscriptionARN());
-                subscribedTopicGuids.add(subscription.getTopicGuid());    
-            } catch(NotFoundException e) {
-                LOG.warn("SNS topic " + subscription.getTopicGuid() + " not found, deleting DDB record", e);
-                subscriptionDao.removeOrphanedSubscription(subscription);
-            } catch(AmazonServiceException e) {
-                LOG.warn("Error cleaning up subscriptions", e);
-                // However, it is there, so include it in the list of subscriptions.
-                subscribedTopicGuids.add(subscription.getTopicGuid());
+            calls.add(() -> {
+                try {
+                    snsClient.getSubscriptionAttributes(subscription.getSubscriptionARN());
+                    return subscription.getTopicGuid();
+                } catch(NotFoundException e) {
+                    LOG.warn("SNS topic " + subscription.getTopicGuid() + " not found, deleting DDB record", e);
+                    subscriptionDao.removeOrphanedSubscription(subscription);
+                    return null;
+                } catch(AmazonServiceException e) {
+                    LOG.warn("Error cleaning up subscriptions", e);
+                    // However, it is there, so include it in the list of subscriptions.
+                    return subscription.getTopicGuid();
+                }
+            });
+        }
+        Set<String> subscribedTopicGuids = Sets.newHashSet();
+        for (String topicGuid : invokeAll(snsExecutorService, calls)) {
+            if (topicGuid != null) {
+                subscribedTopicGuids.add(topicGuid);
             }
         }
         return subscribedTopicGuids;
     }
+    
+    /**
+     * Get the app's topics that are managed by criteria. Include logically deleted topics so that if they are 
+     * undeleted, the user's subscription state is correct.
+     */
+    private List<NotificationTopic> getCriteriaTopics(String appId) {
+        List<NotificationTopic> criteriaTopicList = criteriaTopicCache.getIfPresent(appId);
+        if (criteriaTopicList == null) {
+            criteriaTopicList = topicDao.listTopics(appId, true).stream()
+                    .filter(topic -> topic.getCriteria() != null).collect(ImmutableList.toImmutableList());
+            criteriaTopicCache.put(appId, criteriaTopicList);
+        }
+        return criteriaTopicList;
+    }
+    
+    private static final class SubscriptionReconciliation {
+        private final String appId;
+        private final CriteriaContext context;
+        
+        private SubscriptionReconciliation(String appId, CriteriaContext context) {
+            this.appId = appId;
+            this.context = context;
+        }
+    }
 }
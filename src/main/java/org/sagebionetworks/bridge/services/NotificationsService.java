@@ -3,9 +3,14 @@ package org.sagebionetworks.bridge.services;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.Boolean.TRUE;
 import static org.sagebionetworks.bridge.BridgeUtils.SEMICOLON_SPACE_JOINER;
+import static org.sagebionetworks.bridge.BridgeUtils.invokeAll;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.Resource;
 
@@ -22,6 +27,7 @@ import org.sagebionetworks.bridge.models.CriteriaContext;
 import org.sagebionetworks.bridge.models.OperatingSystem;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.apps.App;
+import org.sagebionetworks.bridge.models.notifications.BulkNotificationResult;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationProtocol;
 import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
@@ -33,6 +39,7 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.sns.AmazonSNSClient;
 import com.amazonaws.services.sns.model.PublishRequest;
 import com.amazonaws.services.sns.model.PublishResult;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
 /**
@@ -42,12 +49,16 @@ import com.google.common.collect.Sets;
 @Component
 public class NotificationsService {
     private static final Logger LOG = LoggerFactory.getLogger(NotificationsService.class);
+    
+    /** The maximum number of participants that can be sent a notification in one bulk send. */
+    public static final int BULK_NOTIFICATION_MAX_PARTICIPANTS = 1000;
 
     private ParticipantService participantService;
     private AppService appService;
     private NotificationRegistrationDao notificationRegistrationDao;
     private NotificationTopicService notificationTopicService;
     private AmazonSNSClient snsClient;
+    private ExecutorService notificationSendExecutorService;
 
     /** Participant service, if we need to get the participant. */
     @Autowired
@@ -78,6 +89,15 @@ public class NotificationsService {
     final void setSnsClient(AmazonSNSClient snsClient) {
         this.snsClient = snsClient;
     }
+    
+    /**
+     * Bounds the number of concurrent SNS calls made while sending notifications. This is separate from the executor 
+     * used for topic subscriptions, so a large send doesn't hold up subscription reconciliation.
+     */
+    @Resource(name = "notificationSendExecutorService")
+    final void setNotificationSendExecutorService(ExecutorService notificationSendExecutorService) {
+        this.notificationSendExecutorService = notificationSendExecutorService;
+    }
 
     /**
      * Return all the registrations for this user. There may be more than one, if a user installs 
@@ -218,20 +238,15 @@ public class NotificationsService {
             throw new BadRequestException("Participant has not registered to receive push notifications.");
         }
         
-        Set<String> erroredRegistrations = Sets.newHashSet();
+        // Publish to each of the participant's devices concurrently.
+        List<Callable<PublishOutcome>> tasks = new ArrayList<>(registrations.size());
         for (NotificationRegistration registration : registrations) {
-            String endpointARN = registration.getEndpoint();
-            
-            PublishRequest request = new PublishRequest().withTargetArn(endpointARN)
-                    .withSubject(message.getSubject()).withMessage(message.getMessage());
-
-            try {
-                PublishResult result = snsClient.publish(request);
-                LOG.debug("Sent message to participant registration=" + registration.getGuid() + ", appId=" +
-                        appId + ", message ID=" + result.getMessageId());
-            } catch(AmazonServiceException e) {
-                LOG.warn("Error publishing SNS message to participant", e);
-                erroredRegistrations.add(registration.getGuid());
+            tasks.add(() -> publish(appId, registration, message));
+        }
+        Set<String> erroredRegistrations = Sets.newHashSet();
+        for (PublishOutcome outcome : invokeAll(notificationSendExecutorService, tasks)) {
+            if (!outcome.success) {
+                erroredRegistrations.add(outcome.registrationGuid);
             }
         }
         // If none of the registrations succeeds, then throw an error.
@@ -242,6 +257,83 @@ public class NotificationsService {
         return erroredRegistrations;
     }
 
+    /**
+     * Send a push notification to many participants at once. All the participants' registrations are published to 
+     * concurrently. Unlike {@link #sendNotificationToUser}, participants without registrations are skipped and 
+     * failures are not thrown, but are reported in the result along with timing information. To message all the 
+     * participants in an app or study on a regular basis, topics are still preferable.
+     */
+    public BulkNotificationResult sendNotificationToUsers(String appId, Collection<String> healthCodes,
+            NotificationMessage message) {
+        checkNotNull(appId);
+        checkNotNull(healthCodes);
+        checkNotNull(message);
+        
+        if (healthCodes.size() > BULK_NOTIFICATION_MAX_PARTICIPANTS) {
+            throw new BadRequestException("Cannot send a notification to more than " + 
+                    BULK_NOTIFICATION_MAX_PARTICIPANTS + " participants at once.");
+        }
+        Validate.entityThrowingException(NotificationMessageValidator.INSTANCE, message);
+        
+        long startMillis = System.currentTimeMillis();
+        
+        // Look up registrations concurrently as well. These are calls to DDB, but they are bounded the same way.
+        List<Callable<List<NotificationRegistration>>> listTasks = new ArrayList<>(healthCodes.size());
+        for (String healthCode : healthCodes) {
+            listTasks.add(() -> notificationRegistrationDao.listRegistrations(healthCode));
+        }
+        int unregisteredCount = 0;
+        List<Callable<PublishOutcome>> publishTasks = new ArrayList<>();
+        for (List<NotificationRegistration> registrations : invokeAll(notificationSendExecutorService, listTasks)) {
+            if (registrations.isEmpty()) {
+                unregisteredCount++;
+            }
+            for (NotificationRegistration registration : registrations) {
+                publishTasks.add(() -> publish(appId, registration, message));
+            }
+        }
+        
+        int successCount = 0;
+        long totalLatencyMillis = 0L;
+        long maxLatencyMillis = 0L;
+        Set<String> erroredRegistrations = Sets.newHashSet();
+        for (PublishOutcome outcome : invokeAll(notificationSendExecutorService, publishTasks)) {
+            if (outcome.success) {
+                successCount++;
+            } else {
+                erroredRegistrations.add(outcome.registrationGuid);
+            }
+            totalLatencyMillis += outcome.latencyMillis;
+            maxLatencyMillis = Math.max(maxLatencyMillis, outcome.latencyMillis);
+        }
+        long averageLatencyMillis = publishTasks.isEmpty() ? 0L : totalLatencyMillis / publishTasks.size();
+        long elapsedMillis = System.currentTimeMillis() - startMillis;
+        
+        LOG.info("Sent bulk notification for appId=" + appId + " to " + healthCodes.size() + " participants, " + 
+                successCount + " registrations succeeded, " + erroredRegistrations.size() + " failed, in " + 
+                elapsedMillis + " ms");
+        return new BulkNotificationResult(healthCodes.size(), unregisteredCount, successCount,
+                erroredRegistrations.size(), erroredRegistrations, averageLatencyMillis, maxLatencyMillis,
+                elapsedMillis, ImmutableSet.of());
+    }
+
+    // Publish the message to one registration. Errors from SNS are logged and returned in the outcome.
+    private PublishOutcome publish(String appId, NotificationRegistration registration, NotificationMessage message) {
+        PublishRequest request = new PublishRequest().withTargetArn(registration.getEndpoint())
+                .withSubject(message.getSubject()).withMessage(message.getMessage());
+        
+        long startMillis = System.currentTimeMillis();
+        try {
+            PublishResult result = snsClient.publish(request);
+            LOG.debug("Sent message to participant registration=" + registration.getGuid() + ", appId=" +
+                    appId + ", message ID=" + result.getMessageId());
+            return new PublishOutcome(registration.getGuid(), true, System.currentTimeMillis() - startMillis);
+        } catch(AmazonServiceException e) {
+            LOG.warn("Error publishing SNS message to participant", e);
+            return new PublishOutcome(registration.getGuid(), false, System.currentTimeMillis() - startMillis);
+        }
+    }
+
     private String getPlatformARN(App app, NotificationRegistration registration) {
         String platformARN = app.getPushNotificationARNs().get(registration.getOsName());
         if (StringUtils.isBlank(platformARN)) {
@@ -260,4 +352,16 @@ public class NotificationsService {
             registration.setOsName(resolvedOsName);
         }
     }
+    
+    private static final class PublishOutcome {
+        private final String registrationGuid;
+        private final boolean success;
+        private final long latencyMillis;
+        
+        private PublishOutcome(String registrationGuid, boolean success, long latencyMillis) {
+            this.registrationGuid = registrationGuid;
+            this.success = success;
+            this.latencyMillis = latencyMillis;
+        }
+    }
 }
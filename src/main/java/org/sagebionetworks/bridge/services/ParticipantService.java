@@ -19,6 +19,7 @@ import static org.sagebionetworks.bridge.models.accounts.AccountStatus.UNVERIFIE
 import static org.sagebionetworks.bridge.models.accounts.PasswordAlgorithm.DEFAULT_PASSWORD_ALGORITHM;
 import static org.sagebionetworks.bridge.models.activities.ActivityEventObjectType.ACTIVITIES_RETRIEVED;
 import static org.sagebionetworks.bridge.models.activities.ActivityEventObjectType.ENROLLMENT;
+import static org.sagebionetworks.bridge.services.NotificationsService.BULK_NOTIFICATION_MAX_PARTICIPANTS;
 import static org.sagebionetworks.bridge.validators.IdentifierUpdateValidator.INSTANCE;
 import static org.sagebionetworks.bridge.validators.ValidatorUtils.accountHasValidIdentifier;
 
@@ -73,6 +74,7 @@ import org.sagebionetworks.bridge.models.activities.CustomActivityEventRequest;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.apps.MimeType;
 import org.sagebionetworks.bridge.models.apps.SmsTemplate;
+import org.sagebionetworks.bridge.models.notifications.BulkNotificationResult;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationProtocol;
 import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
@@ -729,6 +731,36 @@ public class ParticipantService {
         return notificationsService.sendNotificationToUser(app.getIdentifier(), account.getHealthCode(), message);
     }
 
+    /**
+     * Send the same notification to many participants. See 
+     * {@link NotificationsService#sendNotificationToUsers(String, java.util.Collection, NotificationMessage)}. 
+     * User IDs that don't match a participant visible to the caller are reported as missing in the result.
+     */
+    public BulkNotificationResult sendNotificationToParticipants(App app, Set<String> userIds,
+            NotificationMessage message) {
+        checkNotNull(app);
+        checkNotNull(userIds);
+        checkNotNull(message);
+        
+        if (userIds.isEmpty()) {
+            throw new BadRequestException("userIds are required");
+        }
+        if (userIds.size() > BULK_NOTIFICATION_MAX_PARTICIPANTS) {
+            throw new BadRequestException("Cannot send a notification to more than " + 
+                    BULK_NOTIFICATION_MAX_PARTICIPANTS + " participants at once.");
+        }
+        // Look up all the accounts at once. Participants who can't be found are reported in the result.
+        Set<String> healthCodes = Sets.newHashSet();
+        Set<String> missingParticipants = Sets.newHashSet(userIds);
+        for (Account account : accountService.getAccounts(app.getIdentifier(), userIds)) {
+            healthCodes.add(account.getHealthCode());
+            missingParticipants.remove(account.getId());
+        }
+        BulkNotificationResult result = notificationsService.sendNotificationToUsers(app.getIdentifier(),
+                healthCodes, message);
+        return result.withMissingParticipants(missingParticipants);
+    }
+
     /**
      * Send an SMS message to this user if they have a verified phone number. This message will be 
      * sent with AWS' non-critical, "Promotional" level of delivery that optimizes for cost.
@@ -0,0 +1,91 @@
+package org.sagebionetworks.bridge.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.models.ClientInfo;
+import org.sagebionetworks.bridge.models.schedules.CompoundActivity;
+import org.sagebionetworks.bridge.models.schedules.SchemaReference;
+import org.sagebionetworks.bridge.models.schedules.SurveyReference;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * The second tier of caching behind each {@link ReferenceResolver}, shared across requests. Every participant's
+ * activities resolve the same handful of compound activity definitions, schemas and surveys for their app, so
+ * those lookups are kept here, keyed by app. Entries expire after a short time so that changes made through another
+ * server are picked up; publishing a survey, adding or changing a schema revision, and changing a compound activity
+ * definition through this server invalidate the affected entries immediately.
+ *
+ * Compound activities are cached as they are defined, before their schema and survey lists are resolved, since
+ * those are resolved through this cache as well.
+ */
+@Component
+public class ReferenceResolutionCache {
+    static final int CACHE_MAX_SIZE = 10000;
+    static final long CACHE_EXPIRE_SECONDS = 60;
+
+    private final Cache<String, CompoundActivity> compoundActivityCache = newCache();
+    private final Cache<String, SchemaReference> schemaCache = newCache();
+    private final Cache<String, SurveyReference> surveyCache = newCache();
+
+    private static <V> Cache<String, V> newCache() {
+        return CacheBuilder.newBuilder().maximumSize(CACHE_MAX_SIZE)
+                .expireAfterWrite(CACHE_EXPIRE_SECONDS, TimeUnit.SECONDS).build();
+    }
+
+    CompoundActivity getCompoundActivity(String appId, String taskId) {
+        return compoundActivityCache.getIfPresent(key(appId, taskId));
+    }
+
+    void putCompoundActivity(String appId, String taskId, CompoundActivity compoundActivity) {
+        compoundActivityCache.put(key(appId, taskId), compoundActivity);
+    }
+
+    /** The latest schema revision available to the client, which depends on the client's OS and app version. */
+    SchemaReference getSchema(String appId, String schemaId, ClientInfo clientInfo) {
+        return schemaCache.getIfPresent(schemaKey(appId, schemaId, clientInfo));
+    }
+
+    void putSchema(String appId, String schemaId, ClientInfo clientInfo, SchemaReference schemaRef) {
+        schemaCache.put(schemaKey(appId, schemaId, clientInfo), schemaRef);
+    }
+
+    /** The most recently published version of the survey. */
+    SurveyReference getSurvey(String appId, String surveyGuid) {
+        return surveyCache.getIfPresent(key(appId, surveyGuid));
+    }
+
+    void putSurvey(String appId, String surveyGuid, SurveyReference surveyRef) {
+        surveyCache.put(key(appId, surveyGuid), surveyRef);
+    }
+
+    public void invalidateCompoundActivity(String appId, String taskId) {
+        compoundActivityCache.invalidate(key(appId, taskId));
+    }
+
+    public void invalidateCompoundActivities(String appId) {
+        String keyPrefix = key(appId, "");
+        compoundActivityCache.asMap().keySet().removeIf(key -> key.startsWith(keyPrefix));
+    }
+
+    /** Removes the schema as resolved for every client. */
+    public void invalidateSchema(String appId, String schemaId) {
+        String keyPrefix = key(appId, schemaId) + ":";
+        schemaCache.asMap().keySet().removeIf(key -> key.startsWith(keyPrefix));
+    }
+
+    public void invalidateSurvey(String appId, String surveyGuid) {
+        surveyCache.invalidate(key(appId, surveyGuid));
+    }
+
+    private static String key(String appId, String id) {
+        return appId + ":" + id;
+    }
+
+    private static String schemaKey(String appId, String schemaId, ClientInfo clientInfo) {
+        return key(appId, schemaId) + ":" + clientInfo.getOsName() + ":" + clientInfo.getAppVersion();
+    }
+}
@@ -28,6 +28,9 @@ import org.slf4j.LoggerFactory;
  * recently published survey. In compound activities we resolve all references in the schema and survey 
  * lists. Finally, if a compound activity only contains a taskIdentifier, we load the full compound 
  * activity, resolve it, and return that in the scheduled activity. 
+ * 
+ * A resolver lives for one request, and remembers what it has resolved. Lookups it has not seen yet go to the 
+ * {@link ReferenceResolutionCache} shared by all requests, and only then to the services.
  */
 class ReferenceResolver {
     private static final Logger LOG = LoggerFactory.getLogger(ReferenceResolver.class);
@@ -35,6 +38,7 @@ class ReferenceResolver {
     private final CompoundActivityDefinitionService compoundActivityDefinitionService;
     private final UploadSchemaService schemaService;
     private final SurveyService surveyService;
+    private final ReferenceResolutionCache sharedCache;
     private final ClientInfo clientInfo;
     private final String appId;
     
@@ -46,12 +50,13 @@ class ReferenceResolver {
     private final Map<String, SurveyReference> surveyCache = new HashMap<>();
     
     ReferenceResolver(CompoundActivityDefinitionService compoundActivityDefinitionService,
-            UploadSchemaService schemaService, SurveyService surveyService,
+            UploadSchemaService schemaService, SurveyService surveyService, ReferenceResolutionCache sharedCache,
             Map<String, SurveyReference> surveyReferences, Map<String, SchemaReference> schemaReferences,
             ClientInfo clientInfo, String appId) {
         this.compoundActivityDefinitionService = compoundActivityDefinitionService;
         this.schemaService = schemaService;
         this.surveyService = surveyService;
+        this.sharedCache = sharedCache;
         this.surveyReferences = surveyReferences;
         this.schemaReferences = schemaReferences;
         this.clientInfo = clientInfo;
@@ -108,15 +113,19 @@ class ReferenceResolver {
         if (resolvedCompoundActivity == null) {
             if (compoundActivity.isReference()) {
                 // Compound activity has no schemas or surveys defined. Resolve it with its definition.
-                CompoundActivityDefinition compoundActivityDef;
-                try {
-                    compoundActivityDef = compoundActivityDefinitionService.getCompoundActivityDefinition(appId,
-                            taskId);
-                } catch (EntityNotFoundException ex) {
-                    LOG.error("Schedule references non-existent compound activity " + taskId);
-                    return null;
+                resolvedCompoundActivity = sharedCache.getCompoundActivity(appId, taskId);
+                if (resolvedCompoundActivity == null) {
+                    CompoundActivityDefinition compoundActivityDef;
+                    try {
+                        compoundActivityDef = compoundActivityDefinitionService.getCompoundActivityDefinition(appId,
+                                taskId);
+                    } catch (EntityNotFoundException ex) {
+                        LOG.error("Schedule references non-existent compound activity " + taskId);
+                        return null;
+                    }
+                    resolvedCompoundActivity = compoundActivityDef.getCompoundActivity();
+                    sharedCache.putCompoundActivity(appId, taskId, resolvedCompoundActivity);
                 }
-                resolvedCompoundActivity = compoundActivityDef.getCompoundActivity();
             } else {
                 // Compound activity has schemas and surveys defined. Use the schemas and surveys from the lists, but
                 // we may need to resolve individual schema and survey refs at a later step.
@@ -173,14 +182,18 @@ class ReferenceResolver {
             resolvedSchemaRef = schemaReferences.get(schemaId);
         }
         if (resolvedSchemaRef == null) {
-            UploadSchema schema;
-            try {
-                schema = schemaService.getLatestUploadSchemaRevisionForAppVersion(appId, schemaId, clientInfo);
-            } catch (EntityNotFoundException ex) {
-                LOG.error("Schedule references non-existent schema " + schemaId);
-                return null;
+            resolvedSchemaRef = sharedCache.getSchema(appId, schemaId, clientInfo);
+            if (resolvedSchemaRef == null) {
+                UploadSchema schema;
+                try {
+                    schema = schemaService.getLatestUploadSchemaRevisionForAppVersion(appId, schemaId, clientInfo);
+                } catch (EntityNotFoundException ex) {
+                    LOG.error("Schedule references non-existent schema " + schemaId);
+                    return null;
+                }
+                resolvedSchemaRef = new SchemaReference(schemaId, schema.getRevision());
+                sharedCache.putSchema(appId, schemaId, clientInfo, resolvedSchemaRef);
             }
-            resolvedSchemaRef = new SchemaReference(schemaId, schema.getRevision());
             schemaCache.put(schemaId, resolvedSchemaRef);
         }
         return resolvedSchemaRef;
@@ -198,15 +211,19 @@ class ReferenceResolver {
             resolvedSurveyRef = surveyReferences.get(surveyGuid);
         }
         if (resolvedSurveyRef == null) {
-            Survey survey;
-            try {
-                survey = surveyService.getSurveyMostRecentlyPublishedVersion(appId, surveyGuid, false);
-            } catch (EntityNotFoundException ex) {
-                LOG.error("Schedule references non-existent survey " + surveyGuid);
-                return null;
+            resolvedSurveyRef = sharedCache.getSurvey(appId, surveyGuid);
+            if (resolvedSurveyRef == null) {
+                Survey survey;
+                try {
+                    survey = surveyService.getSurveyMostRecentlyPublishedVersion(appId, surveyGuid, false);
+                } catch (EntityNotFoundException ex) {
+                    LOG.error("Schedule references non-existent survey " + surveyGuid);
+                    return null;
+                }
+                resolvedSurveyRef = new SurveyReference(survey.getIdentifier(), surveyGuid,
+                        new DateTime(survey.getCreatedOn()));
+                sharedCache.putSurvey(appId, surveyGuid, resolvedSurveyRef);
             }
-            resolvedSurveyRef = new SurveyReference(survey.getIdentifier(), surveyGuid,
-                    new DateTime(survey.getCreatedOn()));
             surveyCache.put(surveyGuid, resolvedSurveyRef);
         }
         return resolvedSurveyRef;
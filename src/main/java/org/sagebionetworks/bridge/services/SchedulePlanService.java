@@ -4,22 +4,33 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.dao.SchedulePlanDao;
 import org.sagebionetworks.bridge.models.ClientInfo;
+import org.sagebionetworks.bridge.models.CriteriaUtils;
 import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolder;
 import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolderImpl;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.schedules.Activity;
+import org.sagebionetworks.bridge.models.schedules.CriteriaScheduleStrategy;
 import org.sagebionetworks.bridge.models.schedules.Schedule;
+import org.sagebionetworks.bridge.models.schedules.ScheduleCriteria;
 import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
 import org.sagebionetworks.bridge.models.schedules.SurveyReference;
 import org.sagebionetworks.bridge.models.surveys.Survey;
 import org.sagebionetworks.bridge.validators.SchedulePlanValidator;
 import org.sagebionetworks.bridge.validators.Validate;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -29,9 +40,24 @@ import org.springframework.stereotype.Component;
 @Component
 public class SchedulePlanService {
     
+    // Every request for a participant's activities or schedules reads all of the app's schedule plans, which 
+    // rarely change. The non-deleted plans are kept in-process along with a version token from Redis, which 
+    // every change to a plan replaces. Servers compare versions on each read, so a change made through any 
+    // server is seen by all of them on their next request.
+    static final int SCHEDULE_PLAN_CACHE_MAX_SIZE = 1000;
+    static final long SCHEDULE_PLAN_CACHE_EXPIRE_MINUTES = 60;
+    // Bounds the per-client views kept for one app; clients beyond this are filtered on each request.
+    static final int MAX_CLIENT_VIEWS = 100;
+    static final String NO_VERSION = "";
+    
+    private final Cache<String, CachedSchedulePlans> schedulePlanCache = CacheBuilder.newBuilder()
+            .maximumSize(SCHEDULE_PLAN_CACHE_MAX_SIZE)
+            .expireAfterAccess(SCHEDULE_PLAN_CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).build();
+    
     private SchedulePlanDao schedulePlanDao;
     private SurveyService surveyService;
     private StudyService studyService;
+    private CacheProvider cacheProvider;
 
     @Autowired
     public final void setSchedulePlanDao(SchedulePlanDao schedulePlanDao) {
@@ -45,10 +71,33 @@ public class SchedulePlanService {
     public final void setStudyService(StudyService studyService) {
         this.studyService = studyService;
     }
+    @Autowired
+    public final void setCacheProvider(CacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
 
+    /**
+     * Get the app's schedule plans. Non-deleted plans are served from the cache, without the schedule criteria 
+     * that can never match the client's OS and app version (plans left without any criteria are omitted). 
+     * Callers must treat these plans as read-only.
+     */
     public List<SchedulePlan> getSchedulePlans(ClientInfo clientInfo, String appId,
             boolean includeDeleted) {
-        return schedulePlanDao.getSchedulePlans(clientInfo, appId, includeDeleted);
+        if (includeDeleted) {
+            return schedulePlanDao.getSchedulePlans(clientInfo, appId, true);
+        }
+        // Read the version before the plans, so a change made while loading is picked up on the next read.
+        String version = cacheProvider.getObject(CacheKey.schedulePlanVersion(appId), String.class);
+        if (version == null) {
+            version = NO_VERSION;
+        }
+        CachedSchedulePlans cached = schedulePlanCache.getIfPresent(appId);
+        if (cached == null || !cached.version.equals(version)) {
+            List<SchedulePlan> plans = schedulePlanDao.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, appId, false);
+            cached = new CachedSchedulePlans(version, plans);
+            schedulePlanCache.put(appId, cached);
+        }
+        return cached.getPlansForClient(clientInfo);
     }
 
     public SchedulePlan getSchedulePlan(String appId, String guid) {
@@ -83,7 +132,9 @@ public class SchedulePlanService {
                 new SchedulePlanValidator(app.getDataGroups(), studyIds, app.getTaskIdentifiers()), plan);
 
         lookupSurveyReferenceIdentifiers(app.getIdentifier(), plan);
-        return schedulePlanDao.createSchedulePlan(app.getIdentifier(), plan);
+        SchedulePlan created = schedulePlanDao.createSchedulePlan(app.getIdentifier(), plan);
+        invalidateCachedSchedulePlans(app.getIdentifier());
+        return created;
     }
     
     public SchedulePlan updateSchedulePlan(App app, SchedulePlan plan) {
@@ -117,7 +168,9 @@ public class SchedulePlanService {
                 new SchedulePlanValidator(app.getDataGroups(), studyIds, app.getTaskIdentifiers()), plan);
         
         lookupSurveyReferenceIdentifiers(plan.getAppId(), plan);
-        return schedulePlanDao.updateSchedulePlan(plan.getAppId(), plan);
+        SchedulePlan updated = schedulePlanDao.updateSchedulePlan(plan.getAppId(), plan);
+        invalidateCachedSchedulePlans(plan.getAppId());
+        return updated;
     }
 
     public void deleteSchedulePlan(String appId, String guid) {
@@ -125,6 +178,7 @@ public class SchedulePlanService {
         checkNotNull(isNotBlank(guid));
         
         schedulePlanDao.deleteSchedulePlan(appId, guid);
+        invalidateCachedSchedulePlans(appId);
     }
     
     public void deleteSchedulePlanPermanently(String appId, String guid) {
@@ -132,6 +186,75 @@ public class SchedulePlanService {
         checkNotNull(isNotBlank(guid));
         
         schedulePlanDao.deleteSchedulePlanPermanently(appId, guid);
+        invalidateCachedSchedulePlans(appId);
+    }
+    
+    private void invalidateCachedSchedulePlans(String appId) {
+        cacheProvider.setObject(CacheKey.schedulePlanVersion(appId), BridgeUtils.generateGuid());
+        schedulePlanCache.invalidate(appId);
+    }
+    
+    /**
+     * Remove the schedule criteria that can never match the client's OS and app version. The criteria that remain 
+     * are in the same order, so the first match for any participant using this client is unchanged. Plans without 
+     * any remaining criteria are dropped. Plans are copied only when some of their criteria are removed.
+     */
+    static List<SchedulePlan> filterForClient(List<SchedulePlan> plans, ClientInfo clientInfo) {
+        ImmutableList.Builder<SchedulePlan> builder = ImmutableList.builder();
+        for (SchedulePlan plan : plans) {
+            if (!(plan.getStrategy() instanceof CriteriaScheduleStrategy)) {
+                builder.add(plan);
+                continue;
+            }
+            List<ScheduleCriteria> allCriteria = ((CriteriaScheduleStrategy)plan.getStrategy()).getScheduleCriteria();
+            List<ScheduleCriteria> matching = allCriteria.stream()
+                    .filter(sc -> CriteriaUtils.matchAppVersion(clientInfo, sc.getCriteria()))
+                    .collect(ImmutableList.toImmutableList());
+            if (matching.size() == allCriteria.size()) {
+                builder.add(plan);
+            } else if (!matching.isEmpty()) {
+                CriteriaScheduleStrategy strategy = new CriteriaScheduleStrategy();
+                strategy.setScheduleCriteria(matching);
+                
+                SchedulePlan copy = SchedulePlan.create();
+                copy.setAppId(plan.getAppId());
+                copy.setGuid(plan.getGuid());
+                copy.setLabel(plan.getLabel());
+                copy.setModifiedOn(plan.getModifiedOn());
+                copy.setDeleted(plan.isDeleted());
+                copy.setVersion(plan.getVersion());
+                copy.setStrategy(strategy);
+                builder.add(copy);
+            }
+        }
+        return builder.build();
+    }
+    
+    /** An app's non-deleted schedule plans at one version, with the views computed for different clients. */
+    private static final class CachedSchedulePlans {
+        private final String version;
+        private final List<SchedulePlan> plans;
+        private final Map<String, List<SchedulePlan>> clientViews = new ConcurrentHashMap<>();
+        
+        CachedSchedulePlans(String version, List<SchedulePlan> plans) {
+            this.version = version;
+            this.plans = ImmutableList.copyOf(plans);
+        }
+        
+        List<SchedulePlan> getPlansForClient(ClientInfo clientInfo) {
+            if (clientInfo == null || clientInfo.getOsName() == null || clientInfo.getAppVersion() == null) {
+                return plans;
+            }
+            String key = clientInfo.getOsName() + ":" + clientInfo.getAppVersion();
+            List<SchedulePlan> view = clientViews.get(key);
+            if (view == null) {
+                view = filterForClient(plans, clientInfo);
+                if (clientViews.size() < MAX_CLIENT_VIEWS) {
+                    clientViews.put(key, view);
+                }
+            }
+            return view;
+        }
     }
     
     /**
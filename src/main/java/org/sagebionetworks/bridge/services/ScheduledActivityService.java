@@ -35,6 +35,7 @@ import org.springframework.stereotype.Component;
 import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.dao.ScheduledActivityDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.RangeTuple;
 import org.sagebionetworks.bridge.models.appconfig.AppConfig;
@@ -87,6 +88,8 @@ public class ScheduledActivityService {
     
     private AppConfigService appConfigService;
     
+    private ReferenceResolutionCache referenceResolutionCache;
+    
     @Autowired
     final void setScheduledActivityDao(ScheduledActivityDao activityDao) {
         this.activityDao = activityDao;
@@ -125,6 +128,11 @@ public class ScheduledActivityService {
     final void setAppConfigService(AppConfigService appConfigService) {
         this.appConfigService = appConfigService;
     }
+    
+    @Autowired
+    final void setReferenceResolutionCache(ReferenceResolutionCache referenceResolutionCache) {
+        this.referenceResolutionCache = referenceResolutionCache;
+    }
 
     public ForwardCursorPagedResourceList<ScheduledActivity> getActivityHistory(String healthCode,
             String activityGuid, DateTime scheduledOnStart, DateTime scheduledOnEnd, String offsetKey,
@@ -303,14 +311,9 @@ public class ScheduledActivityService {
         checkArgument(isNotBlank(healthCode));
         checkNotNull(scheduledActivities);
         
-        // Remove duplicates sent by the client because these lead to an error when persisting the records
-        // (BRIDGE-2350). Preserve the order the activities were submitted in the list, mostly because tests 
-        // expect that order to be preserved.
-        Set<String> activitiesAlreadySeen = new HashSet<>();
-        List<ScheduledActivity> activitiesToSave = new LinkedList<>();
-        
-        // According to the client team, the last activity is most likely to be correct, so iterate from 
-        // the last one
+        // Validate the whole submission before loading anything. According to the client team, the last 
+        // activity is most likely to be correct, so iterate from the last one.
+        Set<String> guids = new HashSet<>();
         for (int i=scheduledActivities.size()-1; i >= 0; i--) {
             ScheduledActivity schActivity = scheduledActivities.get(i);
             if (schActivity == null) {
@@ -323,19 +326,32 @@ public class ScheduledActivityService {
                 throw new BadRequestException("Client data too large ("+CLIENT_DATA_MAX_BYTES+" bytes limit) for task "
                         + schActivity.getGuid());
             }
-
-            // This isn't returned to the client, so the exact time zone used does not matter.
-            ScheduledActivity dbActivity = activityDao.getActivity(DateTimeZone.UTC, healthCode, schActivity.getGuid(), true);
-            String key = dbActivity.getHealthCode()+":"+dbActivity.getGuid();
-            if (activitiesAlreadySeen.contains(key)) {
-                ScheduledActivity previouslyAdded = activitiesToSave.stream().filter((sch) -> {
-                    return sch.getHealthCode().equals(dbActivity.getHealthCode()) && 
-                            sch.getGuid().equals(dbActivity.getGuid()); 
-                }).findFirst().get();
-                LOG.warn("Duplicate activities submitted to server, activity to persist: " + previouslyAdded + ", duplicate: " + dbActivity);
+            guids.add(schActivity.getGuid());
+        }
+        
+        // Clients submit many activities at once after being offline, so load them all in one batch. 
+        // This isn't returned to the client, so the exact time zone used does not matter.
+        Map<String, ScheduledActivity> dbActivities = activityDao.getActivitiesByGuid(DateTimeZone.UTC,
+                healthCode, guids);
+        
+        // Remove duplicates sent by the client because these lead to an error when persisting the records
+        // (BRIDGE-2350). Preserve the order the activities were submitted in the list, mostly because tests 
+        // expect that order to be preserved.
+        Map<String, ScheduledActivity> activitiesAlreadySeen = Maps.newHashMap();
+        LinkedList<ScheduledActivity> activitiesToSave = new LinkedList<>();
+        List<ScheduledActivity> finishedActivities = new ArrayList<>();
+        
+        for (int i=scheduledActivities.size()-1; i >= 0; i--) {
+            ScheduledActivity schActivity = scheduledActivities.get(i);
+            ScheduledActivity dbActivity = dbActivities.get(schActivity.getGuid());
+            if (dbActivity == null) {
+                throw new EntityNotFoundException(ScheduledActivity.class);
+            }
+            ScheduledActivity previouslyAdded = activitiesAlreadySeen.putIfAbsent(schActivity.getGuid(), dbActivity);
+            if (previouslyAdded != null) {
+                LOG.warn("Duplicate activities submitted to server, activity to persist: " + previouslyAdded + ", duplicate: " + schActivity);
                 continue;
             }
-            activitiesAlreadySeen.add(key);
             
             boolean addToSaves = false;
             if (hasUpdatedClientData(schActivity, dbActivity)) {
@@ -348,14 +364,14 @@ public class ScheduledActivityService {
             }
             if (schActivity.getFinishedOn() != null) {
                 dbActivity.setFinishedOn(schActivity.getFinishedOn());
-                activityEventService.publishActivityFinishedEvent(dbActivity);
+                finishedActivities.add(dbActivity);
                 addToSaves = true;
             }
             if (addToSaves) {
-                activitiesToSave.add(0, dbActivity);
+                activitiesToSave.addFirst(dbActivity);
             }
-            
         }
+        activityEventService.publishActivityFinishedEvents(finishedActivities);
         activityDao.updateActivities(healthCode, activitiesToSave);
     }
 
@@ -417,8 +433,8 @@ public class ScheduledActivityService {
                 : Maps.uniqueIndex(appConfig.getSchemaReferences(), SchemaReference::getId);
 
         ReferenceResolver resolver = new ReferenceResolver(compoundActivityDefinitionService, schemaService,
-                surveyService, surveyReferences, schemaReferences, context.getCriteriaContext().getClientInfo(),
-                context.getCriteriaContext().getAppId());
+                surveyService, referenceResolutionCache, surveyReferences, schemaReferences,
+                context.getCriteriaContext().getClientInfo(), context.getCriteriaContext().getAppId());
         
         for (SchedulePlan plan : plans) {
             Schedule schedule = plan.getStrategy().getScheduleForUser(plan, context);
@@ -4,6 +4,10 @@ import org.sagebionetworks.bridge.services.email.MimeTypeEmailProvider;
 
 public interface SendMailService {
 
+    /** Queue the email to be sent. The caller does not wait for the email to be sent. */
     void sendEmail(MimeTypeEmailProvider provider);
 
+    /** Send the email before returning, throwing an exception if it can't be sent. */
+    void sendEmailNow(MimeTypeEmailProvider provider);
+
 }
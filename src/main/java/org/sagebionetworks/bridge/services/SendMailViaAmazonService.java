@@ -5,7 +5,16 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Session;
@@ -15,7 +24,11 @@ import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
 
 import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.metrics.MetricsSource;
+import org.sagebionetworks.bridge.services.email.EmailOutboxMessage;
+import org.sagebionetworks.bridge.services.email.EmailType;
 import org.sagebionetworks.bridge.services.email.MimeTypeEmail;
 import org.sagebionetworks.bridge.services.email.MimeTypeEmailProvider;
 
@@ -25,7 +38,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
@@ -33,54 +45,254 @@ import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClient;
 import com.amazonaws.services.simpleemail.model.RawMessage;
 import com.amazonaws.services.simpleemail.model.SendRawEmailRequest;
 import com.amazonaws.services.simpleemail.model.SendRawEmailResult;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.RateLimiter;
 
+/**
+ * Sends email through Amazon SES. By default, messages are built on the caller's thread and then added to a persistent
+ * {@link EmailOutbox}. Outbox threads on every server receive messages from the outbox and send them to SES. A message
+ * is removed from the outbox once it is sent, or once SES rejects it. If it can't be sent after retrying, it's left in
+ * the outbox to be received again later, so email is sent at least once and is not lost when a server stops. If the
+ * outbox is disabled on this server, email is sent directly to SES on the caller's thread instead.
+ *
+ * The SES maximum send rate applies to the whole account, so each server sends at no more than its share of that
+ * rate: the configured maximum divided by the configured number of servers.
+ *
+ * Callers that need to know whether their email was sent, like the background delivery of signed consents, use
+ * {@link #sendEmailNow(MimeTypeEmailProvider)}, which sends to SES on the caller's thread and throws SES errors.
+ */
 @Component("sendEmailViaAmazonService")
-public class SendMailViaAmazonService implements SendMailService {
+public class SendMailViaAmazonService implements SendMailService, MetricsSource {
 
     private static final Logger logger = LoggerFactory.getLogger(SendMailViaAmazonService.class);
     private static final Region REGION = Region.getRegion(Regions.US_EAST_1);
     public static final String UNVERIFIED_EMAIL_ERROR = "Bridge cannot send email until you verify Amazon SES can send using your app's support email address";
 
+    static final String CONFIG_KEY_EMAIL_SEND_THREAD_COUNT = "email.send.thread.count";
+    static final String CONFIG_KEY_SES_MAX_SEND_RATE = "ses.max.send.rate";
+    static final String CONFIG_KEY_SES_SENDING_SERVER_COUNT = "ses.sending.server.count";
+    static final int MAX_SEND_ATTEMPTS = 5;
+    static final long INITIAL_BACKOFF_MILLIS = 1000;
+    // Long enough for an outbox thread to finish its current receive and send the messages it received.
+    static final long OUTBOX_STOP_TIMEOUT_SECONDS = 60;
+
     private AmazonSimpleEmailServiceClient emailClient;
     private EmailVerificationService emailVerificationService;
+    private EmailOutbox emailOutbox;
+    private ExecutorService emailSendExecutorService;
+    private int outboxThreadCount;
+    private volatile boolean running;
+    private volatile CountDownLatch outboxThreadsStopped = new CountDownLatch(0);
+
+    // SES limits the number of messages sent per second for the account. Default is the lowest production limit.
+    private final RateLimiter sendRateLimiter = RateLimiter.create(14.0);
+
+    // Outbox metrics
+    private final LongAdder outboxMessageCount = new LongAdder();
+    private final AtomicInteger sendingMessageCount = new AtomicInteger();
+    private final LongAdder sentMessageCount = new LongAdder();
+    private final LongAdder failedMessageCount = new LongAdder();
+    private final LongAdder deferredMessageCount = new LongAdder();
+    private final LongAdder throttledSendCount = new LongAdder();
+    private final LongAdder totalSendLatencyMillis = new LongAdder();
+    private final AtomicLong maxSendLatencyMillis = new AtomicLong();
 
     @Autowired
     final void setEmailClient(AmazonSimpleEmailServiceClient emailClient) {
         this.emailClient = emailClient;
+        // Set once here, rather than on every send, since sends happen concurrently on the outbox threads.
+        this.emailClient.setRegion(REGION);
     }
     @Autowired
     final void setEmailVerificationService(EmailVerificationService emailVerificationService) {
         this.emailVerificationService = emailVerificationService;
     }
-    
+    @Autowired
+    final void setEmailOutbox(EmailOutbox emailOutbox) {
+        this.emailOutbox = emailOutbox;
+    }
+    @Resource(name = "emailSendExecutorService")
+    final void setEmailSendExecutorService(ExecutorService emailSendExecutorService) {
+        this.emailSendExecutorService = emailSendExecutorService;
+    }
+    @Autowired
+    final void setBridgeConfig(BridgeConfig bridgeConfig) {
+        this.outboxThreadCount = bridgeConfig.getPropertyAsInt(CONFIG_KEY_EMAIL_SEND_THREAD_COUNT);
+        int serverCount = Math.max(1, bridgeConfig.getPropertyAsInt(CONFIG_KEY_SES_SENDING_SERVER_COUNT));
+        setSendRateLimit((double) bridgeConfig.getPropertyAsInt(CONFIG_KEY_SES_MAX_SEND_RATE) / serverCount);
+    }
+
+    /**
+     * Maximum rate of messages sent to SES from this server, in messages per second. Made overridable for unit
+     * tests.
+     */
+    final void setSendRateLimit(double rate) {
+        sendRateLimiter.setRate(rate);
+    }
+
+    // Package-scoped for unit tests.
+    double getSendRateLimit() {
+        return sendRateLimiter.getRate();
+    }
+
+    /** Starts the outbox threads, if the outbox is enabled. */
+    @PostConstruct
+    public void start() {
+        if (!emailOutbox.isEnabled()) {
+            logger.info("Email outbox is disabled, sending email directly");
+            return;
+        }
+        running = true;
+        outboxThreadsStopped = new CountDownLatch(outboxThreadCount);
+        for (int i = 0; i < outboxThreadCount; i++) {
+            emailSendExecutorService.execute(this::drainOutbox);
+        }
+    }
+
+    /**
+     * Stops the outbox threads, and waits for them to finish sending the messages they have received. Messages that
+     * are still in the outbox are sent by the other servers, or when this one restarts. A message that is still
+     * being sent when the wait times out is received again once its visibility timeout expires.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            if (!outboxThreadsStopped.await(OUTBOX_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("Email outbox threads did not stop within " + OUTBOX_STOP_TIMEOUT_SECONDS + " seconds");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** The number of messages added to the outbox. */
+    public long getOutboxMessageCount() {
+        return outboxMessageCount.sum();
+    }
+
+    /** The number of messages being sent to SES. */
+    public int getSendingMessageCount() {
+        return sendingMessageCount.get();
+    }
+
+    /** The number of messages accepted by SES. */
+    public long getSentMessageCount() {
+        return sentMessageCount.sum();
+    }
+
+    /** The number of messages that SES rejected, or that could not be sent directly after retrying. */
+    public long getFailedMessageCount() {
+        return failedMessageCount.sum();
+    }
+
+    /** The number of times a message could not be sent after retrying, and was left in the outbox. */
+    public long getDeferredMessageCount() {
+        return deferredMessageCount.sum();
+    }
+
+    /** The number of send attempts that SES throttled. */
+    public long getThrottledSendCount() {
+        return throttledSendCount.sum();
+    }
+
+    /** The average time of a successful call to SES, in milliseconds. */
+    public long getAverageSendLatencyMillis() {
+        long sent = sentMessageCount.sum();
+        return (sent == 0L) ? 0L : totalSendLatencyMillis.sum() / sent;
+    }
+
+    /** The longest time of a successful call to SES, in milliseconds. */
+    public long getMaxSendLatencyMillis() {
+        return maxSendLatencyMillis.get();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "email";
+    }
+
+    @Override
+    public void writeMetrics(ObjectNode node) {
+        node.put("outboxMessages", getOutboxMessageCount());
+        node.put("sending", getSendingMessageCount());
+        node.put("sent", getSentMessageCount());
+        node.put("failed", getFailedMessageCount());
+        node.put("deferred", getDeferredMessageCount());
+        node.put("throttled", getThrottledSendCount());
+        node.put("meanSendMillis", getAverageSendLatencyMillis());
+        node.put("maxSendMillis", getMaxSendLatencyMillis());
+    }
+
+    /**
+     * Adds the email to the outbox. Throws a BridgeServiceException if it can't be added. If the outbox is disabled, or
+     * a message is too large for the outbox, it is sent directly instead, and SES errors are thrown as with
+     * {@link #sendEmailNow(MimeTypeEmailProvider)}.
+     */
     @Override
     public void sendEmail(MimeTypeEmailProvider provider) {
-        String senderEmail = provider.getPlainSenderEmail();
-        if (!emailVerificationService.isVerified(senderEmail)) {
-            throw new BridgeServiceException(UNVERIFIED_EMAIL_ERROR);
+        checkSenderVerified(provider);
+        String appId = provider.getApp().getIdentifier();
+        String requestId = RequestContext.get().getId();
+
+        try {
+            MimeTypeEmail email = provider.getMimeTypeEmail();
+            String fullSenderEmail = email.getSenderAddress();
+            for (String recipient: email.getRecipientAddresses()) {
+                byte[] rawMessage = createRawMessage(fullSenderEmail, recipient, email);
+                if (!emailOutbox.isEnabled()) {
+                    sendNow(createSendRawEmailRequest(fullSenderEmail, recipient, rawMessage), email.getType(),
+                            appId, requestId);
+                } else if (rawMessage.length > emailOutbox.getMaxMessageBytes()) {
+                    logger.info("Email with type " + email.getType() + " for app " + appId + " and request " +
+                            requestId + " is too large for the outbox, sending it directly");
+                    sendNow(createSendRawEmailRequest(fullSenderEmail, recipient, rawMessage), email.getType(),
+                            appId, requestId);
+                } else {
+                    emailOutbox.add(new EmailOutboxMessage(email.getType(), appId, requestId, fullSenderEmail,
+                            recipient, rawMessage));
+                    outboxMessageCount.increment();
+                }
+            }
+        } catch(MessagingException | IOException e) {
+            throw new BridgeServiceException(e);
         }
+    }
+
+    /**
+     * Sends the email to SES on the caller's thread, retrying throttled sends. Throws a BridgeServiceException if
+     * SES fails. As with the outbox, an email that SES rejects is logged and not thrown, since retrying won't help.
+     */
+    @Override
+    public void sendEmailNow(MimeTypeEmailProvider provider) {
+        checkSenderVerified(provider);
+        String appId = provider.getApp().getIdentifier();
+        String requestId = RequestContext.get().getId();
 
         try {
-            String fullSenderEmail = provider.getMimeTypeEmail().getSenderAddress();
             MimeTypeEmail email = provider.getMimeTypeEmail();
+            String fullSenderEmail = email.getSenderAddress();
             for (String recipient: email.getRecipientAddresses()) {
-                sendEmail(fullSenderEmail, recipient, email, provider.getApp().getIdentifier());
+                byte[] rawMessage = createRawMessage(fullSenderEmail, recipient, email);
+                sendNow(createSendRawEmailRequest(fullSenderEmail, recipient, rawMessage), email.getType(),
+                        appId, requestId);
             }
-        } catch (MessageRejectedException ex) {
-            // This happens if the sender email is not verified in SES. In general, it's not useful to app users to
-            // receive a 500 Internal Error when this happens. Plus, if this exception gets thrown, the user session
-            // won't be updated properly, and really weird things happen. The best course of option is to log an error
-            // and swallow the exception.
-            logger.error("SES rejected email: " + ex.getMessage(), ex);
-        } catch(MessagingException | AmazonServiceException | IOException e) {
+        } catch(MessagingException | IOException e) {
             throw new BridgeServiceException(e);
         }
     }
 
-    private void sendEmail(String senderEmail, String recipient, MimeTypeEmail email, String appId)
-            throws AmazonClientException, MessagingException, IOException {
-        
+    private void checkSenderVerified(MimeTypeEmailProvider provider) {
+        String senderEmail = provider.getPlainSenderEmail();
+        if (!emailVerificationService.isVerified(senderEmail)) {
+            throw new BridgeServiceException(UNVERIFIED_EMAIL_ERROR);
+        }
+    }
+
+    private byte[] createRawMessage(String senderEmail, String recipient, MimeTypeEmail email)
+            throws MessagingException, IOException {
+
         Session mailSession = Session.getInstance(new Properties(), null);
         MimeMessage mimeMessage = new MimeMessage(mailSession);
         mimeMessage.setFrom(new InternetAddress(senderEmail));
@@ -90,7 +302,7 @@ public class SendMailViaAmazonService implements SendMailService {
         MimeMultipart mimeMultipart = new MimeMultipart();
         for (MimeBodyPart part : email.getMessageParts()) {
             if (part != null) {
-                mimeMultipart.addBodyPart(part);    
+                mimeMultipart.addBodyPart(part);
             }
         }
 
@@ -98,16 +310,156 @@ public class SendMailViaAmazonService implements SendMailService {
         mimeMessage.setContent(mimeMultipart);
         ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();
         mimeMessage.writeTo(byteOutputStream);
-        RawMessage sesRawMessage = new RawMessage(ByteBuffer.wrap(byteOutputStream.toByteArray()));
+        return byteOutputStream.toByteArray();
+    }
 
-        SendRawEmailRequest req = new SendRawEmailRequest(sesRawMessage);
+    private static SendRawEmailRequest createSendRawEmailRequest(String senderEmail, String recipient,
+            byte[] rawMessage) {
+        SendRawEmailRequest req = new SendRawEmailRequest(new RawMessage(ByteBuffer.wrap(rawMessage)));
         req.setSource(senderEmail);
         req.setDestinations(Collections.singleton(recipient));
-        emailClient.setRegion(REGION);
-        SendRawEmailResult result = emailClient.sendRawEmail(req);
+        return req;
+    }
+
+    private void sendNow(SendRawEmailRequest request, EmailType type, String appId, String requestId) {
+        sendingMessageCount.incrementAndGet();
+        try {
+            sendWithRetries(request, type, appId, requestId);
+        } catch (MessageRejectedException ex) {
+            // This happens if the sender email is not verified in SES. In general, it's not useful to app users to
+            // receive a 500 Internal Error when this happens, so log an error and swallow the exception.
+            logger.error("SES rejected email: " + ex.getMessage(), ex);
+            failedMessageCount.increment();
+        } catch (AmazonServiceException ex) {
+            failedMessageCount.increment();
+            throw new BridgeServiceException(ex);
+        } finally {
+            sendingMessageCount.decrementAndGet();
+        }
+    }
+
+    // Runs on each outbox thread until the service is stopped. Messages already received are sent before the thread
+    // stops.
+    private void drainOutbox() {
+        try {
+            while (running) {
+                try {
+                    drainOutboxOnce();
+                } catch (RuntimeException ex) {
+                    logger.error("Error sending email from the outbox: " + ex.getMessage(), ex);
+                    if (!sleepBeforeRetry(INITIAL_BACKOFF_MILLIS)) {
+                        return;
+                    }
+                }
+            }
+        } finally {
+            outboxThreadsStopped.countDown();
+        }
+    }
+
+    // Receives one batch of messages from the outbox and sends them. Package-scoped for unit tests.
+    void drainOutboxOnce() {
+        for (EmailOutboxMessage message : emailOutbox.receive()) {
+            sendFromOutbox(message);
+        }
+    }
+
+    private void sendFromOutbox(EmailOutboxMessage message) {
+        SendRawEmailRequest request = createSendRawEmailRequest(message.getSource(), message.getRecipient(),
+                message.getRawMessage());
+        sendingMessageCount.incrementAndGet();
+        try {
+            sendWithRetries(request, message.getEmailType(), message.getAppId(), message.getRequestId());
+            emailOutbox.remove(message);
+        } catch (AmazonServiceException ex) {
+            if (ex instanceof MessageRejectedException || !isRetryable(ex)) {
+                // Sending this message again won't help.
+                logger.error("SES rejected email with type " + message.getEmailType() + " for app " +
+                        message.getAppId() + " and request " + message.getRequestId() + ", removing it from the " +
+                        "outbox: " + ex.getMessage(), ex);
+                failedMessageCount.increment();
+                emailOutbox.remove(message);
+            } else {
+                logger.warn("Could not send email with type " + message.getEmailType() + " for app " +
+                        message.getAppId() + " and request " + message.getRequestId() + ", leaving it in the " +
+                        "outbox: " + ex.getMessage());
+                deferredMessageCount.increment();
+            }
+        } finally {
+            sendingMessageCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Sends the request to SES, retrying throttled sends and 5XX errors with exponential backoff. Throws the last
+     * SES error if the message wasn't sent.
+     */
+    private void sendWithRetries(SendRawEmailRequest request, EmailType type, String appId, String requestId) {
+        long backoffMillis = INITIAL_BACKOFF_MILLIS;
+        for (int attempt = 1; ; attempt++) {
+            // Need to rate limit at the start of each call.
+            sendRateLimiter.acquire();
+            try {
+                long startMillis = System.currentTimeMillis();
+                SendRawEmailResult result = emailClient.sendRawEmail(request);
+                long latencyMillis = System.currentTimeMillis() - startMillis;
+                recordSend(latencyMillis);
 
-        logger.info("Sent email to SES with messageID " + result.getMessageId() + " with type " +
-                        email.getType() + " for app " + appId + " and request " + RequestContext.get().getId());
+                logger.info("Sent email to SES with messageID " + result.getMessageId() + " with type " + type +
+                        " for app " + appId + " and request " + requestId + " in " + latencyMillis + " ms");
+                return;
+            } catch (MessageRejectedException ex) {
+                throw ex;
+            } catch (AmazonServiceException ex) {
+                if (isThrottled(ex)) {
+                    throttledSendCount.increment();
+                }
+                if (!isRetryable(ex) || attempt == MAX_SEND_ATTEMPTS) {
+                    logger.error("Attempt " + attempt + " of " + MAX_SEND_ATTEMPTS + " to send email with type " +
+                            type + " for app " + appId + " and request " + requestId + " failed, giving up: " +
+                            ex.getMessage(), ex);
+                    throw ex;
+                }
+                logger.warn("Attempt " + attempt + " of " + MAX_SEND_ATTEMPTS + " to send email with type " +
+                        type + " for app " + appId + " and request " + requestId + " failed, retrying: " +
+                        ex.getMessage());
+                if (!sleepBeforeRetry(backoffMillis)) {
+                    throw ex;
+                }
+            }
+            backoffMillis *= 2;
+        }
+    }
+
+    private static boolean isThrottled(AmazonServiceException ex) {
+        // A throttling exception has an error code with a string like "throttle" or "throttling".
+        String errorCode = ex.getErrorCode();
+        return errorCode != null && errorCode.toLowerCase().contains("throttl");
+    }
+
+    private static boolean isRetryable(AmazonServiceException ex) {
+        // If it's a throttling exception or a 5XX error, retry.
+        int statusCode = ex.getStatusCode();
+        return isThrottled(ex) || (statusCode >= 500 && statusCode <= 599);
+    }
+
+    private void recordSend(long latencyMillis) {
+        sentMessageCount.increment();
+        totalSendLatencyMillis.add(latencyMillis);
+        maxSendLatencyMillis.accumulateAndGet(latencyMillis, Math::max);
+    }
+
+    /**
+     * Wait before retrying a send. Returns false if the thread was interrupted and the send should be abandoned.
+     * Package-scoped so unit tests can skip the wait.
+     */
+    boolean sleepBeforeRetry(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
-    
 }
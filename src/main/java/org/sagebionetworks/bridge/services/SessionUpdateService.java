@@ -76,8 +76,8 @@ public class SessionUpdateService {
         session.setConsentStatuses(statuses);
         cacheProvider.setUserSession(session);
 
-        // Manage notifications, if necessary.
-        notificationTopicService.manageCriteriaBasedSubscriptions(context.getAppId(), context,
+        // Manage notifications, if necessary. Subscriptions are updated in the background.
+        notificationTopicService.requestCriteriaBasedSubscriptionUpdate(context.getAppId(), context,
                 participant.getHealthCode());
     }
     
@@ -4,17 +4,37 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 
 import com.amazonaws.services.sns.AmazonSNSClient;
 import com.amazonaws.services.sns.model.CheckIfPhoneNumberIsOptedOutRequest;
 import com.amazonaws.services.sns.model.CheckIfPhoneNumberIsOptedOutResult;
 import com.amazonaws.services.sns.model.OptInPhoneNumberRequest;
+import com.amazonaws.services.sns.model.PublishRequest;
 import com.amazonaws.services.sns.model.PublishResult;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Table;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -28,7 +48,11 @@ import org.sagebionetworks.bridge.dao.SmsMessageDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.metrics.MetricsSource;
+import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.Phone;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.apps.App;
@@ -44,9 +68,12 @@ import org.sagebionetworks.bridge.upload.UploadValidationException;
 import org.sagebionetworks.bridge.validators.SmsMessageValidator;
 import org.sagebionetworks.bridge.validators.Validate;
 
-/** Service for handling SMS metadata (opt-outs, message logging) and for handling webhooks for receiving SMS. */
+/**
+ * Service for handling SMS metadata (opt-outs, message logging) and for handling webhooks for receiving SMS. Send
+ * counts and the size of the message log queue are reported in the metrics snapshot.
+ */
 @Component
-public class SmsService {
+public class SmsService implements MetricsSource {
     private static final Logger LOG = LoggerFactory.getLogger(SmsService.class);
 
     static final String BRIDGE_SERVER_APP_VERSION = "Bridge Server";
@@ -63,11 +90,36 @@ public class SmsService {
     // of 538 characters. Round to a nice round 600 characters (about 4.5 SMS messages, if broken up).
     public static final int SMS_CHARACTER_LIMIT = 600;
 
+    // DynamoDB writes at most 25 items in a batch.
+    static final int MESSAGE_LOG_BATCH_SIZE = 25;
+    static final long MESSAGE_LOG_FLUSH_INTERVAL_MILLIS = 1000;
+    // If the log writer falls this far behind, the send threads write the log themselves.
+    static final int MESSAGE_LOG_QUEUE_CAPACITY = 10000;
+    static final long SHUTDOWN_WAIT_SECONDS = 10;
+
+    private AccountService accountService;
     private HealthDataService healthDataService;
     private SmsMessageDao messageDao;
-    private ParticipantService participantService;
     private UploadSchemaService schemaService;
     private AmazonSNSClient snsClient;
+    private ExecutorService smsSendExecutorService;
+    private ScheduledExecutorService messageLogExecutor;
+
+    // Messages that have been sent, waiting to be logged and recorded as health data.
+    private final BlockingQueue<SentMessage> messageLogQueue = new LinkedBlockingQueue<>(
+            MESSAGE_LOG_QUEUE_CAPACITY);
+
+    // Metrics
+    private final AtomicInteger queuedMessageCount = new AtomicInteger();
+    private final LongAdder sentMessageCount = new LongAdder();
+    private final LongAdder failedMessageCount = new LongAdder();
+    private final LongAdder rejectedMessageCount = new LongAdder();
+
+    /** Account service, used to get the health code and time zone of the recipient. */
+    @Autowired
+    public final void setAccountService(AccountService accountService) {
+        this.accountService = accountService;
+    }
 
     /** Health data service, used to submit SMS message logs as health data. */
     @Autowired
@@ -81,12 +133,6 @@ public class SmsService {
         this.messageDao = messageDao;
     }
 
-    /** Participant service. */
-    @Autowired
-    public final void setParticipantService(ParticipantService participantService) {
-        this.participantService = participantService;
-    }
-
     /** Schema service, used to initialize the SMS Message Long schema. */
     @Autowired
     public final void setSchemaService(UploadSchemaService schemaService) {
@@ -99,85 +145,268 @@ public class SmsService {
         this.snsClient = snsClient;
     }
 
+    /** Executor that sends SMS messages to SNS, so callers don't wait on SNS. */
+    @Resource(name = "smsSendExecutorService")
+    public final void setSmsSendExecutorService(ExecutorService smsSendExecutorService) {
+        this.smsSendExecutorService = smsSendExecutorService;
+    }
+
+    /** Starts writing the log of sent messages in the background. */
+    @PostConstruct
+    public void start() {
+        messageLogExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("sms-message-log-writer").setDaemon(true).build());
+        messageLogExecutor.scheduleWithFixedDelay(this::flushMessageLog, MESSAGE_LOG_FLUSH_INTERVAL_MILLIS,
+                MESSAGE_LOG_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
     /**
-     * Sends an SMS message using the given message provider. User ID is used to fetch the account, so we can get
-     * health code and time zone and other relevant attributes to log and record as health data. If the recipient
-     * doesn't have an account (for example, for Intent-to-Participate), this can be left null.
+     * Waits for messages that are still waiting to be sent, then stops the background writer after writing any
+     * messages that are still waiting to be logged.
+     */
+    @PreDestroy
+    public void stop() {
+        smsSendExecutorService.shutdown();
+        try {
+            if (!smsSendExecutorService.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                LOG.warn("Timed out waiting for " + getQueuedMessageCount() + " SMS messages to be sent");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (messageLogExecutor != null) {
+            messageLogExecutor.shutdown();
+        }
+        flushMessageLog();
+    }
+
+    /** The number of messages waiting to be sent or being sent. */
+    public int getQueuedMessageCount() {
+        return queuedMessageCount.get();
+    }
+
+    /** The number of messages accepted by SNS. */
+    public long getSentMessageCount() {
+        return sentMessageCount.sum();
+    }
+
+    /** The number of messages that could not be sent. */
+    public long getFailedMessageCount() {
+        return failedMessageCount.sum();
+    }
+
+    /** The number of messages that were not queued, because the send queue was full. */
+    public long getRejectedMessageCount() {
+        return rejectedMessageCount.sum();
+    }
+
+    /** The number of sent messages waiting to be logged. */
+    public int getMessageLogQueueSize() {
+        return messageLogQueue.size();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "sms";
+    }
+
+    @Override
+    public void writeMetrics(ObjectNode node) {
+        node.put("queued", getQueuedMessageCount());
+        node.put("sent", getSentMessageCount());
+        node.put("failed", getFailedMessageCount());
+        node.put("rejected", getRejectedMessageCount());
+        node.put("messageLogQueue", getMessageLogQueueSize());
+    }
+
+    /**
+     * Sends an SMS message using the given message provider. The message is sent to SNS in the background, and is
+     * then logged and recorded as health data in batches, so the caller only waits for the message to be queued.
+     * User ID is used to fetch the account, so we can get health code and time zone to log and record as health
+     * data. If the recipient doesn't have an account (for example, for Intent-to-Participate), this can be left null.
+     * Throws a ServiceUnavailableException if the send queue is full.
+     * <p>
+     * Because the send happens after this returns, SNS errors (an invalid or opted-out number, throttling, an AWS
+     * outage) are logged and counted in the "failed" metric, but are not thrown to the caller, and the API call that
+     * triggered the message still succeeds. Use {@link #sendSmsMessageNow} where the caller must know the outcome.
      */
     public void sendSmsMessage(String userId, SmsMessageProvider provider) {
+        SentMessage sentMessage = createSentMessage(userId, provider);
+        PublishRequest request = provider.getSmsRequest();
+        queuedMessageCount.incrementAndGet();
+        try {
+            smsSendExecutorService.execute(() -> {
+                try {
+                    send(request, sentMessage);
+                } catch (RuntimeException ex) {
+                    // Already logged and counted. There is no caller to throw to.
+                } finally {
+                    queuedMessageCount.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            queuedMessageCount.decrementAndGet();
+            rejectedMessageCount.increment();
+            throw new ServiceUnavailableException("Too many SMS messages are waiting to be sent");
+        }
+    }
+
+    /**
+     * Sends an SMS message on the caller's thread, throwing the SNS error if it can't be sent. For callers that
+     * retry failed sends themselves, like the background delivery of signed consents. The message is logged and
+     * recorded as health data in batches, as with {@link #sendSmsMessage}.
+     */
+    public void sendSmsMessageNow(String userId, SmsMessageProvider provider) {
+        SentMessage sentMessage = createSentMessage(userId, provider);
+        send(provider.getSmsRequest(), sentMessage);
+    }
+
+    private SentMessage createSentMessage(String userId, SmsMessageProvider provider) {
         checkNotNull(provider);
         App app = provider.getApp();
-        Phone recipientPhone = provider.getPhone();
         String message = provider.getFormattedMessage();
 
         // Check max SMS length.
         if (message.getBytes(Charset.forName("US-ASCII")).length > SMS_CHARACTER_LIMIT) {
             throw new BridgeServiceException("SMS message cannot be longer than 600 UTF-8/ASCII characters.");
         }
+        return new SentMessage(app.getIdentifier(), userId, provider.getPhone().getNumber(), message,
+                provider.getSmsTypeEnum(), provider.getSmsType(), RequestContext.get().getId());
+    }
 
-        // Send SMS.
-        String messageId;
-        PublishResult result = snsClient.publish(provider.getSmsRequest());
-        messageId = result.getMessageId();
-
-        LOG.info("Sent SMS message, app=" + app.getIdentifier() + ", message ID=" + messageId + ", request ID=" +
-                RequestContext.get().getId());
-
-        // Log SMS message.
-        DateTime sentOn = DateTime.now();
-        SmsMessage smsMessage = SmsMessage.create();
-        smsMessage.setPhoneNumber(recipientPhone.getNumber());
-        smsMessage.setSentOn(sentOn.getMillis());
-        smsMessage.setMessageBody(message);
-        smsMessage.setMessageId(messageId);
-        smsMessage.setSmsType(provider.getSmsTypeEnum());
-        smsMessage.setAppId(app.getIdentifier());
+    // Sends the message and queues it to be logged. Errors are logged, counted, and rethrown.
+    private void send(PublishRequest request, SentMessage sentMessage) {
+        PublishResult result;
+        try {
+            result = snsClient.publish(request);
+        } catch (RuntimeException ex) {
+            failedMessageCount.increment();
+            LOG.error("Error sending SMS message, app=" + sentMessage.appId + ", request ID=" +
+                    sentMessage.requestId + ": " + ex.getMessage(), ex);
+            throw ex;
+        }
+        sentMessage.messageId = result.getMessageId();
+        sentMessage.sentOn = DateTime.now();
+        sentMessageCount.increment();
+
+        LOG.info("Sent SMS message, app=" + sentMessage.appId + ", message ID=" + sentMessage.messageId +
+                ", request ID=" + sentMessage.requestId);
+        if (!messageLogQueue.offer(sentMessage)) {
+            // The log writer is behind. Write this message's log here rather than letting the queue grow.
+            try {
+                writeMessageLog(ImmutableList.of(sentMessage));
+            } catch (RuntimeException ex) {
+                LOG.error("Error writing SMS message log: " + ex.getMessage(), ex);
+            }
+        }
+    }
 
-        // Fetch participant, if it exists.
-        StudyParticipant participant = null;
-        if (userId != null) {
-            participant = participantService.getParticipant(app, userId, false);
+    // Runs on the message log thread. Package-scoped for unit tests.
+    void flushMessageLog() {
+        List<SentMessage> batch = new ArrayList<>(MESSAGE_LOG_BATCH_SIZE);
+        while (messageLogQueue.drainTo(batch, MESSAGE_LOG_BATCH_SIZE) > 0) {
+            try {
+                writeMessageLog(batch);
+            } catch (RuntimeException ex) {
+                // Don't let an error stop the writer thread.
+                LOG.error("Error writing SMS message log: " + ex.getMessage(), ex);
+            }
+            batch.clear();
         }
+    }
 
-        // Finish logging SMS message.
-        if (participant != null) {
-            smsMessage.setHealthCode(participant.getHealthCode());
+    private void writeMessageLog(List<SentMessage> batch) {
+        // Only the health code and time zone are needed from the account, so only those are loaded, with one query
+        // for each app in the batch.
+        SetMultimap<String, String> userIdsByApp = HashMultimap.create();
+        for (SentMessage sentMessage : batch) {
+            if (sentMessage.userId != null) {
+                userIdsByApp.put(sentMessage.appId, sentMessage.userId);
+            }
+        }
+        Table<String, String, Account> accountsByAppAndId = HashBasedTable.create();
+        for (String appId : userIdsByApp.keySet()) {
+            for (Account account : accountService.getAccountHealthCodesNoFilter(appId, userIdsByApp.get(appId))) {
+                accountsByAppAndId.put(appId, account.getId(), account);
+            }
         }
-        Validate.entityThrowingException(SmsMessageValidator.INSTANCE, smsMessage);
-        messageDao.logMessage(smsMessage);
 
-        // If we have a participant, make a health data.
-        if (participant != null) {
-            initMessageLogSchema(app.getIdentifier());
-
-            // Set sentOn w/ user's time zone, if it exists.
-            DateTime sentOnWithTimeZone;
-            if (participant.getTimeZone() != null) {
-                sentOnWithTimeZone = sentOn.withZone(participant.getTimeZone());
-            } else {
-                sentOnWithTimeZone = sentOn.withZone(DateTimeZone.UTC);
+        List<SmsMessage> smsMessageList = new ArrayList<>(batch.size());
+        List<SentMessage> healthDataList = new ArrayList<>(batch.size());
+        for (SentMessage sentMessage : batch) {
+            Account account = null;
+            if (sentMessage.userId != null) {
+                account = accountsByAppAndId.get(sentMessage.appId, sentMessage.userId);
+            }
+
+            SmsMessage smsMessage = SmsMessage.create();
+            smsMessage.setPhoneNumber(sentMessage.phoneNumber);
+            smsMessage.setSentOn(sentMessage.sentOn.getMillis());
+            smsMessage.setMessageBody(sentMessage.message);
+            smsMessage.setMessageId(sentMessage.messageId);
+            smsMessage.setSmsType(sentMessage.smsType);
+            smsMessage.setAppId(sentMessage.appId);
+            if (account != null) {
+                smsMessage.setHealthCode(account.getHealthCode());
+                sentMessage.healthCode = account.getHealthCode();
+                sentMessage.timeZone = account.getTimeZone();
+                healthDataList.add(sentMessage);
+            }
+            try {
+                Validate.entityThrowingException(SmsMessageValidator.INSTANCE, smsMessage);
+                smsMessageList.add(smsMessage);
+            } catch (InvalidEntityException ex) {
+                LOG.error("Invalid SMS message log, app=" + sentMessage.appId + ", message ID=" +
+                        sentMessage.messageId + ": " + ex.getMessage());
             }
+        }
+        messageDao.logMessages(smsMessageList);
 
-            // Create health data.
-            ObjectNode healthDataNode = BridgeObjectMapper.get().createObjectNode();
-            healthDataNode.put(FIELD_NAME_SENT_ON, sentOnWithTimeZone.toString());
-            healthDataNode.put(FIELD_NAME_SMS_TYPE, provider.getSmsType());
-            healthDataNode.put(FIELD_NAME_MESSAGE_BODY, message);
-
-            // Health Data Service requires app version and phone info. However, this health data is submitted by
-            // Bridge, not by the app, so fill those in with artificial values.
-            HealthDataSubmission healthData = new HealthDataSubmission.Builder()
-                    .withAppVersion(BRIDGE_SERVER_APP_VERSION).withPhoneInfo(BRIDGE_SERVER_PHONE_INFO)
-                    .withCreatedOn(sentOnWithTimeZone).withSchemaId(MESSAGE_LOG_SCHEMA_ID)
-                    .withSchemaRevision(MESSAGE_LOG_SCHEMA_REV).withData(healthDataNode).build();
+        // If we have a participant, make a health data.
+        Set<String> appIdsWithSchema = new HashSet<>();
+        for (SentMessage sentMessage : healthDataList) {
             try {
-                healthDataService.submitHealthData(app.getIdentifier(), participant, healthData);
-            } catch (IOException | UploadValidationException ex) {
-                throw new BridgeServiceException(ex);
+                if (appIdsWithSchema.add(sentMessage.appId)) {
+                    initMessageLogSchema(sentMessage.appId);
+                }
+                submitHealthData(sentMessage);
+            } catch (RuntimeException ex) {
+                LOG.error("Error recording SMS message as health data, app=" + sentMessage.appId +
+                        ", message ID=" + sentMessage.messageId + ": " + ex.getMessage(), ex);
             }
         }
     }
 
+    private void submitHealthData(SentMessage sentMessage) {
+        // Set sentOn w/ user's time zone, if it exists.
+        DateTime sentOnWithTimeZone;
+        if (sentMessage.timeZone != null) {
+            sentOnWithTimeZone = sentMessage.sentOn.withZone(sentMessage.timeZone);
+        } else {
+            sentOnWithTimeZone = sentMessage.sentOn.withZone(DateTimeZone.UTC);
+        }
+
+        // Create health data.
+        ObjectNode healthDataNode = BridgeObjectMapper.get().createObjectNode();
+        healthDataNode.put(FIELD_NAME_SENT_ON, sentOnWithTimeZone.toString());
+        healthDataNode.put(FIELD_NAME_SMS_TYPE, sentMessage.smsTypeValue);
+        healthDataNode.put(FIELD_NAME_MESSAGE_BODY, sentMessage.message);
+
+        // Health Data Service requires app version and phone info. However, this health data is submitted by
+        // Bridge, not by the app, so fill those in with artificial values.
+        HealthDataSubmission healthData = new HealthDataSubmission.Builder()
+                .withAppVersion(BRIDGE_SERVER_APP_VERSION).withPhoneInfo(BRIDGE_SERVER_PHONE_INFO)
+                .withCreatedOn(sentOnWithTimeZone).withSchemaId(MESSAGE_LOG_SCHEMA_ID)
+                .withSchemaRevision(MESSAGE_LOG_SCHEMA_REV).withData(healthDataNode).build();
+        StudyParticipant participant = new StudyParticipant.Builder().withId(sentMessage.userId)
+                .withHealthCode(sentMessage.healthCode).withTimeZone(sentMessage.timeZone).build();
+        try {
+            healthDataService.submitHealthData(sentMessage.appId, participant, healthData);
+        } catch (IOException | UploadValidationException ex) {
+            throw new BridgeServiceException(ex);
+        }
+    }
+
     // Helper method to init the SMS log schema for the app.
     private void initMessageLogSchema(String appId) {
         // See if schema already exists.
@@ -211,7 +440,11 @@ public class SmsService {
         schemaService.createSchemaRevisionV4(appId, schemaToCreate);
     }
 
-    /** Gets the message we most recently sent to the given phone number. */
+    /**
+     * Gets the message we most recently sent to the given phone number. Sent messages are logged in batches about
+     * once a second (see {@link #MESSAGE_LOG_FLUSH_INTERVAL_MILLIS}), so a message sent in the last second or so may
+     * not be returned yet, and callers that read it back right after sending (like integration tests) should retry.
+     */
     public SmsMessage getMostRecentMessage(String number) {
         if (StringUtils.isBlank(number)) {
             throw new BadRequestException("number is required");
@@ -250,4 +483,34 @@ public class SmsService {
             snsClient.optInPhoneNumber(optInRequest);
         }
     }
+
+    // A message on its way through the send and log pipeline.
+    static final class SentMessage {
+        private final String appId;
+        private final String userId;
+        private final String phoneNumber;
+        private final String message;
+        private final SmsType smsType;
+        private final String smsTypeValue;
+        private final String requestId;
+
+        // Set when the message is sent.
+        private String messageId;
+        private DateTime sentOn;
+
+        // Set from the recipient's account, when the message is logged.
+        private String healthCode;
+        private DateTimeZone timeZone;
+
+        SentMessage(String appId, String userId, String phoneNumber, String message, SmsType smsType,
+                String smsTypeValue, String requestId) {
+            this.appId = appId;
+            this.userId = userId;
+            this.phoneNumber = phoneNumber;
+            this.message = message;
+            this.smsType = smsType;
+            this.smsTypeValue = smsTypeValue;
+            this.requestId = requestId;
+        }
+    }
 }
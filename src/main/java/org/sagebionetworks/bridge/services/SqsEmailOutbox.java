@@ -0,0 +1,136 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.services.email.EmailOutboxMessage;
+
+/**
+ * Implementation of {@link EmailOutbox} using SQS. A received message is hidden from other receivers for the queue's
+ * visibility timeout, and is received again if it isn't removed by then. The queue's redrive policy bounds how many
+ * times a message that keeps failing is received.
+ *
+ * Messages are whole raw emails, including sign-in links and password reset tokens, so the queue must have
+ * server-side encryption turned on (with a KMS key or with SQS-managed keys). The outbox is disabled, and email is
+ * sent directly, if no queue is configured for the environment or if the queue isn't encrypted.
+ */
+@Component
+public class SqsEmailOutbox implements EmailOutbox {
+    private static final Logger LOG = LoggerFactory.getLogger(SqsEmailOutbox.class);
+
+    // constants - these are package scoped so unit tests can access them
+    static final String CONFIG_KEY_EMAIL_OUTBOX_SQS_QUEUE_URL = "email.outbox.sqs.queue.url";
+    static final int SQS_MAX_MESSAGE_BYTES = 262144;
+    // Room for the JSON fields other than the raw message.
+    static final int ENVELOPE_BYTES = 4096;
+    // The raw message is Base64 encoded, which takes 4 bytes for every 3.
+    static final int MAX_MESSAGE_BYTES = (SQS_MAX_MESSAGE_BYTES - ENVELOPE_BYTES) / 4 * 3;
+    static final int RECEIVE_MAX_MESSAGES = 10;
+    static final int RECEIVE_WAIT_SECONDS = 20;
+    static final String ATTRIBUTE_KMS_MASTER_KEY_ID = "KmsMasterKeyId";
+    static final String ATTRIBUTE_SQS_MANAGED_SSE_ENABLED = "SqsManagedSseEnabled";
+
+    private AmazonSQSClient sqsClient;
+    private String sqsQueueUrl;
+    private boolean enabled;
+
+    /** Bridge config, used to get the SQS queue URL. */
+    @Autowired
+    public final void setBridgeConfig(BridgeConfig bridgeConfig) {
+        this.sqsQueueUrl = bridgeConfig.getProperty(CONFIG_KEY_EMAIL_OUTBOX_SQS_QUEUE_URL);
+    }
+
+    /** SQS client. */
+    @Autowired
+    public final void setSqsClient(AmazonSQSClient sqsClient) {
+        this.sqsClient = sqsClient;
+    }
+
+    /** Enables the outbox if a queue is configured and it has server-side encryption. */
+    @PostConstruct
+    public void init() {
+        if (isBlank(sqsQueueUrl)) {
+            LOG.info("No email outbox queue is configured, email will be sent directly");
+            return;
+        }
+        try {
+            Map<String, String> attributes = sqsClient.getQueueAttributes(sqsQueueUrl,
+                    ImmutableList.of(ATTRIBUTE_KMS_MASTER_KEY_ID, ATTRIBUTE_SQS_MANAGED_SSE_ENABLED)).getAttributes();
+            enabled = isNotBlank(attributes.get(ATTRIBUTE_KMS_MASTER_KEY_ID))
+                    || "true".equals(attributes.get(ATTRIBUTE_SQS_MANAGED_SSE_ENABLED));
+            if (!enabled) {
+                LOG.error("Email outbox queue " + sqsQueueUrl + " does not have server-side encryption, email " +
+                        "will be sent directly");
+            }
+        } catch (AmazonClientException ex) {
+            LOG.error("Error reading the attributes of email outbox queue " + sqsQueueUrl + ", email will be sent " +
+                    "directly: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public int getMaxMessageBytes() {
+        return MAX_MESSAGE_BYTES;
+    }
+
+    @Override
+    public void add(EmailOutboxMessage message) {
+        try {
+            String messageJson = BridgeObjectMapper.get().writeValueAsString(message);
+            sqsClient.sendMessage(sqsQueueUrl, messageJson);
+        } catch (JsonProcessingException | AmazonClientException ex) {
+            throw new BridgeServiceException(ex);
+        }
+    }
+
+    @Override
+    public List<EmailOutboxMessage> receive() {
+        ReceiveMessageRequest request = new ReceiveMessageRequest(sqsQueueUrl)
+                .withMaxNumberOfMessages(RECEIVE_MAX_MESSAGES).withWaitTimeSeconds(RECEIVE_WAIT_SECONDS);
+        ImmutableList.Builder<EmailOutboxMessage> builder = ImmutableList.builder();
+        for (Message sqsMessage : sqsClient.receiveMessage(request).getMessages()) {
+            try {
+                EmailOutboxMessage message = BridgeObjectMapper.get().readValue(sqsMessage.getBody(),
+                        EmailOutboxMessage.class);
+                message.setReceipt(sqsMessage.getReceiptHandle());
+                builder.add(message);
+            } catch (IOException ex) {
+                // This message can never be sent. Drop it, so it isn't received again.
+                LOG.error("Error reading email outbox message " + sqsMessage.getMessageId() + ", dropping it: " +
+                        ex.getMessage(), ex);
+                sqsClient.deleteMessage(sqsQueueUrl, sqsMessage.getReceiptHandle());
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public void remove(EmailOutboxMessage message) {
+        sqsClient.deleteMessage(sqsQueueUrl, message.getReceipt());
+    }
+}
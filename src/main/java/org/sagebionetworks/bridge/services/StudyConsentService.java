@@ -22,6 +22,8 @@ import com.amazonaws.services.s3.model.CannedAccessControlList;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 
 import org.apache.commons.io.IOUtils;
@@ -92,6 +94,17 @@ public class StudyConsentService {
     // Documented to be threat-safe
     private static final CharSequenceTranslator XML_ESCAPER = StringEscapeUtils.ESCAPE_XML11;
     
+    // Upper bound on the total characters of consent documents held in memory.
+    static final long DOCUMENT_CONTENT_CACHE_MAX_CHARS = 20_000_000L;
+    
+    /**
+     * Consent document content by subpopulation GUID and createdOn timestamp. A consent document is never 
+     * rewritten once added, so the S3 content can be kept until it's evicted or the consents are deleted.
+     */
+    private final Cache<String, String> documentContentCache = CacheBuilder.newBuilder()
+            .maximumWeight(DOCUMENT_CONTENT_CACHE_MAX_CHARS)
+            .weigher((String storagePath, String content) -> content.length()).build();
+    
     private Validator validator;
     private StudyConsentDao studyConsentDao;
     private SubpopulationService subpopService;
@@ -166,6 +179,7 @@ public class StudyConsentService {
                     " ms");
 
             StudyConsent consent = studyConsentDao.addConsent(subpopGuid, storagePath, createdOn);
+            documentContentCache.put(getDocumentContentCacheKey(subpopGuid.getGuid(), createdOn), sanitizedContent);
             return new StudyConsentView(consent, sanitizedContent);
         } catch(Throwable t) {
             throw new BridgeServiceException(t);
@@ -181,6 +195,7 @@ public class StudyConsentService {
         for (StudyConsent consent : consentList) {
             studyConsentDao.deleteConsentPermanently(consent);
             s3Client.deleteObject(consentsBucket, consent.getStoragePath());
+            documentContentCache.invalidate(getDocumentContentCacheKey(consent));
         }
 
         // We need to delete from the publications bucket.
@@ -290,6 +305,11 @@ public class StudyConsentService {
     }
     
     private String loadDocumentContent(StudyConsent consent) {
+        String cacheKey = getDocumentContentCacheKey(consent);
+        String cachedContent = documentContentCache.getIfPresent(cacheKey);
+        if (cachedContent != null) {
+            return cachedContent;
+        }
         try {
             Stopwatch stopwatch = Stopwatch.createStarted();
             String content = s3Helper.readS3FileAsString(consentsBucket, consent.getStoragePath());
@@ -297,13 +317,23 @@ public class StudyConsentService {
                     consent.getStoragePath() + " (" + content.length() + " chars) in " +
                     stopwatch.elapsed(TimeUnit.MILLISECONDS) + " ms");
             // Add a signature block if this document does not contain one.
-            return appendSignatureBlockIfNeeded(content);
+            content = appendSignatureBlockIfNeeded(content);
+            documentContentCache.put(cacheKey, content);
+            return content;
         } catch(IOException ioe) {
             logger.error("Failure loading storagePath: " + consent.getStoragePath());
             throw new BridgeServiceException(ioe);
         }
     }
     
+    private static String getDocumentContentCacheKey(StudyConsent consent) {
+        return getDocumentContentCacheKey(consent.getSubpopulationGuid(), consent.getCreatedOn());
+    }
+    
+    private static String getDocumentContentCacheKey(String subpopGuid, long createdOn) {
+        return subpopGuid + ":" + createdOn;
+    }
+    
     private String appendSignatureBlockIfNeeded(String content) {
         // The user can change the signature block, they can remove parts of the signature block,
         // but if the person's name or the signing date are gone, we're assuming that they've 
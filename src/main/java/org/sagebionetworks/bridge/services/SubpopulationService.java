@@ -5,6 +5,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
@@ -14,6 +15,8 @@ import org.springframework.stereotype.Component;
 import org.springframework.validation.Validator;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
 
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.cache.CacheProvider;
@@ -198,6 +201,38 @@ public class SubpopulationService {
         return subpop;
     }
     
+    /**
+     * Get several specific subpopulations, reading them from the cache in one call. Subpopulations that are not
+     * cached are loaded and then cached together.
+     * @param appId
+     * @param subpopGuids
+     * @return map of subpopulation guids to subpopulations
+     */
+    public Map<SubpopulationGuid, Subpopulation> getSubpopulations(String appId, Set<SubpopulationGuid> subpopGuids) {
+        checkNotNull(appId);
+        checkNotNull(subpopGuids);
+        
+        List<CacheKey> subpopKeys = subpopGuids.stream().map(subpopGuid -> CacheKey.subpop(subpopGuid, appId))
+                .collect(ImmutableList.toImmutableList());
+        Map<CacheKey, Subpopulation> cached = cacheProvider.getObjects(subpopKeys, Subpopulation.class);
+        
+        Map<SubpopulationGuid, Subpopulation> subpops = Maps.newHashMap();
+        Map<CacheKey, Subpopulation> loaded = Maps.newHashMap();
+        for (SubpopulationGuid subpopGuid : subpopGuids) {
+            CacheKey subpopKey = CacheKey.subpop(subpopGuid, appId);
+            Subpopulation subpop = cached.get(subpopKey);
+            if (subpop == null) {
+                subpop = subpopDao.getSubpopulation(appId, subpopGuid);
+                loaded.put(subpopKey, subpop);
+            }
+            subpops.put(subpopGuid, subpop);
+        }
+        if (!loaded.isEmpty()) {
+            cacheProvider.setObjects(loaded);
+        }
+        return subpops;
+    }
+    
     /**
      * Get all subpopulations for a user that match the provided CriteriaContext information. 
      * Returns an empty list if no subpopulations match.
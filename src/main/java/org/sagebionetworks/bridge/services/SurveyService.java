@@ -9,6 +9,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
 
@@ -27,6 +28,7 @@ import org.sagebionetworks.bridge.models.schedules.Activity;
 import org.sagebionetworks.bridge.models.schedules.CompoundActivity;
 import org.sagebionetworks.bridge.models.schedules.Schedule;
 import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
+import org.sagebionetworks.bridge.models.schedules.SchemaReference;
 import org.sagebionetworks.bridge.models.schedules.SurveyReference;
 import org.sagebionetworks.bridge.models.sharedmodules.SharedModuleMetadata;
 import org.sagebionetworks.bridge.models.surveys.Survey;
@@ -35,6 +37,8 @@ import org.sagebionetworks.bridge.validators.SurveyPublishValidator;
 import org.sagebionetworks.bridge.validators.SurveySaveValidator;
 import org.sagebionetworks.bridge.validators.Validate;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -43,12 +47,21 @@ import org.springframework.validation.Validator;
 @Component
 public class SurveyService {
     static final String KEY_IDENTIFIER = "identifier";
+    static final int SURVEY_SCHEMA_CACHE_MAX_SIZE = 1000;
+    static final long SURVEY_SCHEMA_CACHE_EXPIRE_MINUTES = 60;
+
+    // Published survey versions can't change their identifier or schema revision, so the mapping from a published
+    // survey to its schema can be held in memory. The expiry only bounds memory held by surveys no longer in use.
+    private final Cache<String, SchemaReference> publishedSurveySchemaCache = CacheBuilder.newBuilder()
+            .maximumSize(SURVEY_SCHEMA_CACHE_MAX_SIZE)
+            .expireAfterAccess(SURVEY_SCHEMA_CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).build();
 
     private Validator publishValidator;
     private SurveyDao surveyDao;
     private SchedulePlanService schedulePlanService;
     private SharedModuleMetadataService sharedModuleMetadataService;
     private AppService appService;
+    private ReferenceResolutionCache referenceResolutionCache;
 
     @Autowired
     final void setSurveyDao(SurveyDao surveyDao) {
@@ -74,6 +87,11 @@ public class SurveyService {
     public final void setAppService(AppService appService) {
         this.appService = appService;
     }
+
+    @Autowired
+    final void setReferenceResolutionCache(ReferenceResolutionCache referenceResolutionCache) {
+        this.referenceResolutionCache = referenceResolutionCache;
+    }
     
     public Survey getSurvey(String appId, GuidCreatedOnVersionHolder keys, boolean includeElements, boolean throwException) {
         Survey survey = surveyDao.getSurvey(appId, keys, includeElements);
@@ -85,6 +103,28 @@ public class SurveyService {
         }
         return survey;
     }
+
+    /**
+     * Returns the schema ID (the survey identifier) and schema revision for the specified survey version. Either may
+     * be null if the survey has no schema. Results for published surveys are cached in-process, since published
+     * surveys can't be modified. Throws an EntityNotFoundException if the survey doesn't exist.
+     */
+    public SchemaReference getSurveySchemaReference(String appId, GuidCreatedOnVersionHolder keys) {
+        String cacheKey = getSurveySchemaCacheKey(appId, keys);
+        SchemaReference schemaRef = publishedSurveySchemaCache.getIfPresent(cacheKey);
+        if (schemaRef == null) {
+            Survey survey = getSurvey(appId, keys, false, true);
+            schemaRef = new SchemaReference(survey.getIdentifier(), survey.getSchemaRevision());
+            if (survey.isPublished()) {
+                publishedSurveySchemaCache.put(cacheKey, schemaRef);
+            }
+        }
+        return schemaRef;
+    }
+
+    private static String getSurveySchemaCacheKey(String appId, GuidCreatedOnVersionHolder keys) {
+        return appId + ":" + keys.getGuid() + ":" + keys.getCreatedOn();
+    }
     
     /**
      * Create a survey.
@@ -168,7 +208,9 @@ public class SurveyService {
         }
         Validate.entityThrowingException(publishValidator, existing);
 
-        return surveyDao.publishSurvey(appId, existing, newSchemaRev);
+        Survey published = surveyDao.publishSurvey(appId, existing, newSchemaRev);
+        referenceResolutionCache.invalidateSurvey(appId, keys.getGuid());
+        return published;
     }
 
     /**
@@ -204,6 +246,7 @@ public class SurveyService {
         verifySharedModuleExistence(keys);
 
         surveyDao.deleteSurvey(existing);
+        referenceResolutionCache.invalidateSurvey(appId, keys.getGuid());
     }
 
     /**
@@ -227,6 +270,8 @@ public class SurveyService {
         }
         checkConstraintsBeforePhysicalDelete(appId, keys);
         surveyDao.deleteSurveyPermanently(appId, keys);
+        publishedSurveySchemaCache.invalidate(getSurveySchemaCacheKey(appId, keys));
+        referenceResolutionCache.invalidateSurvey(appId, keys.getGuid());
     }
 
     // Helper method to verify if there is any shared module related to specified survey
@@ -27,6 +27,8 @@ public class TemplateRevisionService {
     
     private TemplateRevisionDao templateRevisionDao;
     
+    private TemplateService templateService;
+    
     @Autowired
     final void setTemplateDao(TemplateDao templateDao) {
         this.templateDao = templateDao;
@@ -37,6 +39,11 @@ public class TemplateRevisionService {
         this.templateRevisionDao = templateRevisionDao;
     }
     
+    @Autowired
+    final void setTemplateService(TemplateService templateService) {
+        this.templateService = templateService;
+    }
+    
     public PagedResourceList<? extends TemplateRevision> getTemplateRevisions(String appId,
             String templateGuid, Integer offset, Integer pageSize) {
         checkNotNull(appId);
@@ -113,6 +120,7 @@ public class TemplateRevisionService {
         
         template.setPublishedCreatedOn(createdOn);
         templateDao.updateTemplate(template);
+        templateService.invalidateCachedTemplates(appId, template.getTemplateType());
     }
     
     protected String getUserId() {
@@ -1,6 +1,7 @@
     package org.sagebionetworks.bridge.services;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.toSet;
 import static org.joda.time.DateTimeZone.UTC;
 import static org.sagebionetworks.bridge.BridgeConstants.API_DEFAULT_PAGE_SIZE;
 import static org.sagebionetworks.bridge.BridgeConstants.API_MAXIMUM_PAGE_SIZE;
@@ -26,9 +27,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Triple;
@@ -52,7 +58,6 @@ import org.sagebionetworks.bridge.models.CriteriaContext;
 import org.sagebionetworks.bridge.models.CriteriaUtils;
 import org.sagebionetworks.bridge.models.GuidVersionHolder;
 import org.sagebionetworks.bridge.models.PagedResourceList;
-import org.sagebionetworks.bridge.models.ResourceList;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.apps.MimeType;
 import org.sagebionetworks.bridge.models.templates.Template;
@@ -64,6 +69,24 @@ import org.sagebionetworks.bridge.validators.Validate;
 @Component
 public class TemplateService {
     private static final Logger LOG = LoggerFactory.getLogger(TemplateService.class);
+    
+    // Every email and SMS message selects a template for the caller, which requires all of the app's templates 
+    // of that type and their criteria. These rarely change, so we keep a bounded in-process copy. Entries expire 
+    // so that changes made through another server are eventually picked up; changes through this server 
+    // invalidate immediately. Template revisions are immutable once created, so published revisions are cached 
+    // by template guid and createdOn timestamp.
+    static final int TEMPLATE_CACHE_MAX_SIZE = 1000;
+    static final long TEMPLATE_CACHE_EXPIRE_SECONDS = 60;
+    static final int TEMPLATE_REVISION_CACHE_MAX_SIZE = 1000;
+    static final long TEMPLATE_REVISION_CACHE_EXPIRE_MINUTES = 60;
+    
+    private final Cache<String, List<Template>> templateCache = CacheBuilder.newBuilder()
+            .maximumSize(TEMPLATE_CACHE_MAX_SIZE)
+            .expireAfterWrite(TEMPLATE_CACHE_EXPIRE_SECONDS, TimeUnit.SECONDS).build();
+    
+    private final Cache<String, TemplateRevision> publishedRevisionCache = CacheBuilder.newBuilder()
+            .maximumSize(TEMPLATE_REVISION_CACHE_MAX_SIZE)
+            .expireAfterAccess(TEMPLATE_REVISION_CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).build();
 
     private Map<TemplateType,Triple<String,String,MimeType>> defaultTemplatesMap = new HashMap<>();
     
@@ -218,22 +241,27 @@ public class TemplateService {
 
         Template template = getTemplateForUser(app, context, type)
                 .orElseThrow(() -> new EntityNotFoundException(Template.class));
-        return templateRevisionDao.getTemplateRevision(template.getGuid(), template.getPublishedCreatedOn())
-                .orElseThrow(() -> new EntityNotFoundException(TemplateRevision.class));
+        return getPublishedRevision(template);
+    }
+    
+    /**
+     * Remove any cached templates of this type for the app. Called when a template's published revision 
+     * changes.
+     */
+    public void invalidateCachedTemplates(String appId, TemplateType type) {
+        checkNotNull(appId);
+        checkNotNull(type);
+        
+        templateCache.invalidate(getTemplateCacheKey(appId, type));
     }
     
-    @SuppressWarnings("unchecked")
     Optional<Template> getTemplateForUser(App app, CriteriaContext context, TemplateType type) {
         checkNotNull(context);
         checkNotNull(type);
 
-        ResourceList<Template> results = (ResourceList<Template>)templateDao.getTemplates(
-                context.getAppId(), type, null, null, false);
-        for (Template template : results.getItems()) {
-            loadCriteria(template);
-        }
+        List<Template> templates = getTemplatesWithCriteria(context.getAppId(), type);
 
-        List<Template> templateMatches = CriteriaUtils.filterByCriteria(context, results.getItems(), null);
+        List<Template> templateMatches = CriteriaUtils.filterByCriteria(context, templates, null);
         
         // The ideal case: one and only one template matches the user's context
         if (templateMatches.size() == 1) {
@@ -243,7 +271,11 @@ public class TemplateService {
         String defaultGuid = app.getDefaultTemplates().get(type.name().toLowerCase());
         if (defaultGuid != null) {
             // Specified default may not exist, log as integrity violation, but continue
-            Optional<Template> optional = templateDao.getTemplate(context.getAppId(), defaultGuid);
+            Optional<Template> optional = templates.stream()
+                    .filter(template -> defaultGuid.equals(template.getGuid())).findFirst();
+            if (!optional.isPresent()) {
+                optional = templateDao.getTemplate(context.getAppId(), defaultGuid);
+            }
             if (optional.isPresent()) {
                 return optional;
             }
@@ -255,14 +287,42 @@ public class TemplateService {
             return Optional.of(templateMatches.get(0));
         }
         // Return any template
-        if (results.getItems().size() > 0) {
+        if (templates.size() > 0) {
             LOG.warn("Template matching failed with no default, returning first template found without matching");
-            return Optional.of(results.getItems().get(0));
+            return Optional.of(templates.get(0));
         }
         // There is nothing to return
         return Optional.empty();
     }
     
+    /**
+     * Get all the non-deleted templates of a type for an app, with their criteria, from the cache where 
+     * possible. The criteria for all templates are loaded in one batch call. Callers must treat the returned 
+     * templates as read-only.
+     */
+    List<Template> getTemplatesWithCriteria(String appId, TemplateType type) {
+        String cacheKey = getTemplateCacheKey(appId, type);
+        List<Template> templates = templateCache.getIfPresent(cacheKey);
+        if (templates == null) {
+            List<? extends Template> items = templateDao.getTemplates(appId, type, null, null, false).getItems();
+            loadCriteria(items);
+            templates = ImmutableList.copyOf(items);
+            templateCache.put(cacheKey, templates);
+        }
+        return templates;
+    }
+    
+    private TemplateRevision getPublishedRevision(Template template) {
+        String cacheKey = template.getGuid() + ":" + template.getPublishedCreatedOn();
+        TemplateRevision revision = publishedRevisionCache.getIfPresent(cacheKey);
+        if (revision == null) {
+            revision = templateRevisionDao.getTemplateRevision(template.getGuid(), template.getPublishedCreatedOn())
+                    .orElseThrow(() -> new EntityNotFoundException(TemplateRevision.class));
+            publishedRevisionCache.put(cacheKey, revision);
+        }
+        return revision;
+    }
+    
     public PagedResourceList<? extends Template> getTemplatesForType(String appId, TemplateType type,
             Integer offset, Integer pageSize, boolean includeDeleted) {
         checkNotNull(appId);
@@ -281,9 +341,7 @@ public class TemplateService {
         }
         
         PagedResourceList<? extends Template> templates = templateDao.getTemplates(appId, type, offset, pageSize, includeDeleted);
-        for (Template template : templates.getItems()) {
-            loadCriteria(template);
-        }
+        loadCriteria(templates.getItems());
         return templates;
     }
     
@@ -337,6 +395,7 @@ public class TemplateService {
 
         templateDao.createTemplate(template);
         templateRevisionDao.createTemplateRevision(revision);
+        invalidateCachedTemplates(template.getAppId(), template.getTemplateType());
         return new GuidVersionHolder(template.getGuid(), Long.valueOf(template.getVersion()));
     }
     
@@ -368,6 +427,7 @@ public class TemplateService {
         
         persistCriteria(template);
         templateDao.updateTemplate(template);
+        invalidateCachedTemplates(appId, template.getTemplateType());
         
         return new GuidVersionHolder(template.getGuid(), Long.valueOf(template.getVersion()));
     }
@@ -388,6 +448,7 @@ public class TemplateService {
         existing.setModifiedOn(getTimestamp());
         
         templateDao.updateTemplate(existing);
+        invalidateCachedTemplates(appId, existing.getTemplateType());
     }
     
     public void deleteTemplatePermanently(String appId, String guid) {
@@ -396,10 +457,13 @@ public class TemplateService {
 
         templateDao.deleteTemplatePermanently(appId, guid);
         criteriaDao.deleteCriteria(getKey(template));
+        invalidateCachedTemplates(appId, template.getTemplateType());
     }
     
     public void deleteTemplatesForApp(String appId) {
         templateDao.deleteTemplatesForApp(appId);
+        String keyPrefix = appId + ":";
+        templateCache.asMap().keySet().removeIf(key -> key.startsWith(keyPrefix));
     }
 
     private boolean isDefaultTemplate(Template template, String appId) {
@@ -430,6 +494,25 @@ public class TemplateService {
         template.setCriteria(criteria);
     }
     
+    private void loadCriteria(List<? extends Template> templates) {
+        if (templates.isEmpty()) {
+            return;
+        }
+        Set<String> keys = templates.stream().map(this::getKey).collect(toSet());
+        Map<String, Criteria> criteriaMap = criteriaDao.batchGetCriteria(keys);
+        for (Template template : templates) {
+            Criteria criteria = criteriaMap.get(getKey(template));
+            if (criteria == null) {
+                criteria = Criteria.create();
+            }
+            template.setCriteria(criteria);
+        }
+    }
+    
+    private String getTemplateCacheKey(String appId, TemplateType type) {
+        return appId + ":" + type.name();
+    }
+    
     String generateGuid() {
         return BridgeUtils.generateGuid();
     }
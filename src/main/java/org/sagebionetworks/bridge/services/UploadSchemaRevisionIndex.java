@@ -0,0 +1,115 @@
+package org.sagebionetworks.bridge.services;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.sagebionetworks.bridge.models.ClientInfo;
+import org.sagebionetworks.bridge.models.upload.UploadSchema;
+
+/**
+ * The revisions of one upload schema, indexed by the app versions that each revision is available to. For each OS
+ * that any revision constrains, the app versions are divided into ranges in which the same revisions are available,
+ * and the latest of those revisions is found ahead of time. Finding the latest revision for a client is then a binary
+ * search on the client's app version. Clients on any other OS, or that don't report an OS and app version, get the
+ * latest revision.
+ *
+ * Revisions are available to a client using the same permissive rules as before: the client's app version must be no
+ * lower than the revision's minAppVersion and no higher than its maxAppVersion for the client's OS, where either may
+ * be missing.
+ */
+class UploadSchemaRevisionIndex {
+    private final UploadSchema latestRevision;
+    private final Map<String, OsIndex> osIndexes;
+
+    UploadSchemaRevisionIndex(List<UploadSchema> revisions) {
+        UploadSchema[] sorted = revisions.stream().sorted(Comparator.comparingInt(UploadSchema::getRevision))
+                .toArray(UploadSchema[]::new);
+        this.latestRevision = (sorted.length == 0) ? null : sorted[sorted.length - 1];
+
+        Set<String> osNames = new TreeSet<>();
+        for (UploadSchema revision : sorted) {
+            osNames.addAll(revision.getAppVersionOperatingSystems());
+        }
+        ImmutableMap.Builder<String, OsIndex> builder = ImmutableMap.builder();
+        for (String osName : osNames) {
+            builder.put(osName, new OsIndex(osName, sorted));
+        }
+        this.osIndexes = builder.build();
+    }
+
+    /** The latest revision available to the client, or null if no revision is available to it. */
+    UploadSchema getLatestRevision(ClientInfo clientInfo) {
+        String osName = clientInfo.getOsName();
+        Integer appVersion = clientInfo.getAppVersion();
+        if (osName == null || appVersion == null) {
+            return latestRevision;
+        }
+        OsIndex osIndex = osIndexes.get(osName);
+        if (osIndex == null) {
+            return latestRevision;
+        }
+        return osIndex.getLatestRevision(appVersion);
+    }
+
+    private static class OsIndex {
+        // rangeStarts[i] is the lowest app version of the i-th range, and latestRevisions[i] is the latest revision
+        // available to every app version in that range (or null). The first range starts at Integer.MIN_VALUE.
+        private final int[] rangeStarts;
+        private final UploadSchema[] latestRevisions;
+
+        // Revisions must be sorted by revision number.
+        OsIndex(String osName, UploadSchema[] revisions) {
+            // Availability can only change at a minAppVersion, or just after a maxAppVersion.
+            TreeSet<Integer> starts = new TreeSet<>();
+            starts.add(Integer.MIN_VALUE);
+            for (UploadSchema revision : revisions) {
+                Integer min = revision.getMinAppVersion(osName);
+                if (min != null) {
+                    starts.add(min);
+                }
+                Integer max = revision.getMaxAppVersion(osName);
+                if (max != null && max < Integer.MAX_VALUE) {
+                    starts.add(max + 1);
+                }
+            }
+
+            this.rangeStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+            this.latestRevisions = new UploadSchema[rangeStarts.length];
+            for (int i = 0; i < rangeStarts.length; i++) {
+                // Every app version in a range has the same revisions available, so it's enough to check the first.
+                int appVersion = rangeStarts[i];
+                for (int j = revisions.length - 1; j >= 0; j--) {
+                    if (isAvailable(revisions[j], osName, appVersion)) {
+                        latestRevisions[i] = revisions[j];
+                        break;
+                    }
+                }
+            }
+        }
+
+        UploadSchema getLatestRevision(int appVersion) {
+            int index = Arrays.binarySearch(rangeStarts, appVersion);
+            if (index < 0) {
+                // Not a range start, so it's in the range before the insertion point. The first range starts at
+                // Integer.MIN_VALUE, so there always is one.
+                index = -index - 2;
+            }
+            return latestRevisions[index];
+        }
+
+        private static boolean isAvailable(UploadSchema revision, String osName, int appVersion) {
+            Integer min = revision.getMinAppVersion(osName);
+            if (min != null && appVersion < min) {
+                return false;
+            }
+            Integer max = revision.getMaxAppVersion(osName);
+            return max == null || appVersion <= max;
+        }
+    }
+}
@@ -10,7 +10,10 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -20,6 +23,7 @@ import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.dao.UploadSchemaDao;
+import org.sagebionetworks.bridge.dynamodb.DynamoUploadSchema;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
@@ -39,8 +43,24 @@ import org.sagebionetworks.bridge.validators.Validate;
  */
 @Component
 public class UploadSchemaService {
+    // Upload processing looks up the same handful of schema revisions for every upload. Revisions are small and
+    // rarely change, so we keep a bounded in-process copy. Entries expire so that updates made through another
+    // server are eventually picked up; updates and deletes through this server invalidate immediately.
+    static final int SCHEMA_REVISION_CACHE_MAX_SIZE = 1000;
+    static final long SCHEMA_REVISION_CACHE_EXPIRE_MINUTES = 5;
+
+    private final Cache<String, UploadSchema> schemaRevisionCache = CacheBuilder.newBuilder()
+            .maximumSize(SCHEMA_REVISION_CACHE_MAX_SIZE)
+            .expireAfterWrite(SCHEMA_REVISION_CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).build();
+    // Scheduling and upload processing find the latest revision of a schema for each client, so the revisions of each
+    // schema are indexed by app version. These follow the same rules as the revisions above.
+    private final Cache<String, UploadSchemaRevisionIndex> revisionIndexCache = CacheBuilder.newBuilder()
+            .maximumSize(SCHEMA_REVISION_CACHE_MAX_SIZE)
+            .expireAfterWrite(SCHEMA_REVISION_CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).build();
+
     private SharedModuleMetadataService sharedModuleMetadataService;
     private UploadSchemaDao uploadSchemaDao;
+    private ReferenceResolutionCache referenceResolutionCache;
 
     /** DAO for upload schemas. This is configured by Spring. */
     @Autowired
@@ -53,6 +73,11 @@ public class UploadSchemaService {
         this.sharedModuleMetadataService = sharedModuleMetadataService;
     }
 
+    @Autowired
+    final void setReferenceResolutionCache(ReferenceResolutionCache referenceResolutionCache) {
+        this.referenceResolutionCache = referenceResolutionCache;
+    }
+
     /**
      * Creates a schema revision using the new V4 semantics. The schema ID and revision will be taken from the
      * UploadSchema object. If the revision isn't specified, we'll get the latest schema rev for the schema ID and use
@@ -78,7 +103,9 @@ public class UploadSchemaService {
         Validate.entityThrowingException(UploadSchemaValidator.INSTANCE, schema);
 
         // call through to DAO
-        return uploadSchemaDao.createSchemaRevision(schema);
+        UploadSchema created = uploadSchemaDao.createSchemaRevision(schema);
+        invalidateCachedRevisions(appId, schema.getSchemaId());
+        return created;
     }
 
     /**
@@ -114,7 +141,9 @@ public class UploadSchemaService {
         Validate.entityThrowingException(UploadSchemaValidator.INSTANCE, schema);
 
         // call through to DAO
-        return uploadSchemaDao.createSchemaRevision(schema);
+        UploadSchema created = uploadSchemaDao.createSchemaRevision(schema);
+        invalidateCachedRevisions(appId, schema.getSchemaId());
+        return created;
     }
 
     /**
@@ -219,6 +248,7 @@ public class UploadSchemaService {
 
         List<UploadSchema> schemaList = getSchemaRevisionsForDelete(appId, schemaId);
         uploadSchemaDao.deleteUploadSchemas(schemaList);
+        invalidateCachedRevisions(appId, schemaId);
     }
 
     public void deleteUploadSchemaByIdPermanently(String appId, String schemaId) {
@@ -226,6 +256,7 @@ public class UploadSchemaService {
 
         List<UploadSchema> schemaList = getSchemaRevisionsForDelete(appId, schemaId);
         uploadSchemaDao.deleteUploadSchemasPermanently(schemaList);
+        invalidateCachedRevisions(appId, schemaId);
     }
 
     protected List<UploadSchema> getSchemaRevisionsForDelete(String appId, String schemaId) {
@@ -259,7 +290,8 @@ public class UploadSchemaService {
         if (schema == null || schema.isDeleted()) {
             throw new EntityNotFoundException(UploadSchema.class);
         }
-        uploadSchemaDao.deleteUploadSchemas(ImmutableList.of(schema));    
+        uploadSchemaDao.deleteUploadSchemas(ImmutableList.of(schema));
+        invalidateCachedRevisions(appId, schemaId);
     }
     
     public void deleteUploadSchemaByIdAndRevisionPermanently(String appId, String schemaId, int rev) {
@@ -269,7 +301,8 @@ public class UploadSchemaService {
         if (schema == null) {
             throw new EntityNotFoundException(UploadSchema.class);
         }
-        uploadSchemaDao.deleteUploadSchemasPermanently(ImmutableList.of(schema));    
+        uploadSchemaDao.deleteUploadSchemasPermanently(ImmutableList.of(schema));
+        invalidateCachedRevisions(appId, schemaId);
     }
 
     /** Returns all revisions of all schemas. */
@@ -392,44 +425,66 @@ public class UploadSchemaService {
     }
 
     /**
-     * Gets the latest available revision of the specified schema for the specified client. This API fetches every
-     * schema revision for the specified schema ID, then checks the schema's min/maxAppVersion against the clientInfo.
-     * If multiple schema revisions match, it returns the latest one.
+     * Same as {@link #getUploadSchemaByIdAndRevNoThrow}, but served from an in-process cache where possible. This is
+     * intended for upload processing, which reads the same schema revisions over and over. Each call returns its own
+     * copy of the cached schema, so concurrent upload handlers can't see each other's changes. Missing schemas are not
+     * cached.
      */
-    public UploadSchema getLatestUploadSchemaRevisionForAppVersion(String appId, String schemaId,
-            ClientInfo clientInfo) {
-        checkNotNull(appId, "App ID must be specified");
-        checkNotNull(clientInfo, "Client Info must be specified");
+    public UploadSchema getUploadSchemaByIdAndRevCached(String appId, String schemaId, int revision) {
+        String cacheKey = getSchemaRevisionCacheKey(appId, schemaId, revision);
+        UploadSchema schema = schemaRevisionCache.getIfPresent(cacheKey);
+        if (schema == null) {
+            schema = getUploadSchemaByIdAndRevNoThrow(appId, schemaId, revision);
+            if (schema != null) {
+                schemaRevisionCache.put(cacheKey, schema);
+            }
+        }
+        return copyOf(schema);
+    }
 
-        List<UploadSchema> schemaList = getUploadSchemaAllRevisions(appId, schemaId, false);
-        return schemaList.stream().filter(schema -> isSchemaAvailableForClientInfo(schema, clientInfo))
-                .max((schema1, schema2) -> Integer.compare(schema1.getRevision(), schema2.getRevision())).orElse(null);
+    // Cached schemas are mutable and shared between threads, so callers get a copy.
+    private static UploadSchema copyOf(UploadSchema schema) {
+        return (schema == null) ? null : new DynamoUploadSchema((DynamoUploadSchema) schema);
     }
 
-    // Helper method which checks if a schema is available for a client, by checking the schema's min/maxAppVersion
-    // against the client's OS and appVersion.
-    //
-    // This filter is permissive. If neither the ClientInfo nor the constraints in the schema exclude this schema,
-    // then the schema is available.
-    //
-    // Package-scoped to facilitate unit tests.
-    static boolean isSchemaAvailableForClientInfo(UploadSchema schema, ClientInfo clientInfo) {
-        String osName = clientInfo.getOsName();
-        Integer appVersion = clientInfo.getAppVersion();
-        if (osName != null && appVersion != null) {
-            Integer minAppVersion = schema.getMinAppVersion(osName);
-            if (minAppVersion != null && appVersion < minAppVersion) {
-                return false;
-            }
+    // Removes all cached revisions of the given schema, its revision index, and the revision that each client resolves
+    // it to.
+    private void invalidateCachedRevisions(String appId, String schemaId) {
+        String keyPrefix = getSchemaRevisionCacheKey(appId, schemaId, "");
+        schemaRevisionCache.asMap().keySet().removeIf(key -> key.startsWith(keyPrefix));
+        revisionIndexCache.invalidate(getRevisionIndexCacheKey(appId, schemaId));
+        referenceResolutionCache.invalidateSchema(appId, schemaId);
+    }
 
-            Integer maxAppVersion = schema.getMaxAppVersion(osName);
-            if (maxAppVersion != null && appVersion > maxAppVersion) {
-                return false;
-            }
+    private static String getSchemaRevisionCacheKey(String appId, String schemaId, Object revision) {
+        return appId + ":" + schemaId + ":" + revision;
+    }
+
+    private static String getRevisionIndexCacheKey(String appId, String schemaId) {
+        return appId + ":" + schemaId;
+    }
+
+    /**
+     * Gets the latest available revision of the specified schema for the specified client, by checking each schema
+     * revision's min/maxAppVersion against the clientInfo. If multiple schema revisions match, it returns the latest
+     * one. The revisions are indexed by app version and served from an in-process cache where possible. Each call
+     * returns its own copy of the cached revision, since it is passed on to ReferenceResolver and API responses.
+     */
+    public UploadSchema getLatestUploadSchemaRevisionForAppVersion(String appId, String schemaId,
+            ClientInfo clientInfo) {
+        checkNotNull(appId, "App ID must be specified");
+        checkNotNull(clientInfo, "Client Info must be specified");
+        if (StringUtils.isBlank(schemaId)) {
+            throw new BadRequestException("Schema ID must be specified");
         }
 
-        // Permissive filter defaults to true.
-        return true;
+        String cacheKey = getRevisionIndexCacheKey(appId, schemaId);
+        UploadSchemaRevisionIndex index = revisionIndexCache.getIfPresent(cacheKey);
+        if (index == null) {
+            index = new UploadSchemaRevisionIndex(getUploadSchemaAllRevisions(appId, schemaId, false));
+            revisionIndexCache.put(cacheKey, index);
+        }
+        return copyOf(index.getLatestRevision(clientInfo));
     }
 
     /**
@@ -512,7 +567,9 @@ public class UploadSchemaService {
         }
 
         // Call through to the DAO
-        return uploadSchemaDao.updateSchemaRevision(schemaToUpdate);
+        UploadSchema updatedSchema = uploadSchemaDao.updateSchemaRevision(schemaToUpdate);
+        invalidateCachedRevisions(appId, schemaId);
+        return updatedSchema;
     }
 
     // Helper method to get a map of fields by name for an Upload Schema. Returns a TreeMap so our error messaging has
@@ -12,6 +12,8 @@ import java.net.URL;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
@@ -19,7 +21,6 @@ import javax.annotation.Nullable;
 import javax.annotation.Resource;
 
 import com.amazonaws.HttpMethod;
-import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
@@ -52,6 +53,7 @@ import org.sagebionetworks.bridge.models.upload.UploadSession;
 import org.sagebionetworks.bridge.models.upload.UploadStatus;
 import org.sagebionetworks.bridge.models.upload.UploadValidationStatus;
 import org.sagebionetworks.bridge.models.upload.UploadView;
+import org.sagebionetworks.bridge.upload.UploadCompletionRegistry;
 import org.sagebionetworks.bridge.validators.UploadValidator;
 import org.sagebionetworks.bridge.validators.Validate;
 
@@ -75,11 +77,8 @@ public class UploadService {
     private UploadValidationService uploadValidationService;
     private Validator validator;
 
-    // These parameters can be overriden to facilitate testing.
-    // By default, we sleep 5 seconds, including right at the start and end. This means on our 7th iteration,
-    // 30 seconds will have passed.
-    private int pollValidationStatusMaxIterations = 7;
-    private long pollValidationStatusSleepMillis = 5000;
+    private UploadCompletionRegistry uploadCompletionRegistry;
+    private ExecutorService asyncExecutorService;
 
     /** Sets parameters from the specified Bridge config. */
     @Autowired
@@ -131,20 +130,16 @@ public class UploadService {
         this.validator = validator;
     }
 
-    /**
-     * Number of iterations while polling for validation status before we time out. This is used primarily by tests to
-     * reduce the amount of wait time during tests.
-     */
-    public final void setPollValidationStatusMaxIterations(int pollValidationStatusMaxIterations) {
-        this.pollValidationStatusMaxIterations = pollValidationStatusMaxIterations;
+    /** Registry of callers waiting for upload validation to complete. */
+    @Autowired
+    final void setUploadCompletionRegistry(UploadCompletionRegistry uploadCompletionRegistry) {
+        this.uploadCompletionRegistry = uploadCompletionRegistry;
     }
 
-    /**
-     * Milliseconds to sleep per iterations while polling for validation status. This is used primarily by tests to
-     * reduce the amount of wait time during tests.
-     */
-    public final void setPollValidationStatusSleepMillis(long pollValidationStatusSleepMillis) {
-        this.pollValidationStatusSleepMillis = pollValidationStatusSleepMillis;
+    /** Async thread pool, used to read the validation status once validation completes. */
+    @Resource(name = "asyncExecutorService")
+    final void setAsyncExecutorService(ExecutorService asyncExecutorService) {
+        this.asyncExecutorService = asyncExecutorService;
     }
 
     public UploadSession createUpload(String appId, StudyParticipant participant, UploadRequest uploadRequest) {
@@ -208,8 +203,7 @@ public class UploadService {
         presignedUrlRequest.setExpiration(expiration);
 
         // Temporary session credentials
-        AWSStaticCredentialsProvider credentialsProvider = new AWSStaticCredentialsProvider(uploadCredentailsService.getSessionCredentials());
-        presignedUrlRequest.setRequestCredentialsProvider(credentialsProvider);
+        presignedUrlRequest.setRequestCredentialsProvider(uploadCredentailsService.getSessionCredentialsProvider());
 
         // Ask for server-side encryption
         presignedUrlRequest.addRequestParameter(SERVER_SIDE_ENCRYPTION, AES_256_SERVER_SIDE_ENCRYPTION);
@@ -366,35 +360,45 @@ public class UploadService {
     }
 
     /**
-     * Polls for validation status for a given upload ID. Polls until validation is complete or otherwise is in a state
-     * where further polling won't get any results (like validation failed, or upload is requested but not yet
-     * uploaded), or until it times out. See getUploadValidationStatus() for more details.
+     * Gets the validation status for a given upload ID once validation is complete or otherwise is in a state where
+     * waiting won't get any results (like validation failed, or upload is requested but not yet uploaded). See
+     * getUploadValidationStatus() for more details. Rather than polling, this waits for the upload validation task to
+     * signal that it's done, so no thread is held while waiting. The returned future never times out; callers that
+     * stop waiting should cancel it.
      */
-    public UploadValidationStatus pollUploadValidationStatusUntilComplete(String uploadId) {
-        // Loop logic is a little wonky. (Loop-and-a-half problem.) Use an infinite loop here and rely on tests to make
-        // sure we don't go infinite.
-        int numIters = 0;
-        while (true) {
-            UploadValidationStatus validationStatus = getUploadValidationStatus(uploadId);
-            if (validationStatus.getStatus() != UploadStatus.VALIDATION_IN_PROGRESS) {
-                // Validation is either finished processing, or otherwise in a state where it's pointless to wait.
-                // Return the answer we have now.
-                return validationStatus;
-            }
-
-            // Short-circuit: If we've elapsed our timeout, just exit now. Don't wait for a sleep.
-            numIters++;
-            if (numIters >= pollValidationStatusMaxIterations) {
-                throw new BridgeServiceException("Timeout polling validation status for upload " + uploadId);
-            }
+    public CompletableFuture<UploadValidationStatus> getUploadValidationStatusWhenComplete(String uploadId) {
+        // Register before reading the status, so a validation that finishes in between isn't missed.
+        CompletableFuture<Void> completion = uploadCompletionRegistry.register(uploadId);
+        UploadValidationStatus validationStatus;
+        try {
+            validationStatus = getUploadValidationStatus(uploadId);
+        } catch (RuntimeException ex) {
+            uploadCompletionRegistry.unregister(uploadId, completion);
+            throw ex;
+        }
+        if (validationStatus.getStatus() != UploadStatus.VALIDATION_IN_PROGRESS) {
+            // Validation is either finished processing, or otherwise in a state where it's pointless to wait.
+            // Return the answer we have now.
+            uploadCompletionRegistry.unregister(uploadId, completion);
+            return CompletableFuture.completedFuture(validationStatus);
+        }
+        CompletableFuture<UploadValidationStatus> future = completion.thenApplyAsync(
+                (v) -> getUploadValidationStatus(uploadId), asyncExecutorService);
+        // If the caller cancels, stop waiting for completion.
+        future.whenComplete((status, ex) -> uploadCompletionRegistry.unregister(uploadId, completion));
+        return future;
+    }
 
-            // Sleep and try again.
-            try {
-                Thread.sleep(pollValidationStatusSleepMillis);
-            } catch (InterruptedException ex) {
-                logger.error("Interrupted while polling for validation status: " + ex.getMessage());
-            }
+    /**
+     * Called when a caller gives up waiting for validation to complete. Completion signals from other servers are
+     * not guaranteed to arrive, so this checks the validation status one last time before reporting a timeout.
+     */
+    public UploadValidationStatus getUploadValidationStatusAfterTimeout(String uploadId) {
+        UploadValidationStatus validationStatus = getUploadValidationStatus(uploadId);
+        if (validationStatus.getStatus() == UploadStatus.VALIDATION_IN_PROGRESS) {
+            throw new BridgeServiceException("Timeout polling validation status for upload " + uploadId);
         }
+        return validationStatus;
     }
 
     public void uploadComplete(String appId, UploadCompletionClient completedBy, Upload upload,
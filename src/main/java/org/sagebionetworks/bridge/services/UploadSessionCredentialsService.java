@@ -1,24 +1,41 @@
 package org.sagebionetworks.bridge.services;
 
-import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
-import org.joda.time.DateTime;
-import org.joda.time.DateTimeZone;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.joda.time.DateTimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.AWSSessionCredentials;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicSessionCredentials;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClient;
 import com.amazonaws.services.securitytoken.model.Credentials;
 import com.amazonaws.services.securitytoken.model.GetSessionTokenRequest;
 import com.amazonaws.services.securitytoken.model.GetSessionTokenResult;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.sagebionetworks.bridge.metrics.MetricsSource;
 
 /**
- * Generates session-based, temporary credentials.
+ * Generates session-based, temporary credentials. Credentials are renewed by a background thread well before they
+ * expire, so that callers only ever read the current credentials and never wait on STS. If the background refresh
+ * keeps failing and the credentials get close to expiring, callers fall back to renewing them synchronously. The
+ * latency of the last refresh and the age of the current credentials are reported in the metrics snapshot.
  */
 @Component
-public class UploadSessionCredentialsService {
+public class UploadSessionCredentialsService implements MetricsSource {
+    private static final Logger LOG = LoggerFactory.getLogger(UploadSessionCredentialsService.class);
 
     /**
      * The duration in seconds of which the credentials will remain valid.
@@ -26,14 +43,29 @@ public class UploadSessionCredentialsService {
     private static final int EXPIRATION_IN_SECONDS = 1200; // 20 minutes
 
     /**
-     * The margin within which we will need to regenerated the credentials
-     * before they expire.
+     * The margin within which the background thread renews the credentials before they expire.
+     */
+    static final int REFRESH_AHEAD_IN_SECONDS = 600; // 10 minutes
+
+    /**
+     * The margin within which callers will need to regenerate the credentials themselves before they expire.
+     */
+    static final int MARGIN_IN_SECONDS = 300; // 5 minutes
+
+    /**
+     * How often the background thread checks whether the credentials need to be renewed.
      */
-    private static final int MARGIN_IN_SECONDS = 300; // 5 minutes
+    static final int REFRESH_CHECK_INTERVAL_IN_SECONDS = 60;
 
     private final AWSSecurityTokenServiceClient tokenServiceClient;
 
-    private volatile Credentials credentials;
+    private volatile SessionCredentials credentials;
+    private ScheduledExecutorService refreshExecutor;
+
+    // Refresh metrics
+    private volatile long lastRefreshLatencyMillis;
+    private final LongAdder refreshCount = new LongAdder();
+    private final LongAdder refreshFailureCount = new LongAdder();
 
     @Autowired
     public UploadSessionCredentialsService(AWSSecurityTokenServiceClient tokenServiceClient) {
@@ -41,28 +73,132 @@ public class UploadSessionCredentialsService {
         credentials = generateCredentials();
     }
 
+    /** Starts renewing the credentials in the background. */
+    @PostConstruct
+    public void start() {
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("upload-credentials-refresh").setDaemon(true).build());
+        refreshExecutor.scheduleWithFixedDelay(this::refreshIfNeeded, REFRESH_CHECK_INTERVAL_IN_SECONDS,
+                REFRESH_CHECK_INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
     public AWSSessionCredentials getSessionCredentials() {
-        Date expiration = credentials.getExpiration();
-        Date now = DateTime.now(DateTimeZone.UTC).plusSeconds(MARGIN_IN_SECONDS).toDate();
-        if (now.after(expiration)) {
+        return getCurrentCredentials().sessionCredentials;
+    }
+
+    /**
+     * A credentials provider for the current credentials. The same provider is returned until the credentials are
+     * renewed, so it doesn't need to be created for every request that uses it.
+     */
+    public AWSCredentialsProvider getSessionCredentialsProvider() {
+        return getCurrentCredentials().provider;
+    }
+
+    /** The time taken by the last call to STS to renew the credentials, in milliseconds. */
+    public long getLastRefreshLatencyMillis() {
+        return lastRefreshLatencyMillis;
+    }
+
+    /** The number of times the credentials have been renewed. */
+    public long getRefreshCount() {
+        return refreshCount.sum();
+    }
+
+    /** The number of failed attempts to renew the credentials. */
+    public long getRefreshFailureCount() {
+        return refreshFailureCount.sum();
+    }
+
+    /** How long ago the current credentials were generated, in milliseconds. */
+    public long getCredentialsAgeMillis() {
+        return DateTimeUtils.currentTimeMillis() - credentials.generatedOn;
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "uploadCredentials";
+    }
+
+    @Override
+    public void writeMetrics(ObjectNode node) {
+        node.put("refreshes", getRefreshCount());
+        node.put("refreshFailures", getRefreshFailureCount());
+        node.put("lastRefreshLatencyMillis", getLastRefreshLatencyMillis());
+        node.put("credentialsAgeMillis", getCredentialsAgeMillis());
+    }
+
+    private SessionCredentials getCurrentCredentials() {
+        SessionCredentials current = credentials;
+        if (current.expiresWithin(MARGIN_IN_SECONDS)) {
+            // The background refresh is behind (most likely STS has been failing). Renew the credentials here.
             synchronized(this) {
-                expiration = credentials.getExpiration();
-                now = DateTime.now(DateTimeZone.UTC).plusSeconds(MARGIN_IN_SECONDS).toDate();
-                if (now.after(expiration)) {
-                    credentials = generateCredentials();
+                current = credentials;
+                if (current.expiresWithin(MARGIN_IN_SECONDS)) {
+                    current = refresh();
                 }
             }
         }
-        return new BasicSessionCredentials(
-                credentials.getAccessKeyId(),
-                credentials.getSecretAccessKey(),
-                credentials.getSessionToken());
+        return current;
     }
 
-    private Credentials generateCredentials() {
+    // Runs on the refresh thread. Package-scoped for unit tests.
+    void refreshIfNeeded() {
+        try {
+            if (credentials.expiresWithin(REFRESH_AHEAD_IN_SECONDS)) {
+                synchronized(this) {
+                    if (credentials.expiresWithin(REFRESH_AHEAD_IN_SECONDS)) {
+                        refresh();
+                    }
+                }
+            }
+        } catch (RuntimeException ex) {
+            // Keep the current credentials, and try again at the next check.
+            refreshFailureCount.increment();
+            LOG.error("Error refreshing upload session credentials: " + ex.getMessage(), ex);
+        }
+    }
+
+    // Must be called while synchronized on this.
+    private SessionCredentials refresh() {
+        long startMillis = DateTimeUtils.currentTimeMillis();
+        credentials = generateCredentials();
+        lastRefreshLatencyMillis = DateTimeUtils.currentTimeMillis() - startMillis;
+        refreshCount.increment();
+        LOG.info("Refreshed upload session credentials in " + lastRefreshLatencyMillis + " ms");
+        return credentials;
+    }
+
+    private SessionCredentials generateCredentials() {
         GetSessionTokenRequest getSessionTokenRequest = new GetSessionTokenRequest();
         getSessionTokenRequest.setDurationSeconds(EXPIRATION_IN_SECONDS);
         GetSessionTokenResult sessionTokenResult = tokenServiceClient.getSessionToken(getSessionTokenRequest);
-        return sessionTokenResult.getCredentials();
+        return new SessionCredentials(sessionTokenResult.getCredentials());
+    }
+
+    // Credentials from STS, along with the credentials objects handed out to callers.
+    private static final class SessionCredentials {
+        private final AWSSessionCredentials sessionCredentials;
+        private final AWSCredentialsProvider provider;
+        private final long expiresOn;
+        private final long generatedOn;
+
+        SessionCredentials(Credentials credentials) {
+            this.sessionCredentials = new BasicSessionCredentials(credentials.getAccessKeyId(),
+                    credentials.getSecretAccessKey(), credentials.getSessionToken());
+            this.provider = new AWSStaticCredentialsProvider(sessionCredentials);
+            this.expiresOn = credentials.getExpiration().getTime();
+            this.generatedOn = DateTimeUtils.currentTimeMillis();
+        }
+
+        boolean expiresWithin(int seconds) {
+            return DateTimeUtils.currentTimeMillis() + TimeUnit.SECONDS.toMillis(seconds) > expiresOn;
+        }
     }
 }
@@ -4,11 +4,24 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sagebionetworks.bridge.models.accounts.SharingScope.NO_SHARING;
 
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import javax.annotation.Resource;
+
+import com.fasterxml.jackson.core.type.TypeReference;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import org.sagebionetworks.bridge.cache.CacheKey;
 import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.ConsentRequiredException;
 import org.sagebionetworks.bridge.time.DateUtils;
 import org.sagebionetworks.bridge.models.CriteriaContext;
@@ -30,6 +43,18 @@ import org.springframework.stereotype.Component;
 
 @Component("userAdminService")
 public class UserAdminService {
+    private static final Logger LOG = LoggerFactory.getLogger(UserAdminService.class);
+
+    /** Keep the record of partially purged participant data for a day, so a failed delete can be resumed. */
+    static final int PURGE_PROGRESS_EXPIRE_IN_SECONDS = 24*60*60;
+    private static final TypeReference<Set<String>> STRING_SET_TYPE_REF = new TypeReference<Set<String>>() {};
+
+    static final String HEALTH_DATA_STEP = "healthData";
+    static final String HEALTH_DATA_EX3_STEP = "healthDataEx3";
+    static final String NOTIFICATION_REGISTRATIONS_STEP = "notificationRegistrations";
+    static final String UPLOADS_STEP = "uploads";
+    static final String SCHEDULED_ACTIVITIES_STEP = "scheduledActivities";
+    static final String ACTIVITY_EVENTS_STEP = "activityEvents";
 
     private AuthenticationService authenticationService;
     private NotificationsService notificationsService;
@@ -43,6 +68,7 @@ public class UserAdminService {
     private CacheProvider cacheProvider;
     private UploadService uploadService;
     private RequestInfoService requestInfoService;
+    private ExecutorService participantPurgeExecutorService;
 
     @Autowired
     final void setAuthenticationService(AuthenticationService authenticationService) {
@@ -95,6 +121,11 @@ public class UserAdminService {
     final void setRequestInfoService(RequestInfoService requestInfoService) {
         this.requestInfoService = requestInfoService;
     }
+    /** Bounded pool used to delete a participant's data from several tables at once. */
+    @Resource(name = "participantPurgeExecutorService")
+    final void setParticipantPurgeExecutorService(ExecutorService participantPurgeExecutorService) {
+        this.participantPurgeExecutorService = participantPurgeExecutorService;
+    }
     
     /**
      * Create a user and optionally consent the user and/or sign the user in. If a specific subpopulation 
@@ -203,17 +234,68 @@ public class UserAdminService {
             requestInfoService.removeRequestInfo(account.getId());
             
             String healthCode = account.getHealthCode();
-            healthDataService.deleteRecordsForHealthCode(healthCode);
-            healthDataEx3Service.deleteRecordsForHealthCode(healthCode);
-            notificationsService.deleteAllRegistrations(app.getIdentifier(), healthCode);
-            uploadService.deleteUploadsForHealthCode(healthCode);
-            scheduledActivityService.deleteActivitiesForUser(healthCode);
-            account.getEnrollments().forEach(
-                    en -> activityEventService.deleteActivityEvents(en.getStudyId(), healthCode));
-            activityEventService.deleteActivityEvents(null, healthCode);
+            Map<String, Runnable> purgeSteps = new LinkedHashMap<>();
+            purgeSteps.put(HEALTH_DATA_STEP, () -> healthDataService.deleteRecordsForHealthCode(healthCode));
+            purgeSteps.put(HEALTH_DATA_EX3_STEP, () -> healthDataEx3Service.deleteRecordsForHealthCode(healthCode));
+            purgeSteps.put(NOTIFICATION_REGISTRATIONS_STEP,
+                    () -> notificationsService.deleteAllRegistrations(app.getIdentifier(), healthCode));
+            purgeSteps.put(UPLOADS_STEP, () -> uploadService.deleteUploadsForHealthCode(healthCode));
+            purgeSteps.put(SCHEDULED_ACTIVITIES_STEP,
+                    () -> scheduledActivityService.deleteActivitiesForUser(healthCode));
+            purgeSteps.put(ACTIVITY_EVENTS_STEP, () -> {
+                account.getEnrollments().forEach(
+                        en -> activityEventService.deleteActivityEvents(en.getStudyId(), healthCode));
+                activityEventService.deleteActivityEvents(null, healthCode);
+            });
+            purgeParticipantData(account.getId(), purgeSteps);
+            
             // AccountSecret records and Enrollment records are are deleted on a 
             // cascading delete from Account
             accountService.deleteAccount(accountId);
         }
     }
+
+    /**
+     * Runs the purge steps for a participant concurrently on the purge executor. Steps that completed in an earlier,
+     * failed attempt (recorded in the cache) are skipped, so deleting a participant with a lot of data can be retried
+     * until it succeeds without redoing work. If any step fails, progress is saved and the first error is rethrown.
+     */
+    void purgeParticipantData(String userId, Map<String, Runnable> purgeSteps) {
+        CacheKey progressKey = CacheKey.participantPurgeProgress(userId);
+        Set<String> completedSteps = cacheProvider.getObject(progressKey, STRING_SET_TYPE_REF);
+        if (completedSteps == null) {
+            completedSteps = new HashSet<>();
+        }
+
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, Runnable> step : purgeSteps.entrySet()) {
+            if (!completedSteps.contains(step.getKey())) {
+                futures.put(step.getKey(), participantPurgeExecutorService.submit(step.getValue()));
+            }
+        }
+
+        RuntimeException firstError = null;
+        for (Map.Entry<String, Future<?>> future : futures.entrySet()) {
+            try {
+                future.getValue().get();
+                completedSteps.add(future.getKey());
+            } catch (ExecutionException e) {
+                LOG.warn("Error purging " + future.getKey() + " for user " + userId, e.getCause());
+                if (firstError == null) {
+                    firstError = (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause()
+                            : new BridgeServiceException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (firstError == null) {
+                    firstError = new BridgeServiceException(e);
+                }
+            }
+        }
+        if (firstError != null) {
+            cacheProvider.setObject(progressKey, completedSteps, PURGE_PROGRESS_EXPIRE_IN_SECONDS);
+            throw firstError;
+        }
+        cacheProvider.removeObject(progressKey);
+    }
 }
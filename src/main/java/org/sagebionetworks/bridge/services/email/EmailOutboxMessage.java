@@ -0,0 +1,69 @@
+package org.sagebionetworks.bridge.services.email;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A raw MIME message for one recipient, waiting in the email outbox to be sent to SES. The email type, app and
+ * request ID are carried along for logging. Raw message bytes are serialized as Base64.
+ */
+public final class EmailOutboxMessage {
+    private final EmailType emailType;
+    private final String appId;
+    private final String requestId;
+    private final String source;
+    private final String recipient;
+    private final byte[] rawMessage;
+    private String receipt;
+
+    @JsonCreator
+    public EmailOutboxMessage(@JsonProperty("emailType") EmailType emailType, @JsonProperty("appId") String appId,
+            @JsonProperty("requestId") String requestId, @JsonProperty("source") String source,
+            @JsonProperty("recipient") String recipient, @JsonProperty("rawMessage") byte[] rawMessage) {
+        this.emailType = emailType;
+        this.appId = appId;
+        this.requestId = requestId;
+        this.source = source;
+        this.recipient = recipient;
+        this.rawMessage = rawMessage;
+    }
+
+    public EmailType getEmailType() {
+        return emailType;
+    }
+
+    public String getAppId() {
+        return appId;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /** The full sender address, including the display name. */
+    public String getSource() {
+        return source;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public byte[] getRawMessage() {
+        return rawMessage;
+    }
+
+    /**
+     * Identifies this delivery of the message, so the outbox can remove it once it has been sent. Set by the outbox
+     * when the message is received. Not serialized.
+     */
+    @JsonIgnore
+    public String getReceipt() {
+        return receipt;
+    }
+
+    public void setReceipt(String receipt) {
+        this.receipt = receipt;
+    }
+}
@@ -12,6 +12,7 @@ import org.sagebionetworks.bridge.models.accounts.Phone;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.sms.SmsType;
 import org.sagebionetworks.bridge.models.templates.TemplateRevision;
+import org.sagebionetworks.bridge.util.CompiledTemplate;
 
 import com.amazonaws.services.sns.model.MessageAttributeValue;
 import com.amazonaws.services.sns.model.PublishRequest;
@@ -63,7 +64,7 @@ public class SmsMessageProvider {
 
     /** SMS message to send, with template variables resolved. */
     public String getFormattedMessage() {
-        return BridgeUtils.resolveTemplate(revision.getDocumentContent(), tokenMap).trim();
+        return CompiledTemplate.compileCached(revision.getDocumentContent()).render(tokenMap).trim();
     }
 
     public PublishRequest getSmsRequest() {
@@ -11,6 +11,8 @@ import static org.sagebionetworks.bridge.BridgeUtils.SPACE_JOINER;
 import static org.sagebionetworks.bridge.BridgeUtils.encodeURIComponent;
 import static org.sagebionetworks.bridge.BridgeUtils.getLocalDateOrDefault;
 import static org.sagebionetworks.bridge.BridgeUtils.parseAccountId;
+import static org.sagebionetworks.bridge.http.PartnerHttpClient.Destination.CUIMC;
+import static org.sagebionetworks.bridge.http.PartnerHttpClient.Destination.GEOCODING;
 import static org.sagebionetworks.bridge.spring.controllers.CRCController.AccountStates.SELECTED;
 import static org.sagebionetworks.bridge.spring.controllers.CRCController.AccountStates.SHIP_TESTS_REQUESTED;
 import static org.sagebionetworks.bridge.spring.controllers.CRCController.AccountStates.TESTS_AVAILABLE;
@@ -87,6 +89,7 @@ import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.LimitExceededException;
 import org.sagebionetworks.bridge.exceptions.NotAuthenticatedException;
+import org.sagebionetworks.bridge.http.PartnerHttpClient;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.DateRangeResourceList;
 import org.sagebionetworks.bridge.models.StatusMessage;
@@ -175,6 +178,8 @@ public class CRCController extends BaseController {
 
     private GBFOrderService gbfOrderService;
 
+    private PartnerHttpClient partnerHttpClient;
+
     @Autowired
     final void setParticipantService(ParticipantService participantService) {
         this.participantService = participantService;
@@ -195,6 +200,11 @@ public class CRCController extends BaseController {
         this.gbfOrderService = GBFOrderService;
     }
 
+    @Autowired
+    final void setPartnerHttpClient(PartnerHttpClient partnerHttpClient) {
+        this.partnerHttpClient = partnerHttpClient;
+    }
+
     DateTime getTimestamp() {
         return DateTime.now().withZone(DateTimeZone.UTC);
     }
@@ -587,11 +597,11 @@ public class CRCController extends BaseController {
     HttpResponse put(String url, String bodyJson, Account account) throws IOException {
         Request request = Request.Put(url).bodyString(bodyJson, APPLICATION_JSON);
         request = addAuthorizationHeader(request, account);
-        return request.execute().returnResponse();
+        return partnerHttpClient.execute(CUIMC, request, true);
     }
     
     HttpResponse get(String url) throws IOException {
-        return Request.Get(url).execute().returnResponse();
+        return partnerHttpClient.execute(GEOCODING, Request.Get(url), true);
     }
 
 //    HttpResponse get(String url, Account account) throws IOException {
@@ -603,7 +613,8 @@ public class CRCController extends BaseController {
     HttpResponse post(String url, Account account, String body) throws IOException {
         Request request = Request.Post(url).bodyString(body, APPLICATION_FORM_URLENCODED);
         request = addAuthorizationHeader(request, account);
-        return request.execute().returnResponse();
+        // This is only used to search for locations, so it is safe to retry.
+        return partnerHttpClient.execute(CUIMC, request, true);
     }
 
     private Request addAuthorizationHeader(Request request, Account account) {
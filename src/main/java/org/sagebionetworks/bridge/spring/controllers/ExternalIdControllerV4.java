@@ -66,6 +66,24 @@ public class ExternalIdControllerV4 extends BaseController {
 
         return externalIdService.getPagedExternalIds(session.getAppId(), studyId, idFilter, offsetByInt, pageSizeInt);
     }
+    
+    /**
+     * Pages through a study's external IDs by offset key rather than by offset, without a total. Each page costs 
+     * the same no matter how far into the list it is, so this is the API for tools that walk the full list.
+     */
+    @GetMapping("/v5/studies/{studyId}/externalids/cursor")
+    public ForwardCursorPagedResourceList<ExternalIdentifierInfo> getExternalIdentifiersForStudyByOffsetKey(
+            @PathVariable String studyId, @RequestParam(required = false) String offsetKey,
+            @RequestParam(required = false) String pageSize, @RequestParam(required = false) String idFilter) {
+        UserSession session = getAdministrativeSession();
+
+        CAN_READ_EXTERNAL_IDS.checkAndThrow(STUDY_ID, studyId);
+        
+        int pageSizeInt = getIntOrDefault(pageSize, API_DEFAULT_PAGE_SIZE);
+
+        return externalIdService.getPagedExternalIdsByOffsetKey(session.getAppId(), studyId, idFilter, offsetKey,
+                pageSizeInt);
+    }
 
     @PostMapping("/v4/externalids")
     @ResponseStatus(HttpStatus.CREATED)
@@ -0,0 +1,44 @@
+package org.sagebionetworks.bridge.spring.controllers;
+
+import static org.sagebionetworks.bridge.Roles.SUPERADMIN;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
+import org.sagebionetworks.bridge.models.StatusMessage;
+
+/** Request metrics aggregated by this server. Each server keeps its own metrics. */
+@CrossOrigin
+@RestController
+@RequestMapping("/v3/metrics")
+public class MetricsAdminController extends BaseController {
+
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    final void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @GetMapping
+    public JsonNode getMetricsSnapshot() {
+        getAuthenticatedSession(SUPERADMIN);
+
+        return metricsRegistry.getSnapshot();
+    }
+
+    @DeleteMapping
+    public StatusMessage resetMetrics() {
+        getAuthenticatedSession(SUPERADMIN);
+
+        metricsRegistry.reset();
+
+        return new StatusMessage("Metrics reset.");
+    }
+}
@@ -42,6 +42,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
@@ -64,6 +65,8 @@ import org.sagebionetworks.bridge.models.activities.ActivityEvent;
 import org.sagebionetworks.bridge.models.activities.CustomActivityEventRequest;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.apps.SmsTemplate;
+import org.sagebionetworks.bridge.models.notifications.BulkNotificationRequest;
+import org.sagebionetworks.bridge.models.notifications.BulkNotificationResult;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
 import org.sagebionetworks.bridge.models.schedules.ActivityType;
@@ -583,6 +586,21 @@ public class ParticipantController extends BaseController {
                 + BridgeUtils.COMMA_SPACE_JOINER.join(erroredNotifications) + ".");
     }
 
+    @PostMapping("/v3/participants/sendNotification")
+    public BulkNotificationResult sendNotificationToParticipants() {
+        UserSession session = getAdministrativeSession();
+        App app = appService.getApp(session.getAppId());
+        
+        BulkNotificationRequest request = parseJson(BulkNotificationRequest.class);
+        if (request.getMessage() == null) {
+            throw new BadRequestException("message is required");
+        }
+        for (String userId : request.getUserIds()) {
+            CAN_EDIT_PARTICIPANTS.checkAndThrow(USER_ID, userId);
+        }
+        return participantService.sendNotificationToParticipants(app, request.getUserIds(), request.getMessage());
+    }
+
     @GetMapping(path = {"/v3/participants/{userId}/activityEvents"}, produces = {
             APPLICATION_JSON_UTF8_VALUE })
     public ResourceList<ActivityEvent> getActivityEvents(@PathVariable String userId) throws JsonProcessingException {
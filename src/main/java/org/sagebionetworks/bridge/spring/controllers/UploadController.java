@@ -7,6 +7,8 @@ import static org.sagebionetworks.bridge.Roles.WORKER;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8_VALUE;
 
 import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
@@ -17,9 +19,11 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import org.sagebionetworks.bridge.Roles;
 import org.sagebionetworks.bridge.dao.HealthCodeDao;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
 import org.sagebionetworks.bridge.models.Metrics;
@@ -40,6 +44,9 @@ import org.sagebionetworks.bridge.time.DateUtils;
 @RestController
 public class UploadController extends BaseController {
 
+    // How long a synchronous upload complete call waits for upload validation.
+    static final long SYNCHRONOUS_COMPLETE_TIMEOUT_MILLIS = 30000;
+
     private UploadService uploadService;
     
     private HealthDataService healthDataService;
@@ -108,7 +115,8 @@ public class UploadController extends BaseController {
      * <p>
      * If synchronous is set to "true", we will wait until upload validation is complete, then return the upload
      * validation status. This is generally recommended only for App Development, as some large uploads might take
-     * several seconds to complete.
+     * several seconds to complete. The request is completed asynchronously when validation finishes, so it does not
+     * hold a request thread while waiting.
      * </p>
      * <p>
      * If synchronous is set to anything else, we will return a validation status immediately (which will often be in
@@ -120,7 +128,7 @@ public class UploadController extends BaseController {
      * </p>
      */
     @PostMapping(path={"/v3/uploads/{uploadId}/complete", "/api/v1/upload/{uploadId}/complete"}, produces={APPLICATION_JSON_UTF8_VALUE})
-    public String uploadComplete(@PathVariable String uploadId,
+    public DeferredResult<String> uploadComplete(@PathVariable String uploadId,
             @RequestParam(defaultValue = "false") boolean synchronous,
             @RequestParam(defaultValue = "false") boolean redrive) throws Exception {
         final Metrics metrics = getMetrics();
@@ -153,16 +161,40 @@ public class UploadController extends BaseController {
         uploadService.uploadComplete(appId, uploadCompletionClient, upload, redrive);
 
         // In async mode, we get the validation status (probably in validation_in_progress) and return immediately.
-        // In sync mode, we poll until the validation status is complete (or failed or another non-transient status).
-        UploadValidationStatus validationStatus;
+        // In sync mode, we wait until the validation status is complete (or failed or another non-transient status).
+        DeferredResult<String> result = new DeferredResult<>(SYNCHRONOUS_COMPLETE_TIMEOUT_MILLIS);
         if (synchronous) {
-            validationStatus = uploadService.pollUploadValidationStatusUntilComplete(uploadId);
+            CompletableFuture<UploadValidationStatus> future = uploadService
+                    .getUploadValidationStatusWhenComplete(uploadId);
+            future.whenComplete((validationStatus, ex) -> {
+                if (ex != null) {
+                    result.setErrorResult((ex instanceof CompletionException) ? ex.getCause() : ex);
+                } else {
+                    setValidationStatusResult(result, validationStatus);
+                }
+            });
+            result.onTimeout(() -> {
+                try {
+                    setValidationStatusResult(result, uploadService.getUploadValidationStatusAfterTimeout(uploadId));
+                } catch (RuntimeException ex) {
+                    result.setErrorResult(ex);
+                }
+                future.cancel(false);
+            });
         } else {
-            validationStatus = uploadService.getUploadValidationStatus(uploadId);
+            setValidationStatusResult(result, uploadService.getUploadValidationStatus(uploadId));
         }
+        return result;
+    }
 
-        // Upload validation status may contain the health data record. Use the filter to filter out health code.
-        return HealthDataRecord.PUBLIC_RECORD_WRITER.writeValueAsString(validationStatus);
+    private static void setValidationStatusResult(DeferredResult<String> result,
+            UploadValidationStatus validationStatus) {
+        try {
+            // Upload validation status may contain the health data record. Use the filter to filter out health code.
+            result.setResult(HealthDataRecord.PUBLIC_RECORD_WRITER.writeValueAsString(validationStatus));
+        } catch (JsonProcessingException ex) {
+            result.setErrorResult(new BridgeServiceException(ex));
+        }
     }
     
     @GetMapping("/v3/uploads/{uploadId}")
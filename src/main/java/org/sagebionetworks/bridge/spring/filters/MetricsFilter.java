@@ -7,6 +7,8 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -24,9 +26,12 @@ import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
 
 import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
 import org.sagebionetworks.bridge.models.Metrics;
 
 @Component
@@ -35,11 +40,21 @@ public class MetricsFilter implements Filter {
     private static final Logger LOG = LoggerFactory.getLogger(MetricsFilter.class);
     
     public static final String X_PASSTHROUGH = "X-Passthrough";
+    
+    // Route of requests that were not mapped to a controller, such as requests for unknown URLs.
+    static final String UNMATCHED_ROUTE = "unmatched";
 
     // Allow-list for query parameters metrics logging.
     private static final List<String> ALLOW_LIST =
             BridgeConfigFactory.getConfig().getList("query.param.allowlist");
     
+    private MetricsRegistry metricsRegistry;
+    
+    @Autowired
+    final void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+    
     @Override
     public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
             throws IOException, ServletException {
@@ -62,23 +77,49 @@ public class MetricsFilter implements Filter {
 
         metrics.setQueryParams(paramsMap);
 
+        boolean asyncStarted = false;
         try {
             chain.doFilter(req, res);
-            metrics.setStatus(response.getStatus());
-        } finally {
-            // Log session info when a session is present
-            UserSession session = (UserSession) request.getAttribute("CreatedUserSession");
-            if (session != null) {
-                // Record UserSession to Metrics.
-                writeSessionInfoToMetrics(metrics, session);
+            // Requests completed asynchronously (like synchronous upload complete calls) are logged when they
+            // complete, once their response status is known.
+            asyncStarted = request.isAsyncStarted();
+            if (asyncStarted) {
+                request.getAsyncContext().addListener(
+                        new MetricsAsyncListener(metricsRegistry, metrics, request, response));
+            } else {
+                metrics.setStatus(response.getStatus());
             }
-            if (response.getHeader(X_PASSTHROUGH) == null) {
-                metrics.end();
-                LOG.info(metrics.toJsonString());
+        } finally {
+            if (!asyncStarted) {
+                logMetrics(metricsRegistry, metrics, request, response);
             }
         }
     }
 
+    private static void logMetrics(MetricsRegistry metricsRegistry, Metrics metrics, HttpServletRequest request,
+            HttpServletResponse response) {
+        // Log session info when a session is present
+        UserSession session = (UserSession) request.getAttribute("CreatedUserSession");
+        if (session != null) {
+            // Record UserSession to Metrics.
+            writeSessionInfoToMetrics(metrics, session);
+        }
+        if (response.getHeader(X_PASSTHROUGH) == null) {
+            metrics.end();
+            LOG.info(metrics.toJsonString());
+            metricsRegistry.recordRequest(getRoute(request), response.getStatus(), metrics);
+        }
+    }
+
+    /**
+     * The route of the request, for aggregated metrics. This is the method and the URL pattern of the controller
+     * method that handled the request, e.g. "GET /v3/participants/{userId}".
+     */
+    static String getRoute(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + ((pattern != null) ? pattern : UNMATCHED_ROUTE);
+    }
+
     private String header(HttpServletRequest request, String name, String defaultVal) {
         final String value = request.getHeader(name);
         return (value != null) ? value : defaultVal;
@@ -96,6 +137,38 @@ public class MetricsFilter implements Filter {
         }
     }
 
+    private static class MetricsAsyncListener implements AsyncListener {
+        private final MetricsRegistry metricsRegistry;
+        private final Metrics metrics;
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+
+        MetricsAsyncListener(MetricsRegistry metricsRegistry, Metrics metrics, HttpServletRequest request,
+                HttpServletResponse response) {
+            this.metricsRegistry = metricsRegistry;
+            this.metrics = metrics;
+            this.request = request;
+            this.response = response;
+        }
+        @Override
+        public void onComplete(AsyncEvent event) {
+            metrics.setStatus(response.getStatus());
+            logMetrics(metricsRegistry, metrics, request, response);
+        }
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // no-op, the request still completes
+        }
+        @Override
+        public void onError(AsyncEvent event) {
+            // no-op, the request still completes
+        }
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // no-op
+        }
+    }
+
     @Override
     public void init(FilterConfig filterConfig) {
         // no-op
@@ -0,0 +1,158 @@
+package org.sagebionetworks.bridge.spring.filters;
+
+import static org.sagebionetworks.bridge.BridgeConstants.X_FORWARDED_FOR_HEADER;
+import static org.sagebionetworks.bridge.spring.util.HttpUtil.CONTENT_TYPE_HEADER;
+import static org.sagebionetworks.bridge.spring.util.HttpUtil.CONTENT_TYPE_JSON;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.RateLimiter;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+
+/**
+ * Rejects requests from a client (identified by IP address) that exceed the configured rate for a class of
+ * endpoints, with a 429 response. The limit for each endpoint class is configured with
+ * <code>ratelimit.[class].requests</code> and <code>ratelimit.[class].window.seconds</code>; a limit of zero turns
+ * off rate limiting for that class.
+ *
+ * The client's address is taken from the X-Forwarded-For header. Clients can send any value in that header, and each
+ * proxy in front of the server appends the address it received the request from, so only the last
+ * <code>ratelimit.trusted.proxy.count</code> entries can be trusted. The client's address is the first of these.
+ */
+@Component
+public class RateLimitFilter implements Filter {
+    private static final Logger LOG = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    static final int SC_TOO_MANY_REQUESTS = 429;
+    static final String RETRY_AFTER_HEADER = "Retry-After";
+    static final String TOO_MANY_REQUESTS_PAYLOAD = "{\"statusCode\":429,\"message\":\"Too many requests. Please "
+            + "try again later.\",\"type\":\"LimitExceededException\"}";
+
+    /** Endpoints that share a rate limit. */
+    enum EndpointClass {
+        SIGNIN(request -> isPost(request) && isAuthPath(request.getServletPath())
+                && !request.getServletPath().endsWith("/signOut")),
+        UPLOAD(request -> isPost(request) && (request.getServletPath().equals("/v3/uploads")
+                || request.getServletPath().equals("/api/v1/upload"))),
+        REPORTS(request -> request.getServletPath().contains("/reports"));
+
+        private final Predicate<HttpServletRequest> matcher;
+
+        EndpointClass(Predicate<HttpServletRequest> matcher) {
+            this.matcher = matcher;
+        }
+        String configName() {
+            return name().toLowerCase();
+        }
+        static EndpointClass of(HttpServletRequest request) {
+            for (EndpointClass endpointClass : values()) {
+                if (endpointClass.matcher.test(request)) {
+                    return endpointClass;
+                }
+            }
+            return null;
+        }
+        private static boolean isPost(HttpServletRequest request) {
+            return "POST".equals(request.getMethod());
+        }
+        private static boolean isAuthPath(String path) {
+            return path.startsWith("/v3/auth/") || path.startsWith("/v4/auth/") || path.startsWith("/api/v1/auth/");
+        }
+    }
+
+    private static final class Limit {
+        private final int requests;
+        private final int windowSeconds;
+
+        Limit(int requests, int windowSeconds) {
+            this.requests = requests;
+            this.windowSeconds = windowSeconds;
+        }
+    }
+
+    private final Map<EndpointClass, Limit> limits = new EnumMap<>(EndpointClass.class);
+    private int trustedProxyCount;
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    final void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Autowired
+    final void setBridgeConfig(BridgeConfig bridgeConfig) {
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            String prefix = "ratelimit." + endpointClass.configName();
+            int requests = bridgeConfig.getInt(prefix + ".requests");
+            int windowSeconds = bridgeConfig.getInt(prefix + ".window.seconds");
+            if (requests > 0 && windowSeconds > 0) {
+                limits.put(endpointClass, new Limit(requests, windowSeconds));
+            }
+        }
+        this.trustedProxyCount = bridgeConfig.getInt("ratelimit.trusted.proxy.count");
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest)req;
+        EndpointClass endpointClass = EndpointClass.of(request);
+        Limit limit = (endpointClass == null) ? null : limits.get(endpointClass);
+        if (limit != null) {
+            String remoteAddress = getRemoteAddress(request);
+            CacheKey key = CacheKey.rateLimit(endpointClass.configName(), remoteAddress);
+            int retryAfterSeconds = rateLimiter.getRetryAfterSeconds(key, limit.requests, limit.windowSeconds);
+            if (retryAfterSeconds > 0) {
+                LOG.info("Rate limit exceeded for " + endpointClass.configName() + " requests from " + remoteAddress);
+                HttpServletResponse response = (HttpServletResponse)res;
+                response.setStatus(SC_TOO_MANY_REQUESTS);
+                response.setHeader(RETRY_AFTER_HEADER, Integer.toString(retryAfterSeconds));
+                response.setHeader(CONTENT_TYPE_HEADER, CONTENT_TYPE_JSON);
+                response.getWriter().write(TOO_MANY_REQUESTS_PAYLOAD);
+                return;
+            }
+        }
+        chain.doFilter(req, res);
+    }
+
+    // Each trusted proxy appends an address to the end of the X-Forwarded-For header, so the client's address is
+    // the entry added by the first of them. Anything before that was sent by the client. If there are fewer entries
+    // than trusted proxies, all of them were added by proxies, and the first is the client's.
+    String getRemoteAddress(HttpServletRequest request) {
+        String forwardedFor = request.getHeader(X_FORWARDED_FOR_HEADER);
+        if (trustedProxyCount > 0 && forwardedFor != null && !forwardedFor.trim().isEmpty()) {
+            String[] addresses = forwardedFor.split(",");
+            int index = Math.max(0, addresses.length - trustedProxyCount);
+            return addresses[index].trim();
+        }
+        return request.getRemoteAddr();
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        // no-op
+    }
+
+    @Override
+    public void destroy() {
+        // no-op
+    }
+}
@@ -24,7 +24,7 @@ import org.sagebionetworks.bridge.json.JsonUtils;
 import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolder;
 import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolderImpl;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
-import org.sagebionetworks.bridge.models.surveys.Survey;
+import org.sagebionetworks.bridge.models.schedules.SchemaReference;
 import org.sagebionetworks.bridge.models.upload.UploadFieldDefinition;
 import org.sagebionetworks.bridge.models.upload.UploadFieldType;
 import org.sagebionetworks.bridge.models.upload.UploadSchema;
@@ -126,9 +126,9 @@ public class GenericUploadFormatHandler implements UploadValidationHandler {
             // Get survey. We use the survey identifier as the schema ID and the schema revision. Both of these must be
             // specified.
             GuidCreatedOnVersionHolder surveyKeys = new GuidCreatedOnVersionHolderImpl(surveyGuid, surveyCreatedOnMillis);
-            Survey survey = surveyService.getSurvey(appId, surveyKeys, false, true);
-            String surveySchemaId = survey.getIdentifier();
-            Integer surveySchemaRev = survey.getSchemaRevision();
+            SchemaReference surveySchemaRef = surveyService.getSurveySchemaReference(appId, surveyKeys);
+            String surveySchemaId = surveySchemaRef.getId();
+            Integer surveySchemaRev = surveySchemaRef.getRevision();
             if (StringUtils.isBlank(surveySchemaId) || surveySchemaRev == null) {
                 // Schemaless.
                 return null;
@@ -136,7 +136,7 @@ public class GenericUploadFormatHandler implements UploadValidationHandler {
 
             // Get the schema with the schema ID and rev.
             // Note that if there's no schema, we treat this like schemaless.
-            return uploadSchemaService.getUploadSchemaByIdAndRevNoThrow(appId, surveySchemaId, surveySchemaRev);
+            return uploadSchemaService.getUploadSchemaByIdAndRevCached(appId, surveySchemaId, surveySchemaRev);
         }
 
         // Fall back to getting by schema.
@@ -144,7 +144,7 @@ public class GenericUploadFormatHandler implements UploadValidationHandler {
         Integer schemaRev = JsonUtils.asInt(infoJson, UploadUtil.FIELD_SCHEMA_REV);
         if (StringUtils.isNotBlank(schemaId) && schemaRev != null) {
             // Note that if there's no schema, we treat this like schemaless.
-            return uploadSchemaService.getUploadSchemaByIdAndRevNoThrow(appId, schemaId, schemaRev);
+            return uploadSchemaService.getUploadSchemaByIdAndRevCached(appId, schemaId, schemaRev);
         } else {
             // Schemaless.
             return null;
@@ -31,7 +31,7 @@ import org.sagebionetworks.bridge.json.JsonUtils;
 import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolder;
 import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolderImpl;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
-import org.sagebionetworks.bridge.models.surveys.Survey;
+import org.sagebionetworks.bridge.models.schedules.SchemaReference;
 import org.sagebionetworks.bridge.models.upload.Upload;
 import org.sagebionetworks.bridge.models.upload.UploadFieldDefinition;
 import org.sagebionetworks.bridge.models.upload.UploadFieldType;
@@ -199,9 +199,9 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
         // Get survey. We use the survey identifier as the schema ID and the schema revision. Both of these must be
         // specified.
         GuidCreatedOnVersionHolder surveyKeys = new GuidCreatedOnVersionHolderImpl(surveyGuid, surveyCreatedOnMillis);
-        Survey survey = surveyService.getSurvey(appId, surveyKeys, false, true);
-        String schemaId = survey.getIdentifier();
-        Integer schemaRev = survey.getSchemaRevision();
+        SchemaReference surveySchemaRef = surveyService.getSurveySchemaReference(appId, surveyKeys);
+        String schemaId = surveySchemaRef.getId();
+        Integer schemaRev = surveySchemaRef.getRevision();
         if (StringUtils.isBlank(schemaId) || schemaRev == null) {
             // Schemaless.
             return null;
@@ -209,7 +209,7 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
 
         // Get the schema with the schema ID and rev.
         // Note that if there's no schema, we treat this like schemaless.
-        return uploadSchemaService.getUploadSchemaByIdAndRevNoThrow(appId, schemaId, schemaRev);
+        return uploadSchemaService.getUploadSchemaByIdAndRevCached(appId, schemaId, schemaRev);
     }
 
     private UploadSchema getUploadSchemaByItemAndRev(String appId, String item, Integer schemaRev) {
@@ -229,7 +229,7 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
 
         // get schema
         // Note that if there's no schema, we treat this like schemaless.
-        return uploadSchemaService.getUploadSchemaByIdAndRevNoThrow(appId, item, schemaRev);
+        return uploadSchemaService.getUploadSchemaByIdAndRevCached(appId, item, schemaRev);
     }
 
     private static void validateInfoJsonFileList(UploadValidationContext context, String uploadId,
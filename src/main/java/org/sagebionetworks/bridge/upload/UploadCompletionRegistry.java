@@ -0,0 +1,166 @@
+package org.sagebionetworks.bridge.upload;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+
+/**
+ * Lets request threads wait for upload validation to finish without polling. Callers register a future for an upload
+ * ID, and the upload validation task signals the registry once it has written the validation status. Uploads are
+ * validated on whichever server received the upload complete call, which may not be the server the caller is waiting
+ * on, so completions are also published over Redis pub/sub to the other servers. Pub/sub delivery is not guaranteed,
+ * so callers should still time out and check the validation status themselves.
+ */
+@Component
+public class UploadCompletionRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(UploadCompletionRegistry.class);
+
+    static final String CHANNEL = "upload-validation-complete";
+    static final long RESUBSCRIBE_DELAY_MILLIS = 5000;
+
+    private final ConcurrentMap<String, Set<CompletableFuture<Void>>> waiters = new ConcurrentHashMap<>();
+
+    private JedisPool jedisPool;
+    private ExecutorService subscriberExecutor;
+    private volatile JedisPubSub subscriber;
+    private volatile boolean running;
+
+    @Resource(name = "jedisPool")
+    final void setJedisPool(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    /** Starts listening for completions published by other servers. */
+    @PostConstruct
+    public void start() {
+        running = true;
+        subscriberExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("upload-completion-subscriber").setDaemon(true).build());
+        subscriberExecutor.execute(this::subscribe);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        JedisPubSub currentSubscriber = subscriber;
+        if (currentSubscriber != null && currentSubscriber.isSubscribed()) {
+            currentSubscriber.unsubscribe();
+        }
+        if (subscriberExecutor != null) {
+            subscriberExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Register to be told when validation completes for the given upload. The returned future completes when
+     * validation finishes, and is never completed exceptionally. Callers that stop waiting must unregister.
+     */
+    public CompletableFuture<Void> register(String uploadId) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        // compute() so that this can't race with complete() removing the upload's waiters.
+        waiters.compute(uploadId, (key, futures) -> {
+            if (futures == null) {
+                futures = ConcurrentHashMap.newKeySet();
+            }
+            futures.add(future);
+            return futures;
+        });
+        return future;
+    }
+
+    /** Stop waiting for the given upload. */
+    public void unregister(String uploadId, CompletableFuture<Void> future) {
+        waiters.computeIfPresent(uploadId, (key, futures) -> {
+            futures.remove(future);
+            return futures.isEmpty() ? null : futures;
+        });
+    }
+
+    /**
+     * Signal that validation for the given upload has completed, to callers waiting on this server and on all other
+     * servers.
+     */
+    public void complete(String uploadId) {
+        completeLocal(uploadId);
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.publish(CHANNEL, uploadId);
+        } catch (RuntimeException ex) {
+            // Callers on other servers will time out and check the status themselves.
+            LOG.warn("Error publishing completion of upload " + uploadId + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    // Package-scoped for unit tests.
+    void completeLocal(String uploadId) {
+        Set<CompletableFuture<Void>> futures = waiters.remove(uploadId);
+        if (futures != null) {
+            for (CompletableFuture<Void> future : futures) {
+                future.complete(null);
+            }
+        }
+    }
+
+    // Package-scoped for unit tests.
+    int getWaitingUploadCount() {
+        return waiters.size();
+    }
+
+    // Runs on the subscriber thread. Subscribing blocks until unsubscribed or the connection fails, in which case
+    // we subscribe again.
+    private void subscribe() {
+        while (running) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                subscriber = new CompletionSubscriber();
+                jedis.subscribe(subscriber, CHANNEL);
+            } catch (RuntimeException ex) {
+                LOG.warn("Error subscribing to upload completions: " + ex.getMessage(), ex);
+            }
+            if (running) {
+                try {
+                    Thread.sleep(RESUBSCRIBE_DELAY_MILLIS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // Older versions of Jedis require all of the callbacks to be implemented.
+    private class CompletionSubscriber extends JedisPubSub {
+        @Override
+        public void onMessage(String channel, String uploadId) {
+            completeLocal(uploadId);
+        }
+        @Override
+        public void onPMessage(String pattern, String channel, String message) {
+        }
+        @Override
+        public void onSubscribe(String channel, int subscribedChannels) {
+        }
+        @Override
+        public void onUnsubscribe(String channel, int subscribedChannels) {
+        }
+        @Override
+        public void onPSubscribe(String pattern, int subscribedChannels) {
+        }
+        @Override
+        public void onPUnsubscribe(String pattern, int subscribedChannels) {
+        }
+    }
+}
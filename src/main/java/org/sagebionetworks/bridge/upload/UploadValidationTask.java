@@ -29,6 +29,7 @@ public class UploadValidationTask implements Runnable {
     private List<UploadValidationHandler> handlerList;
     private UploadDao uploadDao;
     private HealthDataService healthDataService;
+    private UploadCompletionRegistry uploadCompletionRegistry;
 
     public final void setHealthDataService(HealthDataService healthDataService) {
         this.healthDataService = healthDataService;
@@ -82,6 +83,16 @@ public class UploadValidationTask implements Runnable {
         return uploadDao;
     }
 
+    /** Registry of callers waiting for validation to complete. This is configured by Spring through the task factory. */
+    public final void setUploadCompletionRegistry(UploadCompletionRegistry uploadCompletionRegistry) {
+        this.uploadCompletionRegistry = uploadCompletionRegistry;
+    }
+
+    /** This is package-scoped to facilitate unit tests. */
+    /* package-scoped*/ UploadCompletionRegistry getUploadCompletionRegistry() {
+        return uploadCompletionRegistry;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void run() {
@@ -133,6 +144,10 @@ public class UploadValidationTask implements Runnable {
             logger.info(String.format("Upload validation for app %s, upload %s, record %s, with status %s",
                     context.getAppId(), context.getUpload().getUploadId(), context.getRecordId(),
                     status));
+
+            // Wake up any callers waiting for validation to complete. If the status couldn't be written, they'll 
+            // time out instead, same as if they were polling.
+            uploadCompletionRegistry.complete(context.getUpload().getUploadId());
         } catch (RuntimeException ex) {
             // ExceptionInterceptor doesn't handle asynchronous tasks, so we'll need to catch exceptions and log them
             // manually. Use the log helper function so we can verify it in unit tests.
@@ -0,0 +1,127 @@
+package org.sagebionetworks.bridge.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A template string that has been split once into its literal text and its <code>${variableName}</code> variables,
+ * so that it can be resolved against a map of values in a single pass. Resolution follows the rules of
+ * {@link org.sagebionetworks.bridge.BridgeUtils#resolveTemplate}: variables that are not in the map (or that map to
+ * null) are left in the output as is. Values are inserted as they are given, so any escaping must already have been
+ * applied to them; values are never themselves searched for variables.
+ */
+public final class CompiledTemplate {
+    private static final String VAR_PREFIX = "${";
+    private static final String VAR_SUFFIX = "}";
+
+    // Email and SMS templates are resolved from the same handful of template revisions over and over. The template
+    // text for a revision never changes, so compiled templates are cached by their text, bounded by its total size.
+    static final long CACHE_MAX_CHARS = 10_000_000L;
+    static final long CACHE_EXPIRE_MINUTES = 60;
+
+    private static final Cache<String, CompiledTemplate> CACHE = CacheBuilder.newBuilder()
+            .maximumWeight(CACHE_MAX_CHARS)
+            .weigher((String template, CompiledTemplate compiled) -> template.length())
+            .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).build();
+
+    private final String template;
+    // There is always one more literal than there are variables; literals may be empty
+    private final String[] literals;
+    private final String[] variables;
+    private final int literalsLength;
+
+    private CompiledTemplate(String template, String[] literals, String[] variables) {
+        this.template = template;
+        this.literals = literals;
+        this.variables = variables;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalsLength = length;
+    }
+
+    /**
+     * Compile the template without caching the result. Use this for templates that are only resolved once.
+     */
+    public static CompiledTemplate compile(String template) {
+        checkNotNull(template);
+
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int literalStart = 0;
+        int pos = template.indexOf(VAR_PREFIX);
+        while (pos >= 0) {
+            int nameStart = pos + VAR_PREFIX.length();
+            int nameEnd = template.indexOf(VAR_SUFFIX, nameStart);
+            if (nameEnd < 0) {
+                break;
+            }
+            // In a string like "${a ${b}", only "${b}" is a variable.
+            int nextPrefix = template.indexOf(VAR_PREFIX, nameStart);
+            if (nextPrefix >= 0 && nextPrefix < nameEnd) {
+                pos = nextPrefix;
+                continue;
+            }
+            literals.add(template.substring(literalStart, pos));
+            variables.add(template.substring(nameStart, nameEnd));
+            literalStart = nameEnd + VAR_SUFFIX.length();
+            pos = template.indexOf(VAR_PREFIX, literalStart);
+        }
+        literals.add(template.substring(literalStart));
+
+        return new CompiledTemplate(template, literals.toArray(new String[literals.size()]),
+                variables.toArray(new String[variables.size()]));
+    }
+
+    /**
+     * Compile the template, or return the compiled template from the cache if it has already been compiled. Use
+     * this for templates, like those of template revisions, that are resolved repeatedly.
+     */
+    public static CompiledTemplate compileCached(String template) {
+        checkNotNull(template);
+
+        CompiledTemplate compiled = CACHE.getIfPresent(template);
+        if (compiled == null) {
+            compiled = compile(template);
+            CACHE.put(template, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Resolve the template's variables from the map of values.
+     */
+    public String render(Map<String,String> values) {
+        checkNotNull(values);
+
+        if (variables.length == 0) {
+            return template;
+        }
+        // Look up each value once, so the output can be sized exactly before it is written
+        String[] resolved = new String[variables.length];
+        int length = literalsLength;
+        for (int i=0; i < variables.length; i++) {
+            String value = values.get(variables[i]);
+            if (value == null) {
+                value = VAR_PREFIX + variables[i] + VAR_SUFFIX;
+            }
+            resolved[i] = value;
+            length += value.length();
+        }
+        StringBuilder builder = new StringBuilder(length);
+        for (int i=0; i < variables.length; i++) {
+            builder.append(literals[i]);
+            builder.append(resolved[i]);
+        }
+        builder.append(literals[variables.length]);
+        return builder.toString();
+    }
+}
@@ -599,3 +599,24 @@ ALTER TABLE `StudyContacts`
 DROP PRIMARY KEY,
 ADD CONSTRAINT PRIMARY KEY (`appId`, `studyId`, `pos`);
 
+-- changeset bridge:32
+
+CREATE TABLE `AssessmentLatestRevisions` (
+  `appId` varchar(255) NOT NULL,
+  `identifier` varchar(255) NOT NULL,
+  `guid` varchar(255) NOT NULL,
+  PRIMARY KEY (`appId`, `identifier`),
+  UNIQUE KEY (`guid`),
+  CONSTRAINT `AssessmentLatestRevisions-Assessment-Constraint` FOREIGN KEY (`guid`) REFERENCES `Assessments` (`guid`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_unicode_ci;
+
+INSERT INTO `AssessmentLatestRevisions` (`appId`, `identifier`, `guid`)
+SELECT a.appId, a.identifier, a.guid FROM Assessments AS a INNER JOIN (
+  SELECT appId, identifier, MAX(revision) AS rev FROM Assessments GROUP BY appId, identifier
+) AS latest ON a.appId = latest.appId AND a.identifier = latest.identifier AND a.revision = latest.rev;
+
+CREATE INDEX `Assessments-AppId-CreatedOn` ON `Assessments`(`appId`, `createdOn`);
+
+-- changeset bridge:33
+
+CREATE INDEX `AccountsSubstudies-Study-ExternalId` ON `AccountsSubstudies`(`studyId`, `substudyId`, `externalId`);
@@ -27,6 +27,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -46,6 +49,7 @@ import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
 import org.sagebionetworks.bridge.models.Label;
 import org.sagebionetworks.bridge.models.accounts.Account;
@@ -1084,6 +1088,44 @@ public class BridgeUtilsTest {
         assertEquals(sel, LABEL_HI);
     }
 
+    @Test
+    public void invokeAll() {
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+        try {
+            List<Callable<Integer>> tasks = ImmutableList.of(() -> 1, () -> 2, () -> 3, () -> 4);
+            assertEquals(BridgeUtils.invokeAll(executorService, tasks), ImmutableList.of(1, 2, 3, 4));
+            assertTrue(BridgeUtils.invokeAll(executorService, ImmutableList.<Callable<Integer>>of()).isEmpty());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+    
+    @Test(expectedExceptions = BadRequestException.class)
+    public void invokeAllRethrowsRuntimeException() {
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            List<Callable<Integer>> tasks = ImmutableList.of(() -> 1, () -> {
+                throw new BadRequestException("bad");
+            });
+            BridgeUtils.invokeAll(executorService, tasks);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+    
+    @Test(expectedExceptions = BridgeServiceException.class)
+    public void invokeAllWrapsCheckedException() {
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            List<Callable<Integer>> tasks = ImmutableList.of(() -> {
+                throw new IOException();
+            });
+            BridgeUtils.invokeAll(executorService, tasks);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+    
     // assertEquals with two sets doesn't verify the order is the same... hence this test method.
     private <T> void orderedSetsEqual(Set<T> first, Set<T> second) {
         assertEquals(second.size(), first.size());
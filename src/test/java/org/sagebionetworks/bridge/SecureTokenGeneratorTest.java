@@ -1,9 +1,22 @@
 package org.sagebionetworks.bridge;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.testng.annotations.Test;
 
 public class SecureTokenGeneratorTest {
@@ -28,4 +41,75 @@ public class SecureTokenGeneratorTest {
         assertTrue(token.matches("^\\d+$")); // composed only of digits
     }
     
+    @Test
+    public void nameScopeString() {
+        String token = SecureTokenGenerator.NAME_SCOPE_INSTANCE.nextToken();
+        assertEquals(token.length(), 5);
+        assertTrue(token.matches("^[A-Za-z0-9]+$"));
+    }
+    
+    @Test
+    public void allCharactersUsed() {
+        // Every digit should appear, and none should be heavily favored.
+        int[] counts = new int[10];
+        for (int i=0; i < 1000; i++) {
+            for (char c : SecureTokenGenerator.PHONE_CODE_INSTANCE.nextToken().toCharArray()) {
+                counts[c - '0']++;
+            }
+        }
+        for (int count : counts) {
+            assertTrue(count > 400 && count < 800, "Digit count out of range: " + count);
+        }
+    }
+    
+    @Test
+    public void concurrentTokensAreUnique() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i=0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    List<String> tokens = new ArrayList<>();
+                    for (int j=0; j < 1000; j++) {
+                        tokens.add(SecureTokenGenerator.INSTANCE.nextToken());
+                    }
+                    return tokens;
+                }));
+            }
+            Set<String> tokens = new HashSet<>();
+            for (Future<List<String>> future : futures) {
+                for (String token : future.get()) {
+                    assertEquals(token.length(), 21);
+                    assertTrue(token.matches("^[A-Za-z0-9]+$"));
+                    tokens.add(token);
+                }
+            }
+            assertEquals(tokens.size(), 8000);
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    @Test
+    public void threadRandomIsSha1PrngPerThread() throws Exception {
+        SecureRandom random = SecureTokenGenerator.threadRandom();
+        assertEquals(random.getAlgorithm(), SecureTokenGenerator.THREAD_RANDOM_ALGORITHM);
+        assertSame(SecureTokenGenerator.threadRandom(), random);
+        
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertNotSame(executor.submit(SecureTokenGenerator::threadRandom).get(), random);
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    @Test
+    public void threadRandomsAreSeededIndependently() {
+        byte[] first = new byte[32];
+        byte[] second = new byte[32];
+        SecureTokenGenerator.createThreadRandom().nextBytes(first);
+        SecureTokenGenerator.createThreadRandom().nextBytes(second);
+        assertFalse(Arrays.equals(first, second));
+    }
 }
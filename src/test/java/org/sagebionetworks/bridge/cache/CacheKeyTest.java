@@ -54,6 +54,11 @@ public class CacheKeyTest {
     public void appConfigList() {
         assertEquals(CacheKey.appConfigList(TEST_APP_ID).toString(),  TEST_APP_ID + ":AppConfigList");
     }
+    
+    @Test
+    public void schedulePlanVersion() {
+        assertEquals(CacheKey.schedulePlanVersion(TEST_APP_ID).toString(), TEST_APP_ID + ":SchedulePlanVersion");
+    }
 
     @Test
     public void channelSignInToSessionToken() {
@@ -67,6 +72,11 @@ public class CacheKeyTest {
                 "userId:email_signin:channel-throttling");
     }
     
+    @Test
+    public void rateLimit() {
+        assertEquals(CacheKey.rateLimit("signin", "1.2.3.4").toString(), "1.2.3.4:signin:rate-limit");
+    }
+    
     @Test
     public void emailSignInRequest() {
         SignIn signIn = new SignIn.Builder().withAppId(TEST_APP_ID)
@@ -157,6 +167,18 @@ public class CacheKeyTest {
         assertEquals(CacheKey.tokenToUserId("aSessionToken").toString(), "aSessionToken:session2");
     }
     
+    @Test
+    public void externalIdCount() {
+        assertEquals(CacheKey.externalIdCount(TEST_APP_ID, "studyId", "idFilter").toString(),
+                "idFilter:studyId:" + TEST_APP_ID + ":ExternalIdCount");
+    }
+    
+    @Test
+    public void externalIdCountList() {
+        assertEquals(CacheKey.externalIdCountList(TEST_APP_ID, "studyId").toString(),
+                "studyId:" + TEST_APP_ID + ":ExternalIdCountList");
+    }
+    
     @Test
     public void isPublic() {
         CacheKey privateKey = CacheKey.reauthTokenLookupKey("a", TEST_APP_ID);
@@ -37,6 +37,7 @@ import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.config.Environment;
 import org.sagebionetworks.bridge.crypto.AesGcmEncryptor;
 import org.sagebionetworks.bridge.crypto.Encryptor;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.RequestInfo;
 import org.sagebionetworks.bridge.models.accounts.ConsentStatus;
@@ -50,9 +51,11 @@ import org.sagebionetworks.bridge.redis.JedisOps;
 import org.sagebionetworks.bridge.redis.JedisTransaction;
 
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -76,6 +79,9 @@ public class CacheProviderTest {
     @Mock
     private JedisOps jedisOps;
 
+    @Mock
+    private PipelinedJedisOps pipelinedJedisOps;
+
     @Captor
     private ArgumentCaptor<String> stringCaptor;
 
@@ -163,6 +169,7 @@ public class CacheProviderTest {
 
         cacheProvider = new CacheProvider();
         cacheProvider.setJedisOps(jedisOps);
+        cacheProvider.setPipelinedJedisOps(pipelinedJedisOps);
     }
 
     private UserSession createUserSession() {
@@ -288,22 +295,84 @@ public class CacheProviderTest {
         OAuthProvider provider = new OAuthProvider("clientId", "secret", "endpoint",
                 "callbackUrl", null);
         String ser = BridgeObjectMapper.get().writeValueAsString(provider);
-        when(jedisOps.get(CACHE_KEY.toString())).thenReturn(ser);
+        when(pipelinedJedisOps.getAndExpire(CACHE_KEY.toString(), 100)).thenReturn(ser);
         
         OAuthProvider returned = cacheProvider.getObject(CACHE_KEY, OAuthProvider.class, 100);
         assertEquals(returned, provider);
-        verify(jedisOps).get(CACHE_KEY.toString());
-        verify(jedisOps).expire(CACHE_KEY.toString(), 100);
+        verify(pipelinedJedisOps).getAndExpire(CACHE_KEY.toString(), 100);
+        verify(jedisOps, never()).get(any());
+        verify(jedisOps, never()).expire(any(), anyInt());
     }
     
     @Test
     public void getObjectWithReexpireOfString() throws Exception {
         String ser = BridgeObjectMapper.get().writeValueAsString("Test");
-        when(jedisOps.get(CACHE_KEY.toString())).thenReturn(ser);
+        when(pipelinedJedisOps.getAndExpire(CACHE_KEY.toString(), 100)).thenReturn(ser);
         
         String result = cacheProvider.getObject(CACHE_KEY, String.class, 100);
         assertEquals(result, "Test");
-        verify(jedisOps).expire(CACHE_KEY.toString(), 100);
+        verify(pipelinedJedisOps).getAndExpire(CACHE_KEY.toString(), 100);
+    }
+    
+    @Test
+    public void getObjectWithReexpireMissing() {
+        assertNull(cacheProvider.getObject(CACHE_KEY, String.class, 100));
+        verify(pipelinedJedisOps).getAndExpire(CACHE_KEY.toString(), 100);
+    }
+    
+    @Test
+    public void getObjects() throws Exception {
+        CacheKey otherKey = CacheKey.app("otherKey");
+        CacheKey missingKey = CacheKey.app("missingKey");
+        String ser = BridgeObjectMapper.get().writeValueAsString("Test");
+        String otherSer = BridgeObjectMapper.get().writeValueAsString("Other");
+        when(pipelinedJedisOps.mget(ImmutableList.of(CACHE_KEY.toString(), missingKey.toString(),
+                otherKey.toString()))).thenReturn(Arrays.asList(ser, null, otherSer));
+        
+        Map<CacheKey, String> results = cacheProvider.getObjects(
+                ImmutableList.of(CACHE_KEY, missingKey, otherKey), String.class);
+        assertEquals(results.size(), 2);
+        assertEquals(results.get(CACHE_KEY), "Test");
+        assertEquals(results.get(otherKey), "Other");
+        assertFalse(results.containsKey(missingKey));
+    }
+    
+    @Test
+    public void getObjectsEmpty() {
+        when(pipelinedJedisOps.mget(ImmutableList.of())).thenReturn(ImmutableList.of());
+        
+        Map<CacheKey, String> results = cacheProvider.getObjects(ImmutableList.of(), String.class);
+        assertTrue(results.isEmpty());
+    }
+    
+    @Test(expectedExceptions = BridgeServiceException.class)
+    public void getObjectsError() {
+        when(pipelinedJedisOps.mget(any())).thenThrow(new JedisConnectionException("error"));
+        
+        cacheProvider.getObjects(ImmutableList.of(CACHE_KEY), String.class);
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Test
+    public void setObjects() throws Exception {
+        CacheKey otherKey = CacheKey.app("otherKey");
+        when(pipelinedJedisOps.mset(any())).thenReturn("OK");
+        
+        cacheProvider.setObjects(ImmutableMap.of(CACHE_KEY, "Test", otherKey, "Other"));
+        
+        ArgumentCaptor<Map<String, String>> valuesCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(pipelinedJedisOps).mset(valuesCaptor.capture());
+        Map<String, String> values = valuesCaptor.getValue();
+        assertEquals(values.size(), 2);
+        assertEquals(values.get(CACHE_KEY.toString()), BridgeObjectMapper.get().writeValueAsString("Test"));
+        assertEquals(values.get(otherKey.toString()), BridgeObjectMapper.get().writeValueAsString("Other"));
+    }
+    
+    @Test(expectedExceptions = BridgeServiceException.class)
+    public void setObjectsFails() {
+        when(pipelinedJedisOps.mset(any())).thenReturn(null);
+        
+        cacheProvider.setObjects(ImmutableMap.of(CACHE_KEY, "Test"));
     }
     
     @Test
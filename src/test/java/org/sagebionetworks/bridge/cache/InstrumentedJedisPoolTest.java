@@ -0,0 +1,61 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.annotations.Test;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+public class InstrumentedJedisPoolTest {
+
+    @Test
+    public void countsFailedBorrows() {
+        // Nothing listens on port 1, so connections can't be created.
+        InstrumentedJedisPool pool = new InstrumentedJedisPool(new JedisPoolConfig(), "localhost", 1, 100);
+        try {
+            assertEquals(pool.getBorrowCount(), 0L);
+            try {
+                pool.getResource();
+                fail("expected exception");
+            } catch (JedisConnectionException e) {
+                // expected
+            }
+            assertEquals(pool.getBorrowCount(), 1L);
+            assertEquals(pool.getBorrowFailureCount(), 1L);
+            assertEquals(pool.getBrokenConnectionCount(), 0L);
+        } finally {
+            pool.destroy();
+        }
+    }
+
+    @Test
+    public void writeMetrics() {
+        InstrumentedJedisPool pool = new InstrumentedJedisPool(new JedisPoolConfig(), "localhost", 1, 100);
+        try {
+            try {
+                pool.getResource();
+                fail("expected exception");
+            } catch (JedisConnectionException e) {
+                // expected
+            }
+            ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+            pool.writeMetrics(node);
+
+            assertEquals(pool.getMetricsName(), "redisPool");
+            assertEquals(node.get("borrows").longValue(), 1L);
+            assertEquals(node.get("borrowFailures").longValue(), 1L);
+            assertEquals(node.get("brokenConnections").longValue(), 0L);
+            assertEquals(node.get("active").intValue(), 0);
+            assertEquals(node.get("idle").intValue(), 0);
+            assertEquals(node.get("waiters").intValue(), 0);
+            assertTrue(node.has("borrowWaitMillis"));
+        } finally {
+            pool.destroy();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class PipelinedJedisOpsTest extends Mockito {
+    private static final String KEY = "key";
+
+    @Mock
+    private JedisPool mockJedisPool;
+
+    @Mock
+    private Jedis mockJedis;
+
+    @Mock
+    private Pipeline mockPipeline;
+
+    @Mock
+    private Response<String> mockResponse;
+
+    private PipelinedJedisOps ops;
+
+    @BeforeMethod
+    public void before() {
+        MockitoAnnotations.initMocks(this);
+        when(mockJedisPool.getResource()).thenReturn(mockJedis);
+        when(mockJedis.pipelined()).thenReturn(mockPipeline);
+
+        ops = new PipelinedJedisOps();
+        ops.setJedisPool(mockJedisPool);
+    }
+
+    @Test
+    public void mget() {
+        when(mockJedis.mget("a", "b", "c")).thenReturn(Arrays.asList("1", null, "3"));
+
+        List<String> values = ops.mget(ImmutableList.of("a", "b", "c"));
+        assertEquals(values, Arrays.asList("1", null, "3"));
+        verify(mockJedis).close();
+    }
+
+    @Test
+    public void mgetNoKeys() {
+        assertTrue(ops.mget(ImmutableList.of()).isEmpty());
+        verify(mockJedisPool, never()).getResource();
+    }
+
+    @Test
+    public void mset() {
+        when(mockJedis.mset("a", "1", "b", "2")).thenReturn("OK");
+
+        assertEquals(ops.mset(ImmutableMap.of("a", "1", "b", "2")), "OK");
+        verify(mockJedis).close();
+    }
+
+    @Test
+    public void msetNoValues() {
+        assertEquals(ops.mset(ImmutableMap.of()), "OK");
+        verify(mockJedisPool, never()).getResource();
+    }
+
+    @Test
+    public void getAndExpire() {
+        when(mockPipeline.get(KEY)).thenReturn(mockResponse);
+        when(mockResponse.get()).thenReturn("value");
+
+        assertEquals(ops.getAndExpire(KEY, 100), "value");
+
+        InOrder inOrder = inOrder(mockPipeline, mockResponse, mockJedis);
+        inOrder.verify(mockPipeline).get(KEY);
+        inOrder.verify(mockPipeline).expire(KEY, 100);
+        inOrder.verify(mockPipeline).sync();
+        inOrder.verify(mockResponse).get();
+        inOrder.verify(mockJedis).close();
+    }
+
+    @Test
+    public void getAndExpireMissing() {
+        when(mockPipeline.get(KEY)).thenReturn(mockResponse);
+
+        assertNull(ops.getAndExpire(KEY, 100));
+        verify(mockPipeline).expire(KEY, 100);
+        verify(mockJedis).close();
+    }
+}
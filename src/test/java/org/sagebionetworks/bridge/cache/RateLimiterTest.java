@@ -0,0 +1,130 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.joda.time.DateTimeUtils;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+public class RateLimiterTest extends Mockito {
+    private static final long NOW = 1588327200000L;
+    private static final CacheKey KEY = CacheKey.rateLimit("signin", "1.2.3.4");
+    private static final ImmutableList<String> KEYS = ImmutableList.of(KEY.toString());
+    private static final ImmutableList<String> ARGS = ImmutableList.of("2", "60");
+
+    @Mock
+    private JedisPool mockJedisPool;
+
+    @Mock
+    private Jedis mockJedis;
+
+    private RateLimiter rateLimiter;
+
+    @BeforeMethod
+    public void before() {
+        DateTimeUtils.setCurrentMillisFixed(NOW);
+        MockitoAnnotations.initMocks(this);
+        when(mockJedisPool.getResource()).thenReturn(mockJedis);
+
+        rateLimiter = new RateLimiter();
+        rateLimiter.setJedisPool(mockJedisPool);
+    }
+
+    @AfterMethod
+    public void after() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void allowsWithinLimit() {
+        when(mockJedis.eval(RateLimiter.SCRIPT, KEYS, ARGS)).thenReturn(ImmutableList.of(1L, -1L),
+                ImmutableList.of(2L, -1L));
+
+        assertTrue(rateLimiter.tryAcquire(KEY, 2, 60));
+        assertEquals(rateLimiter.getRetryAfterSeconds(KEY, 2, 60), 0);
+
+        assertEquals(rateLimiter.getAllowedCount(), 2L);
+        assertEquals(rateLimiter.getRejectedCount(), 0L);
+        verify(mockJedis, times(2)).close();
+    }
+
+    @Test
+    public void rejectsOverLimit() {
+        when(mockJedis.eval(RateLimiter.SCRIPT, KEYS, ARGS)).thenReturn(ImmutableList.of(3L, 41500L));
+
+        assertEquals(rateLimiter.getRetryAfterSeconds(KEY, 2, 60), 42);
+        assertEquals(rateLimiter.getRejectedCount(), 1L);
+        assertEquals(rateLimiter.getRejectedLocallyCount(), 0L);
+    }
+
+    @Test
+    public void rejectsLocallyUntilWindowEnds() {
+        when(mockJedis.eval(RateLimiter.SCRIPT, KEYS, ARGS)).thenReturn(ImmutableList.of(3L, 30000L),
+                ImmutableList.of(1L, -1L));
+        assertFalse(rateLimiter.tryAcquire(KEY, 2, 60));
+
+        // Redis isn't called again while the key is blocked.
+        DateTimeUtils.setCurrentMillisFixed(NOW + 20000L);
+        assertEquals(rateLimiter.getRetryAfterSeconds(KEY, 2, 60), 10);
+        verify(mockJedis, times(1)).eval(RateLimiter.SCRIPT, KEYS, ARGS);
+        assertEquals(rateLimiter.getRejectedCount(), 2L);
+        assertEquals(rateLimiter.getRejectedLocallyCount(), 1L);
+
+        // Once the window ends, Redis is checked again.
+        DateTimeUtils.setCurrentMillisFixed(NOW + 30000L);
+        assertTrue(rateLimiter.tryAcquire(KEY, 2, 60));
+        verify(mockJedis, times(2)).eval(RateLimiter.SCRIPT, KEYS, ARGS);
+    }
+
+    @Test
+    public void missingExpirationUsesWindow() {
+        when(mockJedis.eval(RateLimiter.SCRIPT, KEYS, ARGS)).thenReturn(ImmutableList.of(3L, -1L));
+
+        assertEquals(rateLimiter.getRetryAfterSeconds(KEY, 2, 60), 60);
+    }
+
+    @Test
+    public void redisErrorAllowsRequest() {
+        when(mockJedisPool.getResource()).thenThrow(new JedisConnectionException("error"));
+
+        assertTrue(rateLimiter.tryAcquire(KEY, 2, 60));
+        assertEquals(rateLimiter.getErrorCount(), 1L);
+        assertEquals(rateLimiter.getAllowedCount(), 1L);
+    }
+
+    @Test
+    public void writeMetrics() {
+        when(mockJedis.eval(RateLimiter.SCRIPT, KEYS, ARGS)).thenReturn(ImmutableList.of(1L, -1L),
+                ImmutableList.of(3L, 30000L));
+        rateLimiter.tryAcquire(KEY, 2, 60);
+        rateLimiter.tryAcquire(KEY, 2, 60);
+        rateLimiter.tryAcquire(KEY, 2, 60);
+
+        ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+        rateLimiter.writeMetrics(node);
+        assertEquals(rateLimiter.getMetricsName(), "rateLimiter");
+        assertEquals(node.get("allowed").longValue(), 1L);
+        assertEquals(node.get("rejected").longValue(), 2L);
+        assertEquals(node.get("rejectedLocally").longValue(), 1L);
+        assertEquals(node.get("errors").longValue(), 0L);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidLimit() {
+        rateLimiter.tryAcquire(KEY, 0, 60);
+    }
+}
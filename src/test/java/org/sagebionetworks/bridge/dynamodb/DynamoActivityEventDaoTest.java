@@ -17,6 +17,7 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -24,6 +25,7 @@ import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedQueryList;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -111,6 +113,62 @@ public class DynamoActivityEventDaoTest extends Mockito {
         assertSame(eventCaptor.getValue(), SURVEY_FINISHED_EVENT);
     }
     
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void publishEvents() {
+        DynamoActivityEvent laterSurveyEvent = new DynamoActivityEvent.Builder().withHealthCode(HEALTH_CODE)
+                .withObjectType(SURVEY).withEventType(FINISHED).withTimestamp(TIMESTAMP.plusHours(1))
+                .withObjectId("AAA-BBB-CCC").build();
+        DynamoActivityEvent earlierActivityEvent = new DynamoActivityEvent.Builder().withHealthCode(HEALTH_CODE)
+                .withObjectType(ACTIVITY).withObjectId("AAA-BBB-CCC").withEventType(FINISHED)
+                .withTimestamp(TIMESTAMP.minusHours(1)).build();
+        DynamoActivityEvent savedActivityEvent = new DynamoActivityEvent.Builder().withHealthCode(HEALTH_CODE)
+                .withObjectType(ACTIVITY).withObjectId("AAA-BBB-CCC").withEventType(FINISHED)
+                .withTimestamp(TIMESTAMP.minusHours(2)).build();
+        when(mockMapper.batchLoad(any(List.class))).thenReturn(
+                ImmutableMap.<String, List<Object>>of("ActivityEvent", ImmutableList.of(savedActivityEvent)));
+        
+        // The survey event is new, and the later of its two versions is saved. The activity event has been 
+        // saved before, and is updated by both later versions, so the last one is saved.
+        dao.publishEvents(ImmutableList.of(SURVEY_FINISHED_EVENT, earlierActivityEvent, laterSurveyEvent,
+                ACTIVITY_FINISHED_EVENT));
+        
+        ArgumentCaptor<List> keysCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockMapper).batchLoad(keysCaptor.capture());
+        List<DynamoActivityEvent> keys = keysCaptor.getValue();
+        assertEquals(keys.size(), 2);
+        assertEquals(keys.get(0).getHealthCode(), HEALTH_CODE);
+        assertEquals(keys.get(0).getEventId(), "survey:AAA-BBB-CCC:finished");
+        assertEquals(keys.get(1).getHealthCode(), HEALTH_CODE);
+        assertEquals(keys.get(1).getEventId(), "activity:AAA-BBB-CCC:finished");
+        
+        verify(mockMapper).batchSave(listCaptor.capture());
+        assertEquals(listCaptor.getValue(), ImmutableList.of(laterSurveyEvent, ACTIVITY_FINISHED_EVENT));
+        verify(mockMapper, never()).load(any());
+        verify(mockMapper, never()).save(any());
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Test
+    public void publishEventsWithOnlyEarlierEventsSavesNothing() {
+        DynamoActivityEvent laterEvent = new DynamoActivityEvent.Builder().withHealthCode(HEALTH_CODE)
+                .withObjectType(SURVEY).withEventType(FINISHED).withTimestamp(TIMESTAMP.plusHours(1))
+                .withObjectId("AAA-BBB-CCC").build();
+        when(mockMapper.batchLoad(any(List.class))).thenReturn(
+                ImmutableMap.<String, List<Object>>of("ActivityEvent", ImmutableList.of(laterEvent)));
+        
+        dao.publishEvents(ImmutableList.of(SURVEY_FINISHED_EVENT));
+        
+        verify(mockMapper, never()).batchSave(any(List.class));
+    }
+    
+    @Test
+    public void publishEventsWithNoEvents() {
+        dao.publishEvents(ImmutableList.of());
+        
+        verifyZeroInteractions(mockMapper);
+    }
+    
     @Test
     public void publishEventWithStudyId() {
         boolean result = dao.publishEvent(ENROLLMENT_EVENT_WITH_STUDY_ID);
@@ -376,8 +434,9 @@ public class DynamoActivityEventDaoTest extends Mockito {
     public void deleteActivityEventsGlobal() {
         List<DynamoActivityEvent> savedEvents = ImmutableList.of(ENROLLMENT_EVENT, SURVEY_FINISHED_EVENT,
                 QUESTION_ANSWERED_EVENT, ACTIVITY_FINISHED_EVENT);
-        when(queryResults.toArray()).thenReturn(savedEvents.toArray());
-        when(mockMapper.query(eq(DynamoActivityEvent.class), any())).thenReturn(queryResults);
+        when(queryResults.iterator()).thenReturn(savedEvents.iterator());
+        when(mockMapper.query(eq(DynamoActivityEvent.class), any(), eq(DynamoBatchDeleteHelper.ITERATION_ONLY_CONFIG)))
+                .thenReturn(queryResults);
         
         dao.deleteActivityEvents(HEALTH_CODE, null);
         
@@ -390,12 +449,14 @@ public class DynamoActivityEventDaoTest extends Mockito {
     public void deleteActivityEventsStudyScoped() {
         List<DynamoActivityEvent> savedEvents = ImmutableList.of(ENROLLMENT_EVENT, SURVEY_FINISHED_EVENT,
                 QUESTION_ANSWERED_EVENT, ACTIVITY_FINISHED_EVENT);
-        when(queryResults.toArray()).thenReturn(savedEvents.toArray());
-        when(mockMapper.query(eq(DynamoActivityEvent.class), any())).thenReturn(queryResults);
+        when(queryResults.iterator()).thenReturn(savedEvents.iterator());
+        when(mockMapper.query(eq(DynamoActivityEvent.class), any(), eq(DynamoBatchDeleteHelper.ITERATION_ONLY_CONFIG)))
+                .thenReturn(queryResults);
         
         dao.deleteActivityEvents(HEALTH_CODE, TEST_STUDY_ID);
         
-        verify(mockMapper).query(eq(DynamoActivityEvent.class), queryCaptor.capture());
+        verify(mockMapper).query(eq(DynamoActivityEvent.class), queryCaptor.capture(),
+                eq(DynamoBatchDeleteHelper.ITERATION_ONLY_CONFIG));
         assertEquals(queryCaptor.getValue().getHashKeyValues().getHealthCode(), 
                 HEALTH_CODE + ":" + TEST_STUDY_ID);
         verify(mockMapper).batchDelete(listCaptor.capture());
@@ -403,6 +464,24 @@ public class DynamoActivityEventDaoTest extends Mockito {
         assertEquals(eventsToDelete, savedEvents);
     }
     
+    @Test
+    public void deleteActivityEventsInBatches() {
+        List<DynamoActivityEvent> savedEvents = new ArrayList<>();
+        for (int i = 0; i < DynamoBatchDeleteHelper.BATCH_SIZE + 5; i++) {
+            savedEvents.add(new DynamoActivityEvent.Builder().withHealthCode(HEALTH_CODE)
+                    .withObjectType(ENROLLMENT).withTimestamp(TIMESTAMP.plusMinutes(i)).build());
+        }
+        when(queryResults.iterator()).thenReturn(savedEvents.iterator());
+        when(mockMapper.query(eq(DynamoActivityEvent.class), any(), eq(DynamoBatchDeleteHelper.ITERATION_ONLY_CONFIG)))
+                .thenReturn(queryResults);
+        
+        dao.deleteActivityEvents(HEALTH_CODE, null);
+        
+        verify(mockMapper, times(2)).batchDelete(listCaptor.capture());
+        assertEquals(listCaptor.getAllValues().get(0).size(), DynamoBatchDeleteHelper.BATCH_SIZE);
+        assertEquals(listCaptor.getAllValues().get(1).size(), 5);
+    }
+    
     @Test
     public void publishEventIsImmutableFails() {
         when(mockMapper.load(any())).thenReturn(ENROLLMENT_EVENT);
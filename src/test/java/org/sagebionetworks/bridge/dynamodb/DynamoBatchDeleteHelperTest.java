@@ -0,0 +1,88 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public class DynamoBatchDeleteHelperTest {
+
+    @Test
+    public void deletesInBatches() {
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        when(mockMapper.batchDelete(anyList())).thenReturn(ImmutableList.of());
+
+        ImmutableList.Builder<Object> builder = ImmutableList.builder();
+        for (int i = 0; i < 60; i++) {
+            builder.add(new DynamoHealthDataRecord());
+        }
+
+        int count = DynamoBatchDeleteHelper.batchDelete(mockMapper, builder.build());
+        assertEquals(count, 60);
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(mockMapper, times(3)).batchDelete(captor.capture());
+        assertEquals(captor.getAllValues().get(0).size(), 25);
+        assertEquals(captor.getAllValues().get(1).size(), 25);
+        assertEquals(captor.getAllValues().get(2).size(), 10);
+    }
+
+    @Test
+    public void noKeysDoesNotCallBatchDelete() {
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+
+        int count = DynamoBatchDeleteHelper.batchDelete(mockMapper, ImmutableList.of());
+        assertEquals(count, 0);
+
+        verify(mockMapper, never()).batchDelete(anyList());
+    }
+
+    @Test
+    public void retriesFailedBatch() {
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        when(mockMapper.batchDelete(anyList())).thenReturn(ImmutableList.of(makeFailure()), ImmutableList.of());
+
+        int count = DynamoBatchDeleteHelper.batchDelete(mockMapper,
+                ImmutableList.of(new DynamoHealthDataRecord()));
+        assertEquals(count, 1);
+
+        verify(mockMapper, times(2)).batchDelete(anyList());
+    }
+
+    @Test
+    public void throwsAfterMaxRetries() {
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        when(mockMapper.batchDelete(anyList())).thenReturn(ImmutableList.of(makeFailure()));
+
+        try {
+            DynamoBatchDeleteHelper.batchDelete(mockMapper, ImmutableList.of(new DynamoHealthDataRecord()));
+            fail("expected exception");
+        } catch (BridgeServiceException e) {
+            // expected
+        }
+        verify(mockMapper, times(DynamoBatchDeleteHelper.MAX_RETRIES + 1)).batchDelete(anyList());
+    }
+
+    private static FailedBatch makeFailure() {
+        FailedBatch failure = new FailedBatch();
+        failure.setException(new Exception("Throughput exceeded"));
+        failure.setUnprocessedItems(ImmutableMap.of());
+        return failure;
+    }
+}
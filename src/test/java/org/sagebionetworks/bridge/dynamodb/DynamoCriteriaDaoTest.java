@@ -3,8 +3,15 @@ package org.sagebionetworks.bridge.dynamodb;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
@@ -27,6 +34,9 @@ public class DynamoCriteriaDaoTest extends Mockito {
     @Captor
     ArgumentCaptor<DynamoCriteria> criteriaCaptor;
     
+    @Captor
+    ArgumentCaptor<List<?>> keysCaptor;
+    
     @InjectMocks
     DynamoCriteriaDao dao;
     
@@ -65,6 +75,32 @@ public class DynamoCriteriaDaoTest extends Mockito {
         assertNull( dao.getCriteria(CRITERIA_KEY) );
     }
     
+    @SuppressWarnings("unchecked")
+    @Test
+    public void batchGetCriteria() {
+        DynamoCriteria saved = new DynamoCriteria();
+        saved.setKey(CRITERIA_KEY);
+        when(mockMapper.batchLoad(any(List.class))).thenReturn(
+                ImmutableMap.<String, List<Object>>of("Criteria", ImmutableList.of(saved)));
+        
+        Map<String, Criteria> result = dao.batchGetCriteria(ImmutableSet.of(CRITERIA_KEY, "criteria:other"));
+        assertEquals(result.size(), 1);
+        assertSame(result.get(CRITERIA_KEY), saved);
+        
+        verify(mockMapper).batchLoad(keysCaptor.capture());
+        List<DynamoCriteria> keys = (List<DynamoCriteria>)keysCaptor.getValue();
+        assertEquals(keys.size(), 2);
+        assertEquals(keys.get(0).getKey(), CRITERIA_KEY);
+        assertEquals(keys.get(1).getKey(), "criteria:other");
+    }
+    
+    @Test
+    public void batchGetCriteriaNoKeys() {
+        assertTrue(dao.batchGetCriteria(ImmutableSet.of()).isEmpty());
+        
+        verify(mockMapper, never()).batchLoad(any(List.class));
+    }
+    
     @Test
     public void deleteCriteria() {
         Criteria saved = Criteria.create();
@@ -3,16 +3,20 @@ package org.sagebionetworks.bridge.dynamodb;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
@@ -20,15 +24,22 @@ import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
 import com.amazonaws.services.dynamodbv2.document.Index;
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.dynamodbv2.document.ItemCollection;
+import com.amazonaws.services.dynamodbv2.document.KeyAttribute;
+import com.amazonaws.services.dynamodbv2.document.QueryOutcome;
 import com.amazonaws.services.dynamodbv2.document.internal.IteratorSupport;
+import com.amazonaws.services.dynamodbv2.document.spec.QuerySpec;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import org.mockito.ArgumentCaptor;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
 
 @SuppressWarnings({ "unchecked", "rawtypes" })
@@ -138,6 +149,7 @@ public class DynamoHealthDataDaoTest {
         assertEquals(recordKeyList.get(0).getId(), "error record");
     }
 
+    @SuppressWarnings("deprecation")
     @Test
     public void getRecordsForUploadDate() {
         // mock index helper
@@ -153,6 +165,85 @@ public class DynamoHealthDataDaoTest {
         assertSame(retVal, mockResult);
     }
 
+    @Test
+    public void getRecordsForUploadDatePaged() {
+        // Index returns keys in index order. batchLoad returns them in arbitrary order, and one record was deleted
+        // between the index query and the load.
+        DynamoHealthDataRecord record1 = new DynamoHealthDataRecord();
+        record1.setId("record-1");
+        DynamoHealthDataRecord record3 = new DynamoHealthDataRecord();
+        record3.setId("record-3");
+
+        QueryOutcome mockOutcome = mock(QueryOutcome.class);
+        when(mockOutcome.getItems()).thenReturn(ImmutableList.of(new Item().withString("id", "record-1"),
+                new Item().withString("id", "record-2"), new Item().withString("id", "record-3")));
+        when(mockOutcome.getQueryResult()).thenReturn(new QueryResult().withLastEvaluatedKey(
+                ImmutableMap.of("uploadDate", new AttributeValue("2015-02-11"), "id", new AttributeValue("record-3"))));
+
+        DynamoIndexHelper mockIndex = mock(DynamoIndexHelper.class);
+        when(mockIndex.query(any(QuerySpec.class))).thenReturn(mockOutcome);
+
+        Map<String, List<Object>> batchLoadMap = ImmutableMap.of("HealthDataRecord3",
+                ImmutableList.<Object>of(record3, record1));
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        when(mockMapper.batchLoad(any(List.class))).thenReturn(batchLoadMap);
+
+        DynamoHealthDataDao dao = new DynamoHealthDataDao();
+        dao.setMapper(mockMapper);
+        dao.setUploadDateIndex(mockIndex);
+
+        // execute and validate
+        ForwardCursorPagedResourceList<HealthDataRecord> page = dao.getRecordsForUploadDate("2015-02-11",
+                "record-0", 50);
+        assertEquals(page.getItems().size(), 2);
+        assertEquals(page.getItems().get(0).getId(), "record-1");
+        assertEquals(page.getItems().get(1).getId(), "record-3");
+        assertEquals(page.getNextPageOffsetKey(), "record-3");
+        assertEquals(page.getRequestParams().get("offsetKey"), "record-0");
+        assertEquals(page.getRequestParams().get("pageSize"), (Integer) 50);
+
+        ArgumentCaptor<QuerySpec> specCaptor = ArgumentCaptor.forClass(QuerySpec.class);
+        verify(mockIndex).query(specCaptor.capture());
+        QuerySpec spec = specCaptor.getValue();
+        assertEquals(spec.getHashKey().getValue(), "2015-02-11");
+        assertEquals(spec.getMaxPageSize(), Integer.valueOf(50));
+        List<KeyAttribute> startKey = ImmutableList.copyOf(spec.getExclusiveStartKey());
+        assertEquals(startKey.size(), 2);
+        assertEquals(startKey.get(0).getName(), "uploadDate");
+        assertEquals(startKey.get(0).getValue(), "2015-02-11");
+        assertEquals(startKey.get(1).getName(), "id");
+        assertEquals(startKey.get(1).getValue(), "record-0");
+
+        ArgumentCaptor<List> keyCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockMapper).batchLoad(keyCaptor.capture());
+        assertEquals(keyCaptor.getValue().size(), 3);
+    }
+
+    @Test
+    public void getRecordsForUploadDatePagedLastPage() {
+        QueryOutcome mockOutcome = mock(QueryOutcome.class);
+        when(mockOutcome.getItems()).thenReturn(ImmutableList.of());
+        when(mockOutcome.getQueryResult()).thenReturn(new QueryResult());
+
+        DynamoIndexHelper mockIndex = mock(DynamoIndexHelper.class);
+        when(mockIndex.query(any(QuerySpec.class))).thenReturn(mockOutcome);
+
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+
+        DynamoHealthDataDao dao = new DynamoHealthDataDao();
+        dao.setMapper(mockMapper);
+        dao.setUploadDateIndex(mockIndex);
+
+        ForwardCursorPagedResourceList<HealthDataRecord> page = dao.getRecordsForUploadDate("2015-02-11", null, 50);
+        assertTrue(page.getItems().isEmpty());
+        assertNull(page.getNextPageOffsetKey());
+
+        ArgumentCaptor<QuerySpec> specCaptor = ArgumentCaptor.forClass(QuerySpec.class);
+        verify(mockIndex).query(specCaptor.capture());
+        assertNull(specCaptor.getValue().getExclusiveStartKey());
+        verify(mockMapper, never()).batchLoad(any(List.class));
+    }
+
     @Test
     public void getRecordsByHealthCodeCreatedOnSchemaId() {
         // Mock mapper with record.
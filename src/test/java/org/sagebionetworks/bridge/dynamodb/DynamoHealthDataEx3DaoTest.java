@@ -2,9 +2,11 @@ package org.sagebionetworks.bridge.dynamodb;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
@@ -13,6 +15,7 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,7 +38,7 @@ import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecordEx3;
 
-@SuppressWarnings({ "ConstantConditions", "unchecked" })
+@SuppressWarnings({ "ConstantConditions", "unchecked", "rawtypes" })
 public class DynamoHealthDataEx3DaoTest {
     private static final long CREATED_ON_START = 1595560908000L;
     private static final long CREATED_ON_END = 1595647308000L;
@@ -81,7 +84,7 @@ public class DynamoHealthDataEx3DaoTest {
     public void deleteRecordsForHealthCode() {
         // Mock dependencies.
         List<DynamoHealthDataRecordEx3> recordList = ImmutableList.of(new DynamoHealthDataRecordEx3());
-        doReturn(recordList).when(dao).queryHelper(any());
+        doReturn(recordList).when(dao).iterationQueryHelper(any());
 
         // Execute.
         dao.deleteRecordsForHealthCode(TestConstants.HEALTH_CODE);
@@ -89,7 +92,7 @@ public class DynamoHealthDataEx3DaoTest {
         // Validate.
         ArgumentCaptor<DynamoDBQueryExpression<DynamoHealthDataRecordEx3>> queryCaptor = ArgumentCaptor.forClass(
                 DynamoDBQueryExpression.class);
-        verify(dao).queryHelper(queryCaptor.capture());
+        verify(dao).iterationQueryHelper(queryCaptor.capture());
 
         DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query = queryCaptor.getValue();
         assertFalse(query.isConsistentRead());
@@ -97,13 +100,32 @@ public class DynamoHealthDataEx3DaoTest {
         assertEquals(query.getHashKeyValues().getHealthCode(), TestConstants.HEALTH_CODE);
         assertNull(query.getRangeKeyConditions());
 
-        verify(mockMapper).batchDelete(same(recordList));
+        verify(mockMapper).batchDelete(eq(recordList));
+    }
+
+    @Test
+    public void deleteRecordsForHealthCode_DeletesInBatches() {
+        // Mock dependencies. 30 records is more than one DynamoDB batch.
+        List<DynamoHealthDataRecordEx3> recordList = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            recordList.add(new DynamoHealthDataRecordEx3());
+        }
+        doReturn(recordList).when(dao).iterationQueryHelper(any());
+
+        // Execute.
+        dao.deleteRecordsForHealthCode(TestConstants.HEALTH_CODE);
+
+        // Validate.
+        ArgumentCaptor<List> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockMapper, times(2)).batchDelete(batchCaptor.capture());
+        assertEquals(batchCaptor.getAllValues().get(0).size(), 25);
+        assertEquals(batchCaptor.getAllValues().get(1).size(), 5);
     }
 
     @Test
     public void deleteRecordsForHealthCode_NoRecords() {
         // Mock dependencies.
-        doReturn(ImmutableList.of()).when(dao).queryHelper(any());
+        doReturn(ImmutableList.of()).when(dao).iterationQueryHelper(any());
 
         // Execute.
         dao.deleteRecordsForHealthCode(TestConstants.HEALTH_CODE);
@@ -266,6 +266,49 @@ public class DynamoScheduledActivityDaoTest {
         assertEquals(argument.getValue(), activities);
     }
     
+    @SuppressWarnings({"unchecked","rawtypes"})
+    @Test
+    public void getActivitiesByGuid() {
+        DynamoScheduledActivity activity1 = new DynamoScheduledActivity();
+        activity1.setHealthCode(HEALTH_CODE);
+        activity1.setGuid("guid1");
+        DynamoScheduledActivity activity2 = new DynamoScheduledActivity();
+        activity2.setHealthCode(HEALTH_CODE);
+        activity2.setGuid("guid2");
+        mockMapperResults(Lists.newArrayList(activity1, activity2));
+        ArgumentCaptor<List> keysCaptor = ArgumentCaptor.forClass(List.class);
+        
+        // guid3 does not exist, and guid1 is requested twice.
+        Map<String, ScheduledActivity> results = activityDao.getActivitiesByGuid(PACIFIC_TIME_ZONE, HEALTH_CODE,
+                ImmutableList.of("guid1", "guid2", "guid3", "guid1"));
+        
+        assertEquals(results.size(), 2);
+        assertEquals(results.get("guid1"), activity1);
+        assertEquals(results.get("guid2"), activity2);
+        assertEquals(results.get("guid1").getTimeZone(), PACIFIC_TIME_ZONE);
+        
+        // Keys are loaded in a single batch without duplicates.
+        verify(mapper).batchLoad(keysCaptor.capture());
+        List<DynamoScheduledActivity> keys = keysCaptor.getValue();
+        assertEquals(keys.size(), 3);
+        for (DynamoScheduledActivity key : keys) {
+            assertEquals(key.getHealthCode(), HEALTH_CODE);
+        }
+        assertEquals(keys.get(0).getGuid(), "guid1");
+        assertEquals(keys.get(1).getGuid(), "guid2");
+        assertEquals(keys.get(2).getGuid(), "guid3");
+        verifyNoMoreInteractions(mapper);
+    }
+    
+    @Test
+    public void getActivitiesByGuidWithNoGuidsReturnsEmptyMap() {
+        Map<String, ScheduledActivity> results = activityDao.getActivitiesByGuid(DateTimeZone.UTC, HEALTH_CODE,
+                ImmutableList.of());
+        assertTrue(results.isEmpty());
+        
+        verifyNoMoreInteractions(mapper);
+    }
+    
     @Test
     public void callGetActivitiesWithEmptyListReturnsEmptyList() {
         List<ScheduledActivity> activities = activityDao.getActivities(DateTimeZone.UTC, new ArrayList<>());
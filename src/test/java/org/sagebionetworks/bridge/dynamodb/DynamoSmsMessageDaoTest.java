@@ -4,6 +4,7 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.same;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
@@ -11,6 +12,8 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 
+import java.util.List;
+
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
@@ -84,4 +87,21 @@ public class DynamoSmsMessageDaoTest {
         // Validate mapper called with matching input.
         verify(mockMapper).save(same(daoInput));
     }
+
+    @Test
+    public void logMessages() {
+        List<SmsMessage> daoInput = ImmutableList.of(new DynamoSmsMessage(), new DynamoSmsMessage());
+        when(mockMapper.batchSave(daoInput)).thenReturn(ImmutableList.of());
+
+        dao.logMessages(daoInput);
+
+        verify(mockMapper).batchSave(same(daoInput));
+    }
+
+    @Test
+    public void logMessages_EmptyList() {
+        dao.logMessages(ImmutableList.of());
+
+        verify(mockMapper, never()).batchSave(any(List.class));
+    }
 }
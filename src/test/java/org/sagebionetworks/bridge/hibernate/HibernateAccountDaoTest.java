@@ -34,6 +34,7 @@ import com.google.common.collect.Sets;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeUtils;
+import org.joda.time.DateTimeZone;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
@@ -46,6 +47,9 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.ResourceList;
@@ -101,6 +105,9 @@ public class HibernateAccountDaoTest extends Mockito {
 
     @Mock
     private HibernateHelper mockHibernateHelper;
+    
+    @Mock
+    private CacheProvider mockCacheProvider;
 
     private App app;
     
@@ -123,6 +130,7 @@ public class HibernateAccountDaoTest extends Mockito {
 
         dao = spy(new HibernateAccountDao());
         dao.setHibernateHelper(mockHibernateHelper);
+        dao.setCacheProvider(mockCacheProvider);
 
         app = App.create();
         app.setIdentifier(TEST_APP_ID);
@@ -157,6 +165,62 @@ public class HibernateAccountDaoTest extends Mockito {
         verify(mockHibernateHelper).create(account);
     }
 
+    @Test
+    public void createAccountRemovesExternalIdCounts() {
+        Account account = makeValidGenericAccount();
+        account.setEnrollments(ImmutableSet.of(Enrollment.create(TEST_APP_ID, TEST_STUDY_ID, ACCOUNT_ID)));
+
+        dao.createAccount(app, account);
+
+        verify(mockCacheProvider).removeSetOfCacheKeys(CacheKey.externalIdCountList(TEST_APP_ID, TEST_STUDY_ID));
+    }
+
+    @Test
+    public void updateAccountRemovesExternalIdCounts() {
+        Enrollment enrollment = Enrollment.create(TEST_APP_ID, TEST_STUDY_ID, ACCOUNT_ID);
+        enrollment.setExternalId("extId");
+        Enrollment otherEnrollment = Enrollment.create(TEST_APP_ID, "otherStudy", ACCOUNT_ID);
+        Account account = Account.create();
+        account.setEnrollments(ImmutableSet.of(enrollment, otherEnrollment));
+
+        dao.updateAccount(account);
+
+        verify(mockCacheProvider).removeSetOfCacheKeys(CacheKey.externalIdCountList(TEST_APP_ID, TEST_STUDY_ID));
+        verify(mockCacheProvider).removeSetOfCacheKeys(CacheKey.externalIdCountList(TEST_APP_ID, "otherStudy"));
+    }
+
+    @Test
+    public void updateAccountIgnoresCacheError() {
+        doThrow(new BridgeServiceException("Redis unavailable")).when(mockCacheProvider)
+                .removeSetOfCacheKeys(any());
+        Account account = Account.create();
+        account.setEnrollments(ImmutableSet.of(Enrollment.create(TEST_APP_ID, TEST_STUDY_ID, ACCOUNT_ID)));
+
+        dao.updateAccount(account);
+
+        verify(mockHibernateHelper).update(account);
+    }
+
+    @Test
+    public void deleteAccountRemovesExternalIdCounts() {
+        HibernateAccount account = new HibernateAccount();
+        account.setEnrollments(ImmutableSet.of(Enrollment.create(TEST_APP_ID, TEST_STUDY_ID, ACCOUNT_ID)));
+        when(mockHibernateHelper.getById(HibernateAccount.class, ACCOUNT_ID)).thenReturn(account);
+
+        dao.deleteAccount(ACCOUNT_ID);
+
+        verify(mockHibernateHelper).deleteById(HibernateAccount.class, ACCOUNT_ID);
+        verify(mockCacheProvider).removeSetOfCacheKeys(CacheKey.externalIdCountList(TEST_APP_ID, TEST_STUDY_ID));
+    }
+
+    @Test
+    public void deleteAccountNotFound() {
+        dao.deleteAccount(ACCOUNT_ID);
+
+        verify(mockHibernateHelper).deleteById(HibernateAccount.class, ACCOUNT_ID);
+        verify(mockCacheProvider, never()).removeSetOfCacheKeys(any());
+    }
+
     @Test
     public void updateSuccess() {
         Account account = Account.create();
@@ -270,6 +334,62 @@ public class HibernateAccountDaoTest extends Mockito {
         verify(mockHibernateHelper).getById(eq(HibernateAccount.class), eq(wrongApp.getUnguardedAccountId().getId()));
     }
     
+    @Test
+    public void getAccounts() throws Exception {
+        when(dao.generateGUID()).thenReturn(HEALTH_CODE);
+        
+        HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
+        HibernateAccount noHealthCodeAccount = makeValidHibernateAccount(false);
+        noHealthCodeAccount.setId("other-account-id");
+        noHealthCodeAccount.setHealthCode(null);
+        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), any()))
+                .thenReturn(ImmutableList.of(hibernateAccount, noHealthCodeAccount));
+        
+        Set<String> userIds = ImmutableSet.of(ACCOUNT_ID, "other-account-id", "missing-account-id");
+        List<Account> accounts = dao.getAccounts(TEST_APP_ID, userIds);
+        assertEquals(accounts.size(), 2);
+        assertEquals(accounts.get(0).getId(), ACCOUNT_ID);
+        assertEquals(accounts.get(1).getHealthCode(), HEALTH_CODE);
+        
+        verify(mockHibernateHelper).queryGet(HibernateAccountDao.IDS_QUERY,
+                ImmutableMap.of("appId", TEST_APP_ID, "ids", userIds), null, null, HibernateAccount.class);
+        // Only the account without a health code is updated.
+        verify(mockHibernateHelper).update(noHealthCodeAccount);
+        verify(mockHibernateHelper, never()).update(hibernateAccount);
+    }
+    
+    @Test
+    public void getAccountsNoUserIds() {
+        assertTrue(dao.getAccounts(TEST_APP_ID, ImmutableSet.of()).isEmpty());
+        
+        verify(mockHibernateHelper, never()).queryGet(any(), any(), any(), any(), any());
+    }
+    
+    @Test
+    public void getAccountHealthCodes() {
+        HibernateAccount account = new HibernateAccount(ACCOUNT_ID, HEALTH_CODE, DateTimeZone.UTC);
+        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), any()))
+                .thenReturn(ImmutableList.of(account));
+        
+        Set<String> userIds = ImmutableSet.of(ACCOUNT_ID, "missing-account-id");
+        List<Account> accounts = dao.getAccountHealthCodes(TEST_APP_ID, userIds);
+        assertEquals(accounts.size(), 1);
+        assertEquals(accounts.get(0).getId(), ACCOUNT_ID);
+        assertEquals(accounts.get(0).getHealthCode(), HEALTH_CODE);
+        assertEquals(accounts.get(0).getTimeZone(), DateTimeZone.UTC);
+        
+        verify(mockHibernateHelper).queryGet(HibernateAccountDao.HEALTH_CODES_QUERY,
+                ImmutableMap.of("appId", TEST_APP_ID, "ids", userIds), null, null, HibernateAccount.class);
+        verify(mockHibernateHelper, never()).update(any());
+    }
+    
+    @Test
+    public void getAccountHealthCodesNoUserIds() {
+        assertTrue(dao.getAccountHealthCodes(TEST_APP_ID, ImmutableSet.of()).isEmpty());
+        
+        verify(mockHibernateHelper, never()).queryGet(any(), any(), any(), any(), any());
+    }
+    
     @Test
     public void getByEmailSuccessWithHealthCode() throws Exception {
         String expQuery = "SELECT acct FROM HibernateAccount AS acct LEFT JOIN acct.enrollments "
@@ -1,9 +1,11 @@
 package org.sagebionetworks.bridge.hibernate;
 
+import static org.sagebionetworks.bridge.BridgeConstants.SHARED_APP_ID;
 import static org.sagebionetworks.bridge.TestConstants.GUID;
 import static org.sagebionetworks.bridge.TestConstants.IDENTIFIER;
 import static org.sagebionetworks.bridge.hibernate.HibernateAssessmentDao.DELETE_CONFIG_SQL;
 import static org.sagebionetworks.bridge.hibernate.HibernateAssessmentDao.DELETE_RESOURCES_SQL;
+import static org.sagebionetworks.bridge.hibernate.HibernateAssessmentDao.UPSERT_LATEST_REVISION_SQL;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
@@ -24,6 +26,7 @@ import org.hibernate.SessionFactory;
 import org.hibernate.query.NativeQuery;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -42,24 +45,18 @@ import org.sagebionetworks.bridge.models.assessments.config.HibernateAssessmentC
 
 public class HibernateAssessmentDaoTest extends Mockito {
     
-    private static final String QUERY_SQL_EXC_DELETED = "FROM ( SELECT DISTINCT "
-            +"identifier as id, MAX(revision) AS rev FROM Assessments WHERE appId = :appId "
-            +"GROUP BY identifier) AS latest_assessments INNER JOIN Assessments AS a ON "
-            +"a.identifier = latest_assessments.id AND a.revision = latest_assessments.rev "
-            +"WHERE appId = :appId AND deleted = 0 ORDER BY createdOn DESC";
+    private static final String QUERY_SQL_EXC_DELETED = "FROM AssessmentLatestRevisions AS latest "
+            +"INNER JOIN Assessments AS a ON a.guid = latest.guid WHERE latest.appId = :appId AND "
+            +"a.deleted = 0 ORDER BY a.createdOn DESC";
 
-    private static final String QUERY_SQL_INC_DELETED = "FROM ( SELECT DISTINCT "
-            +"identifier as id, MAX(revision) AS rev FROM Assessments WHERE appId = :appId "
-            +"GROUP BY identifier) AS latest_assessments INNER JOIN Assessments AS a ON "+
-            "a.identifier = latest_assessments.id AND a.revision = latest_assessments.rev "
-            +"WHERE appId = :appId ORDER BY createdOn DESC";
+    private static final String QUERY_SQL_INC_DELETED = "FROM AssessmentLatestRevisions AS latest "
+            +"INNER JOIN Assessments AS a ON a.guid = latest.guid WHERE latest.appId = :appId "
+            +"ORDER BY a.createdOn DESC";
     
-    private static final String QUERY_SQL_WITH_TAGS = "FROM ( SELECT DISTINCT "
-            +"identifier as id, MAX(revision) AS rev FROM Assessments WHERE appId = :appId "
-            +"GROUP BY identifier) AS latest_assessments INNER JOIN Assessments AS a ON "
-            +"a.identifier = latest_assessments.id AND a.revision = latest_assessments.rev "
-            +"WHERE appId = :appId AND guid IN (SELECT DISTINCT assessmentGuid FROM "
-            +"AssessmentTags WHERE tagValue IN :tags) AND deleted = 0 ORDER BY createdOn DESC";
+    private static final String QUERY_SQL_WITH_TAGS = "FROM AssessmentLatestRevisions AS latest "
+            +"INNER JOIN Assessments AS a ON a.guid = latest.guid INNER JOIN AssessmentTags AS t ON "
+            +"t.assessmentGuid = a.guid AND t.tagValue IN :tags WHERE latest.appId = :appId AND "
+            +"a.deleted = 0 ORDER BY a.createdOn DESC";
     
     private static final String QUERY_GET_REVISIONS_EXC_DELETED = "FROM HibernateAssessment WHERE "
             +"appId = :appId AND identifier = :identifier AND deleted = 0 ORDER BY "
@@ -102,6 +99,9 @@ public class HibernateAssessmentDaoTest extends Mockito {
     @Mock
     NativeQuery<?> mockDelConfigQuery;
     
+    @Mock
+    NativeQuery<?> mockUpsertLatestRevisionQuery;
+    
     @InjectMocks
     @Spy
     HibernateAssessmentDao dao;
@@ -114,6 +114,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
             Function<Session,HibernateAssessment> func = answer.getArgument(1);
             return func.apply(mockSession);
         });
+        doReturn(mockUpsertLatestRevisionQuery).when(mockSession).createNativeQuery(UPSERT_LATEST_REVISION_SQL);
     }
 
     @Test
@@ -126,7 +127,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
         
         PagedResourceList<Assessment> page = dao.getAssessments(APP_ID_VALUE, 0, 20, null, false);
         assertEquals(queryCaptor.getAllValues().get(0), "SELECT count(*) " + QUERY_SQL_EXC_DELETED);
-        assertEquals(queryCaptor.getAllValues().get(1), "SELECT * " + QUERY_SQL_EXC_DELETED);
+        assertEquals(queryCaptor.getAllValues().get(1), "SELECT a.* " + QUERY_SQL_EXC_DELETED);
         
         Map<String,Object> params = paramsCaptor.getValue();
         assertEquals(params.get("appId"), APP_ID_VALUE);
@@ -142,7 +143,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
         
         dao.getAssessments(APP_ID_VALUE, 0, 20, null, true);
         assertEquals(queryCaptor.getAllValues().get(0), "SELECT count(*) " + QUERY_SQL_INC_DELETED);
-        assertEquals(queryCaptor.getAllValues().get(1), "SELECT * " + QUERY_SQL_INC_DELETED);
+        assertEquals(queryCaptor.getAllValues().get(1), "SELECT a.* " + QUERY_SQL_INC_DELETED);
     }
     
     @Test
@@ -152,8 +153,8 @@ public class HibernateAssessmentDaoTest extends Mockito {
                 .thenReturn(ImmutableList.of());
         
         dao.getAssessments(APP_ID_VALUE, 0, 20, ImmutableSet.of("tagA", "tagB"), false);
-        assertEquals(queryCaptor.getAllValues().get(0), "SELECT count(*) " + QUERY_SQL_WITH_TAGS);
-        assertEquals(queryCaptor.getAllValues().get(1), "SELECT * " + QUERY_SQL_WITH_TAGS);
+        assertEquals(queryCaptor.getAllValues().get(0), "SELECT count(DISTINCT a.guid) " + QUERY_SQL_WITH_TAGS);
+        assertEquals(queryCaptor.getAllValues().get(1), "SELECT DISTINCT a.* " + QUERY_SQL_WITH_TAGS);
     }
     
     @Test
@@ -249,6 +250,8 @@ public class HibernateAssessmentDaoTest extends Mockito {
         
         verify(mockSession).merge(assessmentCaptor.capture());
         assertEquals(assessmentCaptor.getValue().getGuid(), GUID);
+        
+        verifyLatestRevisionUpdated(APP_ID_VALUE, IDENTIFIER);
     }
 
     @Test
@@ -259,6 +262,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
         assertNotNull(returnValue);
         
         verify(mockSession).merge(any(HibernateAssessment.class));
+        verifyLatestRevisionUpdated(APP_ID_VALUE, null);
     }
     
     // I discovered a ClassCastException because we're not converting and returning
@@ -327,6 +331,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
         verify(mockDelConfigQuery).executeUpdate();
         
         verify(mockSession).remove(any());
+        verifyLatestRevisionUpdated(APP_ID_VALUE, IDENTIFIER);
     }
     
     @Test
@@ -342,6 +347,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
         verify(mockHelper).executeWithExceptionHandling(any(HibernateAssessment.class), any());
         verify(mockSession).saveOrUpdate(any(HibernateAssessmentConfig.class));
         verify(mockSession).saveOrUpdate(any(HibernateAssessment.class));
+        verifyLatestRevisionUpdated(SHARED_APP_ID, IDENTIFIER);
     }
     
     @Test
@@ -355,6 +361,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
         verify(mockHelper).executeWithExceptionHandling(any(HibernateAssessment.class), any());
         verify(mockSession).saveOrUpdate(any(HibernateAssessmentConfig.class));
         verify(mockSession).merge(any(HibernateAssessment.class));
+        verifyLatestRevisionUpdated(APP_ID_VALUE, IDENTIFIER);
     }
 
     @Test
@@ -385,4 +392,13 @@ public class HibernateAssessmentDaoTest extends Mockito {
         assertEquals("shared", publishedMap.get("appId"));
         assertEquals(APP_ID_VALUE + ":" + ORG_ID, publishedMap.get("ownerId"));
     }
+    
+    private void verifyLatestRevisionUpdated(String appId, String identifier) {
+        InOrder inOrder = inOrder(mockSession, mockUpsertLatestRevisionQuery);
+        inOrder.verify(mockSession).flush();
+        inOrder.verify(mockUpsertLatestRevisionQuery).executeUpdate();
+        verify(mockUpsertLatestRevisionQuery).setParameter("appId", appId);
+        verify(mockUpsertLatestRevisionQuery).setParameter("identifier", identifier);
+        verify(mockSession, never()).createNativeQuery(startsWith("DELETE FROM AssessmentLatestRevisions"));
+    }
 }
@@ -13,6 +13,7 @@ import java.util.List;
 import java.util.Map;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
@@ -42,6 +43,8 @@ public class HibernateEnrollmentDaoTest extends Mockito {
     
     @BeforeMethod
     public void beforeMethod() {
+        // Create a new DAO for each test, so the enrolledBy cache starts out empty.
+        dao = null;
         MockitoAnnotations.initMocks(this);
     }
     
@@ -59,14 +62,17 @@ public class HibernateEnrollmentDaoTest extends Mockito {
         when(mockHelper.queryGet(any(), any(), any(), any(), eq(HibernateEnrollment.class))).thenReturn(page);
         
         HibernateAccount account1 = new HibernateAccount();
+        account1.setId("id1");
         account1.setLastName("account1");
         HibernateAccount account2 = new HibernateAccount();
+        account2.setId("id2");
         account2.setLastName("account2");
         HibernateAccount account3 = new HibernateAccount();
+        account3.setId("id3");
         account3.setLastName("account3");
         
-        when(mockHelper.queryGet(eq(REF_QUERY), any(), isNull(), eq(1), eq(HibernateAccount.class)))
-            .thenReturn(ImmutableList.of(account1), ImmutableList.of(account2), ImmutableList.of(account3));
+        when(mockHelper.queryGet(eq(REF_QUERY), any(), isNull(), isNull(), eq(HibernateAccount.class)))
+            .thenReturn(ImmutableList.of(account1, account2, account3));
         
         PagedResourceList<EnrollmentDetail> retValue = dao.getEnrollmentsForStudy(TEST_APP_ID, TEST_STUDY_ID, null, true, 10, 75);
         assertEquals(retValue.getTotal(), Integer.valueOf(20));
@@ -104,14 +110,17 @@ public class HibernateEnrollmentDaoTest extends Mockito {
         when(mockHelper.queryGet(any(), any(), any(), any(), eq(HibernateEnrollment.class))).thenReturn(page);
         
         HibernateAccount account1 = new HibernateAccount();
+        account1.setId("id1");
         account1.setLastName("account1");
         HibernateAccount account2 = new HibernateAccount();
+        account2.setId("id2");
         account2.setLastName("account2");
         HibernateAccount account3 = new HibernateAccount();
+        account3.setId("id3");
         account3.setLastName("account3");
         
-        when(mockHelper.queryGet(eq(REF_QUERY), any(), isNull(), eq(1), eq(HibernateAccount.class)))
-            .thenReturn(ImmutableList.of(account1), ImmutableList.of(account2), ImmutableList.of(account3));
+        when(mockHelper.queryGet(eq(REF_QUERY), any(), isNull(), isNull(), eq(HibernateAccount.class)))
+            .thenReturn(ImmutableList.of(account1, account2, account3));
         
         PagedResourceList<EnrollmentDetail> retValue = dao.getEnrollmentsForStudy(TEST_APP_ID, TEST_STUDY_ID, ENROLLED,
                 true, 10, 75);
@@ -151,14 +160,17 @@ public class HibernateEnrollmentDaoTest extends Mockito {
         when(mockHelper.queryGet(any(), any(), any(), any(), eq(HibernateEnrollment.class))).thenReturn(page);
         
         HibernateAccount account1 = new HibernateAccount();
+        account1.setId("id1");
         account1.setLastName("account1");
         HibernateAccount account2 = new HibernateAccount();
+        account2.setId("id2");
         account2.setLastName("account2");
         HibernateAccount account3 = new HibernateAccount();
+        account3.setId("id3");
         account3.setLastName("account3");
         
-        when(mockHelper.queryGet(eq(REF_QUERY), any(), isNull(), eq(1), eq(HibernateAccount.class)))
-            .thenReturn(ImmutableList.of(account1), ImmutableList.of(account2), ImmutableList.of(account3));
+        when(mockHelper.queryGet(eq(REF_QUERY), any(), isNull(), isNull(), eq(HibernateAccount.class)))
+            .thenReturn(ImmutableList.of(account1, account2, account3));
         
         PagedResourceList<EnrollmentDetail> retValue = dao.getEnrollmentsForStudy(TEST_APP_ID, TEST_STUDY_ID, ENROLLED,
                 false, 10, 75);
@@ -200,14 +212,17 @@ public class HibernateEnrollmentDaoTest extends Mockito {
         when(mockHelper.queryGet(any(), any(), isNull(), isNull(), eq(HibernateEnrollment.class))).thenReturn(page);
         
         HibernateAccount account1 = new HibernateAccount();
+        account1.setId("id1");
         account1.setLastName("account1");
         HibernateAccount account2 = new HibernateAccount();
+        account2.setId("id2");
         account2.setLastName("account2");
         HibernateAccount account3 = new HibernateAccount();
+        account3.setId("id3");
         account3.setLastName("account3");
         
-        when(mockHelper.queryGet(eq(REF_QUERY), any(), isNull(), eq(1), eq(HibernateAccount.class)))
-            .thenReturn(ImmutableList.of(account1), ImmutableList.of(account2), ImmutableList.of(account3));
+        when(mockHelper.queryGet(eq(REF_QUERY), any(), isNull(), isNull(), eq(HibernateAccount.class)))
+            .thenReturn(ImmutableList.of(account1, account2, account3));
         
         List<EnrollmentDetail> retValue = dao.getEnrollmentsForUser(TEST_APP_ID, TEST_USER_ID);
         EnrollmentDetail detail1 = retValue.get(0);
@@ -222,5 +237,89 @@ public class HibernateEnrollmentDaoTest extends Mockito {
         assertEquals(paramsCaptor.getValue().get("appId"), TEST_APP_ID);
         assertEquals(paramsCaptor.getValue().get("userId"), TEST_USER_ID);
     }
-
+    
+    @SuppressWarnings("unchecked")
+    @Test
+    public void accountRefsResolvedInOneQuery() {
+        HibernateEnrollment en1 = new HibernateEnrollment();
+        en1.setAccountId("id1");
+        en1.setEnrolledBy("id3");
+        HibernateEnrollment en2 = new HibernateEnrollment();
+        en2.setAccountId("id2");
+        en2.setEnrolledBy("id3");
+        en2.setWithdrawnBy("id4");
+        List<HibernateEnrollment> page = ImmutableList.of(en1, en2);
+        
+        when(mockHelper.queryCount(any(), any())).thenReturn(2);
+        when(mockHelper.queryGet(any(), any(), any(), any(), eq(HibernateEnrollment.class))).thenReturn(page);
+        
+        HibernateAccount account1 = new HibernateAccount();
+        account1.setId("id1");
+        HibernateAccount account2 = new HibernateAccount();
+        account2.setId("id2");
+        HibernateAccount account3 = new HibernateAccount();
+        account3.setId("id3");
+        account3.setLastName("staff");
+        // id4 doesn't exist
+        when(mockHelper.queryGet(eq(REF_QUERY), any(), isNull(), isNull(), eq(HibernateAccount.class)))
+            .thenReturn(ImmutableList.of(account1, account2, account3));
+        
+        PagedResourceList<EnrollmentDetail> retValue = dao.getEnrollmentsForStudy(TEST_APP_ID, TEST_STUDY_ID, null, true, 0, 50);
+        assertEquals(retValue.getItems().get(0).getParticipant().getIdentifier(), "id1");
+        assertEquals(retValue.getItems().get(0).getEnrolledBy().getLastName(), "staff");
+        assertEquals(retValue.getItems().get(1).getParticipant().getIdentifier(), "id2");
+        assertEquals(retValue.getItems().get(1).getEnrolledBy().getLastName(), "staff");
+        assertNull(retValue.getItems().get(1).getWithdrawnBy());
+        
+        verify(mockHelper).queryGet(eq(REF_QUERY), paramsCaptor.capture(), isNull(), isNull(), 
+                eq(HibernateAccount.class));
+        assertEquals(paramsCaptor.getValue().get("appId"), TEST_APP_ID);
+        assertEquals(paramsCaptor.getValue().get("ids"), ImmutableSet.of("id1", "id2", "id3", "id4"));
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Test
+    public void enrolledByAccountRefsCached() {
+        HibernateEnrollment en1 = new HibernateEnrollment();
+        en1.setAccountId("id1");
+        en1.setEnrolledBy("id2");
+        HibernateEnrollment en2 = new HibernateEnrollment();
+        en2.setAccountId("id3");
+        en2.setEnrolledBy("id2");
+        
+        when(mockHelper.queryGet(any(), any(), isNull(), isNull(), eq(HibernateEnrollment.class)))
+            .thenReturn(ImmutableList.of(en1), ImmutableList.of(en2));
+        
+        HibernateAccount account1 = new HibernateAccount();
+        account1.setId("id1");
+        HibernateAccount account2 = new HibernateAccount();
+        account2.setId("id2");
+        account2.setLastName("staff");
+        HibernateAccount account3 = new HibernateAccount();
+        account3.setId("id3");
+        when(mockHelper.queryGet(eq(REF_QUERY), any(), isNull(), isNull(), eq(HibernateAccount.class)))
+            .thenReturn(ImmutableList.of(account1, account2), ImmutableList.of(account3));
+        
+        dao.getEnrollmentsForUser(TEST_APP_ID, "id1");
+        List<EnrollmentDetail> retValue = dao.getEnrollmentsForUser(TEST_APP_ID, "id3");
+        assertEquals(retValue.get(0).getParticipant().getIdentifier(), "id3");
+        assertEquals(retValue.get(0).getEnrolledBy().getLastName(), "staff");
+        
+        verify(mockHelper, times(2)).queryGet(eq(REF_QUERY), paramsCaptor.capture(), isNull(), isNull(), 
+                eq(HibernateAccount.class));
+        assertEquals(paramsCaptor.getAllValues().get(0).get("ids"), ImmutableSet.of("id1", "id2"));
+        // The second query doesn't look up the staff account again
+        assertEquals(paramsCaptor.getAllValues().get(1).get("ids"), ImmutableSet.of("id3"));
+    }
+    
+    @Test
+    public void noAccountRefsNoQuery() {
+        when(mockHelper.queryGet(any(), any(), isNull(), isNull(), eq(HibernateEnrollment.class)))
+            .thenReturn(ImmutableList.of(new HibernateEnrollment()));
+        
+        List<EnrollmentDetail> retValue = dao.getEnrollmentsForUser(TEST_APP_ID, TEST_USER_ID);
+        assertEquals(retValue.size(), 1);
+        
+        verify(mockHelper, never()).queryGet(eq(REF_QUERY), any(), any(), any(), eq(HibernateAccount.class));
+    }
 }
@@ -27,8 +27,12 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.dao.AccountDao;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
@@ -44,6 +48,7 @@ public class HibernateExternalIdDaoTest extends Mockito {
     private static final String FULL_COUNT_QUERY = "SELECT count(en) from HibernateEnrollment as en WHERE en.appId = :appId AND en.studyId = :studyId AND en.externalId IS NOT NULL AND en.externalId LIKE :idFilter ORDER BY en.externalId";
     private static final String QUERY = "SELECT en from HibernateEnrollment as en WHERE en.appId = :appId AND en.studyId = :studyId AND en.externalId IS NOT NULL ORDER BY en.externalId";
     private static final String COUNT_QUERY = "SELECT count(en) from HibernateEnrollment as en WHERE en.appId = :appId AND en.studyId = :studyId AND en.externalId IS NOT NULL ORDER BY en.externalId";
+    private static final String OFFSET_KEY_QUERY = "SELECT en from HibernateEnrollment as en WHERE en.appId = :appId AND en.studyId = :studyId AND en.externalId IS NOT NULL AND en.externalId LIKE :idFilter ESCAPE '!' AND en.externalId > :offsetKey ORDER BY en.externalId";
     
     @Mock
     HibernateHelper mockHelper;
@@ -51,6 +56,9 @@ public class HibernateExternalIdDaoTest extends Mockito {
     @Mock
     AccountDao mockAccountDao;
     
+    @Mock
+    CacheProvider mockCacheProvider;
+    
     @Captor
     ArgumentCaptor<String> queryCaptor;
     
@@ -87,7 +95,7 @@ public class HibernateExternalIdDaoTest extends Mockito {
         
         when(mockHelper.queryCount(any(), any())).thenReturn(100);
         
-        PagedResourceList<ExternalIdentifierInfo> retValue = dao.getPagedExternalIds(TEST_APP_ID, TEST_STUDY_ID, "idFilter", 100, 50);
+        PagedResourceList<ExternalIdentifierInfo> retValue = dao.getPagedExternalIds(TEST_APP_ID, TEST_STUDY_ID, "idFilter", 100, 2);
         assertEquals(retValue.getTotal(), new Integer(100));
         
         ExternalIdentifierInfo info1 = retValue.getItems().get(0);
@@ -100,7 +108,7 @@ public class HibernateExternalIdDaoTest extends Mockito {
         assertEquals(info2.getStudyId(), TEST_STUDY_ID);
         assertTrue(info2.isAssigned());
         
-        verify(mockHelper).queryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(100), eq(50), eq(HibernateEnrollment.class));
+        verify(mockHelper).queryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(100), eq(2), eq(HibernateEnrollment.class));
         verify(mockHelper).queryCount(queryCaptor.capture(), paramsCaptor.capture());
         
         String query1 = queryCaptor.getAllValues().get(0);
@@ -144,6 +152,159 @@ public class HibernateExternalIdDaoTest extends Mockito {
         assertEquals(params2.get("studyId"), TEST_STUDY_ID);
         assertNull(params1.get("idFilter"));        
     }
+    
+    @Test
+    public void getPagedExternalIdsDoesNotEscapeIdFilter() {
+        when(mockHelper.queryGet(any(), any(), any(), any(), eq(HibernateEnrollment.class)))
+            .thenReturn(ImmutableList.of());
+        
+        // Callers of the offset-paged API can use LIKE wildcards in the filter
+        dao.getPagedExternalIds(TEST_APP_ID, TEST_STUDY_ID, "a_b%c!", 0, 50);
+        
+        verify(mockHelper).queryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(0), eq(50),
+                eq(HibernateEnrollment.class));
+        assertEquals(queryCaptor.getValue(), FULL_QUERY);
+        assertEquals(paramsCaptor.getValue().get("idFilter"), "a_b%c!%");
+    }
+    
+    @Test
+    public void getPagedExternalIdsLastPageIsNotCounted() {
+        HibernateEnrollment en1 = new HibernateEnrollment();
+        en1.setExternalId("extId1");
+        when(mockHelper.queryGet(any(), any(), any(), any(), eq(HibernateEnrollment.class)))
+            .thenReturn(ImmutableList.of(en1));
+        
+        PagedResourceList<ExternalIdentifierInfo> retValue = dao.getPagedExternalIds(TEST_APP_ID, TEST_STUDY_ID,
+                null, 100, 50);
+        assertEquals(retValue.getTotal(), new Integer(101));
+        
+        verify(mockHelper, never()).queryCount(any(), any());
+    }
+    
+    @Test
+    public void getPagedExternalIdsEmptyFirstPageIsNotCounted() {
+        when(mockHelper.queryGet(any(), any(), any(), any(), eq(HibernateEnrollment.class)))
+            .thenReturn(ImmutableList.of());
+        
+        PagedResourceList<ExternalIdentifierInfo> retValue = dao.getPagedExternalIds(TEST_APP_ID, TEST_STUDY_ID,
+                null, 0, 50);
+        assertEquals(retValue.getTotal(), new Integer(0));
+        
+        verify(mockHelper, never()).queryCount(any(), any());
+    }
+    
+    @Test
+    public void getPagedExternalIdsCachesCount() {
+        when(mockHelper.queryGet(any(), any(), any(), any(), eq(HibernateEnrollment.class)))
+            .thenReturn(ImmutableList.of());
+        when(mockHelper.queryCount(any(), any())).thenReturn(100);
+        
+        PagedResourceList<ExternalIdentifierInfo> retValue = dao.getPagedExternalIds(TEST_APP_ID, TEST_STUDY_ID,
+                "idFilter", 100, 50);
+        assertEquals(retValue.getTotal(), new Integer(100));
+        
+        CacheKey countKey = CacheKey.externalIdCount(TEST_APP_ID, TEST_STUDY_ID, "idFilter");
+        CacheKey countListKey = CacheKey.externalIdCountList(TEST_APP_ID, TEST_STUDY_ID);
+        verify(mockCacheProvider).getObject(countKey, Integer.class);
+        verify(mockCacheProvider).setObject(countKey, 100, HibernateExternalIdDao.COUNT_CACHE_SECONDS);
+        verify(mockCacheProvider).addCacheKeyToSet(countListKey, countKey.toString());
+        verify(mockCacheProvider).setExpiration(countListKey, HibernateExternalIdDao.COUNT_CACHE_SECONDS);
+    }
+    
+    @Test
+    public void getPagedExternalIdsUsesCachedCount() {
+        when(mockHelper.queryGet(any(), any(), any(), any(), eq(HibernateEnrollment.class)))
+            .thenReturn(ImmutableList.of());
+        CacheKey countKey = CacheKey.externalIdCount(TEST_APP_ID, TEST_STUDY_ID, "");
+        when(mockCacheProvider.getObject(countKey, Integer.class)).thenReturn(100);
+        
+        PagedResourceList<ExternalIdentifierInfo> retValue = dao.getPagedExternalIds(TEST_APP_ID, TEST_STUDY_ID,
+                null, 150, 50);
+        assertEquals(retValue.getTotal(), new Integer(100));
+        
+        verify(mockHelper, never()).queryCount(any(), any());
+        verify(mockCacheProvider, never()).setObject(any(), any(), anyInt());
+    }
+    
+    @Test
+    public void getPagedExternalIdsNullOffsetBy() {
+        HibernateEnrollment en1 = new HibernateEnrollment();
+        en1.setExternalId("extId1");
+        when(mockHelper.queryGet(any(), any(), any(), any(), eq(HibernateEnrollment.class)))
+            .thenReturn(ImmutableList.of(en1));
+        
+        PagedResourceList<ExternalIdentifierInfo> retValue = dao.getPagedExternalIds(TEST_APP_ID, TEST_STUDY_ID,
+                null, null, 50);
+        assertEquals(retValue.getTotal(), new Integer(1));
+        
+        verify(mockHelper).queryGet(any(), any(), eq(0), eq(50), eq(HibernateEnrollment.class));
+    }
+    
+    @Test
+    public void getPagedExternalIdsByOffsetKey() {
+        HibernateEnrollment en1 = new HibernateEnrollment();
+        en1.setStudyId(TEST_STUDY_ID);
+        en1.setExternalId("extId1");
+        HibernateEnrollment en2 = new HibernateEnrollment();
+        en2.setStudyId(TEST_STUDY_ID);
+        en2.setExternalId("extId2");
+        HibernateEnrollment en3 = new HibernateEnrollment();
+        en3.setStudyId(TEST_STUDY_ID);
+        en3.setExternalId("extId3");
+        when(mockHelper.queryGet(any(), any(), any(), any(), eq(HibernateEnrollment.class)))
+            .thenReturn(ImmutableList.of(en1, en2, en3));
+        
+        String offsetKey = HibernateExternalIdDao.encodeOffsetKey("extId0");
+        ForwardCursorPagedResourceList<ExternalIdentifierInfo> retValue = dao.getPagedExternalIdsByOffsetKey(
+                TEST_APP_ID, TEST_STUDY_ID, "ext", offsetKey, 2);
+        
+        assertEquals(retValue.getItems().size(), 2);
+        assertEquals(retValue.getItems().get(0).getIdentifier(), "extId1");
+        assertEquals(retValue.getItems().get(1).getIdentifier(), "extId2");
+        assertEquals(retValue.getNextPageOffsetKey(), HibernateExternalIdDao.encodeOffsetKey("extId2"));
+        
+        verify(mockHelper).queryGet(queryCaptor.capture(), paramsCaptor.capture(), isNull(), eq(3),
+                eq(HibernateEnrollment.class));
+        verify(mockHelper, never()).queryCount(any(), any());
+        assertEquals(queryCaptor.getValue(), OFFSET_KEY_QUERY);
+        assertEquals(paramsCaptor.getValue().get("idFilter"), "ext%");
+        assertEquals(paramsCaptor.getValue().get("offsetKey"), "extId0");
+    }
+    
+    @Test
+    public void getPagedExternalIdsByOffsetKeyEscapesIdFilter() {
+        when(mockHelper.queryGet(any(), any(), any(), any(), eq(HibernateEnrollment.class)))
+            .thenReturn(ImmutableList.of());
+        
+        dao.getPagedExternalIdsByOffsetKey(TEST_APP_ID, TEST_STUDY_ID, "a_b%c!", null, 50);
+        
+        verify(mockHelper).queryGet(any(), paramsCaptor.capture(), isNull(), eq(51), eq(HibernateEnrollment.class));
+        assertEquals(paramsCaptor.getValue().get("idFilter"), "a!_b!%c!!%");
+    }
+    
+    @Test
+    public void getPagedExternalIdsByOffsetKeyLastPage() {
+        HibernateEnrollment en1 = new HibernateEnrollment();
+        en1.setExternalId("extId1");
+        when(mockHelper.queryGet(any(), any(), any(), any(), eq(HibernateEnrollment.class)))
+            .thenReturn(ImmutableList.of(en1));
+        
+        ForwardCursorPagedResourceList<ExternalIdentifierInfo> retValue = dao.getPagedExternalIdsByOffsetKey(
+                TEST_APP_ID, TEST_STUDY_ID, null, null, 2);
+        
+        assertEquals(retValue.getItems().size(), 1);
+        assertNull(retValue.getNextPageOffsetKey());
+        
+        verify(mockHelper).queryGet(queryCaptor.capture(), paramsCaptor.capture(), isNull(), eq(3),
+                eq(HibernateEnrollment.class));
+        assertEquals(queryCaptor.getValue(), QUERY);
+        assertNull(paramsCaptor.getValue().get("offsetKey"));
+    }
+    
+    @Test(expectedExceptions = BadRequestException.class)
+    public void getPagedExternalIdsByOffsetKeyInvalidKey() {
+        dao.getPagedExternalIdsByOffsetKey(TEST_APP_ID, TEST_STUDY_ID, null, "not a key!", 2);
+    }
 
     @Test
     public void deleteExternalId() {
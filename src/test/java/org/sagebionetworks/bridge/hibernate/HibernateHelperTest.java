@@ -39,7 +39,10 @@ import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.metrics.Dependency;
+import org.sagebionetworks.bridge.models.Metrics;
 import org.sagebionetworks.bridge.models.accounts.Account;
 
 @SuppressWarnings("unchecked")
@@ -316,6 +319,31 @@ public class HibernateHelperTest {
         inOrder.verify(mockSession).close();
     }
     
+    @Test
+    public void executeRecordsCallInRequestMetrics() {
+        when(mockSession.beginTransaction()).thenReturn(mockTransaction);
+        when(mockSessionFactory.openSession()).thenReturn(mockSession);
+        helper = new HibernateHelper(mockSessionFactory, mockExceptionConverter);
+
+        RequestContext.set(new RequestContext.Builder().withRequestId("request-id").build());
+        try {
+            helper.execute(session -> null);
+            try {
+                helper.execute(session -> {
+                    throw TEST_EXCEPTION;
+                });
+                fail("expected exception");
+            } catch (RuntimeException e) {
+                assertSame(e, TEST_EXCEPTION);
+            }
+            
+            Metrics metrics = RequestContext.get().getMetrics();
+            assertEquals(metrics.getDependencyCalls(Dependency.MYSQL), 2L);
+        } finally {
+            RequestContext.set(null);
+        }
+    }
+    
     // These methods verify that the helper is using the exception converter. The exact behavior of the
     // converter is tested separately.
     
@@ -0,0 +1,219 @@
+package org.sagebionetworks.bridge.http;
+
+import static org.sagebionetworks.bridge.RequestContext.NULL_INSTANCE;
+import static org.sagebionetworks.bridge.http.PartnerHttpClient.Destination.CUIMC;
+import static org.sagebionetworks.bridge.http.PartnerHttpClient.Destination.GBF;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.fluent.Request;
+import org.joda.time.DateTimeUtils;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
+import org.sagebionetworks.bridge.models.Metrics;
+
+public class PartnerHttpClientTest extends Mockito {
+    private static final long NOW = 1588327200000L;
+    private static final String URL = "https://example.com/api";
+
+    @Mock
+    private BridgeConfig mockBridgeConfig;
+
+    @Mock
+    private MetricsRegistry mockMetricsRegistry;
+
+    private PartnerHttpClient client;
+    private Metrics metrics;
+
+    @BeforeMethod
+    public void before() {
+        MockitoAnnotations.initMocks(this);
+        DateTimeUtils.setCurrentMillisFixed(NOW);
+
+        when(mockBridgeConfig.get("partner.http.max.connections")).thenReturn("10");
+        when(mockBridgeConfig.get("partner.http.connect.timeout.millis")).thenReturn("2000");
+        when(mockBridgeConfig.get("partner.http.socket.timeout.millis")).thenReturn("10000");
+        when(mockBridgeConfig.get("partner.http.max.retries")).thenReturn("2");
+        when(mockBridgeConfig.get("partner.http.retry.backoff.millis")).thenReturn("100");
+        when(mockBridgeConfig.get("partner.http.circuit.failure.threshold")).thenReturn("3");
+        when(mockBridgeConfig.get("partner.http.circuit.open.seconds")).thenReturn("30");
+        // GBF overrides the retry setting.
+        when(mockBridgeConfig.get("partner.http.gbf.max.retries")).thenReturn("0");
+
+        client = spy(new PartnerHttpClient());
+        client.setBridgeConfig(mockBridgeConfig);
+        client.setMetricsRegistry(mockMetricsRegistry);
+        doNothing().when(client).sleep(anyLong());
+
+        metrics = new Metrics("request-id");
+        RequestContext.set(new RequestContext.Builder().withRequestId("request-id").withMetrics(metrics).build());
+    }
+
+    @AfterMethod
+    public void after() {
+        client.shutdown();
+        RequestContext.set(NULL_INSTANCE);
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void success() throws Exception {
+        HttpResponse response = mockResponse(200);
+        doReturn(response).when(client).send(eq(CUIMC), any());
+
+        assertSame(client.execute(CUIMC, Request.Get(URL), true), response);
+
+        verify(client, times(1)).send(eq(CUIMC), any());
+        verify(mockMetricsRegistry).recordPartnerCall(eq("cuimc"), anyLong(), eq(false));
+
+        JsonNode call = metrics.getJson().get("partner_calls").get(0);
+        assertEquals(call.get("destination").textValue(), "cuimc");
+        assertEquals(call.get("status").intValue(), 200);
+    }
+
+    @Test
+    public void clientErrorIsNotRetried() throws Exception {
+        HttpResponse response = mockResponse(404);
+        doReturn(response).when(client).send(eq(CUIMC), any());
+
+        assertSame(client.execute(CUIMC, Request.Get(URL), true), response);
+
+        verify(client, times(1)).send(eq(CUIMC), any());
+        verify(mockMetricsRegistry).recordPartnerCall(eq("cuimc"), anyLong(), eq(false));
+    }
+
+    @Test
+    public void idempotentRequestRetriedWithBackoff() throws Exception {
+        HttpResponse serverError = mockResponse(503);
+        HttpResponse success = mockResponse(200);
+        doThrow(new IOException("timeout")).doReturn(serverError).doReturn(success).when(client)
+                .send(eq(CUIMC), any());
+
+        assertSame(client.execute(CUIMC, Request.Get(URL), true), success);
+
+        verify(client, times(3)).send(eq(CUIMC), any());
+        verify(client).sleep(100L);
+        verify(client).sleep(200L);
+        // Retries are part of the one call.
+        verify(mockMetricsRegistry, times(1)).recordPartnerCall(eq("cuimc"), anyLong(), eq(false));
+    }
+
+    @Test
+    public void serverErrorReturnedAfterRetries() throws Exception {
+        HttpResponse serverError = mockResponse(500);
+        doReturn(serverError).when(client).send(eq(CUIMC), any());
+
+        assertSame(client.execute(CUIMC, Request.Get(URL), true), serverError);
+
+        verify(client, times(3)).send(eq(CUIMC), any());
+        verify(mockMetricsRegistry).recordPartnerCall(eq("cuimc"), anyLong(), eq(true));
+        assertEquals(metrics.getJson().get("partner_calls").get(0).get("status").intValue(), 500);
+    }
+
+    @Test
+    public void nonIdempotentRequestNotRetried() throws Exception {
+        doThrow(new IOException("timeout")).when(client).send(eq(CUIMC), any());
+
+        try {
+            client.execute(CUIMC, Request.Post(URL), false);
+            fail("Should have thrown exception");
+        } catch (IOException e) {
+            assertEquals(e.getMessage(), "timeout");
+        }
+        verify(client, times(1)).send(eq(CUIMC), any());
+        verify(client, never()).sleep(anyLong());
+        verify(mockMetricsRegistry).recordPartnerCall(eq("cuimc"), anyLong(), eq(true));
+        assertEquals(metrics.getJson().get("partner_calls").get(0).get("status").intValue(), 0);
+    }
+
+    @Test
+    public void destinationSettingOverridesDefault() throws Exception {
+        doThrow(new IOException("timeout")).when(client).send(eq(GBF), any());
+
+        try {
+            client.execute(GBF, Request.Get(URL), true);
+            fail("Should have thrown exception");
+        } catch (IOException e) {
+            // expected
+        }
+        verify(client, times(1)).send(eq(GBF), any());
+    }
+
+    @Test
+    public void circuitOpensAfterRepeatedFailures() throws Exception {
+        doThrow(new IOException("timeout")).when(client).send(eq(CUIMC), any());
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                client.execute(CUIMC, Request.Post(URL), false);
+                fail("Should have thrown exception");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+        assertTrue(client.isCircuitOpen(CUIMC));
+        assertFalse(client.isCircuitOpen(GBF));
+
+        // The partner isn't called while the circuit is open.
+        try {
+            client.execute(CUIMC, Request.Post(URL), false);
+            fail("Should have thrown exception");
+        } catch (IOException e) {
+            // expected
+        }
+        verify(client, times(3)).send(eq(CUIMC), any());
+        verify(mockMetricsRegistry).recordPartnerCallRejected("cuimc");
+        verify(mockMetricsRegistry, times(3)).recordPartnerCall(eq("cuimc"), anyLong(), eq(true));
+
+        // Once the circuit closes, a success resets it.
+        DateTimeUtils.setCurrentMillisFixed(NOW + 30000L);
+        assertFalse(client.isCircuitOpen(CUIMC));
+        HttpResponse response = mockResponse(200);
+        doReturn(response).when(client).send(eq(CUIMC), any());
+        assertSame(client.execute(CUIMC, Request.Post(URL), false), response);
+        assertFalse(client.isCircuitOpen(CUIMC));
+    }
+
+    @Test
+    public void circuitReopensOnFailureAfterClosing() throws Exception {
+        doThrow(new IOException("timeout")).when(client).send(eq(CUIMC), any());
+        for (int i = 0; i < 3; i++) {
+            try {
+                client.execute(CUIMC, Request.Post(URL), false);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+        DateTimeUtils.setCurrentMillisFixed(NOW + 30000L);
+        try {
+            client.execute(CUIMC, Request.Post(URL), false);
+        } catch (IOException e) {
+            // expected
+        }
+        assertTrue(client.isCircuitOpen(CUIMC));
+    }
+
+    private static HttpResponse mockResponse(int status) {
+        StatusLine mockStatusLine = mock(StatusLine.class);
+        when(mockStatusLine.getStatusCode()).thenReturn(status);
+        HttpResponse mockResponse = mock(HttpResponse.class);
+        when(mockResponse.getStatusLine()).thenReturn(mockStatusLine);
+        return mockResponse;
+    }
+}
@@ -0,0 +1,73 @@
+package org.sagebionetworks.bridge.metrics;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.models.Metrics;
+
+public class DependencyRequestHandlerTest {
+
+    private DependencyRequestHandler handler;
+
+    @BeforeMethod
+    public void before() {
+        RequestContext.set(new RequestContext.Builder().withRequestId("request-id").build());
+        handler = new DependencyRequestHandler(Dependency.DYNAMO_DB);
+    }
+
+    @AfterMethod
+    public void after() {
+        RequestContext.set(null);
+    }
+
+    @Test
+    public void recordsSuccessfulCall() {
+        Request<?> request = new DefaultRequest<>("AmazonDynamoDB");
+        handler.beforeRequest(request);
+        assertNotNull(request.getHandlerContext(DependencyRequestHandler.START_NANOS));
+        handler.afterResponse(request, null);
+
+        Metrics metrics = RequestContext.get().getMetrics();
+        assertEquals(metrics.getDependencyCalls(Dependency.DYNAMO_DB), 1L);
+        assertTrue(metrics.getDependencyNanos(Dependency.DYNAMO_DB) >= 0L);
+        assertEquals(metrics.getDependencyCalls(Dependency.S3), 0L);
+    }
+
+    @Test
+    public void recordsFailedCall() {
+        Request<?> request = new DefaultRequest<>("AmazonDynamoDB");
+        handler.beforeRequest(request);
+        handler.afterError(request, null, new AmazonServiceException("error"));
+
+        Metrics metrics = RequestContext.get().getMetrics();
+        assertEquals(metrics.getDependencyCalls(Dependency.DYNAMO_DB), 1L);
+    }
+
+    @Test
+    public void callWithoutStartNotRecorded() {
+        Request<?> request = new DefaultRequest<>("AmazonDynamoDB");
+        handler.afterResponse(request, null);
+
+        Metrics metrics = RequestContext.get().getMetrics();
+        assertEquals(metrics.getDependencyCalls(Dependency.DYNAMO_DB), 0L);
+    }
+
+    @Test
+    public void callOutsideRequestNotRecorded() {
+        RequestContext.set(null);
+
+        Request<?> request = new DefaultRequest<>("AmazonDynamoDB");
+        handler.beforeRequest(request);
+        // Does not throw.
+        handler.afterResponse(request, null);
+    }
+}
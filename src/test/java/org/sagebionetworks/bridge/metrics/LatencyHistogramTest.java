@@ -0,0 +1,93 @@
+package org.sagebionetworks.bridge.metrics;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(histogram.getCount(), 0L);
+        assertEquals(histogram.getMeanMicros(), 0L);
+        assertEquals(histogram.getMaxMicros(), 0L);
+        assertEquals(histogram.getValueAtPercentile(99.0), 0L);
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        assertEquals(histogram.getCount(), 10L);
+        assertEquals(histogram.getValueAtPercentile(50.0), 5L);
+        assertEquals(histogram.getValueAtPercentile(90.0), 9L);
+        assertEquals(histogram.getValueAtPercentile(100.0), 10L);
+        assertEquals(histogram.getMeanMicros(), 5L);
+        assertEquals(histogram.getMaxMicros(), 10L);
+    }
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1ms to 1000ms, in microseconds.
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertWithinPrecision(histogram.getValueAtPercentile(50.0), 500000L);
+        assertWithinPrecision(histogram.getValueAtPercentile(90.0), 900000L);
+        assertWithinPrecision(histogram.getValueAtPercentile(99.0), 990000L);
+        // Never more than the largest value recorded.
+        assertEquals(histogram.getValueAtPercentile(100.0), 1000000L);
+        assertEquals(histogram.getMaxMicros(), 1000000L);
+    }
+
+    @Test
+    public void outOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5L);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(histogram.getCount(), 2L);
+        assertEquals(histogram.getValueAtPercentile(50.0), 0L);
+        assertEquals(histogram.getMaxMicros(), LatencyHistogram.MAX_VALUE);
+        assertEquals(histogram.getValueAtPercentile(100.0), LatencyHistogram.MAX_VALUE);
+    }
+
+    @Test
+    public void bucketsCoverEveryValue() {
+        // Every bucket starts where the previous bucket ends.
+        long previousUpperBound = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long upperBound = LatencyHistogram.bucketUpperBound(i);
+            assertEquals(LatencyHistogram.bucketIndex(previousUpperBound + 1), i);
+            assertEquals(LatencyHistogram.bucketIndex(upperBound), i);
+            previousUpperBound = upperBound;
+        }
+        assertEquals(previousUpperBound, LatencyHistogram.MAX_VALUE);
+    }
+
+    @Test
+    public void reset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100L);
+        histogram.reset();
+
+        assertEquals(histogram.getCount(), 0L);
+        assertEquals(histogram.getMaxMicros(), 0L);
+        assertEquals(histogram.getValueAtPercentile(50.0), 0L);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidPercentile() {
+        new LatencyHistogram().getValueAtPercentile(101.0);
+    }
+
+    private static void assertWithinPrecision(long actual, long expected) {
+        double error = Math.abs(actual - expected) / (double) expected;
+        assertTrue(error <= 1.0 / LatencyHistogram.SUB_BUCKET_COUNT, "expected " + expected + " but was " + actual);
+    }
+}
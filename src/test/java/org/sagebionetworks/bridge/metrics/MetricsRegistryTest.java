@@ -0,0 +1,169 @@
+package org.sagebionetworks.bridge.metrics;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import org.mockito.Mockito;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.models.Metrics;
+
+public class MetricsRegistryTest extends Mockito {
+    private static final String ROUTE = "GET /v3/participants/self";
+
+    private MetricsRegistry registry;
+
+    @BeforeMethod
+    public void before() {
+        registry = new MetricsRegistry();
+    }
+
+    @Test
+    public void recordRequest() {
+        registry.recordRequest(ROUTE, 200, mockMetrics(10, 0, 0));
+        registry.recordRequest(ROUTE, 201, mockMetrics(20, 0, 0));
+        registry.recordRequest(ROUTE, 404, mockMetrics(30, 0, 0));
+        registry.recordRequest(ROUTE, 500, mockMetrics(40, 0, 0));
+
+        JsonNode route = registry.getSnapshot().get("routes").get(ROUTE);
+        assertEquals(route.get("requests").longValue(), 4L);
+        assertEquals(route.get("status").get("2xx").longValue(), 2L);
+        assertEquals(route.get("status").get("4xx").longValue(), 1L);
+        assertEquals(route.get("status").get("5xx").longValue(), 1L);
+        assertFalse(route.get("status").has("3xx"));
+        assertEquals(route.get("meanMillis").doubleValue(), 25.0);
+        assertEquals(route.get("maxMillis").doubleValue(), 40.0);
+        assertTrue(route.has("p50Millis"));
+        assertTrue(route.has("p90Millis"));
+        assertTrue(route.has("p99Millis"));
+    }
+
+    @Test
+    public void recordDependencies() {
+        registry.recordRequest(ROUTE, 200, mockMetrics(100, 3, 12));
+        registry.recordRequest(ROUTE, 200, mockMetrics(100, 1, 4));
+        registry.recordRequest(ROUTE, 200, mockMetrics(100, 0, 0));
+
+        JsonNode redis = registry.getSnapshot().get("dependencies").get("redis");
+        // The request that didn't call Redis is not counted.
+        assertEquals(redis.get("requests").longValue(), 2L);
+        assertEquals(redis.get("calls").longValue(), 4L);
+        assertEquals(redis.get("meanMillis").doubleValue(), 8.0);
+        assertEquals(redis.get("maxMillis").doubleValue(), 12.0);
+
+        JsonNode mysql = registry.getSnapshot().get("dependencies").get("mysql");
+        assertEquals(mysql.get("requests").longValue(), 0L);
+        assertEquals(mysql.get("calls").longValue(), 0L);
+    }
+
+    @Test
+    public void routesAreSorted() {
+        registry.recordRequest("POST /v3/b", 200, mockMetrics(1, 0, 0));
+        registry.recordRequest("GET /v3/a", 200, mockMetrics(1, 0, 0));
+
+        ObjectNode routes = (ObjectNode) registry.getSnapshot().get("routes");
+        assertEquals(routes.fieldNames().next(), "GET /v3/a");
+    }
+
+    @Test
+    public void tooManyRoutesAreCountedTogether() {
+        for (int i = 0; i < MetricsRegistry.MAX_ROUTES; i++) {
+            registry.recordRequest("GET /v3/" + i, 200, mockMetrics(1, 0, 0));
+        }
+        registry.recordRequest("GET /v3/extra1", 200, mockMetrics(1, 0, 0));
+        registry.recordRequest("GET /v3/extra2", 200, mockMetrics(1, 0, 0));
+        // Existing routes are still recorded under their own name.
+        registry.recordRequest("GET /v3/0", 200, mockMetrics(1, 0, 0));
+
+        JsonNode routes = registry.getSnapshot().get("routes");
+        assertEquals(routes.size(), MetricsRegistry.MAX_ROUTES + 1);
+        assertFalse(routes.has("GET /v3/extra1"));
+        assertEquals(routes.get(MetricsRegistry.OTHER_ROUTE).get("requests").longValue(), 2L);
+        assertEquals(routes.get("GET /v3/0").get("requests").longValue(), 2L);
+    }
+
+    @Test
+    public void reset() {
+        registry.recordRequest(ROUTE, 200, mockMetrics(10, 1, 1));
+        String since = registry.getSnapshot().get("since").textValue();
+
+        registry.reset();
+
+        ObjectNode snapshot = registry.getSnapshot();
+        assertEquals(snapshot.get("routes").size(), 0);
+        assertEquals(snapshot.get("dependencies").get("redis").get("calls").longValue(), 0L);
+        assertTrue(snapshot.get("since").textValue().compareTo(since) >= 0);
+    }
+
+    @Test
+    public void recordPartnerCalls() {
+        registry.recordPartnerCall("cuimc", 10000L, false);
+        registry.recordPartnerCall("cuimc", 30000L, true);
+        registry.recordPartnerCallRejected("cuimc");
+        registry.recordPartnerCallRejected("gbf");
+
+        JsonNode partners = registry.getSnapshot().get("partners");
+        JsonNode cuimc = partners.get("cuimc");
+        assertEquals(cuimc.get("calls").longValue(), 2L);
+        assertEquals(cuimc.get("errors").longValue(), 1L);
+        assertEquals(cuimc.get("rejected").longValue(), 1L);
+        assertEquals(cuimc.get("meanMillis").doubleValue(), 20.0);
+        assertEquals(cuimc.get("maxMillis").doubleValue(), 30.0);
+
+        JsonNode gbf = partners.get("gbf");
+        assertEquals(gbf.get("calls").longValue(), 0L);
+        assertEquals(gbf.get("rejected").longValue(), 1L);
+
+        registry.reset();
+        assertEquals(registry.getSnapshot().get("partners").size(), 0);
+    }
+
+    @Test
+    public void metricsSourcesIncluded() {
+        MetricsSource source = new MetricsSource() {
+            @Override
+            public String getMetricsName() {
+                return "testComponent";
+            }
+            @Override
+            public void writeMetrics(ObjectNode node) {
+                node.put("count", 3L);
+            }
+        };
+        registry.setMetricsSources(ImmutableList.of(source));
+
+        JsonNode components = registry.getSnapshot().get("components");
+        assertEquals(components.get("testComponent").get("count").longValue(), 3L);
+
+        // Not reset with the registry.
+        registry.reset();
+        components = registry.getSnapshot().get("components");
+        assertEquals(components.get("testComponent").get("count").longValue(), 3L);
+    }
+
+    @Test
+    public void noMetricsSources() {
+        assertEquals(registry.getSnapshot().get("components").size(), 0);
+    }
+
+    @Test
+    public void logSnapshotDoesNotThrow() {
+        registry.recordRequest(ROUTE, 200, mockMetrics(10, 1, 1));
+        registry.logSnapshot();
+    }
+
+    private static Metrics mockMetrics(long elapsedMillis, long redisCalls, long redisMillis) {
+        Metrics metrics = mock(Metrics.class);
+        when(metrics.getElapsedNanos()).thenReturn(TimeUnit.MILLISECONDS.toNanos(elapsedMillis));
+        when(metrics.getDependencyCalls(Dependency.REDIS)).thenReturn(redisCalls);
+        when(metrics.getDependencyNanos(Dependency.REDIS)).thenReturn(TimeUnit.MILLISECONDS.toNanos(redisMillis));
+        return metrics;
+    }
+}
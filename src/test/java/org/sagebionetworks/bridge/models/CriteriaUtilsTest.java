@@ -5,6 +5,7 @@ import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.sagebionetworks.bridge.TestConstants.TIMESTAMP;
 import static org.sagebionetworks.bridge.TestConstants.USER_DATA_GROUPS;
 import static org.sagebionetworks.bridge.models.ClientInfo.UNKNOWN_CLIENT;
+import static org.sagebionetworks.bridge.models.CriteriaUtils.matchAppVersion;
 import static org.sagebionetworks.bridge.models.CriteriaUtils.matchCriteria;
 import static org.sagebionetworks.bridge.models.OperatingSystem.ANDROID;
 import static org.sagebionetworks.bridge.models.OperatingSystem.IOS;
@@ -56,6 +57,18 @@ public class CriteriaUtilsTest {
         assertTrue(matchCriteria(context, getCriteria().appVersion(IOS, 1, 4).build()));
     }
     
+    @Test
+    public void matchAppVersionIgnoresEverythingElse() {
+        // Data groups would fail the full match, but only the app version is considered.
+        Criteria criteria = getCriteria().minAppVersion(IOS, 1).allOfGroups(ImmutableSet.of("group1")).build();
+        
+        assertTrue(matchAppVersion(IOS_CLIENT_INFO, criteria));
+        assertFalse(matchAppVersion(IOS_CLIENT_INFO, getCriteria().minAppVersion(IOS, 5).build()));
+        assertFalse(matchAppVersion(IOS_CLIENT_INFO, getCriteria().maxAppVersion(IOS, 3).build()));
+        assertTrue(matchAppVersion(ANDROID_CLIENT_INFO, getCriteria().minAppVersion(IOS, 5).build()));
+        assertTrue(matchAppVersion(UNKNOWN_CLIENT, getCriteria().minAppVersion(IOS, 5).build()));
+    }
+    
     @Test
     public void filtersAppRange() {
         CriteriaContext context = getContext().withClientInfo(IOS_CLIENT_INFO).build();
@@ -15,6 +15,7 @@ import org.testng.annotations.AfterClass;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.metrics.Dependency;
 
 public class MetricsTest {
     private static final DateTime START_TIME = DateTime.parse("2018-02-16T17:23:05.590Z");
@@ -65,21 +66,43 @@ public class MetricsTest {
     }
 
     @Test
-    public void testElapsedWithNoStart() {
-        // This should never happen, but if it does, don't throw.
+    public void testElapsedDoesNotDependOnJson() {
+        // Elapsed time is not calculated from the start time in the JSON.
+        DateTimeUtils.setCurrentMillisFixed(START_TIME.getMillis());
         Metrics metrics = new Metrics("12345");
-        metrics.getJson().remove("start");
+        metrics.getJson().put("start", "February 16, 2018 2 5:14pm");
+
+        DateTimeUtils.setCurrentMillisFixed(END_TIME.getMillis());
         metrics.end();
-        assertFalse(metrics.getJson().has("elapsedMillis"));
+        assertEquals(metrics.getJson().get("elapsedMillis").longValue(), EXPECTED_ELAPSED_MILLIS);
+        assertTrue(metrics.getElapsedNanos() > 0L);
     }
 
     @Test
-    public void testElapsedWithInvalidStart() {
-        // This should never happen, but if it does, don't throw.
+    public void testDependencyCalls() {
         Metrics metrics = new Metrics("12345");
-        metrics.getJson().put("start", "February 16, 2018 2 5:14pm");
+        metrics.addDependencyCall(Dependency.REDIS, 1500000L);
+        metrics.addDependencyCall(Dependency.REDIS, 2500000L);
+        metrics.addDependencyCall(Dependency.MYSQL, 7000000L);
+
+        assertEquals(metrics.getDependencyCalls(Dependency.REDIS), 2L);
+        assertEquals(metrics.getDependencyNanos(Dependency.REDIS), 4000000L);
+        assertEquals(metrics.getDependencyCalls(Dependency.DYNAMO_DB), 0L);
+
         metrics.end();
-        assertFalse(metrics.getJson().has("elapsedMillis"));
+        JsonNode dependencies = metrics.getJson().get("dependencies");
+        assertEquals(dependencies.size(), 2);
+        assertEquals(dependencies.get("redis").get("calls").longValue(), 2L);
+        assertEquals(dependencies.get("redis").get("elapsedMillis").longValue(), 4L);
+        assertEquals(dependencies.get("mysql").get("calls").longValue(), 1L);
+        assertEquals(dependencies.get("mysql").get("elapsedMillis").longValue(), 7L);
+    }
+
+    @Test
+    public void testNoDependencyCalls() {
+        Metrics metrics = new Metrics("12345");
+        metrics.end();
+        assertFalse(metrics.getJson().has("dependencies"));
     }
 
     @Test
@@ -165,6 +188,24 @@ public class MetricsTest {
         assertEquals("third", paramsNode.get("now_new_key").get(0).textValue());
     }
 
+    @Test
+    public void testAddPartnerCall() {
+        Metrics metrics = new Metrics("12345");
+        assertFalse(metrics.getJson().has("partner_calls"));
+
+        metrics.addPartnerCall("gbf", 120L, 200);
+        metrics.addPartnerCall("cuimc", 3000L, 0);
+
+        JsonNode calls = metrics.getJson().get("partner_calls");
+        assertEquals(calls.size(), 2);
+        assertEquals(calls.get(0).get("destination").textValue(), "gbf");
+        assertEquals(calls.get(0).get("elapsedMillis").longValue(), 120L);
+        assertEquals(calls.get(0).get("status").intValue(), 200);
+        assertEquals(calls.get(1).get("destination").textValue(), "cuimc");
+        assertEquals(calls.get(1).get("elapsedMillis").longValue(), 3000L);
+        assertEquals(calls.get(1).get("status").intValue(), 0);
+    }
+
     @Test(expectedExceptions = IllegalArgumentException.class)
     public void testConstructorRequestIdMustNotBeNull() {
         new Metrics(null);
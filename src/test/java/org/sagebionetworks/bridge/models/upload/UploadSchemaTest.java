@@ -13,6 +13,7 @@ import java.util.Map;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
@@ -203,6 +204,50 @@ public class UploadSchemaTest {
         assertEquals(schema.getSchemaKey().toString(), TEST_APP_ID + "-test-schema-v7");
     }
 
+    @Test
+    public void copyConstructor() {
+        DynamoUploadSchema schema = new DynamoUploadSchema();
+        schema.setAppId(TEST_APP_ID);
+        schema.setSchemaId("test-schema");
+        schema.setRevision(7);
+        schema.setName("Test Schema");
+        schema.setSchemaType(UploadSchemaType.IOS_SURVEY);
+        schema.setFieldDefinitions(ImmutableList.of(new UploadFieldDefinition.Builder().withName("field")
+                .withType(UploadFieldType.INT).build()));
+        schema.setMinAppVersion("iOS", 10);
+        schema.setMaxAppVersion("iOS", 20);
+        schema.setModuleId(MODULE_ID);
+        schema.setModuleVersion(MODULE_VERSION);
+        schema.setSurveyGuid("survey-guid");
+        schema.setSurveyCreatedOn(1234L);
+        schema.setVersion(3L);
+        schema.setDeleted(true);
+
+        DynamoUploadSchema copy = new DynamoUploadSchema(schema);
+        assertEquals(copy.getAppId(), TEST_APP_ID);
+        assertEquals(copy.getSchemaId(), "test-schema");
+        assertEquals(copy.getRevision(), 7);
+        assertEquals(copy.getName(), "Test Schema");
+        assertEquals(copy.getSchemaType(), UploadSchemaType.IOS_SURVEY);
+        assertEquals(copy.getFieldDefinitions(), schema.getFieldDefinitions());
+        assertEquals(copy.getMinAppVersion("iOS"), Integer.valueOf(10));
+        assertEquals(copy.getMaxAppVersion("iOS"), Integer.valueOf(20));
+        assertEquals(copy.getModuleId(), MODULE_ID);
+        assertEquals(copy.getModuleVersion(), Integer.valueOf(MODULE_VERSION));
+        assertEquals(copy.getSurveyGuid(), "survey-guid");
+        assertEquals(copy.getSurveyCreatedOn(), Long.valueOf(1234L));
+        assertEquals(copy.getVersion(), Long.valueOf(3L));
+        assertTrue(copy.isDeleted());
+
+        // Changing the copy doesn't change the original.
+        copy.setMinAppVersion("iOS", 15);
+        copy.setMaxAppVersion("Android", 5);
+        copy.setName("Changed");
+        assertEquals(schema.getMinAppVersion("iOS"), Integer.valueOf(10));
+        assertNull(schema.getMaxAppVersion("Android"));
+        assertEquals(schema.getName(), "Test Schema");
+    }
+
     @Test
     public void testSerializationWithAppId() throws Exception {
         testSerialization("appId");
@@ -1071,6 +1071,42 @@ public class AccountServiceTest extends Mockito {
         RequestContext.set(null);
     }
 
+    @Test
+    public void getAccountsFiltersStudies() {
+        Account visibleAccount = Account.create();
+        visibleAccount.setId(TEST_USER_ID);
+        visibleAccount.setEnrollments(Sets.newHashSet(ACCOUNT_ENROLLMENTS));
+        Account hiddenAccount = Account.create();
+        hiddenAccount.setId("other-user-id");
+        hiddenAccount.setEnrollments(Sets.newHashSet(Enrollment.create(TEST_APP_ID, STUDY_B, "other-user-id")));
+        
+        Set<String> userIds = ImmutableSet.of(TEST_USER_ID, "other-user-id");
+        when(mockAccountDao.getAccounts(TEST_APP_ID, userIds))
+                .thenReturn(ImmutableList.of(visibleAccount, hiddenAccount));
+        
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerRoles(ImmutableSet.of(STUDY_COORDINATOR))
+                .withOrgSponsoredStudies(ImmutableSet.of(STUDY_A)).build());
+        
+        List<Account> accounts = service.getAccounts(TEST_APP_ID, userIds);
+        assertEquals(accounts, ImmutableList.of(visibleAccount));
+        
+        RequestContext.set(null);
+    }
+    
+    @Test
+    public void getAccountHealthCodesNoFilter() {
+        Account account = Account.create();
+        account.setId(TEST_USER_ID);
+        account.setHealthCode(HEALTH_CODE);
+        
+        Set<String> userIds = ImmutableSet.of(TEST_USER_ID);
+        when(mockAccountDao.getAccountHealthCodes(TEST_APP_ID, userIds)).thenReturn(ImmutableList.of(account));
+        
+        List<Account> accounts = service.getAccountHealthCodesNoFilter(TEST_APP_ID, userIds);
+        assertEquals(accounts, ImmutableList.of(account));
+    }
+
     private Account mockGetAccountById(AccountId accountId, boolean generatePasswordHash) throws Exception {
         Account account = Account.create();
         account.setAppId(TEST_APP_ID);
@@ -53,6 +53,7 @@ import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.TestUtils;
 import org.sagebionetworks.bridge.cache.CacheKey;
 import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.cache.RateLimiter;
 import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
@@ -135,6 +136,9 @@ public class AccountWorkflowServiceTest extends Mockito {
     
     @Mock
     private CacheProvider mockCacheProvider;
+
+    @Mock
+    private RateLimiter mockRateLimiter;
     
     @Mock
     private TemplateService mockTemplateService;
@@ -189,6 +193,14 @@ public class AccountWorkflowServiceTest extends Mockito {
         when(mockBridgeConfig.getInt(CONFIG_KEY_CHANNEL_THROTTLE_TIMEOUT_SECONDS)).thenReturn(300);
         service.setBridgeConfig(mockBridgeConfig);
         
+        // Mock rate limiter to count requests per key in memory.
+        Map<CacheKey, Integer> mockRateLimiterCounts = new HashMap<>();
+        when(mockRateLimiter.tryAcquire(any(), anyInt(), anyInt())).thenAnswer(invocation -> {
+            CacheKey cacheKey = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            return mockRateLimiterCounts.merge(cacheKey, 1, Integer::sum) <= limit;
+        });
+
         // Mock cache provider to do a basic in-memory map for simple gets and sets.
         mockCacheProviderMap = new HashMap<>();
 
@@ -262,8 +274,7 @@ public class AccountWorkflowServiceTest extends Mockito {
         assertEquals(email.getType(), EmailType.VERIFY_EMAIL);
 
         // Verify throttling cache calls.
-        verify(mockCacheProvider).getObject(VERIFY_EMAIL_THROTTLE_CACHE_KEY, Integer.class);
-        verify(mockCacheProvider).setObject(eq(VERIFY_EMAIL_THROTTLE_CACHE_KEY), any(), anyInt());
+        verify(mockRateLimiter).tryAcquire(VERIFY_EMAIL_THROTTLE_CACHE_KEY, 2, 300);
 
         verifyNoMoreInteractions(mockCacheProvider);
     }
@@ -312,8 +323,7 @@ public class AccountWorkflowServiceTest extends Mockito {
         assertTrue(message.contains("012-345"));
 
         // Verify throttling cache calls.
-        verify(mockCacheProvider).getObject(VERIFY_PHONE_THROTTLE_CACHE_KEY, Integer.class);
-        verify(mockCacheProvider).setObject(eq(VERIFY_PHONE_THROTTLE_CACHE_KEY), any(), anyInt());
+        verify(mockRateLimiter).tryAcquire(VERIFY_PHONE_THROTTLE_CACHE_KEY, 2, 300);
 
         verifyNoMoreInteractions(mockCacheProvider);
     }
@@ -1160,8 +1170,7 @@ public class AccountWorkflowServiceTest extends Mockito {
         assertEquals(provider.getType(), EmailType.EMAIL_SIGN_IN);
 
         // Verify throttling cache calls.
-        verify(mockCacheProvider).getObject(EMAIL_SIGNIN_THROTTLE_CACHE_KEY, Integer.class);
-        verify(mockCacheProvider).setObject(eq(EMAIL_SIGNIN_THROTTLE_CACHE_KEY), any(), anyInt());
+        verify(mockRateLimiter).tryAcquire(EMAIL_SIGNIN_THROTTLE_CACHE_KEY, 2, 300);
 
         verifyNoMoreInteractions(mockCacheProvider);
     }
@@ -1300,8 +1309,7 @@ public class AccountWorkflowServiceTest extends Mockito {
         assertEquals(message, "Enter 123-456 to sign in to AppName");
 
         // Verify throttling cache calls.
-        verify(mockCacheProvider).getObject(PHONE_SIGNIN_THROTTLE_CACHE_KEY, Integer.class);
-        verify(mockCacheProvider).setObject(eq(PHONE_SIGNIN_THROTTLE_CACHE_KEY), any(), anyInt());
+        verify(mockRateLimiter).tryAcquire(PHONE_SIGNIN_THROTTLE_CACHE_KEY, 2, 300);
 
         verifyNoMoreInteractions(mockCacheProvider);
     }
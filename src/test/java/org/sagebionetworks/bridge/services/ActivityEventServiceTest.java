@@ -23,6 +23,7 @@ import static org.testng.Assert.fail;
 import java.util.List;
 import java.util.Map;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import org.joda.time.DateTime;
 import org.joda.time.LocalDateTime;
@@ -842,6 +843,50 @@ public class ActivityEventServiceTest {
         assertEquals(event.getUpdateType(), FUTURE_ONLY);
     }
     
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void canPublishActivityFinishedEventsInBatch() {
+        long finishedOn = DateTime.now().getMillis();
+        
+        ScheduledActivity oldActivity = ScheduledActivity.create();
+        oldActivity.setGuid("AAA");
+        oldActivity.setFinishedOn(finishedOn);
+        oldActivity.setHealthCode(HEALTH_CODE);
+        
+        ScheduledActivity activity1 = ScheduledActivity.create();
+        activity1.setGuid("BBB:"+DateTime.now().toLocalDateTime());
+        activity1.setFinishedOn(finishedOn);
+        activity1.setHealthCode(HEALTH_CODE);
+        
+        ScheduledActivity activity2 = ScheduledActivity.create();
+        activity2.setGuid("CCC:"+DateTime.now().toLocalDateTime());
+        activity2.setFinishedOn(finishedOn);
+        activity2.setHealthCode(HEALTH_CODE);
+        
+        activityEventService.publishActivityFinishedEvents(ImmutableList.of(activity1, oldActivity, activity2));
+        
+        ArgumentCaptor<List> argument = ArgumentCaptor.forClass(List.class);
+        verify(activityEventDao).publishEvents(argument.capture());
+        verify(activityEventDao, never()).publishEvent(any());
+        
+        // Old activities don't fire events. Otherwise the order is preserved.
+        List<ActivityEvent> events = argument.getValue();
+        assertEquals(events.size(), 2);
+        assertEquals(events.get(0).getEventId(), "activity:BBB:finished");
+        assertEquals(events.get(0).getHealthCode(), HEALTH_CODE);
+        assertEquals(events.get(0).getTimestamp().longValue(), finishedOn);
+        assertEquals(events.get(1).getEventId(), "activity:CCC:finished");
+    }
+    
+    @Test
+    public void publishActivityFinishedEventsForOldActivitiesDoesNothing() {
+        ScheduledActivity activity = ScheduledActivity.create();
+        activity.setGuid("AAA");
+
+        activityEventService.publishActivityFinishedEvents(ImmutableList.of(activity));
+        verifyNoMoreInteractions(activityEventDao);
+    }
+    
     @Test
     public void getGlobalActivityEventList() {
         Map<String, DateTime> map = Maps.newHashMap();
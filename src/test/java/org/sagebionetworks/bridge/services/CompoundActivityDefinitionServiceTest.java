@@ -40,6 +40,7 @@ public class CompoundActivityDefinitionServiceTest {
 
     private SchedulePlanService schedulePlanService;
     private CompoundActivityDefinitionDao dao;
+    private ReferenceResolutionCache referenceResolutionCache;
     private CompoundActivityDefinitionService service;
 
     @BeforeMethod
@@ -49,6 +50,9 @@ public class CompoundActivityDefinitionServiceTest {
         service = new CompoundActivityDefinitionService();
         service.setSchedulePlanService(schedulePlanService);
         service.setCompoundActivityDefDao(dao);
+
+        referenceResolutionCache = mock(ReferenceResolutionCache.class);
+        service.setReferenceResolutionCache(referenceResolutionCache);
     }
 
     // CREATE
@@ -73,6 +77,9 @@ public class CompoundActivityDefinitionServiceTest {
 
         // Validate that the service result is the same as the dao result.
         assertSame(serviceResult, daoResult);
+
+        // Validate that schedules resolve the new definition.
+        verify(referenceResolutionCache).invalidateCompoundActivity(TEST_APP_ID, TASK_ID);
     }
 
     @Test
@@ -166,6 +173,7 @@ public class CompoundActivityDefinitionServiceTest {
 
         // verify dao
         verify(dao).deleteAllCompoundActivityDefinitionsInApp(TEST_APP_ID);
+        verify(referenceResolutionCache).invalidateCompoundActivities(TEST_APP_ID);
     }
 
     // LIST
@@ -251,6 +259,9 @@ public class CompoundActivityDefinitionServiceTest {
 
         // Validate that the service result is the same as the dao result.
         assertSame(serviceResult, daoResult);
+
+        // Validate that schedules resolve the updated definition.
+        verify(referenceResolutionCache).invalidateCompoundActivity(TEST_APP_ID, TASK_ID);
     }
 
     @Test
@@ -4,6 +4,9 @@ import static org.sagebionetworks.bridge.TestConstants.EMAIL;
 import static org.sagebionetworks.bridge.TestConstants.PHONE;
 import static org.sagebionetworks.bridge.models.accounts.SharingScope.NO_SHARING;
 import static org.sagebionetworks.bridge.services.StudyConsentService.SIGNATURE_BLOCK;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import java.io.FileInputStream;
@@ -63,6 +66,31 @@ public class ConsentPdfTest {
         assertTrue(consentPdf.getBytes().length > 0);
     }
     
+    @Test
+    public void sharedConsentPageTemplate() throws Exception {
+        ConsentSignature sig = makeSignatureWithoutImage();
+        
+        ConsentPdf consentPdf = new ConsentPdf(app, EMAIL_PARTICIPANT, sig, NO_SHARING, DOCUMENT_FRAGMENT,
+                consentBodyTemplate);
+        
+        String pageTemplate = ConsentPdf.createConsentPageTemplate(app, DOCUMENT_FRAGMENT, consentBodyTemplate);
+        assertTrue(pageTemplate.contains("${participant.name}"));
+        assertFalse(pageTemplate.contains("${appName}"));
+        
+        ConsentPdf sharedTemplatePdf = new ConsentPdf(EMAIL_PARTICIPANT, sig, NO_SHARING, pageTemplate);
+        assertEquals(sharedTemplatePdf.getFormattedConsentDocument(), consentPdf.getFormattedConsentDocument());
+    }
+    
+    @Test
+    public void bytesAreRenderedOnce() throws Exception {
+        ConsentSignature sig = makeSignatureWithoutImage();
+        
+        ConsentPdf consentPdf = new ConsentPdf(app, EMAIL_PARTICIPANT, sig, NO_SHARING, DOCUMENT_FRAGMENT,
+                consentBodyTemplate);
+        
+        assertSame(consentPdf.getBytes(), consentPdf.getBytes());
+    }
+    
     @Test
     public void docWithNullUserTimeZone() throws Exception {
         ConsentSignature sig = makeSignatureWithoutImage();
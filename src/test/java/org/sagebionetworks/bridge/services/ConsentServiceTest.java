@@ -18,12 +18,17 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import org.apache.commons.io.IOUtils;
 import org.joda.time.DateTime;
@@ -42,6 +47,7 @@ import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.CriteriaContext;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
@@ -145,12 +151,15 @@ public class ConsentServiceTest extends Mockito {
 
     @BeforeMethod
     public void before() throws IOException {
+        // Create a new service for each test, so pending deliveries and cached consent pages don't carry over.
+        consentService = null;
         MockitoAnnotations.initMocks(this);
 
         String documentString = IOUtils.toString(
                 new FileInputStream(new ClassPathResource("conf/app-defaults/consent-page.xhtml").getFile()));
 
         consentService.setConsentTemplate(new ByteArrayResource((documentString).getBytes()));
+        consentService.setConsentDeliveryExecutorService(MoreExecutors.newDirectExecutorService());
 
         app = TestUtils.getValidApp(ConsentServiceTest.class);
         
@@ -237,7 +246,7 @@ public class ConsentServiceTest extends Mockito {
         assertEquals(updatedConsentList.get(1).getConsentCreatedOn(), CONSENT_CREATED_ON);
         assertNull(updatedConsentList.get(1).getWithdrewOn());
 
-        verify(sendMailService).sendEmail(emailCaptor.capture());
+        verify(sendMailService).sendEmailNow(emailCaptor.capture());
 
         // We notify the app administrator and send a copy to the user.
         BasicEmailProvider email = emailCaptor.getValue();
@@ -255,7 +264,7 @@ public class ConsentServiceTest extends Mockito {
 
         consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
 
-        verify(sendMailService).sendEmail(emailCaptor.capture());
+        verify(sendMailService).sendEmailNow(emailCaptor.capture());
         BasicEmailProvider email = emailCaptor.getValue();
         assertEquals(email.getRecipientEmails().size(), 1);
         assertTrue(email.getRecipientEmails().contains(PARTICIPANT.getEmail()));
@@ -467,7 +476,8 @@ public class ConsentServiceTest extends Mockito {
         account.setDataGroups(dataGroups);
 
         when(subpopulation.getDataGroupsAssignedWhileConsented()).thenReturn(TestConstants.USER_DATA_GROUPS);
-        when(subpopService.getSubpopulation(app.getIdentifier(), SUBPOP_GUID)).thenReturn(subpopulation);
+        when(subpopService.getSubpopulations(app.getIdentifier(), ImmutableSet.of(SUBPOP_GUID)))
+                .thenReturn(ImmutableMap.of(SUBPOP_GUID, subpopulation));
         when(accountService.getAccount(any())).thenReturn(account);
 
         consentService.withdrawFromApp(app, PARTICIPANT, WITHDRAWAL, WITHDREW_ON);
@@ -487,11 +497,11 @@ public class ConsentServiceTest extends Mockito {
         
         Subpopulation subpop1 = Subpopulation.create();
         subpop1.setStudyIdsAssignedOnConsent(ImmutableSet.of("otherStudy"));
-        when(subpopService.getSubpopulation(app.getIdentifier(), SUBPOP_GUID)).thenReturn(subpop1);
         
         Subpopulation subpop2 = Subpopulation.create();
         subpop2.setStudyIdsAssignedOnConsent(ImmutableSet.of(TEST_STUDY_ID));
-        when(subpopService.getSubpopulation(app.getIdentifier(), SUBPOP_GUID_2)).thenReturn(subpop2);
+        when(subpopService.getSubpopulations(app.getIdentifier(), ImmutableSet.of(SUBPOP_GUID, SUBPOP_GUID_2)))
+                .thenReturn(ImmutableMap.of(SUBPOP_GUID, subpop1, SUBPOP_GUID_2, subpop2));
 
         // Add two consents to the account, one withdrawn, one active. This tests to make sure we're not accidentally
         // dropping withdrawn consents from the history.
@@ -659,7 +669,7 @@ public class ConsentServiceTest extends Mockito {
         consentService.consentToResearch(app, SUBPOP_GUID, PARTICIPANT, CONSENT_SIGNATURE, SharingScope.NO_SHARING,
                 true);
 
-        verify(sendMailService).sendEmail(emailCaptor.capture());
+        verify(sendMailService).sendEmailNow(emailCaptor.capture());
         Set<String> recipients = emailCaptor.getValue().getRecipientEmails();
         assertEquals(recipients.size(), 1);
         assertTrue(recipients.contains(PARTICIPANT.getEmail()));
@@ -672,7 +682,7 @@ public class ConsentServiceTest extends Mockito {
         consentService.consentToResearch(app, SUBPOP_GUID, PARTICIPANT, CONSENT_SIGNATURE, SharingScope.NO_SHARING,
                 true);
 
-        verify(sendMailService).sendEmail(emailCaptor.capture());
+        verify(sendMailService).sendEmailNow(emailCaptor.capture());
         Set<String> recipients = emailCaptor.getValue().getRecipientEmails();
         assertEquals(recipients.size(), 1);
         assertTrue(recipients.contains(app.getConsentNotificationEmail()));
@@ -684,7 +694,7 @@ public class ConsentServiceTest extends Mockito {
 
         consentService.consentToResearch(app, SUBPOP_GUID, noEmail, CONSENT_SIGNATURE, SharingScope.NO_SHARING, true);
 
-        verify(sendMailService).sendEmail(emailCaptor.capture());
+        verify(sendMailService).sendEmailNow(emailCaptor.capture());
         Set<String> recipients = emailCaptor.getValue().getRecipientEmails();
         assertEquals(recipients.size(), 1);
         assertTrue(recipients.contains(app.getConsentNotificationEmail()));
@@ -701,7 +711,7 @@ public class ConsentServiceTest extends Mockito {
         consentService.consentToResearch(app, SUBPOP_GUID, PARTICIPANT, CONSENT_SIGNATURE,
                 SharingScope.ALL_QUALIFIED_RESEARCHERS, true);
 
-        verify(sendMailService, never()).sendEmail(any());
+        verify(sendMailService, never()).sendEmailNow(any());
     }
 
     @Test
@@ -710,7 +720,7 @@ public class ConsentServiceTest extends Mockito {
         consentService.consentToResearch(app, SUBPOP_GUID, PARTICIPANT, CONSENT_SIGNATURE, SharingScope.NO_SHARING,
                 false);
 
-        verify(sendMailService, never()).sendEmail(any());
+        verify(sendMailService, never()).sendEmailNow(any());
     }
 
     @Test
@@ -728,7 +738,8 @@ public class ConsentServiceTest extends Mockito {
         setupWithdrawTest(true, true);
         app.setConsentNotificationEmail(null);
 
-        when(subpopService.getSubpopulation(app.getIdentifier(), SECOND_SUBPOP)).thenReturn(subpopulation);
+        when(subpopService.getSubpopulations(app.getIdentifier(), ImmutableSet.of(SUBPOP_GUID, SECOND_SUBPOP)))
+                .thenReturn(ImmutableMap.of(SUBPOP_GUID, subpopulation, SECOND_SUBPOP, subpopulation));
 
         consentService.withdrawFromApp(app, PARTICIPANT, WITHDRAWAL, WITHDREW_ON);
 
@@ -742,7 +753,7 @@ public class ConsentServiceTest extends Mockito {
 
         consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
 
-        verify(sendMailService).sendEmail(emailCaptor.capture());
+        verify(sendMailService).sendEmailNow(emailCaptor.capture());
         assertEquals(emailCaptor.getValue().getRecipientEmails().size(), 1);
         assertEquals(emailCaptor.getValue().getRecipientEmails().iterator().next(), PARTICIPANT.getEmail());
     }
@@ -756,7 +767,7 @@ public class ConsentServiceTest extends Mockito {
         verify(subpopulation, never()).isAutoSendConsentSuppressed();
 
         // Despite explicitly suppressing email, if the user makes this call, we will send the email.
-        verify(sendMailService).sendEmail(emailCaptor.capture());
+        verify(sendMailService).sendEmailNow(emailCaptor.capture());
         Set<String> recipients = emailCaptor.getValue().getRecipientEmails();
         assertEquals(recipients.size(), 1);
         assertTrue(recipients.contains(PARTICIPANT.getEmail()));
@@ -783,7 +794,7 @@ public class ConsentServiceTest extends Mockito {
             fail("Should have thrown an exception");
         } catch (BadRequestException e) {
         }
-        verify(sendMailService, never()).sendEmail(any());
+        verify(sendMailService, never()).sendEmailNow(any());
     }
 
     // Tests of the construction of recipients for email, originally part of special email builder.
@@ -795,7 +806,7 @@ public class ConsentServiceTest extends Mockito {
 
         consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
 
-        verify(sendMailService).sendEmail(emailCaptor.capture());
+        verify(sendMailService).sendEmailNow(emailCaptor.capture());
 
         MimeTypeEmailProvider provider = emailCaptor.getValue();
 
@@ -813,7 +824,7 @@ public class ConsentServiceTest extends Mockito {
 
         consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
 
-        verify(sendMailService).sendEmail(emailCaptor.capture());
+        verify(sendMailService).sendEmailNow(emailCaptor.capture());
 
         assertFalse(emailCaptor.getValue().getRecipientEmails().isEmpty());
         assertEquals(emailCaptor.getValue().getRecipientEmails().iterator().next(), PARTICIPANT.getEmail());
@@ -830,7 +841,7 @@ public class ConsentServiceTest extends Mockito {
         consentService.consentToResearch(app, SUBPOP_GUID, PARTICIPANT, CONSENT_SIGNATURE, SharingScope.NO_SHARING,
                 true);
 
-        verify(sendMailService).sendEmail(emailCaptor.capture());
+        verify(sendMailService).sendEmailNow(emailCaptor.capture());
 
         MimeTypeEmailProvider provider = emailCaptor.getValue();
 
@@ -852,7 +863,7 @@ public class ConsentServiceTest extends Mockito {
         consentService.consentToResearch(app, SUBPOP_GUID, PARTICIPANT, CONSENT_SIGNATURE, SharingScope.NO_SHARING,
                 true);
 
-        verify(sendMailService).sendEmail(emailCaptor.capture());
+        verify(sendMailService).sendEmailNow(emailCaptor.capture());
 
         MimeTypeEmailProvider provider = emailCaptor.getValue();
 
@@ -873,7 +884,7 @@ public class ConsentServiceTest extends Mockito {
         StudyParticipant noEmail = new StudyParticipant.Builder().copyOf(PARTICIPANT).withEmail(null).build();
         consentService.consentToResearch(app, SUBPOP_GUID, noEmail, CONSENT_SIGNATURE, SharingScope.NO_SHARING, true);
 
-        verify(sendMailService, never()).sendEmail(emailCaptor.capture());
+        verify(sendMailService, never()).sendEmailNow(emailCaptor.capture());
     }
 
     @Test
@@ -884,7 +895,7 @@ public class ConsentServiceTest extends Mockito {
         consentService.consentToResearch(app, SUBPOP_GUID, PARTICIPANT, CONSENT_SIGNATURE, SharingScope.NO_SHARING,
                 true);
 
-        verify(sendMailService).sendEmail(emailCaptor.capture());
+        verify(sendMailService).sendEmailNow(emailCaptor.capture());
 
         assertFalse(emailCaptor.getValue().getRecipientEmails().isEmpty());
         assertEquals(emailCaptor.getValue().getRecipientEmails().iterator().next(), PARTICIPANT.getEmail());
@@ -898,7 +909,7 @@ public class ConsentServiceTest extends Mockito {
 
         consentService.consentToResearch(app, SUBPOP_GUID, noEmail, CONSENT_SIGNATURE, SharingScope.NO_SHARING, true);
 
-        verify(sendMailService).sendEmail(emailCaptor.capture());
+        verify(sendMailService).sendEmailNow(emailCaptor.capture());
 
         assertFalse(emailCaptor.getValue().getRecipientEmails().isEmpty());
         assertEquals(emailCaptor.getValue().getRecipientEmails().iterator().next(),
@@ -916,7 +927,7 @@ public class ConsentServiceTest extends Mockito {
         consentService.consentToResearch(app, SUBPOP_GUID, PHONE_PARTICIPANT, CONSENT_SIGNATURE,
                 SharingScope.NO_SHARING, true);
 
-        verify(smsService).sendSmsMessage(eq(ID), smsProviderCaptor.capture());
+        verify(smsService).sendSmsMessageNow(eq(ID), smsProviderCaptor.capture());
 
         ArgumentCaptor<ObjectMetadata> metadataCaptor = ArgumentCaptor.forClass(ObjectMetadata.class);
         verify(s3Helper).writeBytesToS3(eq(ConsentService.USERSIGNED_CONSENTS_BUCKET), eq("asdf.pdf"), any(),
@@ -938,7 +949,7 @@ public class ConsentServiceTest extends Mockito {
         consentService.consentToResearch(app, SUBPOP_GUID, PHONE_PARTICIPANT, CONSENT_SIGNATURE,
                 SharingScope.NO_SHARING, true);
 
-        verify(smsService, never()).sendSmsMessage(any(), any());
+        verify(smsService, never()).sendSmsMessageNow(any(), any());
     }
 
     @Test
@@ -949,8 +960,8 @@ public class ConsentServiceTest extends Mockito {
         consentService.consentToResearch(app, SUBPOP_GUID, phoneAndEmail, CONSENT_SIGNATURE, SharingScope.NO_SHARING,
                 true);
 
-        verify(sendMailService).sendEmail(any());
-        verify(smsService, never()).sendSmsMessage(any(), any());
+        verify(sendMailService).sendEmailNow(any());
+        verify(smsService, never()).sendSmsMessageNow(any(), any());
     }
 
     @Test
@@ -958,7 +969,7 @@ public class ConsentServiceTest extends Mockito {
         consentService.consentToResearch(app, SUBPOP_GUID, PHONE_PARTICIPANT, CONSENT_SIGNATURE,
                 SharingScope.NO_SHARING, false);
 
-        verify(smsService, never()).sendSmsMessage(any(), any());
+        verify(smsService, never()).sendSmsMessageNow(any(), any());
     }
 
     @Test
@@ -1006,7 +1017,7 @@ public class ConsentServiceTest extends Mockito {
         
         consentService.resendConsentAgreement(app, SUBPOP_GUID, PHONE_PARTICIPANT);
 
-        verify(smsService).sendSmsMessage(eq(ID), smsProviderCaptor.capture());
+        verify(smsService).sendSmsMessageNow(eq(ID), smsProviderCaptor.capture());
 
         ArgumentCaptor<ObjectMetadata> metadataCaptor = ArgumentCaptor.forClass(ObjectMetadata.class);
         verify(s3Helper).writeBytesToS3(eq(ConsentService.USERSIGNED_CONSENTS_BUCKET), eq("asdf.pdf"), any(),
@@ -1030,8 +1041,8 @@ public class ConsentServiceTest extends Mockito {
 
         consentService.resendConsentAgreement(app, SUBPOP_GUID, phoneAndEmail);
 
-        verify(sendMailService).sendEmail(any());
-        verify(smsService, never()).sendSmsMessage(any(), any());
+        verify(sendMailService).sendEmailNow(any());
+        verify(smsService, never()).sendSmsMessageNow(any(), any());
     }
 
     @Test(expectedExceptions = BadRequestException.class)
@@ -1043,6 +1054,122 @@ public class ConsentServiceTest extends Mockito {
         consentService.resendConsentAgreement(app, SUBPOP_GUID, noPhoneOrEmail);
     }
 
+    @Test
+    public void resendConsentAgreementRetriesFailedDelivery() throws Exception {
+        account.setConsentSignatureHistory(SUBPOP_GUID, ImmutableList.of(CONSENT_SIGNATURE));
+        doNothing().when(consentService).sleepBeforeRetry(anyLong());
+        doThrow(new BridgeServiceException("SES unavailable")).doNothing().when(sendMailService).sendEmailNow(any());
+
+        consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
+
+        verify(sendMailService, times(2)).sendEmailNow(any());
+        verify(consentService).sleepBeforeRetry(ConsentService.CONSENT_DELIVERY_INITIAL_BACKOFF_MILLIS);
+    }
+
+    @Test
+    public void resendConsentAgreementGivesUpAfterMaxAttempts() throws Exception {
+        account.setConsentSignatureHistory(SUBPOP_GUID, ImmutableList.of(CONSENT_SIGNATURE));
+        doNothing().when(consentService).sleepBeforeRetry(anyLong());
+        doThrow(new BridgeServiceException("SES unavailable")).when(sendMailService).sendEmailNow(any());
+
+        // Failure is logged by the async handler, not thrown to the caller.
+        consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
+
+        verify(sendMailService, times(ConsentService.CONSENT_DELIVERY_MAX_ATTEMPTS)).sendEmailNow(any());
+
+        // The delivery is no longer pending, so it can be requested again.
+        consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
+        verify(sendMailService, times(ConsentService.CONSENT_DELIVERY_MAX_ATTEMPTS * 2)).sendEmailNow(any());
+    }
+
+    @Test
+    public void resendConsentAgreementReusesConsentPage() {
+        account.setConsentSignatureHistory(SUBPOP_GUID, ImmutableList.of(CONSENT_SIGNATURE));
+
+        consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
+        consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
+
+        verify(sendMailService, times(2)).sendEmailNow(any());
+        verify(studyConsentView, times(1)).getDocumentContent();
+    }
+
+    @Test
+    public void resendConsentAgreementSkipsPendingDelivery() {
+        ExecutorService mockExecutorService = mock(ExecutorService.class);
+        consentService.setConsentDeliveryExecutorService(mockExecutorService);
+        account.setConsentSignatureHistory(SUBPOP_GUID, ImmutableList.of(CONSENT_SIGNATURE));
+
+        consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
+        consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
+
+        verify(mockExecutorService, times(1)).execute(any());
+        verify(sendMailService, never()).sendEmailNow(any());
+    }
+
+    @Test
+    public void giveConsentSendsRejectedDeliveryOnRequestThread() {
+        when(subpopulation.getStudyId()).thenReturn(TEST_STUDY_ID);
+        ExecutorService mockExecutorService = mock(ExecutorService.class);
+        doThrow(new RejectedExecutionException()).when(mockExecutorService).execute(any());
+        consentService.setConsentDeliveryExecutorService(mockExecutorService);
+
+        consentService.consentToResearch(app, SUBPOP_GUID, PARTICIPANT, CONSENT_SIGNATURE, SharingScope.NO_SHARING,
+                true);
+
+        // The consent is still delivered, on the calling thread.
+        verify(accountService).updateAccount(any());
+        verify(sendMailService).sendEmailNow(any());
+        assertEquals(consentService.getSynchronousConsentDeliveryCount(), 1L);
+        assertEquals(consentService.getPendingConsentDeliveryCount(), 0);
+    }
+
+    @Test
+    public void resendConsentAgreementSendsRejectedDeliveryOnRequestThread() {
+        ExecutorService mockExecutorService = mock(ExecutorService.class);
+        doThrow(new RejectedExecutionException()).when(mockExecutorService).execute(any());
+        consentService.setConsentDeliveryExecutorService(mockExecutorService);
+        account.setConsentSignatureHistory(SUBPOP_GUID, ImmutableList.of(CONSENT_SIGNATURE));
+
+        consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
+
+        verify(sendMailService).sendEmailNow(any());
+        assertEquals(consentService.getSynchronousConsentDeliveryCount(), 1L);
+        assertEquals(consentService.getPendingConsentDeliveryCount(), 0);
+    }
+
+    @Test
+    public void rejectedDeliveryFailureIsNotThrown() throws Exception {
+        ExecutorService mockExecutorService = mock(ExecutorService.class);
+        doThrow(new RejectedExecutionException()).when(mockExecutorService).execute(any());
+        consentService.setConsentDeliveryExecutorService(mockExecutorService);
+        account.setConsentSignatureHistory(SUBPOP_GUID, ImmutableList.of(CONSENT_SIGNATURE));
+        doNothing().when(consentService).sleepBeforeRetry(anyLong());
+        doThrow(new BridgeServiceException("SES unavailable")).when(sendMailService).sendEmailNow(any());
+
+        // Retried and logged as on the executor, not thrown to the caller.
+        consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
+
+        verify(sendMailService, times(ConsentService.CONSENT_DELIVERY_MAX_ATTEMPTS)).sendEmailNow(any());
+        assertEquals(consentService.getFailedConsentDeliveryCount(), 1L);
+        assertEquals(consentService.getPendingConsentDeliveryCount(), 0);
+    }
+
+    @Test
+    public void writeMetrics() throws Exception {
+        account.setConsentSignatureHistory(SUBPOP_GUID, ImmutableList.of(CONSENT_SIGNATURE));
+        doNothing().when(consentService).sleepBeforeRetry(anyLong());
+        doThrow(new BridgeServiceException("SES unavailable")).when(sendMailService).sendEmailNow(any());
+
+        consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
+
+        ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+        consentService.writeMetrics(node);
+        assertEquals(consentService.getMetricsName(), "consentDelivery");
+        assertEquals(node.get("pending").intValue(), 0);
+        assertEquals(node.get("failed").longValue(), 1L);
+        assertEquals(node.get("synchronous").longValue(), 0L);
+    }
+
     @Test
     public void getSignedConsentUrl() {
         String url = consentService.getSignedConsentUrl();
@@ -4,6 +4,9 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.BridgeConstants.NEGATIVE_OFFSET_ERROR;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
+import static org.sagebionetworks.bridge.models.ResourceList.OFFSET_KEY;
+import static org.sagebionetworks.bridge.models.ResourceList.PAGE_SIZE;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertSame;
 
 import java.util.List;
@@ -21,6 +24,7 @@ import org.sagebionetworks.bridge.dao.AccountDao;
 import org.sagebionetworks.bridge.dao.ExternalIdDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
@@ -115,6 +119,33 @@ public class ExternalIdServiceTest {
         externalIdService.getPagedExternalIds(TEST_APP_ID, STUDY_ID, null, null, 10000);
     }
     
+    @Test
+    public void getPagedExternalIdsByOffsetKey() {
+        List<ExternalIdentifierInfo> list = ImmutableList.of(new ExternalIdentifierInfo(null, null, true));
+        ForwardCursorPagedResourceList<ExternalIdentifierInfo> page = new ForwardCursorPagedResourceList<>(list,
+                "nextKey");
+        when(mockExternalIdDao.getPagedExternalIdsByOffsetKey(TEST_APP_ID, STUDY_ID, "idFilter", "offsetKey", 50))
+            .thenReturn(page);
+        
+        ForwardCursorPagedResourceList<ExternalIdentifierInfo> retValue = externalIdService
+                .getPagedExternalIdsByOffsetKey(TEST_APP_ID, STUDY_ID, "idFilter", "offsetKey", 50);
+        assertSame(retValue, page);
+        assertEquals(retValue.getRequestParams().get(OFFSET_KEY), "offsetKey");
+        assertEquals(retValue.getRequestParams().get(PAGE_SIZE), 50);
+    }
+    
+    @Test(expectedExceptions = BadRequestException.class, 
+            expectedExceptionsMessageRegExp = ExternalIdService.PAGE_SIZE_ERROR)
+    public void getPagedExternalIdsByOffsetKeyPageTooSmall() {
+        externalIdService.getPagedExternalIdsByOffsetKey(TEST_APP_ID, STUDY_ID, null, null, 0);
+    }
+    
+    @Test(expectedExceptions = BadRequestException.class, 
+            expectedExceptionsMessageRegExp = ExternalIdService.PAGE_SIZE_ERROR)
+    public void getPagedExternalIdsByOffsetKeyPageTooLarge() {
+        externalIdService.getPagedExternalIdsByOffsetKey(TEST_APP_ID, STUDY_ID, null, null, 10000);
+    }
+    
     @Test
     public void deleteExternalIdPermanently() {
         AccountId accountId = AccountId.forExternalId(TEST_APP_ID, ID);
@@ -6,11 +6,13 @@ import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.sagebionetworks.bridge.http.PartnerHttpClient.Destination.GBF;
 import static org.sagebionetworks.bridge.services.GBFOrderService.GBF_API_KEY;
 import static org.sagebionetworks.bridge.services.GBFOrderService.GBF_CONFIRMATION_URL;
 import static org.sagebionetworks.bridge.services.GBFOrderService.GBF_ORDER_STATUS_URL;
 import static org.sagebionetworks.bridge.services.GBFOrderService.GBF_PLACE_ORDER_URL;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -38,6 +40,7 @@ import org.testng.annotations.Test;
 import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.http.PartnerHttpClient;
 import org.sagebionetworks.bridge.models.accounts.Phone;
 import org.sagebionetworks.bridge.models.crc.gbf.external.CheckOrderStatusRequest;
 import org.sagebionetworks.bridge.models.crc.gbf.external.CheckOrderStatusResponse;
@@ -61,6 +64,9 @@ public class GBFOrderServiceTest {
     @Mock
     private BridgeConfig mockBridgeConfig;
 
+    @Mock
+    private PartnerHttpClient mockPartnerHttpClient;
+
     private ObjectMapper jsonMapper = new ObjectMapper()
             .registerModule(new JodaModule())
             .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
@@ -88,11 +94,11 @@ public class GBFOrderServiceTest {
         PlaceOrderResponse response = new PlaceOrderResponse(true, null);
         HttpResponse mockResponse = createMockResponse(response);
 
-        doReturn(mockResponse).when(service).postJson(eq(PLACE_URL), any(), any());
+        doReturn(mockResponse).when(service).postJson(eq(PLACE_URL), any(), any(), eq(false));
 
         service.placeOrder(mockOrder, true);
     
-        verify(service).postJson(eq(PLACE_URL), any(), any());
+        verify(service).postJson(eq(PLACE_URL), any(), any(), eq(false));
         verify(service).handleGbfHttpStatusErrors(any());
     }
     
@@ -103,7 +109,7 @@ public class GBFOrderServiceTest {
         PlaceOrderResponse response = new PlaceOrderResponse(false, null);
         HttpResponse mockResponse = createMockResponse(response);
     
-        doReturn(mockResponse).when(service).postJson(eq(PLACE_URL), any(), any());
+        doReturn(mockResponse).when(service).postJson(eq(PLACE_URL), any(), any(), eq(false));
     
         service.placeOrder(mockOrder, true);
     }
@@ -142,7 +148,7 @@ public class GBFOrderServiceTest {
         doReturn(mockEntity).when(mockResponse).getEntity();
     
         ArgumentCaptor<CheckOrderStatusRequest> captor = ArgumentCaptor.forClass(CheckOrderStatusRequest.class);
-        doReturn(mockResponse).when(service).postJson(eq(STATUS_URL), any(), captor.capture());
+        doReturn(mockResponse).when(service).postJson(eq(STATUS_URL), any(), captor.capture(), eq(true));
     
         service.checkOrderStatus(order1, order2);
     
@@ -151,6 +157,22 @@ public class GBFOrderServiceTest {
         assertEquals(Lists.newArrayList(order1, order2), captor.getValue().orderNumbers);
     }
     
+    @Test
+    public void postJsonUsesPartnerHttpClient() throws IOException {
+        HttpResponse mockResponse = mock(HttpResponse.class);
+        when(mockPartnerHttpClient.execute(eq(GBF), any(), eq(true))).thenReturn(mockResponse);
+
+        HttpResponse response = service.postJson(STATUS_URL, "apiKey", Lists.newArrayList("order1"), true);
+        assertSame(response, mockResponse);
+    }
+
+    @Test(expectedExceptions = BridgeServiceException.class)
+    public void postJsonIOException() throws IOException {
+        when(mockPartnerHttpClient.execute(eq(GBF), any(), eq(false))).thenThrow(new IOException("unavailable"));
+
+        service.postJson(PLACE_URL, "apiKey", Lists.newArrayList("order1"), false);
+    }
+
     @Test(expectedExceptions = BadRequestException.class)
     public void handleGbfHttpStatusErrorsClientErrors() throws IOException {
         StatusLine statusLine = mock(StatusLine.class);
@@ -217,7 +239,7 @@ public class GBFOrderServiceTest {
                 ArgumentCaptor.forClass(ConfirmShippingRequest.class);
 
         doReturn(mockResponse).when(service).postJson(eq(CONFIRMATION_URL), any(),
-                confirmShippingRequestArgumentCaptor.capture());
+                confirmShippingRequestArgumentCaptor.capture(), eq(true));
         
         LocalDate startDate = LocalDate.now().minusDays(20);
         LocalDate endDate = LocalDate.now().plusDays(3);
@@ -231,7 +253,7 @@ public class GBFOrderServiceTest {
         assertEquals(endDate, confirmShippingRequest.endDate);
         
         verify(service).handleGbfHttpStatusErrors(any());
-        verify(service).postJson(eq(CONFIRMATION_URL), any(), any());
+        verify(service).postJson(eq(CONFIRMATION_URL), any(), any(), eq(true));
     }
 
 
@@ -254,7 +276,7 @@ public class GBFOrderServiceTest {
         doReturn(mockStatusLine).when(mockResponse).getStatusLine();
         doReturn(mockEntity).when(mockResponse).getEntity();
 
-        doReturn(mockResponse).when(service).postJson(eq(CONFIRMATION_URL), any(), any());
+        doReturn(mockResponse).when(service).postJson(eq(CONFIRMATION_URL), any(), any(), eq(true));
         try {
             service.requestShippingConfirmations(
                     LocalDate.now().minusDays(2), LocalDate.now());
@@ -262,7 +284,7 @@ public class GBFOrderServiceTest {
         } catch (BadRequestException e) {
             assertEquals(errorMessage, e.getMessage());
         }
-        verify(service).postJson(eq(CONFIRMATION_URL), any(), any());
+        verify(service).postJson(eq(CONFIRMATION_URL), any(), any(), eq(true));
     }
 
     @Test
@@ -6,6 +6,7 @@ import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -21,6 +22,7 @@ import org.sagebionetworks.bridge.dao.HealthDataDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.SharingScope;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
 import org.sagebionetworks.bridge.models.healthdata.RecordExportStatusRequest;
@@ -89,26 +91,61 @@ public class HealthDataServiceTest {
         assertEquals(numDeleted, 37);
     }
 
+    @SuppressWarnings("deprecation")
     @Test(expectedExceptions = BadRequestException.class)
     public void getRecordsForUploadDateNullUploadDate() {
         new HealthDataService().getRecordsForUploadDate(null);
     }
 
+    @SuppressWarnings("deprecation")
     @Test(expectedExceptions = BadRequestException.class)
     public void getRecordsForUploadDateEmptyUploadDate() {
         new HealthDataService().getRecordsForUploadDate("");
     }
 
+    @SuppressWarnings("deprecation")
     @Test(expectedExceptions = BadRequestException.class)
     public void getRecordsForUploadDateMalformedUploadDate() {
         new HealthDataService().getRecordsForUploadDate("This is not a calendar date.");
     }
 
+    @SuppressWarnings("deprecation")
     @Test(expectedExceptions = BadRequestException.class)
     public void getRecordsForUploadDateInvalidUploadDate() {
         new HealthDataService().getRecordsForUploadDate("2014-02-31");
     }
 
+    @Test(expectedExceptions = BadRequestException.class)
+    public void getRecordsForUploadDatePagedInvalidUploadDate() {
+        new HealthDataService().getRecordsForUploadDate("2014-02-31", null, 50);
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void getRecordsForUploadDatePagedPageSizeTooSmall() {
+        new HealthDataService().getRecordsForUploadDate(TEST_UPLOAD_DATE_STR, null, 0);
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void getRecordsForUploadDatePagedPageSizeTooLarge() {
+        new HealthDataService().getRecordsForUploadDate(TEST_UPLOAD_DATE_STR, null, 1000);
+    }
+
+    @Test
+    public void getRecordsForUploadDatePagedSuccess() {
+        ForwardCursorPagedResourceList<HealthDataRecord> mockPage = new ForwardCursorPagedResourceList<>(
+                ImmutableList.of(makeValidRecord()), "nextKey");
+        HealthDataDao mockDao = mock(HealthDataDao.class);
+        when(mockDao.getRecordsForUploadDate(TEST_UPLOAD_DATE_STR, "offsetKey", 50)).thenReturn(mockPage);
+
+        HealthDataService svc = new HealthDataService();
+        svc.setHealthDataDao(mockDao);
+
+        ForwardCursorPagedResourceList<HealthDataRecord> page = svc.getRecordsForUploadDate(TEST_UPLOAD_DATE_STR,
+                "offsetKey", 50);
+        assertSame(page, mockPage);
+    }
+
+    @SuppressWarnings("deprecation")
     @Test
     public void getRecordsForUploadDateSuccess() {
         // mock results
@@ -13,12 +13,15 @@ import static org.testng.Assert.fail;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
@@ -137,8 +140,14 @@ public class NotificationTopicServiceTest {
     @Mock
     private NotificationRegistration mockNotificationRegistration;
     
+    @Mock
+    private ExecutorService mockReconcileExecutorService;
+    
     @Captor
     private ArgumentCaptor<PublishRequest> publishRequestCaptor;
+    
+    @Captor
+    private ArgumentCaptor<Runnable> runnableCaptor;
 
     private NotificationTopicService service;
     
@@ -151,6 +160,8 @@ public class NotificationTopicServiceTest {
         service.setSnsClient(mockSnsClient);
         service.setNotificationRegistrationDao(mockRegistrationDao);
         service.setTopicSubscriptionDao(mockSubscriptionDao);
+        service.setSubscriptionReconcileExecutorService(MoreExecutors.newDirectExecutorService());
+        service.setSnsExecutorService(MoreExecutors.newDirectExecutorService());
     }
     
     @Test
@@ -365,6 +376,98 @@ public class NotificationTopicServiceTest {
         verify(mockSubscriptionDao, never()).subscribe(any(), eq(MANUAL_TOPIC_2));
     }
 
+    @Test
+    public void manageCriteriaBasedSubscriptions_CachesCriteriaTopics() {
+        when(mockTopicDao.listTopics(TEST_APP_ID, true)).thenReturn(ImmutableList.of(CRITERIA_TOPIC_1,
+                MANUAL_TOPIC_1));
+        when(mockRegistrationDao.listRegistrations(HEALTH_CODE)).thenReturn(ImmutableList.of());
+
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+
+        verify(mockTopicDao, times(1)).listTopics(TEST_APP_ID, true);
+        verify(mockRegistrationDao, times(2)).listRegistrations(HEALTH_CODE);
+    }
+
+    @Test
+    public void topicChangesInvalidateCriteriaTopicCache() {
+        when(mockTopicDao.listTopics(TEST_APP_ID, true)).thenReturn(ImmutableList.of(CRITERIA_TOPIC_1));
+        when(mockRegistrationDao.listRegistrations(HEALTH_CODE)).thenReturn(ImmutableList.of());
+        NotificationTopic topic = getNotificationTopic();
+        
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+        service.createTopic(topic);
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+        service.updateTopic(topic);
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+        service.deleteTopic(TEST_APP_ID, "ABC-DEF");
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+        service.deleteTopicPermanently(TEST_APP_ID, "ABC-DEF");
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+        service.deleteAllTopics(TEST_APP_ID);
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+        
+        verify(mockTopicDao, times(6)).listTopics(TEST_APP_ID, true);
+    }
+
+    @Test
+    public void requestCriteriaBasedSubscriptionUpdate() {
+        when(mockTopicDao.listTopics(TEST_APP_ID, true)).thenReturn(ImmutableList.of(CRITERIA_TOPIC_1,
+                CRITERIA_TOPIC_2));
+        when(mockRegistrationDao.listRegistrations(HEALTH_CODE)).thenReturn(ImmutableList.of(PUSH_REGISTRATION));
+        when(mockSubscriptionDao.listSubscriptions(PUSH_REGISTRATION)).thenReturn((List)ImmutableList.of(
+                getSub(CRITERIA_TOPIC_1.getGuid())));
+        
+        CriteriaContext context = new CriteriaContext.Builder().withContext(EMPTY_CONTEXT).withUserDataGroups(
+                ImmutableSet.of(CRITERIA_GROUP_2)).build();
+        
+        service.requestCriteriaBasedSubscriptionUpdate(TEST_APP_ID, context, HEALTH_CODE);
+        
+        verify(mockSubscriptionDao).unsubscribe(PUSH_REGISTRATION, CRITERIA_TOPIC_1);
+        verify(mockSubscriptionDao).subscribe(PUSH_REGISTRATION, CRITERIA_TOPIC_2);
+    }
+
+    @Test
+    public void requestCriteriaBasedSubscriptionUpdateCoalescesRequests() {
+        service.setSubscriptionReconcileExecutorService(mockReconcileExecutorService);
+        
+        when(mockTopicDao.listTopics(TEST_APP_ID, true)).thenReturn(ImmutableList.of(CRITERIA_TOPIC_1,
+                CRITERIA_TOPIC_2));
+        when(mockRegistrationDao.listRegistrations(HEALTH_CODE)).thenReturn(ImmutableList.of(PUSH_REGISTRATION));
+        when(mockSubscriptionDao.listSubscriptions(PUSH_REGISTRATION)).thenReturn((List)ImmutableList.of());
+        
+        CriteriaContext context1 = new CriteriaContext.Builder().withContext(EMPTY_CONTEXT).withUserDataGroups(
+                ImmutableSet.of(CRITERIA_GROUP_1)).build();
+        CriteriaContext context2 = new CriteriaContext.Builder().withContext(EMPTY_CONTEXT).withUserDataGroups(
+                ImmutableSet.of(CRITERIA_GROUP_2)).build();
+        
+        // Two requests before the first one runs result in one task.
+        service.requestCriteriaBasedSubscriptionUpdate(TEST_APP_ID, context1, HEALTH_CODE);
+        service.requestCriteriaBasedSubscriptionUpdate(TEST_APP_ID, context2, HEALTH_CODE);
+        verify(mockReconcileExecutorService, times(1)).execute(runnableCaptor.capture());
+        
+        // That task reconciles once, with the latest context.
+        runnableCaptor.getValue().run();
+        verify(mockRegistrationDao, times(1)).listRegistrations(HEALTH_CODE);
+        verify(mockSubscriptionDao).subscribe(PUSH_REGISTRATION, CRITERIA_TOPIC_2);
+        verify(mockSubscriptionDao, never()).subscribe(PUSH_REGISTRATION, CRITERIA_TOPIC_1);
+        
+        // Once it's done, the next request schedules a new task.
+        service.requestCriteriaBasedSubscriptionUpdate(TEST_APP_ID, context1, HEALTH_CODE);
+        verify(mockReconcileExecutorService, times(2)).execute(any());
+    }
+
+    @Test
+    public void requestCriteriaBasedSubscriptionUpdateLogsErrors() {
+        when(mockTopicDao.listTopics(TEST_APP_ID, true)).thenThrow(new RuntimeException());
+        
+        // Does not throw, and the failed request doesn't block later requests.
+        service.requestCriteriaBasedSubscriptionUpdate(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+        service.requestCriteriaBasedSubscriptionUpdate(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+        
+        verify(mockTopicDao, times(2)).listTopics(TEST_APP_ID, true);
+    }
+
     @Test
     public void unsubscribeAll_NoSubscriptions() {
         // Mock dependencies.
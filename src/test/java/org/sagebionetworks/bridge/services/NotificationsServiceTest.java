@@ -10,13 +10,18 @@ import static org.testng.Assert.fail;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.sagebionetworks.bridge.services.NotificationsService.BULK_NOTIFICATION_MAX_PARTICIPANTS;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
@@ -32,6 +37,7 @@ import org.sagebionetworks.bridge.models.CriteriaContext;
 import org.sagebionetworks.bridge.models.OperatingSystem;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.apps.App;
+import org.sagebionetworks.bridge.models.notifications.BulkNotificationResult;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationProtocol;
 import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
@@ -89,6 +95,7 @@ public class NotificationsServiceTest {
         service.setAppService(mockAppService);
         service.setNotificationRegistrationDao(mockRegistrationDao);
         service.setSnsClient(mockSnsClient);
+        service.setNotificationSendExecutorService(MoreExecutors.newDirectExecutorService());
 
         Map<String,String> map = Maps.newHashMap();
         map.put(OS_NAME, PLATFORM_ARN);
@@ -320,6 +327,70 @@ public class NotificationsServiceTest {
         service.sendNotificationToUser(TEST_APP_ID, HEALTH_CODE, message);
     }
 
+    @Test
+    public void sendNotificationToUsers() {
+        NotificationRegistration reg1 = getNotificationRegistration();
+        NotificationRegistration reg2 = getNotificationRegistration();
+        reg2.setGuid("registrationGuid2");
+        NotificationRegistration reg3 = getNotificationRegistration();
+        reg3.setGuid("registrationGuid3");
+        doReturn(ImmutableList.of(reg1, reg2)).when(mockRegistrationDao).listRegistrations("healthCode1");
+        doReturn(ImmutableList.of(reg3)).when(mockRegistrationDao).listRegistrations("healthCode2");
+        doReturn(ImmutableList.of()).when(mockRegistrationDao).listRegistrations("healthCode3");
+        
+        // The second publish fails.
+        when(mockSnsClient.publish(any()))
+            .thenReturn(mockPublishResult)
+            .thenThrow(new InvalidParameterException("bad parameter"))
+            .thenReturn(mockPublishResult);
+        
+        NotificationMessage message = getNotificationMessage();
+        BulkNotificationResult result = service.sendNotificationToUsers(TEST_APP_ID,
+                ImmutableList.of("healthCode1", "healthCode2", "healthCode3"), message);
+        
+        assertEquals(result.getParticipantCount(), 3);
+        assertEquals(result.getUnregisteredParticipantCount(), 1);
+        assertEquals(result.getSuccessCount(), 2);
+        assertEquals(result.getFailureCount(), 1);
+        assertEquals(result.getErroredRegistrations(), ImmutableSet.of("registrationGuid2"));
+        assertEquals(result.getMissingParticipants(), ImmutableSet.of());
+        
+        verify(mockSnsClient, times(3)).publish(requestCaptor.capture());
+        for (PublishRequest request : requestCaptor.getAllValues()) {
+            assertEquals(request.getSubject(), message.getSubject());
+            assertEquals(request.getMessage(), message.getMessage());
+        }
+    }
+    
+    // Unlike sending to one user, all failures are reported rather than thrown.
+    @Test
+    public void sendNotificationToUsersAllFail() {
+        NotificationRegistration reg1 = getNotificationRegistration();
+        doReturn(ImmutableList.of(reg1)).when(mockRegistrationDao).listRegistrations(HEALTH_CODE);
+        doThrow(new InvalidParameterException("bad parameter")).when(mockSnsClient).publish(any());
+        
+        BulkNotificationResult result = service.sendNotificationToUsers(TEST_APP_ID, ImmutableList.of(HEALTH_CODE),
+                getNotificationMessage());
+        
+        assertEquals(result.getSuccessCount(), 0);
+        assertEquals(result.getFailureCount(), 1);
+        assertEquals(result.getErroredRegistrations(), ImmutableSet.of(reg1.getGuid()));
+    }
+    
+    @Test(expectedExceptions = BadRequestException.class)
+    public void sendNotificationToUsersTooManyParticipants() {
+        List<String> healthCodes = Lists.newArrayList();
+        for (int i=0; i <= BULK_NOTIFICATION_MAX_PARTICIPANTS; i++) {
+            healthCodes.add("healthCode" + i);
+        }
+        try {
+            service.sendNotificationToUsers(TEST_APP_ID, healthCodes, getNotificationMessage());
+        } finally {
+            verifyZeroInteractions(mockRegistrationDao);
+            verifyZeroInteractions(mockSnsClient);
+        }
+    }
+    
     private static NotificationRegistration getSmsNotificationRegistration() {
         NotificationRegistration registration = NotificationRegistration.create();
         registration.setHealthCode(HEALTH_CODE);
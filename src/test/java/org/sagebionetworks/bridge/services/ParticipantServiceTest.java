@@ -89,6 +89,7 @@ import org.sagebionetworks.bridge.models.activities.CustomActivityEventRequest;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.apps.PasswordPolicy;
 import org.sagebionetworks.bridge.models.apps.SmsTemplate;
+import org.sagebionetworks.bridge.models.notifications.BulkNotificationResult;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationProtocol;
 import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
@@ -1772,6 +1773,46 @@ public class ParticipantServiceTest extends Mockito {
         verify(notificationsService).sendNotificationToUser(TEST_APP_ID, HEALTH_CODE, message);
     }
 
+    @Test
+    public void sendNotificationToParticipants() {
+        mockHealthCodeAndAccountRetrieval();
+        when(accountService.getAccounts(TEST_APP_ID, ImmutableSet.of(ID, "missing-user")))
+                .thenReturn(ImmutableList.of(account));
+        
+        NotificationMessage message = TestUtils.getNotificationMessage();
+        BulkNotificationResult result = new BulkNotificationResult(1, 0, 1, 0, ImmutableSet.of(), 10L, 10L, 15L,
+                ImmutableSet.of());
+        when(notificationsService.sendNotificationToUsers(any(), any(), any())).thenReturn(result);
+        
+        BulkNotificationResult returned = participantService.sendNotificationToParticipants(APP,
+                ImmutableSet.of(ID, "missing-user"), message);
+        assertEquals(returned.getParticipantCount(), 1);
+        assertEquals(returned.getSuccessCount(), 1);
+        assertEquals(returned.getElapsedMillis(), 15L);
+        assertEquals(returned.getMissingParticipants(), ImmutableSet.of("missing-user"));
+        
+        verify(notificationsService).sendNotificationToUsers(TEST_APP_ID, ImmutableSet.of(HEALTH_CODE), message);
+        verify(accountService, never()).getAccount(any());
+    }
+    
+    @Test(expectedExceptions = BadRequestException.class)
+    public void sendNotificationToParticipantsNoUserIds() {
+        participantService.sendNotificationToParticipants(APP, ImmutableSet.of(), TestUtils.getNotificationMessage());
+    }
+    
+    @Test
+    public void sendNotificationToParticipantsAccountNotFound() {
+        BulkNotificationResult result = new BulkNotificationResult(0, 0, 0, 0, ImmutableSet.of(), 0L, 0L, 0L,
+                ImmutableSet.of());
+        when(notificationsService.sendNotificationToUsers(any(), any(), any())).thenReturn(result);
+        
+        BulkNotificationResult returned = participantService.sendNotificationToParticipants(APP, ImmutableSet.of(ID),
+                TestUtils.getNotificationMessage());
+        assertEquals(returned.getMissingParticipants(), ImmutableSet.of(ID));
+        
+        verify(notificationsService).sendNotificationToUsers(eq(TEST_APP_ID), eq(ImmutableSet.of()), any());
+    }
+
     @Test
     public void limitNotExceededException() {
         mockHealthCodeAndAccountRetrieval();
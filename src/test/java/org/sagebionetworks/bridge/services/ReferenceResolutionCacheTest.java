@@ -0,0 +1,98 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import org.joda.time.DateTime;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.models.ClientInfo;
+import org.sagebionetworks.bridge.models.schedules.CompoundActivity;
+import org.sagebionetworks.bridge.models.schedules.SchemaReference;
+import org.sagebionetworks.bridge.models.schedules.SurveyReference;
+
+public class ReferenceResolutionCacheTest {
+    private static final String OTHER_APP_ID = "other-app";
+    private static final String SCHEMA_ID = "schemaId";
+    private static final String SURVEY_GUID = "surveyGuid";
+    private static final String TASK_ID = "taskId";
+    private static final ClientInfo IOS_CLIENT = ClientInfo
+            .fromUserAgentCache("app/10 (iPhone; iOS/9.0.2) BridgeSDK/4");
+    private static final ClientInfo ANDROID_CLIENT = ClientInfo
+            .fromUserAgentCache("app/10 (Nexus 5; Android/6.0) BridgeSDK/4");
+    private static final SchemaReference SCHEMA_REF = new SchemaReference(SCHEMA_ID, 3);
+    private static final SurveyReference SURVEY_REF = new SurveyReference("surveyId", SURVEY_GUID, DateTime.now());
+    private static final CompoundActivity COMPOUND_ACTIVITY = new CompoundActivity.Builder()
+            .withTaskIdentifier(TASK_ID).build();
+
+    private ReferenceResolutionCache cache;
+
+    @BeforeMethod
+    public void before() {
+        cache = new ReferenceResolutionCache();
+    }
+
+    @Test
+    public void schemaIsCachedPerClient() {
+        cache.putSchema(TEST_APP_ID, SCHEMA_ID, IOS_CLIENT, SCHEMA_REF);
+
+        assertSame(cache.getSchema(TEST_APP_ID, SCHEMA_ID, IOS_CLIENT), SCHEMA_REF);
+        assertNull(cache.getSchema(TEST_APP_ID, SCHEMA_ID, ANDROID_CLIENT));
+        assertNull(cache.getSchema(OTHER_APP_ID, SCHEMA_ID, IOS_CLIENT));
+    }
+
+    @Test
+    public void invalidateSchemaRemovesEveryClient() {
+        cache.putSchema(TEST_APP_ID, SCHEMA_ID, IOS_CLIENT, SCHEMA_REF);
+        cache.putSchema(TEST_APP_ID, SCHEMA_ID, ANDROID_CLIENT, SCHEMA_REF);
+        // Shares a prefix with the invalidated schema ID, but is a different schema.
+        cache.putSchema(TEST_APP_ID, SCHEMA_ID + "2", IOS_CLIENT, SCHEMA_REF);
+        cache.putSchema(OTHER_APP_ID, SCHEMA_ID, IOS_CLIENT, SCHEMA_REF);
+
+        cache.invalidateSchema(TEST_APP_ID, SCHEMA_ID);
+
+        assertNull(cache.getSchema(TEST_APP_ID, SCHEMA_ID, IOS_CLIENT));
+        assertNull(cache.getSchema(TEST_APP_ID, SCHEMA_ID, ANDROID_CLIENT));
+        assertSame(cache.getSchema(TEST_APP_ID, SCHEMA_ID + "2", IOS_CLIENT), SCHEMA_REF);
+        assertSame(cache.getSchema(OTHER_APP_ID, SCHEMA_ID, IOS_CLIENT), SCHEMA_REF);
+    }
+
+    @Test
+    public void invalidateSurvey() {
+        cache.putSurvey(TEST_APP_ID, SURVEY_GUID, SURVEY_REF);
+        cache.putSurvey(OTHER_APP_ID, SURVEY_GUID, SURVEY_REF);
+        assertSame(cache.getSurvey(TEST_APP_ID, SURVEY_GUID), SURVEY_REF);
+
+        cache.invalidateSurvey(TEST_APP_ID, SURVEY_GUID);
+
+        assertNull(cache.getSurvey(TEST_APP_ID, SURVEY_GUID));
+        assertSame(cache.getSurvey(OTHER_APP_ID, SURVEY_GUID), SURVEY_REF);
+    }
+
+    @Test
+    public void invalidateCompoundActivity() {
+        cache.putCompoundActivity(TEST_APP_ID, TASK_ID, COMPOUND_ACTIVITY);
+        cache.putCompoundActivity(TEST_APP_ID, "otherTask", COMPOUND_ACTIVITY);
+        assertSame(cache.getCompoundActivity(TEST_APP_ID, TASK_ID), COMPOUND_ACTIVITY);
+
+        cache.invalidateCompoundActivity(TEST_APP_ID, TASK_ID);
+
+        assertNull(cache.getCompoundActivity(TEST_APP_ID, TASK_ID));
+        assertSame(cache.getCompoundActivity(TEST_APP_ID, "otherTask"), COMPOUND_ACTIVITY);
+    }
+
+    @Test
+    public void invalidateCompoundActivitiesRemovesOnlyThatApp() {
+        cache.putCompoundActivity(TEST_APP_ID, TASK_ID, COMPOUND_ACTIVITY);
+        cache.putCompoundActivity(TEST_APP_ID, "otherTask", COMPOUND_ACTIVITY);
+        cache.putCompoundActivity(OTHER_APP_ID, TASK_ID, COMPOUND_ACTIVITY);
+
+        cache.invalidateCompoundActivities(TEST_APP_ID);
+
+        assertNull(cache.getCompoundActivity(TEST_APP_ID, TASK_ID));
+        assertNull(cache.getCompoundActivity(TEST_APP_ID, "otherTask"));
+        assertSame(cache.getCompoundActivity(OTHER_APP_ID, TASK_ID), COMPOUND_ACTIVITY);
+    }
+}
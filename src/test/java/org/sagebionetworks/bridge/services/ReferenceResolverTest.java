@@ -95,6 +95,8 @@ public class ReferenceResolverTest {
     @Spy
     private HashMap<String,SchemaReference> schemaReferences;
     
+    private ReferenceResolutionCache sharedCache;
+    
     private ReferenceResolver resolver;
     
     private ScheduledActivity scheduledActivity;
@@ -106,8 +108,9 @@ public class ReferenceResolverTest {
         MockitoAnnotations.initMocks(this);
         
         // All the dependencies are mocks or mutable maps, and can be adjusted per test
+        sharedCache = new ReferenceResolutionCache();
         resolver = new ReferenceResolver(compoundActivityDefinitionService, schemaService, surveyService,
-                surveyReferences, schemaReferences, CLIENT_INFO, TEST_APP_ID);
+                sharedCache, surveyReferences, schemaReferences, CLIENT_INFO, TEST_APP_ID);
         
         scheduledActivity = ScheduledActivity.create();
         
@@ -398,4 +401,77 @@ public class ReferenceResolverTest {
         assertTrue(scheduledActivity.getActivity().getCompoundActivity().getSchemaList().isEmpty());
         assertTrue(scheduledActivity.getActivity().getCompoundActivity().getSurveyList().isEmpty());
     }
+
+    @Test
+    public void surveyResolvedFromSharedCacheAcrossResolvers() {
+        scheduledActivity.setActivity(activityBuilder.withSurvey(UNRESOLVED_SURVEY_REF).build());
+        when(surveyService.getSurveyMostRecentlyPublishedVersion(TEST_APP_ID, SURVEY_GUID, false)).thenReturn(SURVEY);
+        
+        resolver.resolve(scheduledActivity);
+        
+        ScheduledActivity secondActivity = ScheduledActivity.create();
+        secondActivity.setActivity(activityBuilder.withSurvey(UNRESOLVED_SURVEY_REF).build());
+        newResolver().resolve(secondActivity);
+        
+        assertEquals(RESOLVED_SURVEY_REF, secondActivity.getActivity().getSurvey());
+        verify(surveyService, times(1)).getSurveyMostRecentlyPublishedVersion(TEST_APP_ID, SURVEY_GUID, false);
+    }
+    
+    @Test
+    public void schemaResolvedFromSharedCacheAcrossResolvers() {
+        scheduledActivity.setActivity(activityBuilder.withTask(UNRESOLVED_TASK_REF).build());
+        when(schemaService.getLatestUploadSchemaRevisionForAppVersion(TEST_APP_ID, SCHEMA_ID, CLIENT_INFO)).thenReturn(SCHEMA);
+        
+        resolver.resolve(scheduledActivity);
+        
+        ScheduledActivity secondActivity = ScheduledActivity.create();
+        secondActivity.setActivity(activityBuilder.withTask(UNRESOLVED_TASK_REF).build());
+        newResolver().resolve(secondActivity);
+        
+        assertEquals(RESOLVED_SCHEMA_REF, secondActivity.getActivity().getTask().getSchema());
+        verify(schemaService, times(1)).getLatestUploadSchemaRevisionForAppVersion(TEST_APP_ID, SCHEMA_ID, CLIENT_INFO);
+    }
+    
+    @Test
+    public void compoundActivityResolvedFromSharedCacheAcrossResolvers() {
+        scheduledActivity.setActivity(activityBuilder.withCompoundActivity(COMPOUND_ACTIVITY_SKINNY_REF).build());
+        when(compoundActivityDefinitionService.getCompoundActivityDefinition(TEST_APP_ID, TASK_ID))
+                .thenReturn(UNRESOLVED_COMPOUND_ACTIVITY_DEF);
+        when(surveyService.getSurveyMostRecentlyPublishedVersion(TEST_APP_ID, SURVEY_GUID, false)).thenReturn(SURVEY);
+        when(schemaService.getLatestUploadSchemaRevisionForAppVersion(TEST_APP_ID, SCHEMA_ID, CLIENT_INFO)).thenReturn(SCHEMA);
+        
+        resolver.resolve(scheduledActivity);
+        
+        ScheduledActivity secondActivity = ScheduledActivity.create();
+        secondActivity.setActivity(activityBuilder.withCompoundActivity(COMPOUND_ACTIVITY_SKINNY_REF).build());
+        newResolver().resolve(secondActivity);
+        
+        CompoundActivity compoundActivity = secondActivity.getActivity().getCompoundActivity();
+        assertEquals(RESOLVED_SCHEMA_REF, compoundActivity.getSchemaList().get(0));
+        assertEquals(RESOLVED_SURVEY_REF, compoundActivity.getSurveyList().get(0));
+        verify(compoundActivityDefinitionService, times(1)).getCompoundActivityDefinition(TEST_APP_ID, TASK_ID);
+        verify(surveyService, times(1)).getSurveyMostRecentlyPublishedVersion(TEST_APP_ID, SURVEY_GUID, false);
+        verify(schemaService, times(1)).getLatestUploadSchemaRevisionForAppVersion(TEST_APP_ID, SCHEMA_ID, CLIENT_INFO);
+    }
+    
+    @Test
+    public void invalidatedSurveyResolvedFromServiceAgain() {
+        scheduledActivity.setActivity(activityBuilder.withSurvey(UNRESOLVED_SURVEY_REF).build());
+        when(surveyService.getSurveyMostRecentlyPublishedVersion(TEST_APP_ID, SURVEY_GUID, false)).thenReturn(SURVEY);
+        
+        resolver.resolve(scheduledActivity);
+        sharedCache.invalidateSurvey(TEST_APP_ID, SURVEY_GUID);
+        
+        ScheduledActivity secondActivity = ScheduledActivity.create();
+        secondActivity.setActivity(activityBuilder.withSurvey(UNRESOLVED_SURVEY_REF).build());
+        newResolver().resolve(secondActivity);
+        
+        verify(surveyService, times(2)).getSurveyMostRecentlyPublishedVersion(TEST_APP_ID, SURVEY_GUID, false);
+    }
+    
+    // A resolver for another request: new per-request maps, the same shared cache.
+    private ReferenceResolver newResolver() {
+        return new ReferenceResolver(compoundActivityDefinitionService, schemaService, surveyService,
+                sharedCache, new HashMap<>(), new HashMap<>(), CLIENT_INFO, TEST_APP_ID);
+    }
 }
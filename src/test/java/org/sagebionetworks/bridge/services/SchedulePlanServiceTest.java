@@ -4,13 +4,18 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
+import static org.sagebionetworks.bridge.models.OperatingSystem.ANDROID;
+import static org.sagebionetworks.bridge.models.OperatingSystem.IOS;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.fail;
 
@@ -23,6 +28,8 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.dao.SchedulePlanDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoSchedulePlan;
 import org.sagebionetworks.bridge.dynamodb.DynamoApp;
@@ -40,6 +47,7 @@ import org.sagebionetworks.bridge.models.schedules.SimpleScheduleStrategy;
 import org.sagebionetworks.bridge.models.surveys.Survey;
 import org.sagebionetworks.bridge.models.surveys.TestSurvey;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -54,6 +62,7 @@ public class SchedulePlanServiceTest {
     private SchedulePlanDao mockSchedulePlanDao;
     private SurveyService mockSurveyService;
     private StudyService mockStudyService;
+    private CacheProvider mockCacheProvider;
     
     @BeforeMethod
     public void before() {
@@ -65,11 +74,13 @@ public class SchedulePlanServiceTest {
         mockSchedulePlanDao = mock(SchedulePlanDao.class);
         mockSurveyService = mock(SurveyService.class);
         mockStudyService = mock(StudyService.class);
+        mockCacheProvider = mock(CacheProvider.class);
         
         service = new SchedulePlanService();
         service.setSchedulePlanDao(mockSchedulePlanDao);
         service.setSurveyService(mockSurveyService);
         service.setStudyService(mockStudyService);
+        service.setCacheProvider(mockCacheProvider);
         
         Survey survey1 = new TestSurvey(SchedulePlanServiceTest.class, false);
         survey1.setIdentifier("identifier1");
@@ -291,11 +302,115 @@ public class SchedulePlanServiceTest {
         verify(mockSchedulePlanDao).getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, true);
     }
     
+    @Test
+    public void getSchedulePlansIsCached() {
+        List<SchedulePlan> plans = Lists.newArrayList(SchedulePlan.create());
+        when(mockSchedulePlanDao.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, false)).thenReturn(plans);
+        when(mockCacheProvider.getObject(CacheKey.schedulePlanVersion(TEST_APP_ID), String.class))
+                .thenReturn("version1");
+        
+        service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, false);
+        List<SchedulePlan> returned = service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, false);
+        assertEquals(returned, plans);
+        
+        verify(mockSchedulePlanDao, times(1)).getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, false);
+    }
+    
+    @Test
+    public void getSchedulePlansReloadsWhenVersionChanges() {
+        List<SchedulePlan> plans = Lists.newArrayList(SchedulePlan.create());
+        when(mockSchedulePlanDao.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, false)).thenReturn(plans);
+        when(mockCacheProvider.getObject(CacheKey.schedulePlanVersion(TEST_APP_ID), String.class))
+                .thenReturn("version1", "version2");
+        
+        service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, false);
+        service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, false);
+        
+        verify(mockSchedulePlanDao, times(2)).getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, false);
+    }
+    
+    @Test
+    public void getSchedulePlansIncludeDeletedIsNotCached() {
+        service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, true);
+        service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, true);
+        
+        verify(mockSchedulePlanDao, times(2)).getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, true);
+        verify(mockCacheProvider, never()).getObject(any(), eq(String.class));
+    }
+    
+    @Test
+    public void getSchedulePlansFiltersForClient() {
+        SchedulePlan simplePlan = constructSimpleSchedulePlan();
+        SchedulePlan iosOnlyPlan = constructCriteriaSchedulePlan("iosOnly", criteriaForIosVersions(10, null));
+        SchedulePlan mixedPlan = constructCriteriaSchedulePlan("mixed", criteriaForIosVersions(null, 5),
+                criteriaForIosVersions(6, null));
+        when(mockSchedulePlanDao.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, false))
+                .thenReturn(ImmutableList.of(simplePlan, iosOnlyPlan, mixedPlan));
+        
+        ClientInfo oldIosClient = new ClientInfo.Builder().withOsName(IOS).withAppVersion(4).build();
+        List<SchedulePlan> returned = service.getSchedulePlans(oldIosClient, TEST_APP_ID, false);
+        
+        // The plan with no matching criteria is dropped, and the mixed plan is copied with one criteria.
+        assertEquals(returned.size(), 2);
+        assertSame(returned.get(0), simplePlan);
+        SchedulePlan mixedCopy = returned.get(1);
+        assertNotSame(mixedCopy, mixedPlan);
+        assertEquals(mixedCopy.getGuid(), "mixed");
+        assertEquals(mixedCopy.getLabel(), mixedPlan.getLabel());
+        List<ScheduleCriteria> criteria = ((CriteriaScheduleStrategy)mixedCopy.getStrategy()).getScheduleCriteria();
+        assertEquals(criteria.size(), 1);
+        assertEquals(criteria.get(0).getCriteria().getMaxAppVersion(IOS), Integer.valueOf(5));
+        // The cached plan is not changed
+        assertEquals(((CriteriaScheduleStrategy)mixedPlan.getStrategy()).getScheduleCriteria().size(), 2);
+        
+        // The view is reused for the same client
+        assertSame(service.getSchedulePlans(oldIosClient, TEST_APP_ID, false), returned);
+        
+        // Other operating systems and clients that don't report a version see every plan unchanged
+        ClientInfo androidClient = new ClientInfo.Builder().withOsName(ANDROID).withAppVersion(4).build();
+        assertEquals(service.getSchedulePlans(androidClient, TEST_APP_ID, false),
+                ImmutableList.of(simplePlan, iosOnlyPlan, mixedPlan));
+        assertEquals(service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, false),
+                ImmutableList.of(simplePlan, iosOnlyPlan, mixedPlan));
+        
+        verify(mockSchedulePlanDao, times(1)).getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, false);
+    }
+    
+    @Test
+    public void createSchedulePlanChangesVersion() {
+        service.createSchedulePlan(app, constructSchedulePlan());
+        
+        verify(mockCacheProvider).setObject(eq(CacheKey.schedulePlanVersion(TEST_APP_ID)), any(String.class));
+    }
+    
+    @Test
+    public void updateSchedulePlanChangesVersion() {
+        SchedulePlan plan = constructSchedulePlan();
+        when(mockSchedulePlanDao.getSchedulePlan(app.getIdentifier(), plan.getGuid())).thenReturn(plan);
+        
+        service.updateSchedulePlan(app, plan);
+        
+        verify(mockCacheProvider).setObject(eq(CacheKey.schedulePlanVersion(TEST_APP_ID)), any(String.class));
+    }
+    
+    @Test
+    public void writesInvalidateLocalCache() {
+        when(mockSchedulePlanDao.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, false))
+                .thenReturn(ImmutableList.of());
+        
+        service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, false);
+        service.deleteSchedulePlan(TEST_APP_ID, "planGuid");
+        service.getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, false);
+        
+        verify(mockSchedulePlanDao, times(2)).getSchedulePlans(ClientInfo.UNKNOWN_CLIENT, TEST_APP_ID, false);
+    }
+    
     @Test
     public void deleteSchedulePlan() {
         service.deleteSchedulePlan(TEST_APP_ID, "planGuid");
         
         verify(mockSchedulePlanDao).deleteSchedulePlan(TEST_APP_ID, "planGuid");
+        verify(mockCacheProvider).setObject(eq(CacheKey.schedulePlanVersion(TEST_APP_ID)), any(String.class));
     }
     
     @Test
@@ -303,6 +418,30 @@ public class SchedulePlanServiceTest {
         service.deleteSchedulePlanPermanently(TEST_APP_ID, "planGuid");
         
         verify(mockSchedulePlanDao).deleteSchedulePlanPermanently(TEST_APP_ID, "planGuid");
+        verify(mockCacheProvider).setObject(eq(CacheKey.schedulePlanVersion(TEST_APP_ID)), any(String.class));
+    }
+    
+    private Criteria criteriaForIosVersions(Integer min, Integer max) {
+        Criteria criteria = Criteria.create();
+        criteria.setMinAppVersion(IOS, min);
+        criteria.setMaxAppVersion(IOS, max);
+        return criteria;
+    }
+    
+    private SchedulePlan constructCriteriaSchedulePlan(String guid, Criteria... criteria) {
+        CriteriaScheduleStrategy strategy = new CriteriaScheduleStrategy();
+        for (Criteria oneCriteria : criteria) {
+            Schedule schedule = new Schedule();
+            schedule.setScheduleType(ScheduleType.ONCE);
+            schedule.addActivity(new Activity.Builder().withGuid(guid).withTask("CCC").build());
+            strategy.addCriteria(new ScheduleCriteria(schedule, oneCriteria));
+        }
+        SchedulePlan plan = new DynamoSchedulePlan();
+        plan.setAppId(TEST_APP_ID);
+        plan.setGuid(guid);
+        plan.setLabel("Label " + guid);
+        plan.setStrategy(strategy);
+        return plan;
     }
     
     private SchedulePlan constructorInvalidSchedulePlan() {
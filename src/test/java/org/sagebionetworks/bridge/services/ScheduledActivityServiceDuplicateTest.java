@@ -170,6 +170,7 @@ public class ScheduledActivityServiceDuplicateTest {
         service.setActivityEventService(activityEventService);
         service.setSchedulePlanService(schedulePlanService);
         service.setAppConfigService(appConfigService);
+        service.setReferenceResolutionCache(new ReferenceResolutionCache());
         
         contextBuilder = new ScheduleContext.Builder()
                 .withClientInfo(ClientInfo.fromUserAgentCache("Lilly/25 (iPhone Simulator; iPhone OS/9.3) BridgeSDK/12"))
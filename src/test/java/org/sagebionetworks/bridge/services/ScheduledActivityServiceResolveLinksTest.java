@@ -112,6 +112,7 @@ public class ScheduledActivityServiceResolveLinksTest {
         scheduledActivityService.setSchemaService(mockSchemaService);
         scheduledActivityService.setSurveyService(mockSurveyService);
         scheduledActivityService.setAppConfigService(appConfigService);
+        scheduledActivityService.setReferenceResolutionCache(new ReferenceResolutionCache());
     }
 
     private void setupSchedulePlanServiceWithActivity(Activity activity) {
@@ -2,11 +2,13 @@ package org.sagebionetworks.bridge.services;
 
 import static java.util.stream.Collectors.toSet;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -20,8 +22,11 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,6 +53,7 @@ import org.sagebionetworks.bridge.dynamodb.DynamoSchedulePlan;
 import org.sagebionetworks.bridge.dynamodb.DynamoScheduledActivity;
 import org.sagebionetworks.bridge.dynamodb.DynamoSurvey;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.time.DateUtils;
 import org.sagebionetworks.bridge.models.ClientInfo;
@@ -138,13 +144,16 @@ public class ScheduledActivityServiceTest {
         Map<String,DateTime> map = ImmutableMap.of();
         when(activityEventService.getActivityEventMap(eq(TEST_APP_ID), anyString(), anyString())).thenReturn(map);
         
-        when(activityDao.getActivity(any(), anyString(), anyString(), eq(true))).thenAnswer(invocation -> {
-            Object[] args = invocation.getArguments();
-            DynamoScheduledActivity schActivity = new DynamoScheduledActivity();
-            schActivity.setTimeZone((DateTimeZone)args[0]);
-            schActivity.setHealthCode((String)args[1]);
-            schActivity.setGuid((String)args[2]);
-            return schActivity;
+        when(activityDao.getActivitiesByGuid(any(), anyString(), any())).thenAnswer(invocation -> {
+            Map<String,ScheduledActivity> dbActivities = new HashMap<>();
+            for (String guid : invocation.<Collection<String>>getArgument(2)) {
+                DynamoScheduledActivity schActivity = new DynamoScheduledActivity();
+                schActivity.setTimeZone(invocation.getArgument(0));
+                schActivity.setHealthCode(invocation.getArgument(1));
+                schActivity.setGuid(guid);
+                dbActivities.put(guid, schActivity);
+            }
+            return dbActivities;
         });
         
         doReturn(SURVEY_CREATED_ON.getMillis()).when(survey).getCreatedOn();
@@ -157,6 +166,7 @@ public class ScheduledActivityServiceTest {
         service.setActivityEventService(activityEventService);
         service.setSurveyService(surveyService);
         service.setAppConfigService(appConfigService);
+        service.setReferenceResolutionCache(new ReferenceResolutionCache());
     }
     
     @AfterMethod
@@ -340,15 +350,19 @@ public class ScheduledActivityServiceTest {
         scheduledActivities.get(3).setClientData(TestUtils.getClientData());
         
         ArgumentCaptor<List> updateCapture = ArgumentCaptor.forClass(List.class);
-        ArgumentCaptor<ScheduledActivity> publishCapture = ArgumentCaptor.forClass(ScheduledActivity.class);
+        ArgumentCaptor<List> publishCapture = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Collection> guidsCapture = ArgumentCaptor.forClass(Collection.class);
         
         service.updateScheduledActivities("BBB", scheduledActivities);
         
         verify(activityDao).updateActivities(anyString(), updateCapture.capture());
-        // Three activities have timestamp updates and need to be persisted
-        verify(activityDao, times(count)).getActivity(any(), anyString(), anyString(), eq(true));
-        // Two activities have been finished and generate activity finished events
-        verify(activityEventService, times(2)).publishActivityFinishedEvent(publishCapture.capture());
+        // All activities are loaded in one batch
+        verify(activityDao).getActivitiesByGuid(eq(DateTimeZone.UTC), eq("BBB"), guidsCapture.capture());
+        assertEquals(guidsCapture.getValue().size(), count);
+        verify(activityDao, never()).getActivity(any(), anyString(), anyString(), anyBoolean());
+        // Two activities have been finished and generate activity finished events, published in one batch
+        verify(activityEventService).publishActivityFinishedEvents(publishCapture.capture());
+        verify(activityEventService, never()).publishActivityFinishedEvent(any());
         
         List<DynamoScheduledActivity> dbActivities = (List<DynamoScheduledActivity>)updateCapture.getValue();
         assertEquals(dbActivities.size(), 4);
@@ -360,10 +374,46 @@ public class ScheduledActivityServiceTest {
         assertEquals(dbActivities.get(3).getClientData(), scheduledActivities.get(3).getClientData());
         
         // Correct published activities.
-        ScheduledActivity publishedActivity2 = publishCapture.getAllValues().get(0);
-        assertEquals(publishedActivity2.getGuid(), scheduledActivities.get(2).getGuid());
-        ScheduledActivity publishedActivity1 = publishCapture.getAllValues().get(1);
-        assertEquals(publishedActivity1.getGuid(), scheduledActivities.get(1).getGuid());
+        List<ScheduledActivity> publishedActivities = (List<ScheduledActivity>)publishCapture.getValue();
+        assertEquals(publishedActivities.size(), 2);
+        assertEquals(publishedActivities.get(0).getGuid(), scheduledActivities.get(2).getGuid());
+        assertEquals(publishedActivities.get(1).getGuid(), scheduledActivities.get(1).getGuid());
+    }
+    
+    @Test
+    public void updateActivitiesWithMissingActivityThrows() {
+        ScheduleContext context = createScheduleContext(ENDS_ON).build();
+        List<ScheduledActivity> scheduledActivities = TestUtils.runSchedulerForActivities(context);
+        scheduledActivities.get(0).setFinishedOn(NOW.getMillis());
+        
+        Map<String,ScheduledActivity> dbActivities = new HashMap<>();
+        for (ScheduledActivity activity : scheduledActivities.subList(1, scheduledActivities.size())) {
+            dbActivities.put(activity.getGuid(), activity);
+        }
+        when(activityDao.getActivitiesByGuid(any(), anyString(), any())).thenReturn(dbActivities);
+        
+        try {
+            service.updateScheduledActivities("BBB", scheduledActivities);
+            fail("Should have thrown exception");
+        } catch(EntityNotFoundException e) {
+            // expected
+        }
+        verify(activityEventService, never()).publishActivityFinishedEvents(any());
+        verify(activityDao, never()).updateActivities(any(), any());
+    }
+    
+    @Test
+    public void updateActivitiesRemovesDuplicatesThatAreNotSaved() {
+        ScheduleContext context = createScheduleContext(ENDS_ON).build();
+        List<ScheduledActivity> scheduledActivities = TestUtils.runSchedulerForActivities(context);
+        // Nothing to save in either copy of the activity
+        scheduledActivities.add(scheduledActivities.get(0));
+        
+        service.updateScheduledActivities("BBB", scheduledActivities);
+        
+        verify(activityDao).updateActivities(eq("BBB"), scheduledActivityListCaptor.capture());
+        assertTrue(scheduledActivityListCaptor.getValue().isEmpty());
+        verify(activityEventService).publishActivityFinishedEvents(ImmutableList.of());
     }
     
     @Test(expectedExceptions = BadRequestException.class)
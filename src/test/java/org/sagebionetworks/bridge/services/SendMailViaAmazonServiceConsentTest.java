@@ -119,7 +119,7 @@ public class SendMailViaAmazonServiceConsentTest {
                 .withTemplateRevision(revision)
                 .withBinaryAttachment("consent.pdf", MimeType.PDF, consentPdf.getBytes())
                 .withRecipientEmail("test-user@sagebase.org").build();
-        service.sendEmail(provider);
+        service.sendEmailNow(provider);
 
         verify(emailClient).setRegion(any(Region.class));
         verify(emailClient).sendRawEmail(argument.capture());
@@ -161,7 +161,7 @@ public class SendMailViaAmazonServiceConsentTest {
                 .withBinaryAttachment("consent.pdf", MimeType.PDF, consentPdf.getBytes())
                 .withRecipientEmail("test-user@sagebase.org").build();
         
-        service.sendEmail(provider);
+        service.sendEmailNow(provider);
 
         verify(emailClient).setRegion(any(Region.class));
         verify(emailClient).sendRawEmail(argument.capture());
@@ -209,7 +209,7 @@ public class SendMailViaAmazonServiceConsentTest {
                 .withRecipientEmail("test-user@sagebase.org").build();
 
         // execute
-        service.sendEmail(provider);
+        service.sendEmailNow(provider);
 
         // Verify email client was called. No need to test anything else, everything else is already tested in the
         // normal case above.
@@ -220,6 +220,7 @@ public class SendMailViaAmazonServiceConsentTest {
     public void otherExceptionsPropagated() {
         // mock email client with exception
         when(emailClient.sendRawEmail(notNull())).thenThrow(AmazonServiceException.class);
+        when(emailVerificationService.isVerified(SUPPORT_EMAIL)).thenReturn(true);
 
         // set up inputs
         ConsentSignature consent = new ConsentSignature.Builder().withName("Test 2").withBirthdate("1950-05-05")
@@ -237,6 +238,6 @@ public class SendMailViaAmazonServiceConsentTest {
                 .withRecipientEmail("test-user@sagebase.org").build();
 
         // execute
-        service.sendEmail(provider);
+        service.sendEmailNow(provider);
     }
 }
\ No newline at end of file
@@ -1,65 +1,129 @@
 package org.sagebionetworks.bridge.services;
 
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.models.apps.MimeType.HTML;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.apps.App;
-import org.sagebionetworks.bridge.models.apps.MimeType;
 import org.sagebionetworks.bridge.models.templates.TemplateRevision;
 import org.sagebionetworks.bridge.services.email.BasicEmailProvider;
+import org.sagebionetworks.bridge.services.email.EmailOutboxMessage;
+import org.sagebionetworks.bridge.services.email.EmailType;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClient;
+import com.amazonaws.services.simpleemail.model.MessageRejectedException;
+import com.amazonaws.services.simpleemail.model.SendRawEmailRequest;
 import com.amazonaws.services.simpleemail.model.SendRawEmailResult;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 
 public class SendMailViaAmazonServiceTest {
 
     private static final String SUPPORT_EMAIL = "email@email.com";
     private static final String RECIPIENT_EMAIL = "recipient@recipient.com";
-    
+    private static final byte[] RAW_MESSAGE = "raw message".getBytes(Charsets.US_ASCII);
+
     private SendMailViaAmazonService service;
-    
+
     private App app;
-    
+
     @Mock
     private AmazonSimpleEmailServiceClient emailClient;
-    
+
     @Mock
     private EmailVerificationService emailVerificationService;
-    
+
+    @Mock
+    private EmailOutbox emailOutbox;
+
     @Mock
     private SendRawEmailResult result;
-    
+
     @BeforeMethod
     public void before() {
         MockitoAnnotations.initMocks(this);
-        
+
         app = App.create();
         app.setName("Name");
         app.setSupportEmail(SUPPORT_EMAIL);
-        
-        service = new SendMailViaAmazonService();
+        app.setIdentifier("test-app");
+
+        when(emailOutbox.isEnabled()).thenReturn(true);
+        when(emailOutbox.getMaxMessageBytes()).thenReturn(100000);
+
+        service = spy(new SendMailViaAmazonService());
         service.setEmailClient(emailClient);
         service.setEmailVerificationService(emailVerificationService);
+        service.setEmailOutbox(emailOutbox);
+        service.setSendRateLimit(1000.0);
+        doReturn(true).when(service).sleepBeforeRetry(anyLong());
+    }
+
+    private BasicEmailProvider makeProvider() {
+        TemplateRevision revision = TemplateRevision.create();
+        revision.setSubject("subject");
+        revision.setDocumentContent("body");
+        revision.setMimeType(HTML);
+
+        return new BasicEmailProvider.Builder()
+                .withApp(app)
+                .withRecipientEmail(RECIPIENT_EMAIL)
+                .withTemplateRevision(revision)
+                .withType(EmailType.VERIFY_EMAIL)
+                .build();
+    }
+
+    private EmailOutboxMessage makeOutboxMessage() {
+        EmailOutboxMessage message = new EmailOutboxMessage(EmailType.VERIFY_EMAIL, "test-app", "request-id",
+                SUPPORT_EMAIL, RECIPIENT_EMAIL, RAW_MESSAGE);
+        message.setReceipt("receipt");
+        when(emailOutbox.receive()).thenReturn(ImmutableList.of(message));
+        return message;
+    }
+
+    private AmazonServiceException makeException(String errorCode, int statusCode) {
+        AmazonServiceException ex = new AmazonServiceException("Error");
+        ex.setErrorCode(errorCode);
+        ex.setStatusCode(statusCode);
+        return ex;
     }
-    
+
     @Test
     public void unverifiedEmailThrowsException() {
         when(emailVerificationService.isVerified(SUPPORT_EMAIL)).thenReturn(false);
-        
+
         TemplateRevision revision = TemplateRevision.create();
         revision.setSubject("subject");
         revision.setDocumentContent("body");
         revision.setMimeType(HTML);
-        
+
         BasicEmailProvider provider = new BasicEmailProvider.Builder()
                 .withApp(app)
                 .withRecipientEmail(RECIPIENT_EMAIL)
@@ -71,23 +135,342 @@ public class SendMailViaAmazonServiceTest {
         } catch(BridgeServiceException e) {
             assertEquals(e.getMessage(), SendMailViaAmazonService.UNVERIFIED_EMAIL_ERROR);
         }
+        verify(emailOutbox, never()).add(any());
+    }
+
+    @Test
+    public void emailIsAddedToOutbox() {
+        when(emailVerificationService.isVerified(SUPPORT_EMAIL)).thenReturn(true);
+
+        service.sendEmail(makeProvider());
+
+        // The message is waiting in the outbox and SES has not been called
+        ArgumentCaptor<EmailOutboxMessage> messageCaptor = ArgumentCaptor.forClass(EmailOutboxMessage.class);
+        verify(emailOutbox).add(messageCaptor.capture());
+        verify(emailClient, never()).sendRawEmail(any());
+        assertEquals(service.getOutboxMessageCount(), 1L);
+
+        EmailOutboxMessage message = messageCaptor.getValue();
+        assertEquals(message.getEmailType(), EmailType.VERIFY_EMAIL);
+        assertEquals(message.getAppId(), "test-app");
+        assertEquals(message.getRecipient(), RECIPIENT_EMAIL);
+        assertTrue(message.getSource().contains(SUPPORT_EMAIL));
+        String rawMessage = new String(message.getRawMessage(), Charsets.US_ASCII);
+        assertTrue(rawMessage.contains("body"));
+    }
+
+    @Test
+    public void outboxErrorIsThrown() {
+        when(emailVerificationService.isVerified(SUPPORT_EMAIL)).thenReturn(true);
+        doThrow(new BridgeServiceException("SQS unavailable")).when(emailOutbox).add(any());
+
+        try {
+            service.sendEmail(makeProvider());
+            fail("Should have thrown exception");
+        } catch (BridgeServiceException e) {
+            assertEquals(e.getMessage(), "SQS unavailable");
+        }
+        assertEquals(service.getOutboxMessageCount(), 0L);
     }
-    
+
     @Test
-    public void verifiedEmailWorks() {
+    public void outboxDisabledSendsDirectly() {
+        when(emailOutbox.isEnabled()).thenReturn(false);
+        when(emailVerificationService.isVerified(SUPPORT_EMAIL)).thenReturn(true);
         when(emailClient.sendRawEmail(any())).thenReturn(result);
+
+        service.sendEmail(makeProvider());
+
+        verify(emailOutbox, never()).add(any());
+        verify(emailClient).sendRawEmail(any());
+        assertEquals(service.getOutboxMessageCount(), 0L);
+        assertEquals(service.getSentMessageCount(), 1L);
+    }
+
+    @Test
+    public void outboxDisabledThrowsSesError() {
+        when(emailOutbox.isEnabled()).thenReturn(false);
         when(emailVerificationService.isVerified(SUPPORT_EMAIL)).thenReturn(true);
-        
-        TemplateRevision revision = TemplateRevision.create();
-        revision.setSubject("subject");
-        revision.setDocumentContent("body");
-        revision.setMimeType(MimeType.HTML);
-        
-        BasicEmailProvider provider = new BasicEmailProvider.Builder()
-                .withApp(app)
-                .withRecipientEmail(RECIPIENT_EMAIL)
-                .withTemplateRevision(revision)
-                .build();
-        service.sendEmail(provider);
+        when(emailClient.sendRawEmail(any())).thenThrow(makeException("InternalFailure", 400));
+
+        try {
+            service.sendEmail(makeProvider());
+            fail("Should have thrown exception");
+        } catch (BridgeServiceException e) {
+            // expected
+        }
+        verify(emailOutbox, never()).add(any());
+    }
+
+    @Test
+    public void messageTooLargeForOutboxIsSentDirectly() {
+        when(emailVerificationService.isVerified(SUPPORT_EMAIL)).thenReturn(true);
+        when(emailOutbox.getMaxMessageBytes()).thenReturn(10);
+        when(emailClient.sendRawEmail(any())).thenReturn(result);
+
+        service.sendEmail(makeProvider());
+
+        verify(emailOutbox, never()).add(any());
+        verify(emailClient).sendRawEmail(any());
+        assertEquals(service.getSentMessageCount(), 1L);
+    }
+
+    @Test
+    public void sendEmailNow() {
+        when(emailVerificationService.isVerified(SUPPORT_EMAIL)).thenReturn(true);
+        when(emailClient.sendRawEmail(any())).thenReturn(result);
+
+        service.sendEmailNow(makeProvider());
+
+        verify(emailOutbox, never()).add(any());
+        ArgumentCaptor<SendRawEmailRequest> requestCaptor = ArgumentCaptor.forClass(SendRawEmailRequest.class);
+        verify(emailClient).sendRawEmail(requestCaptor.capture());
+        assertEquals(requestCaptor.getValue().getDestinations(), ImmutableList.of(RECIPIENT_EMAIL));
+        assertEquals(service.getSentMessageCount(), 1L);
+        assertEquals(service.getFailedMessageCount(), 0L);
+        assertEquals(service.getSendingMessageCount(), 0);
+    }
+
+    @Test
+    public void sendEmailNowRetriesThrottledSend() {
+        when(emailVerificationService.isVerified(SUPPORT_EMAIL)).thenReturn(true);
+        when(emailClient.sendRawEmail(any())).thenThrow(makeException("Throttling", 400)).thenReturn(result);
+
+        service.sendEmailNow(makeProvider());
+
+        verify(emailClient, times(2)).sendRawEmail(any());
+        verify(service).sleepBeforeRetry(SendMailViaAmazonService.INITIAL_BACKOFF_MILLIS);
+        assertEquals(service.getSentMessageCount(), 1L);
+        assertEquals(service.getThrottledSendCount(), 1L);
+    }
+
+    @Test
+    public void sendEmailNowThrowsError() {
+        when(emailVerificationService.isVerified(SUPPORT_EMAIL)).thenReturn(true);
+        when(emailClient.sendRawEmail(any())).thenThrow(makeException("ServiceUnavailable", 503));
+
+        try {
+            service.sendEmailNow(makeProvider());
+            fail("Should have thrown exception");
+        } catch (BridgeServiceException e) {
+            // expected
+        }
+        verify(emailClient, times(SendMailViaAmazonService.MAX_SEND_ATTEMPTS)).sendRawEmail(any());
+        assertEquals(service.getFailedMessageCount(), 1L);
+        assertEquals(service.getSendingMessageCount(), 0);
+    }
+
+    @Test
+    public void sendEmailNowDoesNotThrowRejectedMessage() {
+        when(emailVerificationService.isVerified(SUPPORT_EMAIL)).thenReturn(true);
+        when(emailClient.sendRawEmail(any())).thenThrow(new MessageRejectedException("Rejected"));
+
+        service.sendEmailNow(makeProvider());
+
+        verify(emailClient, times(1)).sendRawEmail(any());
+        assertEquals(service.getFailedMessageCount(), 1L);
+    }
+
+    @Test
+    public void sendEmailNowGivesUpWhenInterrupted() {
+        when(emailVerificationService.isVerified(SUPPORT_EMAIL)).thenReturn(true);
+        when(emailClient.sendRawEmail(any())).thenThrow(makeException("Throttling", 400));
+        doReturn(false).when(service).sleepBeforeRetry(anyLong());
+
+        try {
+            service.sendEmailNow(makeProvider());
+            fail("Should have thrown exception");
+        } catch (BridgeServiceException e) {
+            // expected
+        }
+        verify(emailClient, times(1)).sendRawEmail(any());
+        assertEquals(service.getFailedMessageCount(), 1L);
+    }
+
+    @Test
+    public void outboxMessageIsSentAndRemoved() {
+        EmailOutboxMessage message = makeOutboxMessage();
+        when(emailClient.sendRawEmail(any())).thenReturn(result);
+
+        service.drainOutboxOnce();
+
+        ArgumentCaptor<SendRawEmailRequest> requestCaptor = ArgumentCaptor.forClass(SendRawEmailRequest.class);
+        verify(emailClient).sendRawEmail(requestCaptor.capture());
+        SendRawEmailRequest request = requestCaptor.getValue();
+        assertEquals(request.getSource(), SUPPORT_EMAIL);
+        assertEquals(request.getDestinations(), ImmutableList.of(RECIPIENT_EMAIL));
+        assertEquals(request.getRawMessage().getData().array(), RAW_MESSAGE);
+
+        verify(emailOutbox).remove(message);
+        assertEquals(service.getSentMessageCount(), 1L);
+        assertEquals(service.getSendingMessageCount(), 0);
+    }
+
+    @Test
+    public void throttledSendIsRetried() {
+        EmailOutboxMessage message = makeOutboxMessage();
+        when(emailClient.sendRawEmail(any())).thenThrow(makeException("Throttling", 400))
+                .thenThrow(makeException("ServiceUnavailable", 503)).thenReturn(result);
+
+        service.drainOutboxOnce();
+
+        verify(emailClient, times(3)).sendRawEmail(any());
+        verify(service).sleepBeforeRetry(SendMailViaAmazonService.INITIAL_BACKOFF_MILLIS);
+        verify(service).sleepBeforeRetry(SendMailViaAmazonService.INITIAL_BACKOFF_MILLIS * 2);
+        verify(emailOutbox).remove(message);
+        assertEquals(service.getSentMessageCount(), 1L);
+        assertEquals(service.getThrottledSendCount(), 1L);
+        assertEquals(service.getFailedMessageCount(), 0L);
+    }
+
+    @Test
+    public void throttledSendIsLeftInOutboxAfterMaxAttempts() {
+        makeOutboxMessage();
+        when(emailClient.sendRawEmail(any())).thenThrow(makeException("Throttling", 400));
+
+        service.drainOutboxOnce();
+
+        verify(emailClient, times(SendMailViaAmazonService.MAX_SEND_ATTEMPTS)).sendRawEmail(any());
+        // The message is received again later.
+        verify(emailOutbox, never()).remove(any());
+        assertEquals(service.getSentMessageCount(), 0L);
+        assertEquals(service.getDeferredMessageCount(), 1L);
+        assertEquals(service.getSendingMessageCount(), 0);
+    }
+
+    @Test
+    public void nonRetryableErrorIsRemovedFromOutbox() {
+        EmailOutboxMessage message = makeOutboxMessage();
+        when(emailClient.sendRawEmail(any())).thenThrow(makeException("InvalidParameterValue", 400));
+
+        service.drainOutboxOnce();
+
+        verify(emailClient, times(1)).sendRawEmail(any());
+        verify(service, never()).sleepBeforeRetry(anyLong());
+        verify(emailOutbox).remove(message);
+        assertEquals(service.getFailedMessageCount(), 1L);
+    }
+
+    @Test
+    public void rejectedMessageIsRemovedFromOutbox() {
+        EmailOutboxMessage message = makeOutboxMessage();
+        when(emailClient.sendRawEmail(any())).thenThrow(new MessageRejectedException("Rejected"));
+
+        service.drainOutboxOnce();
+
+        verify(emailClient, times(1)).sendRawEmail(any());
+        verify(emailOutbox).remove(message);
+        assertEquals(service.getFailedMessageCount(), 1L);
+    }
+
+    @Test
+    public void interruptedRetryIsLeftInOutbox() {
+        makeOutboxMessage();
+        when(emailClient.sendRawEmail(any())).thenThrow(makeException("Throttling", 400));
+        doReturn(false).when(service).sleepBeforeRetry(anyLong());
+
+        service.drainOutboxOnce();
+
+        verify(emailClient, times(1)).sendRawEmail(any());
+        verify(emailOutbox, never()).remove(any());
+        assertEquals(service.getDeferredMessageCount(), 1L);
+    }
+
+    @Test
+    public void sendRateIsSharedByServers() {
+        BridgeConfig mockConfig = mock(BridgeConfig.class);
+        when(mockConfig.getPropertyAsInt(SendMailViaAmazonService.CONFIG_KEY_EMAIL_SEND_THREAD_COUNT)).thenReturn(3);
+        when(mockConfig.getPropertyAsInt(SendMailViaAmazonService.CONFIG_KEY_SES_MAX_SEND_RATE)).thenReturn(14);
+        when(mockConfig.getPropertyAsInt(SendMailViaAmazonService.CONFIG_KEY_SES_SENDING_SERVER_COUNT))
+                .thenReturn(4);
+
+        service.setBridgeConfig(mockConfig);
+
+        assertEquals(service.getSendRateLimit(), 3.5, 0.001);
+    }
+
+    @Test
+    public void startStartsOutboxThreads() {
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+        service.setBridgeConfig(mockConfig(3));
+        service.setEmailSendExecutorService(executorService);
+        try {
+            service.start();
+            verify(emailOutbox, timeout(5000).atLeast(3)).receive();
+            service.stop();
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void startDoesNothingWhenOutboxDisabled() {
+        when(emailOutbox.isEnabled()).thenReturn(false);
+        ExecutorService mockExecutorService = mock(ExecutorService.class);
+        service.setBridgeConfig(mockConfig(3));
+        service.setEmailSendExecutorService(mockExecutorService);
+
+        service.start();
+        service.stop();
+
+        verify(mockExecutorService, never()).execute(any());
+    }
+
+    @Test
+    public void stopWaitsForReceivedMessagesToBeSent() throws Exception {
+        EmailOutboxMessage message = makeOutboxMessage();
+        when(emailOutbox.receive()).thenReturn(ImmutableList.of(message)).thenReturn(ImmutableList.of());
+        CountDownLatch sendStarted = new CountDownLatch(1);
+        when(emailClient.sendRawEmail(any())).thenAnswer(invocation -> {
+            sendStarted.countDown();
+            Thread.sleep(200);
+            return result;
+        });
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        service.setBridgeConfig(mockConfig(1));
+        service.setEmailSendExecutorService(executorService);
+        try {
+            service.start();
+            sendStarted.await();
+            service.stop();
+
+            // The message was sent and removed before stop() returned.
+            verify(emailOutbox).remove(message);
+            assertEquals(service.getSentMessageCount(), 1L);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private BridgeConfig mockConfig(int threadCount) {
+        BridgeConfig mockConfig = mock(BridgeConfig.class);
+        when(mockConfig.getPropertyAsInt(SendMailViaAmazonService.CONFIG_KEY_EMAIL_SEND_THREAD_COUNT))
+                .thenReturn(threadCount);
+        when(mockConfig.getPropertyAsInt(SendMailViaAmazonService.CONFIG_KEY_SES_MAX_SEND_RATE)).thenReturn(1000);
+        when(mockConfig.getPropertyAsInt(SendMailViaAmazonService.CONFIG_KEY_SES_SENDING_SERVER_COUNT))
+                .thenReturn(1);
+        return mockConfig;
+    }
+
+    @Test
+    public void writeMetrics() {
+        makeOutboxMessage();
+        when(emailVerificationService.isVerified(SUPPORT_EMAIL)).thenReturn(true);
+        when(emailClient.sendRawEmail(any())).thenReturn(result);
+
+        service.sendEmail(makeProvider());
+        service.drainOutboxOnce();
+
+        ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+        service.writeMetrics(node);
+        assertEquals(service.getMetricsName(), "email");
+        assertEquals(node.get("outboxMessages").longValue(), 1L);
+        assertEquals(node.get("sending").intValue(), 0);
+        assertEquals(node.get("sent").longValue(), 1L);
+        assertEquals(node.get("failed").longValue(), 0L);
+        assertEquals(node.get("deferred").longValue(), 0L);
+        assertEquals(node.get("throttled").longValue(), 0L);
+        assertTrue(node.has("meanSendMillis"));
+        assertTrue(node.has("maxSendMillis"));
     }
 }
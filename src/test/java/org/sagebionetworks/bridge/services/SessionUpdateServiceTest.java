@@ -106,7 +106,7 @@ public class SessionUpdateServiceTest {
         assertSame(session.getConsentStatuses(), CONSENT_STATUS_MAP);
 
         // Verify notification service.
-        verify(mockNotificationTopicService).manageCriteriaBasedSubscriptions(TEST_APP_ID, context, HEALTH_CODE);
+        verify(mockNotificationTopicService).requestCriteriaBasedSubscriptionUpdate(TEST_APP_ID, context, HEALTH_CODE);
     }
 
     @Test
@@ -143,7 +143,7 @@ public class SessionUpdateServiceTest {
         assertSame(session.getConsentStatuses(), CONSENT_STATUS_MAP);
 
         // Verify notification service.
-        verify(mockNotificationTopicService).manageCriteriaBasedSubscriptions(TEST_APP_ID, context, HEALTH_CODE);
+        verify(mockNotificationTopicService).requestCriteriaBasedSubscriptionUpdate(TEST_APP_ID, context, HEALTH_CODE);
     }
     
     @Test
@@ -188,7 +188,7 @@ public class SessionUpdateServiceTest {
         assertSame(session.getConsentStatuses(), CONSENT_STATUS_MAP);
 
         // Verify notification service.
-        verify(mockNotificationTopicService).manageCriteriaBasedSubscriptions(TEST_APP_ID, context, HEALTH_CODE);
+        verify(mockNotificationTopicService).requestCriteriaBasedSubscriptionUpdate(TEST_APP_ID, context, HEALTH_CODE);
     }
 
     @Test
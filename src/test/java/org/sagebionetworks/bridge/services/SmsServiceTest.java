@@ -2,20 +2,25 @@ package org.sagebionetworks.bridge.services;
 
 import static org.apache.commons.lang3.RandomStringUtils.randomAlphabetic;
 import static org.mockito.Mockito.any;
-import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.same;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.sns.AmazonSNSClient;
 import com.amazonaws.services.sns.model.CheckIfPhoneNumberIsOptedOutRequest;
 import com.amazonaws.services.sns.model.CheckIfPhoneNumberIsOptedOutResult;
@@ -23,6 +28,10 @@ import com.amazonaws.services.sns.model.OptInPhoneNumberRequest;
 import com.amazonaws.services.sns.model.PublishRequest;
 import com.amazonaws.services.sns.model.PublishResult;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeUtils;
@@ -39,6 +48,9 @@ import org.sagebionetworks.bridge.dao.SmsMessageDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.Phone;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.apps.App;
@@ -68,14 +80,9 @@ public class SmsServiceTest {
         REVISION.setDocumentContent(MESSAGE_BODY);
     }
 
-    private static final StudyParticipant PARTICIPANT_WITH_TIME_ZONE = new StudyParticipant.Builder()
-            .withId(USER_ID).withHealthCode(HEALTH_CODE).withTimeZone(TIME_ZONE).build();
-    private static final StudyParticipant PARTICIPANT_WITHOUT_TIME_ZONE = new StudyParticipant.Builder()
-            .withId(USER_ID).withHealthCode(HEALTH_CODE).build();
-
     private HealthDataService mockHealthDataService;
     private SmsMessageDao mockMessageDao;
-    private ParticipantService mockParticipantService;
+    private AccountService mockAccountService;
     private UploadSchemaService mockSchemaService;
     private AmazonSNSClient mockSnsClient;
     private App app;
@@ -106,15 +113,16 @@ public class SmsServiceTest {
         // Mock other DAOs and services.
         mockHealthDataService = mock(HealthDataService.class);
         mockMessageDao = mock(SmsMessageDao.class);
-        mockParticipantService = mock(ParticipantService.class);
+        mockAccountService = mock(AccountService.class);
 
-        // Set up service.
+        // Set up service. Messages are sent on the calling thread, and logged when the test flushes the log.
         svc = new SmsService();
+        svc.setAccountService(mockAccountService);
         svc.setHealthDataService(mockHealthDataService);
         svc.setMessageDao(mockMessageDao);
-        svc.setParticipantService(mockParticipantService);
         svc.setSchemaService(mockSchemaService);
         svc.setSnsClient(mockSnsClient);
+        svc.setSmsSendExecutorService(MoreExecutors.newDirectExecutorService());
     }
 
     @AfterClass
@@ -124,9 +132,8 @@ public class SmsServiceTest {
 
     @Test
     public void sendTransactionalSMSMessageOK() throws Exception {
-        // Mock participant service.
-        when(mockParticipantService.getParticipant(any(), anyString(), eq(false))).thenReturn(
-                PARTICIPANT_WITH_TIME_ZONE);
+        // Mock account service.
+        mockAccount(TIME_ZONE);
 
         // Set up test and execute.
         SmsMessageProvider provider = new SmsMessageProvider.Builder()
@@ -135,7 +142,8 @@ public class SmsServiceTest {
                 .withTransactionType()
                 .withPhone(TestConstants.PHONE).build();
 
-        svc.sendSmsMessage(HEALTH_CODE, provider);
+        svc.sendSmsMessage(USER_ID, provider);
+        svc.flushMessageLog();
 
         ArgumentCaptor<PublishRequest> requestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
         verify(mockSnsClient).publish(requestCaptor.capture());
@@ -150,14 +158,13 @@ public class SmsServiceTest {
 
         // We log the SMS message to DDB and to health data.
         verifyLoggedSmsMessage(HEALTH_CODE, MESSAGE_BODY, SmsType.TRANSACTIONAL);
-        verifyHealthData(PARTICIPANT_WITH_TIME_ZONE, TIME_ZONE, SmsType.TRANSACTIONAL, MESSAGE_BODY);
+        verifyHealthData(TIME_ZONE, SmsType.TRANSACTIONAL, MESSAGE_BODY);
     }
 
     @Test
     public void sendPromotionalSMSMessageOK() throws Exception {
-        // Mock participant service.
-        when(mockParticipantService.getParticipant(any(), anyString(), eq(false))).thenReturn(
-                PARTICIPANT_WITH_TIME_ZONE);
+        // Mock account service.
+        mockAccount(TIME_ZONE);
 
         // Set up test and execute.
         SmsMessageProvider provider = new SmsMessageProvider.Builder()
@@ -166,7 +173,8 @@ public class SmsServiceTest {
                 .withPromotionType()
                 .withPhone(TestConstants.PHONE).build();
 
-        svc.sendSmsMessage(HEALTH_CODE, provider);
+        svc.sendSmsMessage(USER_ID, provider);
+        svc.flushMessageLog();
 
         ArgumentCaptor<PublishRequest> requestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
         verify(mockSnsClient).publish(requestCaptor.capture());
@@ -180,7 +188,7 @@ public class SmsServiceTest {
 
         // We log the SMS message to DDB and to health data.
         verifyLoggedSmsMessage(HEALTH_CODE, MESSAGE_BODY, SmsType.PROMOTIONAL);
-        verifyHealthData(PARTICIPANT_WITH_TIME_ZONE, TIME_ZONE, SmsType.PROMOTIONAL, MESSAGE_BODY);
+        verifyHealthData(TIME_ZONE, SmsType.PROMOTIONAL, MESSAGE_BODY);
     }
 
     @Test
@@ -192,6 +200,7 @@ public class SmsServiceTest {
                 .withPromotionType()
                 .withPhone(TestConstants.PHONE).build();
         svc.sendSmsMessage(null, provider);
+        svc.flushMessageLog();
 
         // Everything else is verified. Just verified that the sent message contains no health code.
         verifyLoggedSmsMessage(null, MESSAGE_BODY, SmsType.PROMOTIONAL);
@@ -203,8 +212,8 @@ public class SmsServiceTest {
     // branch coverage
     @Test
     public void sendSmsMessage_NoParticipant() throws Exception {
-        // Mock participant service.
-        when(mockParticipantService.getParticipant(any(), anyString(), eq(false))).thenReturn(null);
+        // Mock account service.
+        when(mockAccountService.getAccountHealthCodesNoFilter(any(), any())).thenReturn(ImmutableList.of());
 
         // Set up test and execute.
         SmsMessageProvider provider = new SmsMessageProvider.Builder()
@@ -212,7 +221,8 @@ public class SmsServiceTest {
                 .withTemplateRevision(REVISION)
                 .withPromotionType()
                 .withPhone(TestConstants.PHONE).build();
-        svc.sendSmsMessage(null, provider);
+        svc.sendSmsMessage(USER_ID, provider);
+        svc.flushMessageLog();
 
         // Everything else is verified. Just verified that the sent message contains no health code.
         verifyLoggedSmsMessage(null, MESSAGE_BODY, SmsType.PROMOTIONAL);
@@ -223,9 +233,8 @@ public class SmsServiceTest {
 
     @Test
     public void sendSmsMessage_ParticipantHasNoTimeZone() throws Exception {
-        // Mock participant service.
-        when(mockParticipantService.getParticipant(any(), anyString(), eq(false))).thenReturn(
-                PARTICIPANT_WITHOUT_TIME_ZONE);
+        // Mock account service.
+        mockAccount(null);
 
         // Set up test and execute.
         SmsMessageProvider provider = new SmsMessageProvider.Builder()
@@ -233,17 +242,17 @@ public class SmsServiceTest {
                 .withTemplateRevision(REVISION)
                 .withPromotionType()
                 .withPhone(TestConstants.PHONE).build();
-        svc.sendSmsMessage(HEALTH_CODE, provider);
+        svc.sendSmsMessage(USER_ID, provider);
+        svc.flushMessageLog();
 
         // Everything else is verified. Just verify the timezone in the health data.
-        verifyHealthData(PARTICIPANT_WITHOUT_TIME_ZONE, DateTimeZone.UTC, SmsType.PROMOTIONAL, MESSAGE_BODY);
+        verifyHealthData(DateTimeZone.UTC, SmsType.PROMOTIONAL, MESSAGE_BODY);
     }
 
     @Test
     public void sendSmsMessage_SchemaDoesNotExist() {
-        // Mock participant service.
-        when(mockParticipantService.getParticipant(any(), anyString(), eq(false))).thenReturn(
-                PARTICIPANT_WITH_TIME_ZONE);
+        // Mock account service.
+        mockAccount(TIME_ZONE);
 
         // Schema Service has no schema (throws).
         when(mockSchemaService.getUploadSchemaByIdAndRev(TEST_APP_ID, SmsService.MESSAGE_LOG_SCHEMA_ID,
@@ -255,7 +264,8 @@ public class SmsServiceTest {
                 .withTemplateRevision(REVISION)
                 .withPromotionType()
                 .withPhone(TestConstants.PHONE).build();
-        svc.sendSmsMessage(HEALTH_CODE, provider);
+        svc.sendSmsMessage(USER_ID, provider);
+        svc.flushMessageLog();
 
         // Everything else is verified. Just verify that we create the new schema.
         ArgumentCaptor<UploadSchema> schemaCaptor = ArgumentCaptor.forClass(UploadSchema.class);
@@ -296,11 +306,244 @@ public class SmsServiceTest {
         svc.sendSmsMessage(HEALTH_CODE, provider);
     }
 
+    @Test
+    public void sendSmsMessage_DoesNotWaitForLog() throws Exception {
+        mockAccount(TIME_ZONE);
+
+        SmsMessageProvider provider = new SmsMessageProvider.Builder()
+                .withApp(app)
+                .withTemplateRevision(REVISION)
+                .withTransactionType()
+                .withPhone(TestConstants.PHONE).build();
+        svc.sendSmsMessage(USER_ID, provider);
+
+        // The message is sent, but nothing else happens until the log is written.
+        verify(mockSnsClient).publish(any());
+        assertEquals(svc.getSentMessageCount(), 1L);
+        assertEquals(svc.getQueuedMessageCount(), 0);
+        assertEquals(svc.getMessageLogQueueSize(), 1);
+        verify(mockAccountService, never()).getAccountHealthCodesNoFilter(any(), any());
+        verify(mockMessageDao, never()).logMessages(any());
+        verify(mockHealthDataService, never()).submitHealthData(any(), any(), any());
+
+        svc.flushMessageLog();
+        assertEquals(svc.getMessageLogQueueSize(), 0);
+        verify(mockAccountService).getAccountHealthCodesNoFilter(TEST_APP_ID, ImmutableSet.of(USER_ID));
+        verifyLoggedSmsMessage(HEALTH_CODE, MESSAGE_BODY, SmsType.TRANSACTIONAL);
+    }
+
+    @Test
+    public void sendSmsMessage_SnsErrorIsNotThrown() {
+        when(mockSnsClient.publish(any())).thenThrow(new AmazonServiceException("SNS error"));
+
+        SmsMessageProvider provider = new SmsMessageProvider.Builder()
+                .withApp(app)
+                .withTemplateRevision(REVISION)
+                .withTransactionType()
+                .withPhone(TestConstants.PHONE).build();
+        svc.sendSmsMessage(USER_ID, provider);
+        svc.flushMessageLog();
+
+        assertEquals(svc.getFailedMessageCount(), 1L);
+        assertEquals(svc.getQueuedMessageCount(), 0);
+        verify(mockMessageDao, never()).logMessages(any());
+    }
+
+    @Test
+    public void sendSmsMessage_QueueFullIsRejected() {
+        ExecutorService mockExecutorService = mock(ExecutorService.class);
+        doThrow(new RejectedExecutionException()).when(mockExecutorService).execute(any());
+        svc.setSmsSendExecutorService(mockExecutorService);
+
+        SmsMessageProvider provider = new SmsMessageProvider.Builder()
+                .withApp(app)
+                .withTemplateRevision(REVISION)
+                .withTransactionType()
+                .withPhone(TestConstants.PHONE).build();
+        try {
+            svc.sendSmsMessage(USER_ID, provider);
+            fail("expected exception");
+        } catch (ServiceUnavailableException ex) {
+            // expected exception
+        }
+        verify(mockSnsClient, never()).publish(any());
+        assertEquals(svc.getRejectedMessageCount(), 1L);
+        assertEquals(svc.getQueuedMessageCount(), 0);
+    }
+
+    @Test
+    public void sendSmsMessageNow() throws Exception {
+        mockAccount(TIME_ZONE);
+        ExecutorService mockExecutorService = mock(ExecutorService.class);
+        svc.setSmsSendExecutorService(mockExecutorService);
+
+        SmsMessageProvider provider = new SmsMessageProvider.Builder()
+                .withApp(app)
+                .withTemplateRevision(REVISION)
+                .withTransactionType()
+                .withPhone(TestConstants.PHONE).build();
+        svc.sendSmsMessageNow(USER_ID, provider);
+
+        // Sent on the calling thread, and logged with the other messages.
+        verify(mockExecutorService, never()).execute(any());
+        verify(mockSnsClient).publish(any());
+        assertEquals(svc.getSentMessageCount(), 1L);
+        assertEquals(svc.getMessageLogQueueSize(), 1);
+
+        svc.flushMessageLog();
+        verifyLoggedSmsMessage(HEALTH_CODE, MESSAGE_BODY, SmsType.TRANSACTIONAL);
+    }
+
+    @Test
+    public void sendSmsMessageNow_SnsErrorIsThrown() {
+        AmazonServiceException snsException = new AmazonServiceException("SNS error");
+        when(mockSnsClient.publish(any())).thenThrow(snsException);
+
+        SmsMessageProvider provider = new SmsMessageProvider.Builder()
+                .withApp(app)
+                .withTemplateRevision(REVISION)
+                .withTransactionType()
+                .withPhone(TestConstants.PHONE).build();
+        try {
+            svc.sendSmsMessageNow(USER_ID, provider);
+            fail("expected exception");
+        } catch (AmazonServiceException ex) {
+            assertSame(ex, snsException);
+        }
+        assertEquals(svc.getFailedMessageCount(), 1L);
+        assertEquals(svc.getMessageLogQueueSize(), 0);
+    }
+
+    @Test
+    public void sendSmsMessage_FullMessageLogIsWrittenBySender() throws Exception {
+        mockAccount(TIME_ZONE);
+
+        SmsMessageProvider provider = new SmsMessageProvider.Builder()
+                .withApp(app)
+                .withTemplateRevision(REVISION)
+                .withTransactionType()
+                .withPhone(TestConstants.PHONE).build();
+        for (int i = 0; i < SmsService.MESSAGE_LOG_QUEUE_CAPACITY; i++) {
+            svc.sendSmsMessage(USER_ID, provider);
+        }
+        verify(mockMessageDao, never()).logMessages(any());
+
+        // The queue is full, so the next message is logged when it's sent.
+        svc.sendSmsMessage(USER_ID, provider);
+        assertEquals(svc.getMessageLogQueueSize(), SmsService.MESSAGE_LOG_QUEUE_CAPACITY);
+        verifyLoggedSmsMessage(HEALTH_CODE, MESSAGE_BODY, SmsType.TRANSACTIONAL);
+    }
+
+    @Test
+    public void stopWaitsForQueuedMessages() throws Exception {
+        mockAccount(TIME_ZONE);
+        ExecutorService mockExecutorService = mock(ExecutorService.class);
+        when(mockExecutorService.awaitTermination(SmsService.SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS))
+                .thenReturn(true);
+
+        SmsMessageProvider provider = new SmsMessageProvider.Builder()
+                .withApp(app)
+                .withTemplateRevision(REVISION)
+                .withTransactionType()
+                .withPhone(TestConstants.PHONE).build();
+        svc.sendSmsMessage(USER_ID, provider);
+        svc.setSmsSendExecutorService(mockExecutorService);
+
+        svc.stop();
+
+        verify(mockExecutorService).shutdown();
+        verify(mockExecutorService).awaitTermination(SmsService.SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+        // Sent messages are logged before stopping.
+        verifyLoggedSmsMessage(HEALTH_CODE, MESSAGE_BODY, SmsType.TRANSACTIONAL);
+    }
+
+    @Test
+    public void writeMetrics() {
+        when(mockSnsClient.publish(any())).thenReturn(new PublishResult().withMessageId(MESSAGE_ID))
+                .thenThrow(new AmazonServiceException("SNS error"));
+
+        SmsMessageProvider provider = new SmsMessageProvider.Builder()
+                .withApp(app)
+                .withTemplateRevision(REVISION)
+                .withTransactionType()
+                .withPhone(TestConstants.PHONE).build();
+        svc.sendSmsMessage(USER_ID, provider);
+        svc.sendSmsMessage(USER_ID, provider);
+
+        ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+        svc.writeMetrics(node);
+        assertEquals(svc.getMetricsName(), "sms");
+        assertEquals(node.get("queued").intValue(), 0);
+        assertEquals(node.get("sent").longValue(), 1L);
+        assertEquals(node.get("failed").longValue(), 1L);
+        assertEquals(node.get("rejected").longValue(), 0L);
+        assertEquals(node.get("messageLogQueue").intValue(), 1);
+    }
+
+    @Test
+    public void flushMessageLog_WritesInBatches() throws Exception {
+        mockAccount(TIME_ZONE);
+
+        SmsMessageProvider provider = new SmsMessageProvider.Builder()
+                .withApp(app)
+                .withTemplateRevision(REVISION)
+                .withTransactionType()
+                .withPhone(TestConstants.PHONE).build();
+        for (int i = 0; i < SmsService.MESSAGE_LOG_BATCH_SIZE + 5; i++) {
+            svc.sendSmsMessage(USER_ID, provider);
+        }
+        svc.flushMessageLog();
+
+        ArgumentCaptor<List<SmsMessage>> loggedMessagesCaptor = listCaptor();
+        verify(mockMessageDao, times(2)).logMessages(loggedMessagesCaptor.capture());
+        assertEquals(loggedMessagesCaptor.getAllValues().get(0).size(), SmsService.MESSAGE_LOG_BATCH_SIZE);
+        assertEquals(loggedMessagesCaptor.getAllValues().get(1).size(), 5);
+
+        // The account and the schema are looked up once per batch.
+        verify(mockAccountService, times(2)).getAccountHealthCodesNoFilter(TEST_APP_ID, ImmutableSet.of(USER_ID));
+        verify(mockSchemaService, times(2)).getUploadSchemaByIdAndRev(TEST_APP_ID, SmsService.MESSAGE_LOG_SCHEMA_ID,
+                SmsService.MESSAGE_LOG_SCHEMA_REV);
+        verify(mockHealthDataService, times(SmsService.MESSAGE_LOG_BATCH_SIZE + 5)).submitHealthData(any(), any(),
+                any());
+    }
+
+    @Test
+    public void flushMessageLog_HealthDataErrorDoesNotStopOtherMessages() throws Exception {
+        mockAccount(TIME_ZONE);
+        when(mockHealthDataService.submitHealthData(any(), any(), any())).thenThrow(new RuntimeException("error"))
+                .thenReturn(null);
+
+        SmsMessageProvider provider = new SmsMessageProvider.Builder()
+                .withApp(app)
+                .withTemplateRevision(REVISION)
+                .withTransactionType()
+                .withPhone(TestConstants.PHONE).build();
+        svc.sendSmsMessage(USER_ID, provider);
+        svc.sendSmsMessage(USER_ID, provider);
+        svc.flushMessageLog();
+
+        verify(mockHealthDataService, times(2)).submitHealthData(any(), any(), any());
+    }
+
+    private void mockAccount(DateTimeZone timeZone) {
+        Account account = Account.create();
+        account.setId(USER_ID);
+        account.setHealthCode(HEALTH_CODE);
+        account.setTimeZone(timeZone);
+        when(mockAccountService.getAccountHealthCodesNoFilter(any(), any())).thenReturn(ImmutableList.of(account));
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static ArgumentCaptor<List<SmsMessage>> listCaptor() {
+        return (ArgumentCaptor) ArgumentCaptor.forClass(List.class);
+    }
+
     private void verifyLoggedSmsMessage(String expectedHealthCode, String expectedMessage, SmsType expectedSmsType) {
-        ArgumentCaptor<SmsMessage> loggedMessageCaptor = ArgumentCaptor.forClass(SmsMessage.class);
-        verify(mockMessageDao).logMessage(loggedMessageCaptor.capture());
+        ArgumentCaptor<List<SmsMessage>> loggedMessagesCaptor = listCaptor();
+        verify(mockMessageDao).logMessages(loggedMessagesCaptor.capture());
+        assertEquals(loggedMessagesCaptor.getValue().size(), 1);
 
-        SmsMessage loggedMessage = loggedMessageCaptor.getValue();
+        SmsMessage loggedMessage = loggedMessagesCaptor.getValue().get(0);
         assertEquals(loggedMessage.getPhoneNumber(), TestConstants.PHONE.getNumber());
         assertEquals(loggedMessage.getSentOn(), MOCK_NOW_MILLIS);
         assertEquals(loggedMessage.getHealthCode(), expectedHealthCode);
@@ -310,11 +553,13 @@ public class SmsServiceTest {
         assertEquals(loggedMessage.getAppId(), TEST_APP_ID);
     }
 
-    private void verifyHealthData(StudyParticipant expectedParticipant, DateTimeZone expectedTimeZone,
-            SmsType expectedSmsType, String expectedMessage) throws Exception {
+    private void verifyHealthData(DateTimeZone expectedTimeZone, SmsType expectedSmsType, String expectedMessage)
+            throws Exception {
+        ArgumentCaptor<StudyParticipant> participantCaptor = ArgumentCaptor.forClass(StudyParticipant.class);
         ArgumentCaptor<HealthDataSubmission> healthDataCaptor = ArgumentCaptor.forClass(HealthDataSubmission.class);
-        verify(mockHealthDataService).submitHealthData(eq(TEST_APP_ID), same(expectedParticipant),
+        verify(mockHealthDataService).submitHealthData(eq(TEST_APP_ID), participantCaptor.capture(),
                 healthDataCaptor.capture());
+        assertEquals(participantCaptor.getValue().getHealthCode(), HEALTH_CODE);
         HealthDataSubmission healthData = healthDataCaptor.getValue();
 
         // Verify simple attributes.
@@ -0,0 +1,159 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.services.email.EmailOutboxMessage;
+import org.sagebionetworks.bridge.services.email.EmailType;
+
+public class SqsEmailOutboxTest {
+    private static final String SQS_URL = "dummy-sqs-url";
+    private static final byte[] RAW_MESSAGE = "raw message".getBytes(Charsets.US_ASCII);
+
+    private AmazonSQSClient mockSqsClient;
+    private SqsEmailOutbox outbox;
+
+    @BeforeMethod
+    public void before() {
+        BridgeConfig mockConfig = mock(BridgeConfig.class);
+        when(mockConfig.getProperty(SqsEmailOutbox.CONFIG_KEY_EMAIL_OUTBOX_SQS_QUEUE_URL)).thenReturn(SQS_URL);
+        mockSqsClient = mock(AmazonSQSClient.class);
+
+        outbox = new SqsEmailOutbox();
+        outbox.setBridgeConfig(mockConfig);
+        outbox.setSqsClient(mockSqsClient);
+    }
+
+    @Test
+    public void initEnablesQueueWithKmsKey() {
+        mockQueueAttributes(ImmutableMap.of(SqsEmailOutbox.ATTRIBUTE_KMS_MASTER_KEY_ID, "alias/aws/sqs"));
+
+        outbox.init();
+        assertTrue(outbox.isEnabled());
+    }
+
+    @Test
+    public void initEnablesQueueWithSqsManagedEncryption() {
+        mockQueueAttributes(ImmutableMap.of(SqsEmailOutbox.ATTRIBUTE_SQS_MANAGED_SSE_ENABLED, "true"));
+
+        outbox.init();
+        assertTrue(outbox.isEnabled());
+    }
+
+    @Test
+    public void initDisablesUnencryptedQueue() {
+        mockQueueAttributes(ImmutableMap.of(SqsEmailOutbox.ATTRIBUTE_SQS_MANAGED_SSE_ENABLED, "false"));
+
+        outbox.init();
+        assertFalse(outbox.isEnabled());
+    }
+
+    @Test
+    public void initDisablesWithoutQueueUrl() {
+        outbox.setBridgeConfig(mock(BridgeConfig.class));
+
+        outbox.init();
+        assertFalse(outbox.isEnabled());
+        verify(mockSqsClient, never()).getQueueAttributes(any(String.class), any());
+    }
+
+    @Test
+    public void initDisablesOnSqsError() {
+        when(mockSqsClient.getQueueAttributes(eq(SQS_URL), any())).thenThrow(
+                new AmazonClientException("SQS unavailable"));
+
+        outbox.init();
+        assertFalse(outbox.isEnabled());
+    }
+
+    @Test
+    public void messageFitsInSqsMessage() {
+        // Base64 takes 4 bytes for every 3.
+        assertTrue(outbox.getMaxMessageBytes() / 3 * 4 < SqsEmailOutbox.SQS_MAX_MESSAGE_BYTES);
+    }
+
+    @Test
+    public void addAndReceive() {
+        EmailOutboxMessage message = new EmailOutboxMessage(EmailType.EMAIL_SIGN_IN, "test-app", "request-id",
+                "sender@example.com", "recipient@example.com", RAW_MESSAGE);
+        outbox.add(message);
+
+        ArgumentCaptor<String> bodyCaptor = ArgumentCaptor.forClass(String.class);
+        verify(mockSqsClient).sendMessage(eq(SQS_URL), bodyCaptor.capture());
+        assertFalse(bodyCaptor.getValue().contains("receipt"));
+
+        // Receive the message that was sent.
+        Message sqsMessage = new Message().withBody(bodyCaptor.getValue()).withReceiptHandle("receipt-handle");
+        when(mockSqsClient.receiveMessage(any(ReceiveMessageRequest.class)))
+                .thenReturn(new ReceiveMessageResult().withMessages(sqsMessage));
+
+        List<EmailOutboxMessage> received = outbox.receive();
+        assertEquals(received.size(), 1);
+        EmailOutboxMessage receivedMessage = received.get(0);
+        assertEquals(receivedMessage.getEmailType(), EmailType.EMAIL_SIGN_IN);
+        assertEquals(receivedMessage.getAppId(), "test-app");
+        assertEquals(receivedMessage.getRequestId(), "request-id");
+        assertEquals(receivedMessage.getSource(), "sender@example.com");
+        assertEquals(receivedMessage.getRecipient(), "recipient@example.com");
+        assertEquals(receivedMessage.getRawMessage(), RAW_MESSAGE);
+        assertEquals(receivedMessage.getReceipt(), "receipt-handle");
+
+        ArgumentCaptor<ReceiveMessageRequest> requestCaptor = ArgumentCaptor.forClass(ReceiveMessageRequest.class);
+        verify(mockSqsClient).receiveMessage(requestCaptor.capture());
+        ReceiveMessageRequest request = requestCaptor.getValue();
+        assertEquals(request.getQueueUrl(), SQS_URL);
+        assertEquals(request.getMaxNumberOfMessages().intValue(), SqsEmailOutbox.RECEIVE_MAX_MESSAGES);
+        assertEquals(request.getWaitTimeSeconds().intValue(), SqsEmailOutbox.RECEIVE_WAIT_SECONDS);
+
+        outbox.remove(receivedMessage);
+        verify(mockSqsClient).deleteMessage(SQS_URL, "receipt-handle");
+    }
+
+    @Test(expectedExceptions = BridgeServiceException.class)
+    public void addThrowsSqsError() {
+        when(mockSqsClient.sendMessage(any(), any())).thenThrow(new AmazonClientException("SQS unavailable"));
+
+        outbox.add(new EmailOutboxMessage(EmailType.EMAIL_SIGN_IN, "test-app", "request-id", "sender@example.com",
+                "recipient@example.com", RAW_MESSAGE));
+    }
+
+    @Test
+    public void unreadableMessageIsDropped() {
+        Message sqsMessage = new Message().withMessageId("message-id").withBody("not json")
+                .withReceiptHandle("receipt-handle");
+        when(mockSqsClient.receiveMessage(any(ReceiveMessageRequest.class)))
+                .thenReturn(new ReceiveMessageResult().withMessages(sqsMessage));
+
+        assertTrue(outbox.receive().isEmpty());
+        verify(mockSqsClient).deleteMessage(SQS_URL, "receipt-handle");
+    }
+
+    private void mockQueueAttributes(Map<String, String> attributes) {
+        when(mockSqsClient.getQueueAttributes(eq(SQS_URL), any())).thenReturn(
+                new GetQueueAttributesResult().withAttributes(attributes));
+    }
+}
@@ -76,6 +76,8 @@ public class StudyConsentServiceTest extends Mockito {
     @BeforeMethod
     public void before() throws Exception {
         DateTimeUtils.setCurrentMillisFixed(CREATED_ON);
+        // Create a new service for each test, so the document content cache starts out empty.
+        service = null;
         MockitoAnnotations.initMocks(this);
         
         BridgeConfig config = mock(BridgeConfig.class);
@@ -204,6 +206,55 @@ public class StudyConsentServiceTest extends Mockito {
         assertEquals(result.getStudyConsent(), consent);
     }
 
+    @Test
+    public void getConsentCachesDocumentContent() throws Exception {
+        StudyConsent consent = StudyConsent.create();
+        consent.setCreatedOn(CREATED_ON);
+        consent.setSubpopulationGuid(SUBPOP_GUID.getGuid());
+        consent.setStoragePath(STORAGE_PATH);
+        when(mockDao.getConsent(SUBPOP_GUID, CREATED_ON)).thenReturn(consent);
+        when(mockS3Helper.readS3FileAsString(CONSENT_BUCKET, STORAGE_PATH)).thenReturn(DOCUMENT);
+
+        service.getConsent(SUBPOP_GUID, CREATED_ON);
+        StudyConsentView result = service.getConsent(SUBPOP_GUID, CREATED_ON);
+        assertEquals(result.getDocumentContent(), DOCUMENT + SIGNATURE_BLOCK);
+
+        verify(mockS3Helper, times(1)).readS3FileAsString(CONSENT_BUCKET, STORAGE_PATH);
+    }
+
+    @Test
+    public void addConsentCachesDocumentContent() throws Exception {
+        StudyConsent consent = StudyConsent.create();
+        consent.setCreatedOn(CREATED_ON);
+        consent.setSubpopulationGuid(SUBPOP_GUID.getGuid());
+        consent.setStoragePath(STORAGE_PATH);
+        when(mockDao.addConsent(SUBPOP_GUID, STORAGE_PATH, CREATED_ON)).thenReturn(consent);
+        when(mockDao.getConsent(SUBPOP_GUID, CREATED_ON)).thenReturn(consent);
+
+        service.addConsent(SUBPOP_GUID, FORM);
+        StudyConsentView result = service.getConsent(SUBPOP_GUID, CREATED_ON);
+        assertEquals(result.getDocumentContent(), DOCUMENT + SIGNATURE_BLOCK);
+
+        verify(mockS3Helper, never()).readS3FileAsString(any(), any());
+    }
+
+    @Test
+    public void deleteAllConsentsPermanentlyInvalidatesCachedContent() throws Exception {
+        StudyConsent consent = StudyConsent.create();
+        consent.setCreatedOn(CREATED_ON);
+        consent.setSubpopulationGuid(SUBPOP_GUID.getGuid());
+        consent.setStoragePath(STORAGE_PATH);
+        when(mockDao.getConsent(SUBPOP_GUID, CREATED_ON)).thenReturn(consent);
+        when(mockDao.getConsents(SUBPOP_GUID)).thenReturn(ImmutableList.of(consent));
+        when(mockS3Helper.readS3FileAsString(CONSENT_BUCKET, STORAGE_PATH)).thenReturn(DOCUMENT);
+
+        service.getConsent(SUBPOP_GUID, CREATED_ON);
+        service.deleteAllConsentsPermanently(SUBPOP_GUID);
+        service.getConsent(SUBPOP_GUID, CREATED_ON);
+
+        verify(mockS3Helper, times(2)).readS3FileAsString(CONSENT_BUCKET, STORAGE_PATH);
+    }
+
     @Test(expectedExceptions = EntityNotFoundException.class)
     public void getConsentNotFound() {
         service.getConsent(SUBPOP_GUID, CREATED_ON);
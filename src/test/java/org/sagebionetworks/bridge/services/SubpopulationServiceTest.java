@@ -12,6 +12,7 @@ import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.joda.time.DateTime;
@@ -47,6 +48,7 @@ import org.sagebionetworks.bridge.models.subpopulations.Subpopulation;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
@@ -296,6 +298,47 @@ public class SubpopulationServiceTest extends Mockito {
         verify(subpopDao).getSubpopulation(TEST_APP_ID, SUBPOP_GUID);
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getSubpopulationsByGuid() {
+        SubpopulationGuid cachedGuid = SubpopulationGuid.create("cached");
+        Subpopulation cachedSubpop = Subpopulation.create();
+        cachedSubpop.setGuid(cachedGuid);
+        Subpopulation loadedSubpop = Subpopulation.create();
+        loadedSubpop.setGuid(SUBPOP_GUID);
+        
+        CacheKey cachedKey = CacheKey.subpop(cachedGuid, TEST_APP_ID);
+        CacheKey loadedKey = CacheKey.subpop(SUBPOP_GUID, TEST_APP_ID);
+        when(cacheProvider.getObjects(any(), eq(Subpopulation.class)))
+                .thenReturn(ImmutableMap.of(cachedKey, cachedSubpop));
+        when(subpopDao.getSubpopulation(TEST_APP_ID, SUBPOP_GUID)).thenReturn(loadedSubpop);
+        
+        Map<SubpopulationGuid, Subpopulation> results = service.getSubpopulations(TEST_APP_ID,
+                ImmutableSet.of(cachedGuid, SUBPOP_GUID));
+        assertEquals(results, ImmutableMap.of(cachedGuid, cachedSubpop, SUBPOP_GUID, loadedSubpop));
+        
+        ArgumentCaptor<List<CacheKey>> keysCaptor = ArgumentCaptor.forClass(List.class);
+        verify(cacheProvider).getObjects(keysCaptor.capture(), eq(Subpopulation.class));
+        assertEquals(keysCaptor.getValue(), ImmutableList.of(cachedKey, loadedKey));
+        
+        // Only the subpopulation that wasn't cached is loaded and cached.
+        verify(subpopDao, never()).getSubpopulation(TEST_APP_ID, cachedGuid);
+        verify(cacheProvider).setObjects(ImmutableMap.of(loadedKey, loadedSubpop));
+    }
+
+    @Test
+    public void getSubpopulationsByGuidAllCached() {
+        CacheKey subpopKey = CacheKey.subpop(SUBPOP_GUID, TEST_APP_ID);
+        when(cacheProvider.getObjects(any(), eq(Subpopulation.class))).thenReturn(ImmutableMap.of(subpopKey, subpop));
+        
+        Map<SubpopulationGuid, Subpopulation> results = service.getSubpopulations(TEST_APP_ID,
+                ImmutableSet.of(SUBPOP_GUID));
+        assertEquals(results, ImmutableMap.of(SUBPOP_GUID, subpop));
+        
+        verify(subpopDao, never()).getSubpopulation(any(), any());
+        verify(cacheProvider, never()).setObjects(any());
+    }
+
     @Test
     public void deleteSubpopulation() {
         service.deleteSubpopulation(TEST_APP_ID, SUBPOP_GUID);
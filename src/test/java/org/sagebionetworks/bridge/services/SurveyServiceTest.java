@@ -6,6 +6,7 @@ import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
@@ -53,6 +54,7 @@ import org.sagebionetworks.bridge.models.schedules.Activity;
 import org.sagebionetworks.bridge.models.schedules.CompoundActivity;
 import org.sagebionetworks.bridge.models.schedules.Schedule;
 import org.sagebionetworks.bridge.models.schedules.SchedulePlan;
+import org.sagebionetworks.bridge.models.schedules.SchemaReference;
 import org.sagebionetworks.bridge.models.schedules.SimpleScheduleStrategy;
 import org.sagebionetworks.bridge.models.schedules.SurveyReference;
 import org.sagebionetworks.bridge.models.surveys.BloodPressureConstraints;
@@ -90,6 +92,9 @@ public class SurveyServiceTest {
     @Mock
     AppService mockAppService;
     
+    @Mock
+    ReferenceResolutionCache mockReferenceResolutionCache;
+    
     @Captor
     ArgumentCaptor<GuidCreatedOnVersionHolder> keysCaptor;
     
@@ -122,6 +127,7 @@ public class SurveyServiceTest {
         service.setSchedulePlanService(mockSchedulePlanService);
         service.setSharedModuleMetadataService(mockSharedModuleMetadataService);
         service.setPublishValidator(mockSurveyPublishValidator);
+        service.setReferenceResolutionCache(mockReferenceResolutionCache);
     }
 
     @Test
@@ -186,6 +192,42 @@ public class SurveyServiceTest {
         
         verify(mockSurveyDao).getSurvey(TEST_APP_ID, SURVEY_KEYS, false);
     }
+
+    @Test
+    public void getSurveySchemaReferenceCachesPublishedSurvey() {
+        Survey survey = Survey.create();
+        survey.setAppId(TEST_APP_ID);
+        survey.setIdentifier(SURVEY_ID);
+        survey.setSchemaRevision(3);
+        survey.setPublished(true);
+        when(mockSurveyDao.getSurvey(TEST_APP_ID, SURVEY_KEYS, false)).thenReturn(survey);
+
+        SchemaReference schemaRef = service.getSurveySchemaReference(TEST_APP_ID, SURVEY_KEYS);
+        assertEquals(schemaRef, new SchemaReference(SURVEY_ID, 3));
+        assertEquals(service.getSurveySchemaReference(TEST_APP_ID, SURVEY_KEYS), schemaRef);
+
+        verify(mockSurveyDao, times(1)).getSurvey(TEST_APP_ID, SURVEY_KEYS, false);
+    }
+
+    @Test
+    public void getSurveySchemaReferenceDoesNotCacheUnpublishedSurvey() {
+        Survey survey = Survey.create();
+        survey.setAppId(TEST_APP_ID);
+        survey.setIdentifier(SURVEY_ID);
+        when(mockSurveyDao.getSurvey(TEST_APP_ID, SURVEY_KEYS, false)).thenReturn(survey);
+
+        SchemaReference schemaRef = service.getSurveySchemaReference(TEST_APP_ID, SURVEY_KEYS);
+        assertEquals(schemaRef.getId(), SURVEY_ID);
+        assertNull(schemaRef.getRevision());
+        service.getSurveySchemaReference(TEST_APP_ID, SURVEY_KEYS);
+
+        verify(mockSurveyDao, times(2)).getSurvey(TEST_APP_ID, SURVEY_KEYS, false);
+    }
+
+    @Test(expectedExceptions = EntityNotFoundException.class)
+    public void getSurveySchemaReferenceNotFound() {
+        service.getSurveySchemaReference(TEST_APP_ID, SURVEY_KEYS);
+    }
     
     @Test
     public void getSurveyMostRecentlyPublishedWithoutElements() {
@@ -261,6 +303,8 @@ public class SurveyServiceTest {
         // execute and validate
         Survey retval = service.publishSurvey(TEST_APP_ID, SURVEY_KEYS, true);
         assertSame(retval, survey);
+        
+        verify(mockReferenceResolutionCache).invalidateSurvey(TEST_APP_ID, SURVEY_GUID);
     }
     
     @Test(expectedExceptions = EntityNotFoundException.class)
@@ -306,6 +350,8 @@ public class SurveyServiceTest {
         
         verify(mockSurveyDao).deleteSurvey(surveyCaptor.capture());
         assertEquals(surveyCaptor.getValue(), survey);
+        
+        verify(mockReferenceResolutionCache).invalidateSurvey(TEST_APP_ID, survey.getGuid());
     }
     
     @Test
@@ -334,6 +380,8 @@ public class SurveyServiceTest {
         
         verify(mockSurveyDao).deleteSurveyPermanently(eq(TEST_APP_ID), keysCaptor.capture());
         assertEquals(keysCaptor.getValue(), survey);
+        
+        verify(mockReferenceResolutionCache).invalidateSurvey(TEST_APP_ID, survey.getGuid());
     }
 
     @Test(expectedExceptions = BadRequestException.class)
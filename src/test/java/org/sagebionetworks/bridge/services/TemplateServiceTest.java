@@ -24,11 +24,13 @@ import static org.sagebionetworks.bridge.models.templates.TemplateType.SMS_VERIF
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import com.google.common.collect.ImmutableList;
@@ -108,6 +110,8 @@ public class TemplateServiceTest extends Mockito {
     
     @BeforeMethod
     public void beforeMethod() throws Exception {
+        // The spy is otherwise reused between tests, carrying its cached templates along with it
+        service = null;
         MockitoAnnotations.initMocks(this);
         service.setDefaultEmailVerificationTemplate(res(EMAIL_VERIFY_EMAIL));
         service.setDefaultEmailVerificationTemplateSubject(res(EMAIL_VERIFY_EMAIL));
@@ -177,6 +181,12 @@ public class TemplateServiceTest extends Mockito {
     private void mockGetTemplates(List<? extends Template> list) {
         PagedResourceList<? extends Template> page = new PagedResourceList<>(list, list.size());
         doReturn(page).when(mockTemplateDao).getTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD, null, null, false);
+        
+        Map<String, Criteria> criteriaMap = new HashMap<>();
+        for (Template template : list) {
+            criteriaMap.put(template.getCriteria().getKey(), template.getCriteria());
+        }
+        when(mockCriteriaDao.batchGetCriteria(any())).thenReturn(criteriaMap);
     }
     
     private void mockTemplateDefault(String guid) {
@@ -212,6 +222,21 @@ public class TemplateServiceTest extends Mockito {
         assertEquals(template, t2);
     }
     
+    // The default is selected from the templates that were already loaded
+    @Test
+    public void getTemplateForUserMatchesManyUsesDefaultWithoutLoadingIt() {
+        Template t1 = makeTemplate(GUID1, "fr");
+        Template t2 = makeTemplate(GUID2, "fr");
+        mockGetTemplates(ImmutableList.of(t1, t2));
+        
+        mockTemplateDefault(GUID2);
+        
+        Template template = service.getTemplateForUser(app, makeContext("fr"), EMAIL_RESET_PASSWORD).get();
+        assertEquals(template, t2);
+        
+        verify(mockTemplateDao, never()).getTemplate(any(), any());
+    }
+    
     // More than one template matches, but the default is broken so the first matcher is returned
     @Test
     public void getTemplateForUserMatchesManyDefaultBroken() {
@@ -271,6 +296,133 @@ public class TemplateServiceTest extends Mockito {
         assertFalse(service.getTemplateForUser(app, makeContext("fr"), EMAIL_RESET_PASSWORD).isPresent());
     }
 
+    @Test
+    public void getTemplateForUserLoadsCriteriaInOneBatch() {
+        Template t1 = makeTemplate(GUID1, "en");
+        Template t2 = makeTemplate(GUID2, "fr");
+        mockGetTemplates(ImmutableList.of(t1, t2));
+        
+        service.getTemplateForUser(app, makeContext("fr"), EMAIL_RESET_PASSWORD);
+        
+        verify(mockCriteriaDao).batchGetCriteria(ImmutableSet.of("template:"+GUID1, "template:"+GUID2));
+        verify(mockCriteriaDao, never()).getCriteria(any());
+    }
+    
+    @Test
+    public void getTemplateForUserDefaultsMissingCriteria() {
+        Template t1 = makeTemplate(GUID1, "en");
+        mockGetTemplates(ImmutableList.of(t1));
+        when(mockCriteriaDao.batchGetCriteria(any())).thenReturn(ImmutableMap.of());
+        
+        Template template = service.getTemplateForUser(app, makeContext("fr"), EMAIL_RESET_PASSWORD).get();
+        assertNotNull(template.getCriteria());
+        assertNull(template.getCriteria().getLanguage());
+    }
+    
+    @Test
+    public void getTemplateForUserIsCached() {
+        Template t1 = makeTemplate(GUID1, "en");
+        Template t2 = makeTemplate(GUID2, "fr");
+        mockGetTemplates(ImmutableList.of(t1, t2));
+        
+        assertEquals(service.getTemplateForUser(app, makeContext("en"), EMAIL_RESET_PASSWORD).get(), t1);
+        assertEquals(service.getTemplateForUser(app, makeContext("fr"), EMAIL_RESET_PASSWORD).get(), t2);
+        
+        verify(mockTemplateDao, times(1)).getTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD, null, null, false);
+        verify(mockCriteriaDao, times(1)).batchGetCriteria(any());
+    }
+    
+    @Test
+    public void getTemplateForUserIsCachedByType() {
+        mockGetTemplates(ImmutableList.of(makeTemplate(GUID1, "en")));
+        doReturn(new PagedResourceList<>(ImmutableList.of(), 0)).when(mockTemplateDao)
+            .getTemplates(TEST_APP_ID, EMAIL_SIGN_IN, null, null, false);
+        
+        assertTrue(service.getTemplateForUser(app, makeContext("en"), EMAIL_RESET_PASSWORD).isPresent());
+        assertFalse(service.getTemplateForUser(app, makeContext("en"), EMAIL_SIGN_IN).isPresent());
+        
+        verify(mockTemplateDao).getTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD, null, null, false);
+        verify(mockTemplateDao).getTemplates(TEST_APP_ID, EMAIL_SIGN_IN, null, null, false);
+    }
+    
+    @Test
+    public void invalidateCachedTemplates() {
+        mockGetTemplates(ImmutableList.of(makeTemplate(GUID1, "en")));
+        
+        service.getTemplateForUser(app, makeContext("en"), EMAIL_RESET_PASSWORD);
+        service.invalidateCachedTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD);
+        service.getTemplateForUser(app, makeContext("en"), EMAIL_RESET_PASSWORD);
+        
+        verify(mockTemplateDao, times(2)).getTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD, null, null, false);
+    }
+    
+    @Test
+    public void createTemplateInvalidatesCachedTemplates() {
+        mockGetTemplates(ImmutableList.of(makeTemplate(GUID1, "en")));
+        service.getTemplateForUser(app, makeContext("en"), EMAIL_RESET_PASSWORD);
+        
+        Template template = Template.create();
+        template.setName("Test");
+        template.setTemplateType(EMAIL_RESET_PASSWORD);
+        service.createTemplate(app, template);
+        
+        service.getTemplateForUser(app, makeContext("en"), EMAIL_RESET_PASSWORD);
+        verify(mockTemplateDao, times(2)).getTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD, null, null, false);
+    }
+    
+    @Test
+    public void updateTemplateInvalidatesCachedTemplates() {
+        Template existing = makeTemplate(GUID1, "en");
+        existing.setTemplateType(EMAIL_RESET_PASSWORD);
+        mockGetTemplates(ImmutableList.of(existing));
+        service.getTemplateForUser(app, makeContext("en"), EMAIL_RESET_PASSWORD);
+        
+        Template template = Template.create();
+        template.setGuid(GUID1);
+        template.setName("Test");
+        service.updateTemplate(TEST_APP_ID, template);
+        
+        service.getTemplateForUser(app, makeContext("en"), EMAIL_RESET_PASSWORD);
+        verify(mockTemplateDao, times(2)).getTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD, null, null, false);
+    }
+    
+    @Test
+    public void deleteTemplateInvalidatesCachedTemplates() {
+        Template existing = makeTemplate(GUID1, "en");
+        existing.setTemplateType(EMAIL_RESET_PASSWORD);
+        mockGetTemplates(ImmutableList.of(existing));
+        service.getTemplateForUser(app, makeContext("en"), EMAIL_RESET_PASSWORD);
+        
+        service.deleteTemplate(TEST_APP_ID, GUID1);
+        
+        service.getTemplateForUser(app, makeContext("en"), EMAIL_RESET_PASSWORD);
+        verify(mockTemplateDao, times(2)).getTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD, null, null, false);
+    }
+    
+    @Test
+    public void deleteTemplatePermanentlyInvalidatesCachedTemplates() {
+        Template existing = makeTemplate(GUID1, "en");
+        existing.setTemplateType(EMAIL_RESET_PASSWORD);
+        mockGetTemplates(ImmutableList.of(existing));
+        service.getTemplateForUser(app, makeContext("en"), EMAIL_RESET_PASSWORD);
+        
+        service.deleteTemplatePermanently(TEST_APP_ID, GUID1);
+        
+        service.getTemplateForUser(app, makeContext("en"), EMAIL_RESET_PASSWORD);
+        verify(mockTemplateDao, times(2)).getTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD, null, null, false);
+    }
+    
+    @Test
+    public void deleteTemplatesForAppInvalidatesCachedTemplates() {
+        mockGetTemplates(ImmutableList.of(makeTemplate(GUID1, "en")));
+        service.getTemplateForUser(app, makeContext("en"), EMAIL_RESET_PASSWORD);
+        
+        service.deleteTemplatesForApp(TEST_APP_ID);
+        
+        service.getTemplateForUser(app, makeContext("en"), EMAIL_RESET_PASSWORD);
+        verify(mockTemplateDao, times(2)).getTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD, null, null, false);
+    }
+    
     @Test
     public void getTemplatesForType() {
         Template t1 = Template.create();
@@ -284,17 +436,18 @@ public class TemplateServiceTest extends Mockito {
         doReturn(resourceList).when(mockTemplateDao).getTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD, 5, 50, true);
         
         Criteria criteria = Criteria.create();
-        when(mockCriteriaDao.getCriteria(any())).thenReturn(criteria);
+        when(mockCriteriaDao.batchGetCriteria(any())).thenReturn(
+                ImmutableMap.of("template:guidOne", criteria, "template:guidTwo", criteria));
         
         PagedResourceList<? extends Template> results = service.getTemplatesForType(TEST_APP_ID, EMAIL_RESET_PASSWORD, 5, 50, true);
         assertSame(results, resourceList);
         
         for (Template template : results.getItems()) {
-            assertNotNull(template.getCriteria());
+            assertSame(template.getCriteria(), criteria);
         }
         verify(mockTemplateDao).getTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD, 5, 50, true);
-        verify(mockCriteriaDao).getCriteria("template:guidOne");
-        verify(mockCriteriaDao).getCriteria("template:guidTwo");
+        verify(mockCriteriaDao).batchGetCriteria(ImmutableSet.of("template:guidOne", "template:guidTwo"));
+        verify(mockCriteriaDao, never()).getCriteria(any());
     }
     
     @Test
@@ -309,6 +462,8 @@ public class TemplateServiceTest extends Mockito {
         PagedResourceList<? extends Template> resourceList = new PagedResourceList<>(list, 150);
         doReturn(resourceList).when(mockTemplateDao).getTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD, 5, 50, true);
         
+        when(mockCriteriaDao.batchGetCriteria(any())).thenReturn(ImmutableMap.of());
+        
         PagedResourceList<? extends Template> results = service.getTemplatesForType(TEST_APP_ID, EMAIL_RESET_PASSWORD, 5, 50, true);
         
         for (Template template : results.getItems()) {
@@ -324,6 +479,7 @@ public class TemplateServiceTest extends Mockito {
         service.getTemplatesForType(TEST_APP_ID, EMAIL_RESET_PASSWORD, null, 50, true);
         
         verify(mockTemplateDao).getTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD, 0, 50, true);
+        verify(mockCriteriaDao, never()).batchGetCriteria(any());
     }
 
     @Test
@@ -677,6 +833,48 @@ public class TemplateServiceTest extends Mockito {
         service.getRevisionForUser(app, EMAIL_RESET_PASSWORD);
     }
     
+    @Test
+    public void getRevisionForUserCachesPublishedRevision() throws Exception {
+        RequestContext.set(new RequestContext.Builder().withCallerLanguages(LANGUAGES).build());
+        
+        DateTime createdOn = DateTime.now();
+        Template t1 = makeTemplate(GUID1, "en");
+        t1.setPublishedCreatedOn(createdOn);
+        mockGetTemplates(ImmutableList.of(t1));
+        
+        TemplateRevision r1 = TemplateRevision.create();
+        when(mockTemplateRevisionDao.getTemplateRevision(GUID1, createdOn)).thenReturn(Optional.of(r1));
+        
+        assertSame(service.getRevisionForUser(app, EMAIL_RESET_PASSWORD), r1);
+        assertSame(service.getRevisionForUser(app, EMAIL_RESET_PASSWORD), r1);
+        
+        verify(mockTemplateRevisionDao, times(1)).getTemplateRevision(GUID1, createdOn);
+    }
+    
+    @Test
+    public void getRevisionForUserLoadsNewlyPublishedRevision() throws Exception {
+        RequestContext.set(new RequestContext.Builder().withCallerLanguages(LANGUAGES).build());
+        
+        DateTime createdOn = DateTime.now();
+        Template t1 = makeTemplate(GUID1, "en");
+        t1.setPublishedCreatedOn(createdOn);
+        mockGetTemplates(ImmutableList.of(t1));
+        
+        TemplateRevision r1 = TemplateRevision.create();
+        when(mockTemplateRevisionDao.getTemplateRevision(GUID1, createdOn)).thenReturn(Optional.of(r1));
+        assertSame(service.getRevisionForUser(app, EMAIL_RESET_PASSWORD), r1);
+        
+        // A new revision is published, which invalidates the cached templates
+        Template t1Published = makeTemplate(GUID1, "en");
+        t1Published.setPublishedCreatedOn(createdOn.plusHours(1));
+        mockGetTemplates(ImmutableList.of(t1Published));
+        service.invalidateCachedTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD);
+        
+        TemplateRevision r2 = TemplateRevision.create();
+        when(mockTemplateRevisionDao.getTemplateRevision(GUID1, createdOn.plusHours(1))).thenReturn(Optional.of(r2));
+        assertSame(service.getRevisionForUser(app, EMAIL_RESET_PASSWORD), r2);
+    }
+    
     @Test
     public void deleteTemplatesForApp() {
         service.deleteTemplatesForApp(TEST_APP_ID);
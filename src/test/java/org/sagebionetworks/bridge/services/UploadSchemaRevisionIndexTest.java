@@ -0,0 +1,133 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.models.ClientInfo;
+import org.sagebionetworks.bridge.models.upload.UploadSchema;
+
+public class UploadSchemaRevisionIndexTest {
+    private static final String OS_NAME = "unit-test-os";
+    private static final String OTHER_OS_NAME = "other-os";
+
+    @Test
+    public void singleRevisionAvailability() {
+        // test cases: { clientInfoAppVersion, minAppVersion, maxAppVersion, expected }
+        Object[][] testCaseArray = {
+                { null, null, null, true },
+                { null, 10, 20, true },
+                { 15, null, null, true },
+                { 5, 10, null, false },
+                { 10, 10, null, true },
+                { 15, 10, null, true },
+                { 15, null, 20, true },
+                { 20, null, 20, true },
+                { 25, null, 20, false },
+                { 5, 10, 20, false },
+                { 15, 10, 20, true },
+                { 25, 10, 20, false },
+                { Integer.MAX_VALUE, 10, Integer.MAX_VALUE, true },
+                { Integer.MIN_VALUE, Integer.MIN_VALUE, 20, true },
+        };
+
+        for (Object[] oneTestCase : testCaseArray) {
+            // test args
+            Integer clientInfoAppVersion = (Integer) oneTestCase[0];
+            Integer minAppVersion = (Integer) oneTestCase[1];
+            Integer maxAppVersion = (Integer) oneTestCase[2];
+            boolean expected = (boolean) oneTestCase[3];
+
+            // set up test
+            ClientInfo clientInfo = new ClientInfo.Builder().withOsName(OS_NAME).withAppVersion(clientInfoAppVersion)
+                    .build();
+
+            UploadSchema schema = makeRevision(1, minAppVersion, maxAppVersion);
+            UploadSchemaRevisionIndex index = new UploadSchemaRevisionIndex(ImmutableList.of(schema));
+
+            // execute and validate
+            UploadSchema retval = index.getLatestRevision(clientInfo);
+            assertEquals(retval != null, expected, "appVersion=" + clientInfoAppVersion + ", min=" + minAppVersion
+                    + ", max=" + maxAppVersion);
+        }
+    }
+
+    @Test
+    public void overlappingRevisions() {
+        // Rev 1 is for 10-30, rev 2 for 20-25, rev 3 for 40 and up, and rev 4 for 22 and under. Revisions are given
+        // out of order.
+        UploadSchema rev1 = makeRevision(1, 10, 30);
+        UploadSchema rev2 = makeRevision(2, 20, 25);
+        UploadSchema rev3 = makeRevision(3, 40, null);
+        UploadSchema rev4 = makeRevision(4, null, 22);
+        UploadSchemaRevisionIndex index = new UploadSchemaRevisionIndex(ImmutableList.of(rev3, rev1, rev4, rev2));
+
+        assertSame(index.getLatestRevision(client(OS_NAME, Integer.MIN_VALUE)), rev4);
+        assertSame(index.getLatestRevision(client(OS_NAME, 5)), rev4);
+        assertSame(index.getLatestRevision(client(OS_NAME, 22)), rev4);
+        assertSame(index.getLatestRevision(client(OS_NAME, 23)), rev2);
+        assertSame(index.getLatestRevision(client(OS_NAME, 25)), rev2);
+        assertSame(index.getLatestRevision(client(OS_NAME, 26)), rev1);
+        assertSame(index.getLatestRevision(client(OS_NAME, 30)), rev1);
+        assertNull(index.getLatestRevision(client(OS_NAME, 31)));
+        assertNull(index.getLatestRevision(client(OS_NAME, 39)));
+        assertSame(index.getLatestRevision(client(OS_NAME, 40)), rev3);
+        assertSame(index.getLatestRevision(client(OS_NAME, Integer.MAX_VALUE)), rev3);
+    }
+
+    @Test
+    public void unconstrainedRevisionAvailableToEveryVersion() {
+        UploadSchema rev1 = makeRevision(1, null, null);
+        UploadSchema rev2 = makeRevision(2, 20, null);
+        UploadSchemaRevisionIndex index = new UploadSchemaRevisionIndex(ImmutableList.of(rev1, rev2));
+
+        assertSame(index.getLatestRevision(client(OS_NAME, 10)), rev1);
+        assertSame(index.getLatestRevision(client(OS_NAME, 20)), rev2);
+    }
+
+    @Test
+    public void constraintsAreByOs() {
+        UploadSchema rev1 = makeRevision(1, null, null);
+        UploadSchema rev2 = makeRevision(2, 20, null);
+        rev2.setMaxAppVersion(OTHER_OS_NAME, 5);
+        UploadSchemaRevisionIndex index = new UploadSchemaRevisionIndex(ImmutableList.of(rev1, rev2));
+
+        assertSame(index.getLatestRevision(client(OTHER_OS_NAME, 5)), rev2);
+        assertSame(index.getLatestRevision(client(OTHER_OS_NAME, 6)), rev1);
+        // OS that no revision constrains.
+        assertSame(index.getLatestRevision(client("Unknown OS", 1)), rev2);
+    }
+
+    @Test
+    public void clientWithoutOsOrVersionGetsLatest() {
+        UploadSchema rev1 = makeRevision(1, null, null);
+        UploadSchema rev2 = makeRevision(2, 20, null);
+        UploadSchemaRevisionIndex index = new UploadSchemaRevisionIndex(ImmutableList.of(rev1, rev2));
+
+        assertSame(index.getLatestRevision(ClientInfo.UNKNOWN_CLIENT), rev2);
+        assertSame(index.getLatestRevision(new ClientInfo.Builder().withOsName(OS_NAME).build()), rev2);
+        assertSame(index.getLatestRevision(new ClientInfo.Builder().withAppVersion(1).build()), rev2);
+    }
+
+    @Test
+    public void noRevisions() {
+        UploadSchemaRevisionIndex index = new UploadSchemaRevisionIndex(ImmutableList.of());
+        assertNull(index.getLatestRevision(ClientInfo.UNKNOWN_CLIENT));
+        assertNull(index.getLatestRevision(client(OS_NAME, 1)));
+    }
+
+    private static ClientInfo client(String osName, int appVersion) {
+        return new ClientInfo.Builder().withOsName(osName).withAppVersion(appVersion).build();
+    }
+
+    private static UploadSchema makeRevision(int revision, Integer minAppVersion, Integer maxAppVersion) {
+        UploadSchema schema = UploadSchema.create();
+        schema.setRevision(revision);
+        schema.setMinAppVersion(OS_NAME, minAppVersion);
+        schema.setMaxAppVersion(OS_NAME, maxAppVersion);
+        return schema;
+    }
+}
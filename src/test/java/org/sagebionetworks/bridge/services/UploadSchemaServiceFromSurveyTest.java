@@ -45,6 +45,7 @@ public class UploadSchemaServiceFromSurveyTest {
         dao = mock(UploadSchemaDao.class);
         svc = new UploadSchemaService();
         svc.setUploadSchemaDao(dao);
+        svc.setReferenceResolutionCache(mock(ReferenceResolutionCache.class));
     }
 
     @Test
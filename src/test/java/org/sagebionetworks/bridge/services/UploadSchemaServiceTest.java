@@ -6,12 +6,14 @@ import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.sagebionetworks.bridge.services.SharedModuleMetadataServiceTest.makeValidMetadata;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
@@ -53,6 +55,7 @@ public class UploadSchemaServiceTest {
     private UploadSchemaDao dao;
     private UploadSchemaService svc;
     private SharedModuleMetadataService mockSharedModuleMetadataService;
+    private ReferenceResolutionCache mockReferenceResolutionCache;
 
     @Captor
     ArgumentCaptor<String> queryCaptor;
@@ -67,9 +70,11 @@ public class UploadSchemaServiceTest {
         svcInputSchema = makeSimpleSchema();
         dao = mock(UploadSchemaDao.class);
         mockSharedModuleMetadataService = mock(SharedModuleMetadataService.class);
+        mockReferenceResolutionCache = mock(ReferenceResolutionCache.class);
         svc = new UploadSchemaService();
         svc.setUploadSchemaDao(dao);
         svc.setSharedModuleMetadataService(mockSharedModuleMetadataService);
+        svc.setReferenceResolutionCache(mockReferenceResolutionCache);
     }
 
     @Test(expectedExceptions = BadRequestException.class)
@@ -113,6 +118,9 @@ public class UploadSchemaServiceTest {
 
         // old schema rev 1, create with rev 3
         createV4TestHelper(3, 3, 1);
+
+        // Each new revision changes which revision the schema resolves to in schedules.
+        verify(mockReferenceResolutionCache, times(4)).invalidateSchema(TEST_APP_ID, SCHEMA_ID);
     }
 
     private void createV4TestHelper(int expectedRev, int inputRev, Integer oldRev) {
@@ -294,6 +302,7 @@ public class UploadSchemaServiceTest {
         // execute and verify delete call
         svc.deleteUploadSchemaById(TEST_APP_ID, SCHEMA_ID);
         verify(dao).deleteUploadSchemas(schemaListToDelete);
+        verify(mockReferenceResolutionCache).invalidateSchema(TEST_APP_ID, SCHEMA_ID);
 
         // verify query args
         verify(mockSharedModuleMetadataService).queryAllMetadata(eq(false), eq(false), queryCaptor.capture(),
@@ -662,6 +671,66 @@ public class UploadSchemaServiceTest {
         assertSame(svcOutputSchema, daoOutputSchema);
     }
 
+    @Test
+    public void getByIdAndRevCachedLoadsOnce() {
+        UploadSchema daoOutputSchema = makeSimpleSchema();
+        when(dao.getUploadSchemaByIdAndRevision(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV)).thenReturn(
+                daoOutputSchema);
+
+        assertEquals(svc.getUploadSchemaByIdAndRevCached(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV).getName(),
+                SCHEMA_NAME);
+        assertEquals(svc.getUploadSchemaByIdAndRevCached(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV).getName(),
+                SCHEMA_NAME);
+        verify(dao, times(1)).getUploadSchemaByIdAndRevision(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV);
+    }
+
+    @Test
+    public void getByIdAndRevCachedReturnsCopies() {
+        UploadSchema daoOutputSchema = makeSimpleSchema();
+        when(dao.getUploadSchemaByIdAndRevision(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV)).thenReturn(
+                daoOutputSchema);
+
+        UploadSchema first = svc.getUploadSchemaByIdAndRevCached(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV);
+        assertNotSame(first, daoOutputSchema);
+        first.setName("changed-name");
+        first.setMinAppVersion(OS_NAME, 10);
+
+        // Changing one caller's schema doesn't change the cached schema, or what the next caller gets.
+        UploadSchema second = svc.getUploadSchemaByIdAndRevCached(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV);
+        assertNotSame(second, first);
+        assertEquals(second.getName(), SCHEMA_NAME);
+        assertNull(second.getMinAppVersion(OS_NAME));
+        assertEquals(daoOutputSchema.getName(), SCHEMA_NAME);
+    }
+
+    @Test
+    public void getByIdAndRevCachedDoesNotCacheMissingSchema() {
+        when(dao.getUploadSchemaByIdAndRevision(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV)).thenReturn(null);
+
+        assertNull(svc.getUploadSchemaByIdAndRevCached(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV));
+        assertNull(svc.getUploadSchemaByIdAndRevCached(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV));
+        verify(dao, times(2)).getUploadSchemaByIdAndRevision(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV);
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void getByIdAndRevCachedBlankId() {
+        svc.getUploadSchemaByIdAndRevCached(TEST_APP_ID, "   ", SCHEMA_REV);
+    }
+
+    @Test
+    public void deleteByIdAndRevInvalidatesCachedSchema() {
+        UploadSchema daoOutputSchema = makeSimpleSchema();
+        when(dao.getUploadSchemaByIdAndRevision(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV)).thenReturn(
+                daoOutputSchema);
+        svc.getUploadSchemaByIdAndRevCached(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV);
+
+        svc.deleteUploadSchemaByIdAndRevision(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV);
+
+        // Deletion reads the schema directly, then the cached lookup goes back to the DAO.
+        svc.getUploadSchemaByIdAndRevCached(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV);
+        verify(dao, times(3)).getUploadSchemaByIdAndRevision(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV);
+    }
+
     @Test(expectedExceptions = BadRequestException.class)
     public void getLatestNullId() {
         svc.getLatestUploadSchemaRevisionForAppVersion(TEST_APP_ID, null, ClientInfo.UNKNOWN_CLIENT);
@@ -732,40 +801,79 @@ public class UploadSchemaServiceTest {
     }
 
     @Test
-    public void isSchemaAvailableForClientInfo() {
-        // test cases: { clientInfoAppVersion, minAppVersion, maxAppVersion, expected }
-        Object[][] testCaseArray = {
-                { null, null, null, true },
-                { null, 10, 20, true },
-                { 15, null, null, true },
-                { 5, 10, null, false },
-                { 15, 10, null, true },
-                { 15, null, 20, true },
-                { 25, null, 20, false },
-                { 5, 10, 20, false },
-                { 15, 10, 20, true },
-                { 25, 10, 20, false },
-        };
-
-        for (Object[] oneTestCase : testCaseArray) {
-            // test args
-            Integer clientInfoAppVersion = (Integer) oneTestCase[0];
-            Integer minAppVersion = (Integer) oneTestCase[1];
-            Integer maxAppVersion = (Integer) oneTestCase[2];
-            boolean expected = (boolean) oneTestCase[3];
-
-            // set up test
-            ClientInfo clientInfo = new ClientInfo.Builder().withOsName(OS_NAME).withAppVersion(clientInfoAppVersion)
-                    .build();
-
-            UploadSchema schema = makeSimpleSchema();
-            schema.setMinAppVersion(OS_NAME, minAppVersion);
-            schema.setMaxAppVersion(OS_NAME, maxAppVersion);
-
-            // execute and validate
-            boolean retval = UploadSchemaService.isSchemaAvailableForClientInfo(schema, clientInfo);
-            assertEquals(retval, expected);
+    public void getLatestIndexIsCached() {
+        setupDaoForGetLatest();
+
+        ClientInfo clientInfo15 = new ClientInfo.Builder().withOsName(OS_NAME).withAppVersion(15).build();
+        ClientInfo clientInfo25 = new ClientInfo.Builder().withOsName(OS_NAME).withAppVersion(25).build();
+        assertEquals(svc.getLatestUploadSchemaRevisionForAppVersion(TEST_APP_ID, SCHEMA_ID, clientInfo15)
+                .getRevision(), 1);
+        assertEquals(svc.getLatestUploadSchemaRevisionForAppVersion(TEST_APP_ID, SCHEMA_ID, clientInfo25)
+                .getRevision(), 2);
+
+        // Every client is served from the same index.
+        verify(dao, times(1)).getUploadSchemaAllRevisionsById(TEST_APP_ID, SCHEMA_ID, false);
+    }
+
+    @Test
+    public void getLatestReturnsCopies() {
+        setupDaoForGetLatest();
+        ClientInfo clientInfo = new ClientInfo.Builder().withOsName(OS_NAME).withAppVersion(25).build();
+
+        UploadSchema first = svc.getLatestUploadSchemaRevisionForAppVersion(TEST_APP_ID, SCHEMA_ID, clientInfo);
+        first.setName("changed-name");
+        first.setMinAppVersion(OS_NAME, 30);
+
+        // Changing one caller's schema doesn't change the indexed revision, or what the next caller gets.
+        UploadSchema second = svc.getLatestUploadSchemaRevisionForAppVersion(TEST_APP_ID, SCHEMA_ID, clientInfo);
+        assertNotSame(second, first);
+        assertEquals(second.getRevision(), 2);
+        assertEquals(second.getName(), SCHEMA_NAME);
+        assertEquals(second.getMinAppVersion(OS_NAME), Integer.valueOf(20));
+        verify(dao, times(1)).getUploadSchemaAllRevisionsById(TEST_APP_ID, SCHEMA_ID, false);
+    }
+
+    @Test
+    public void getLatestIndexRebuiltAfterCreate() {
+        setupDaoForGetLatest();
+        ClientInfo clientInfo = new ClientInfo.Builder().withOsName(OS_NAME).withAppVersion(35).build();
+        assertEquals(svc.getLatestUploadSchemaRevisionForAppVersion(TEST_APP_ID, SCHEMA_ID, clientInfo)
+                .getRevision(), 2);
+
+        // Create rev 3, available from app version 30.
+        UploadSchema schemaRev3 = makeSimpleSchema();
+        schemaRev3.setRevision(3);
+        schemaRev3.setMinAppVersion(OS_NAME, 30);
+        when(dao.createSchemaRevision(any())).thenReturn(schemaRev3);
+        svc.createSchemaRevisionV4(TEST_APP_ID, schemaRev3);
+
+        UploadSchema schemaRev1 = makeSimpleSchema();
+        schemaRev1.setRevision(1);
+        schemaRev1.setMinAppVersion(OS_NAME, 10);
+        UploadSchema schemaRev2 = makeSimpleSchema();
+        schemaRev2.setRevision(2);
+        schemaRev2.setMinAppVersion(OS_NAME, 20);
+        when(dao.getUploadSchemaAllRevisionsById(TEST_APP_ID, SCHEMA_ID, false))
+                .thenReturn(ImmutableList.of(schemaRev1, schemaRev2, schemaRev3));
+
+        assertEquals(svc.getLatestUploadSchemaRevisionForAppVersion(TEST_APP_ID, SCHEMA_ID, clientInfo)
+                .getRevision(), 3);
+        verify(dao, times(2)).getUploadSchemaAllRevisionsById(TEST_APP_ID, SCHEMA_ID, false);
+    }
+
+    @Test
+    public void getLatestMissingSchemaNotCached() {
+        when(dao.getUploadSchemaAllRevisionsById(TEST_APP_ID, SCHEMA_ID, false)).thenReturn(ImmutableList.of());
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                svc.getLatestUploadSchemaRevisionForAppVersion(TEST_APP_ID, SCHEMA_ID, ClientInfo.UNKNOWN_CLIENT);
+                fail("expected exception");
+            } catch (EntityNotFoundException ex) {
+                // expected exception
+            }
         }
+        verify(dao, times(2)).getUploadSchemaAllRevisionsById(TEST_APP_ID, SCHEMA_ID, false);
     }
 
     @Test(expectedExceptions = BadRequestException.class)
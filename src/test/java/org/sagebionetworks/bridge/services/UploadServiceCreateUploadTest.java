@@ -13,7 +13,7 @@ import static org.testng.Assert.assertEquals;
 
 import java.net.URL;
 
-import com.amazonaws.auth.AWSSessionCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
 import org.apache.commons.codec.binary.Base64;
@@ -88,9 +88,9 @@ public class UploadServiceCreateUploadTest {
         mockUploadDedupeDao = mock(UploadDedupeDao.class);
 
         // mock upload credentials service
-        AWSSessionCredentials mockCredentials = mock(AWSSessionCredentials.class);
+        AWSCredentialsProvider mockCredentialsProvider = mock(AWSCredentialsProvider.class);
         UploadSessionCredentialsService mockCredentialsSvc = mock(UploadSessionCredentialsService.class);
-        when(mockCredentialsSvc.getSessionCredentials()).thenReturn(mockCredentials);
+        when(mockCredentialsSvc.getSessionCredentialsProvider()).thenReturn(mockCredentialsProvider);
 
         // mock presigned URL call
         presignedUrlRequestArgumentCaptor = ArgumentCaptor.forClass(GeneratePresignedUrlRequest.class);
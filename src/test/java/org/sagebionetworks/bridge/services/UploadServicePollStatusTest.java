@@ -1,13 +1,22 @@
 package org.sagebionetworks.bridge.services;
 
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -15,39 +24,82 @@ import org.testng.annotations.Test;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.models.upload.UploadStatus;
 import org.sagebionetworks.bridge.models.upload.UploadValidationStatus;
+import org.sagebionetworks.bridge.upload.UploadCompletionRegistry;
 
 public class UploadServicePollStatusTest {
     private static final String UPLOAD_ID = "test-upload";
 
     private UploadService svc;
+    private UploadCompletionRegistry mockRegistry;
+    private CompletableFuture<Void> completion;
 
     @BeforeMethod
     public void setup() {
         // Spy service, so we can mock a call to getValidationStatus() instead of tightly coupling to that logic.
         svc = spy(new UploadService());
 
-        // Set sleep time to 10ms and max iterations to 2, so we don't have to wait that long.
-        svc.setPollValidationStatusMaxIterations(2);
-        svc.setPollValidationStatusSleepMillis(10);
+        completion = new CompletableFuture<>();
+        mockRegistry = mock(UploadCompletionRegistry.class);
+        when(mockRegistry.register(UPLOAD_ID)).thenReturn(completion);
+        svc.setUploadCompletionRegistry(mockRegistry);
+        svc.setAsyncExecutorService(MoreExecutors.newDirectExecutorService());
     }
 
     @Test
-    public void firstTry() {
+    public void alreadyComplete() throws Exception {
         doReturn(makeValidationStatus(UploadStatus.SUCCEEDED)).when(svc).getUploadValidationStatus(UPLOAD_ID);
-        UploadValidationStatus validationStatus = svc.pollUploadValidationStatusUntilComplete(UPLOAD_ID);
-        assertEquals(validationStatus.getStatus(), UploadStatus.SUCCEEDED);
+        CompletableFuture<UploadValidationStatus> future = svc.getUploadValidationStatusWhenComplete(UPLOAD_ID);
+        assertTrue(future.isDone());
+        assertEquals(future.get().getStatus(), UploadStatus.SUCCEEDED);
         verify(svc, times(1)).getUploadValidationStatus(UPLOAD_ID);
+        verify(mockRegistry).unregister(UPLOAD_ID, completion);
     }
 
     @Test
-    public void secondTry() {
+    public void completesWhenSignaled() throws Exception {
         UploadValidationStatus inProgressStatus = makeValidationStatus(UploadStatus.VALIDATION_IN_PROGRESS);
         UploadValidationStatus succeededStatus = makeValidationStatus(UploadStatus.SUCCEEDED);
 
         doReturn(inProgressStatus).doReturn(succeededStatus).when(svc).getUploadValidationStatus(UPLOAD_ID);
-        UploadValidationStatus validationStatus = svc.pollUploadValidationStatusUntilComplete(UPLOAD_ID);
-        assertEquals(validationStatus.getStatus(), UploadStatus.SUCCEEDED);
+        CompletableFuture<UploadValidationStatus> future = svc.getUploadValidationStatusWhenComplete(UPLOAD_ID);
+        assertFalse(future.isDone());
+        verify(svc, times(1)).getUploadValidationStatus(UPLOAD_ID);
+
+        completion.complete(null);
+        assertEquals(future.get().getStatus(), UploadStatus.SUCCEEDED);
         verify(svc, times(2)).getUploadValidationStatus(UPLOAD_ID);
+        verify(mockRegistry).unregister(UPLOAD_ID, completion);
+    }
+
+    @Test
+    public void cancelUnregisters() {
+        doReturn(makeValidationStatus(UploadStatus.VALIDATION_IN_PROGRESS)).when(svc).getUploadValidationStatus(
+                UPLOAD_ID);
+        CompletableFuture<UploadValidationStatus> future = svc.getUploadValidationStatusWhenComplete(UPLOAD_ID);
+
+        future.cancel(false);
+        verify(mockRegistry).unregister(UPLOAD_ID, completion);
+    }
+
+    @Test
+    public void errorUnregisters() {
+        BridgeServiceException ex = new BridgeServiceException("error");
+        doThrow(ex).when(svc).getUploadValidationStatus(UPLOAD_ID);
+
+        try {
+            svc.getUploadValidationStatusWhenComplete(UPLOAD_ID);
+            fail("expected exception");
+        } catch (BridgeServiceException thrown) {
+            assertSame(thrown, ex);
+        }
+        verify(mockRegistry).unregister(UPLOAD_ID, completion);
+    }
+
+    @Test
+    public void afterTimeoutComplete() {
+        doReturn(makeValidationStatus(UploadStatus.SUCCEEDED)).when(svc).getUploadValidationStatus(UPLOAD_ID);
+        UploadValidationStatus validationStatus = svc.getUploadValidationStatusAfterTimeout(UPLOAD_ID);
+        assertEquals(validationStatus.getStatus(), UploadStatus.SUCCEEDED);
     }
 
     @Test
@@ -56,12 +108,12 @@ public class UploadServicePollStatusTest {
                 UPLOAD_ID);
 
         try {
-            svc.pollUploadValidationStatusUntilComplete(UPLOAD_ID);
+            svc.getUploadValidationStatusAfterTimeout(UPLOAD_ID);
             fail("expected exception");
         } catch (BridgeServiceException ex) {
             assertEquals(ex.getMessage(), "Timeout polling validation status for upload " + UPLOAD_ID);
         }
-        verify(svc, times(2)).getUploadValidationStatus(UPLOAD_ID);
+        verify(svc, times(1)).getUploadValidationStatus(UPLOAD_ID);
     }
 
     private UploadValidationStatus makeValidationStatus(UploadStatus uploadStatus) {
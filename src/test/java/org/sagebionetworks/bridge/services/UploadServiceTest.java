@@ -20,6 +20,7 @@ import static org.sagebionetworks.bridge.models.upload.UploadCompletionClient.S3
 import static org.sagebionetworks.bridge.models.upload.UploadStatus.SUCCEEDED;
 import static org.sagebionetworks.bridge.models.upload.UploadStatus.VALIDATION_IN_PROGRESS;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.fail;
@@ -27,14 +28,17 @@ import static org.testng.Assert.fail;
 import java.net.URL;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import com.amazonaws.HttpMethod;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicSessionCredentials;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeUtils;
 import org.mockito.ArgumentCaptor;
@@ -64,6 +68,7 @@ import org.sagebionetworks.bridge.models.upload.UploadSession;
 import org.sagebionetworks.bridge.models.upload.UploadStatus;
 import org.sagebionetworks.bridge.models.upload.UploadValidationStatus;
 import org.sagebionetworks.bridge.models.upload.UploadView;
+import org.sagebionetworks.bridge.upload.UploadCompletionRegistry;
 import org.sagebionetworks.bridge.validators.UploadValidator;
 
 @SuppressWarnings("ConstantConditions")
@@ -118,6 +123,9 @@ public class UploadServiceTest {
     @Captor
     ArgumentCaptor<GeneratePresignedUrlRequest> requestCaptor;
     
+    @Mock
+    UploadCompletionRegistry mockUploadCompletionRegistry;
+    
     @InjectMocks
     UploadService svc;
     
@@ -129,6 +137,9 @@ public class UploadServiceTest {
         svc.setS3Client(mockS3Client);
         svc.setS3UploadClient(mockS3UploadClient);
         
+        svc.setUploadCompletionRegistry(mockUploadCompletionRegistry);
+        svc.setAsyncExecutorService(MoreExecutors.newDirectExecutorService());
+        
         when(mockConfig.getProperty(UploadService.CONFIG_KEY_UPLOAD_BUCKET)).thenReturn(UPLOAD_BUCKET_NAME);
         svc.setConfig(mockConfig);
     }
@@ -427,8 +438,8 @@ public class UploadServiceTest {
         
         when(mockUploadDao.getUpload(ORIGINAL_UPLOAD_ID)).thenReturn(upload);
         when(mockUploadDao.createUpload(uploadRequest, TEST_APP_ID, HEALTH_CODE, null)).thenReturn(upload);
-        when(mockUploadCredentailsService.getSessionCredentials())
-                .thenReturn(new BasicSessionCredentials(null, null, null));
+        when(mockUploadCredentailsService.getSessionCredentialsProvider())
+                .thenReturn(new AWSStaticCredentialsProvider(new BasicSessionCredentials(null, null, null)));
         when(mockS3UploadClient.generatePresignedUrl(any())).thenReturn(new URL("https://ws.com/some-link"));
         
         UploadSession session = svc.createUpload(TEST_APP_ID, PARTICIPANT, uploadRequest);
@@ -453,8 +464,8 @@ public class UploadServiceTest {
         upload.setUploadId(NEW_UPLOAD_ID);
         
         when(mockUploadDao.createUpload(uploadRequest, API_APP_ID, HEALTH_CODE, null)).thenReturn(upload);
-        when(mockUploadCredentailsService.getSessionCredentials())
-            .thenReturn(new BasicSessionCredentials(null, null, null));
+        when(mockUploadCredentailsService.getSessionCredentialsProvider())
+            .thenReturn(new AWSStaticCredentialsProvider(new BasicSessionCredentials(null, null, null)));
         when(mockS3UploadClient.generatePresignedUrl(any())).thenReturn(new URL("https://ws.com/some-link"));
         
         UploadSession session = svc.createUpload(API_APP_ID, PARTICIPANT, uploadRequest);
@@ -474,8 +485,8 @@ public class UploadServiceTest {
         when(mockUploadDedupeDao.getDuplicate(eq(HEALTH_CODE), eq("md5-value"), any())).thenReturn(ORIGINAL_UPLOAD_ID);
         when(mockUploadDao.getUpload(ORIGINAL_UPLOAD_ID)).thenReturn(upload);
         when(mockUploadDao.createUpload(uploadRequest, TEST_APP_ID, HEALTH_CODE, ORIGINAL_UPLOAD_ID)).thenReturn(upload);
-        when(mockUploadCredentailsService.getSessionCredentials())
-                .thenReturn(new BasicSessionCredentials(null, null, null));
+        when(mockUploadCredentailsService.getSessionCredentialsProvider())
+                .thenReturn(new AWSStaticCredentialsProvider(new BasicSessionCredentials(null, null, null)));
         when(mockS3UploadClient.generatePresignedUrl(any())).thenReturn(new URL("https://ws.com/some-link"));
         
         UploadSession session = svc.createUpload(TEST_APP_ID, PARTICIPANT, uploadRequest);
@@ -525,7 +536,7 @@ public class UploadServiceTest {
     }
     
     @Test
-    public void pollUploadValidationStatusWhenComplete() throws Exception {
+    public void getUploadValidationStatusWhenComplete() throws Exception {
         UploadRequest uploadRequest = constructUploadRequest();
         DynamoUpload2 upload = new DynamoUpload2(uploadRequest, HEALTH_CODE);
         upload.setUploadId(ORIGINAL_UPLOAD_ID);
@@ -535,18 +546,48 @@ public class UploadServiceTest {
 
         when(mockUploadDao.getUpload(ORIGINAL_UPLOAD_ID)).thenReturn(upload);
         when(mockHealthDataService.getRecordById(RECORD_ID)).thenReturn(mockRecord);
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        when(mockUploadCompletionRegistry.register(ORIGINAL_UPLOAD_ID)).thenReturn(completion);
         
-        UploadValidationStatus result = svc.pollUploadValidationStatusUntilComplete(ORIGINAL_UPLOAD_ID);
+        UploadValidationStatus result = svc.getUploadValidationStatusWhenComplete(ORIGINAL_UPLOAD_ID).get();
         assertEquals(result.getId(), upload.getUploadId());
         assertEquals(result.getRecord(), mockRecord);
         assertEquals(result.getStatus(), SUCCEEDED);
         assertEquals(result.getMessageList().size(), 1);
         assertEquals(result.getMessageList().get(0), "One validation error");
+        
+        // Already complete, so it doesn't wait.
+        verify(mockUploadCompletionRegistry).unregister(ORIGINAL_UPLOAD_ID, completion);
+    }
+    
+    @Test
+    public void getUploadValidationStatusWhenCompleteInProgress() throws Exception {
+        UploadRequest uploadRequest = constructUploadRequest();
+        DynamoUpload2 upload = new DynamoUpload2(uploadRequest, HEALTH_CODE);
+        upload.setUploadId(ORIGINAL_UPLOAD_ID);
+        upload.setRecordId(RECORD_ID);
+        upload.setStatus(VALIDATION_IN_PROGRESS);
+
+        when(mockUploadDao.getUpload(ORIGINAL_UPLOAD_ID)).thenReturn(upload);
+        when(mockHealthDataService.getRecordById(RECORD_ID)).thenReturn(mockRecord);
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        when(mockUploadCompletionRegistry.register(ORIGINAL_UPLOAD_ID)).thenReturn(completion);
+        
+        CompletableFuture<UploadValidationStatus> future = svc.getUploadValidationStatusWhenComplete(
+                ORIGINAL_UPLOAD_ID);
+        assertFalse(future.isDone());
+        verify(mockUploadCompletionRegistry, never()).unregister(any(), any());
+
+        // The upload validation task signals the registry when it's done.
+        upload.setStatus(SUCCEEDED);
+        completion.complete(null);
+        assertEquals(future.get().getStatus(), SUCCEEDED);
+        verify(mockUploadCompletionRegistry).unregister(ORIGINAL_UPLOAD_ID, completion);
     }
     
     @Test(expectedExceptions = BridgeServiceException.class, 
             expectedExceptionsMessageRegExp = "Timeout polling validation status for upload anOriginalUploadId")
-    public void pollUploadValidationStatusInProgress() throws Exception {
+    public void getUploadValidationStatusAfterTimeoutInProgress() throws Exception {
         UploadRequest uploadRequest = constructUploadRequest();
         DynamoUpload2 upload = new DynamoUpload2(uploadRequest, HEALTH_CODE);
         upload.setUploadId(ORIGINAL_UPLOAD_ID);
@@ -557,8 +598,7 @@ public class UploadServiceTest {
         when(mockUploadDao.getUpload(ORIGINAL_UPLOAD_ID)).thenReturn(upload);
         when(mockHealthDataService.getRecordById(RECORD_ID)).thenReturn(mockRecord);
         
-        svc.setPollValidationStatusSleepMillis(10); // speed this up
-        svc.pollUploadValidationStatusUntilComplete(ORIGINAL_UPLOAD_ID);
+        svc.getUploadValidationStatusAfterTimeout(ORIGINAL_UPLOAD_ID);
     }
     
     @Test
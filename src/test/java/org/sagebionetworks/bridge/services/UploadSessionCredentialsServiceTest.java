@@ -0,0 +1,140 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.util.Date;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AWSSessionCredentials;
+import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClient;
+import com.amazonaws.services.securitytoken.model.Credentials;
+import com.amazonaws.services.securitytoken.model.GetSessionTokenRequest;
+import com.amazonaws.services.securitytoken.model.GetSessionTokenResult;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+public class UploadSessionCredentialsServiceTest extends Mockito {
+    private static final DateTime NOW = DateTime.parse("2020-05-01T10:00:00.000Z");
+
+    @Mock
+    private AWSSecurityTokenServiceClient mockTokenServiceClient;
+
+    private UploadSessionCredentialsService service;
+
+    @BeforeMethod
+    public void before() {
+        DateTimeUtils.setCurrentMillisFixed(NOW.getMillis());
+        MockitoAnnotations.initMocks(this);
+
+        // Credentials expire in 20 minutes.
+        when(mockTokenServiceClient.getSessionToken(any(GetSessionTokenRequest.class)))
+                .thenReturn(makeResult("key1", NOW.plusMinutes(20)))
+                .thenReturn(makeResult("key2", NOW.plusMinutes(30)));
+        service = new UploadSessionCredentialsService(mockTokenServiceClient);
+    }
+
+    @AfterMethod
+    public void after() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void getSessionCredentials() {
+        AWSSessionCredentials credentials = service.getSessionCredentials();
+        assertEquals(credentials.getAWSAccessKeyId(), "key1");
+        assertEquals(credentials.getAWSSecretKey(), "secret");
+        assertEquals(credentials.getSessionToken(), "token");
+
+        AWSCredentialsProvider provider = service.getSessionCredentialsProvider();
+        assertSame(provider.getCredentials(), credentials);
+        assertSame(service.getSessionCredentialsProvider(), provider);
+
+        verify(mockTokenServiceClient, times(1)).getSessionToken(any(GetSessionTokenRequest.class));
+    }
+
+    @Test
+    public void refreshNotNeeded() {
+        DateTimeUtils.setCurrentMillisFixed(NOW.plusMinutes(5).getMillis());
+        service.refreshIfNeeded();
+
+        assertEquals(service.getSessionCredentials().getAWSAccessKeyId(), "key1");
+        assertEquals(service.getRefreshCount(), 0L);
+        assertEquals(service.getCredentialsAgeMillis(), 5 * 60 * 1000L);
+    }
+
+    @Test
+    public void refreshAhead() {
+        AWSCredentialsProvider provider = service.getSessionCredentialsProvider();
+
+        // Within 10 minutes of expiring, the background refresh renews the credentials.
+        DateTimeUtils.setCurrentMillisFixed(NOW.plusMinutes(11).getMillis());
+        service.refreshIfNeeded();
+
+        assertEquals(service.getSessionCredentials().getAWSAccessKeyId(), "key2");
+        assertNotSame(service.getSessionCredentialsProvider(), provider);
+        assertEquals(service.getRefreshCount(), 1L);
+        assertEquals(service.getCredentialsAgeMillis(), 0L);
+        verify(mockTokenServiceClient, times(2)).getSessionToken(any(GetSessionTokenRequest.class));
+    }
+
+    @Test
+    public void refreshErrorKeepsCredentials() {
+        reset(mockTokenServiceClient);
+        when(mockTokenServiceClient.getSessionToken(any(GetSessionTokenRequest.class)))
+                .thenThrow(new RuntimeException("STS error"));
+
+        DateTimeUtils.setCurrentMillisFixed(NOW.plusMinutes(11).getMillis());
+        service.refreshIfNeeded();
+
+        assertEquals(service.getSessionCredentials().getAWSAccessKeyId(), "key1");
+        assertEquals(service.getRefreshCount(), 0L);
+        assertEquals(service.getRefreshFailureCount(), 1L);
+    }
+
+    @Test
+    public void callerRefreshesWhenBackgroundRefreshIsBehind() {
+        // Within 5 minutes of expiring, callers renew the credentials themselves.
+        DateTimeUtils.setCurrentMillisFixed(NOW.plusMinutes(16).getMillis());
+
+        assertEquals(service.getSessionCredentials().getAWSAccessKeyId(), "key2");
+        assertEquals(service.getRefreshCount(), 1L);
+    }
+
+    @Test
+    public void writeMetrics() {
+        // STS takes 250 ms to respond, on the same clock as the credentials' expiration.
+        reset(mockTokenServiceClient);
+        when(mockTokenServiceClient.getSessionToken(any(GetSessionTokenRequest.class))).thenAnswer(invocation -> {
+            DateTimeUtils.setCurrentMillisFixed(DateTimeUtils.currentTimeMillis() + 250L);
+            return makeResult("key2", NOW.plusMinutes(30));
+        });
+        DateTimeUtils.setCurrentMillisFixed(NOW.plusMinutes(11).getMillis());
+        service.refreshIfNeeded();
+        DateTimeUtils.setCurrentMillisFixed(NOW.plusMinutes(12).getMillis());
+
+        ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+        service.writeMetrics(node);
+        assertEquals(service.getMetricsName(), "uploadCredentials");
+        assertEquals(node.get("refreshes").longValue(), 1L);
+        assertEquals(node.get("refreshFailures").longValue(), 0L);
+        assertEquals(node.get("lastRefreshLatencyMillis").longValue(), 250L);
+        assertEquals(node.get("credentialsAgeMillis").longValue(), 60000L - 250L);
+    }
+
+    private static GetSessionTokenResult makeResult(String accessKeyId, DateTime expiration) {
+        Credentials credentials = new Credentials().withAccessKeyId(accessKeyId).withSecretAccessKey("secret")
+                .withSessionToken("token").withExpiration(new Date(expiration.getMillis()));
+        return new GetSessionTokenResult().withCredentials(credentials);
+    }
+}
@@ -5,6 +5,7 @@ import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -31,7 +32,9 @@ import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.Roles;
 import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.CacheKey;
 import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.ConsentRequiredException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
 import org.sagebionetworks.bridge.models.CriteriaContext;
@@ -47,9 +50,12 @@ import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.studies.Enrollment;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class UserAdminServiceTest {
     
@@ -105,6 +111,9 @@ public class UserAdminServiceTest {
     
     @Captor
     private ArgumentCaptor<Account> accountCaptor;
+    
+    @Captor
+    private ArgumentCaptor<Set<String>> stepsCaptor;
 
     @InjectMocks
     private UserAdminService service;
@@ -114,6 +123,7 @@ public class UserAdminServiceTest {
     @BeforeMethod
     public void before() {
         MockitoAnnotations.initMocks(this);
+        service.setParticipantPurgeExecutorService(MoreExecutors.newDirectExecutorService());
         
         // Make a user with multiple consent statuses, and just verify that we call the 
         // consent service that many times.
@@ -367,10 +377,67 @@ public class UserAdminServiceTest {
         verify(activityEventService, atLeastOnce()).deleteActivityEvents("studyB", "healthCode");
         verify(activityEventService, atLeastOnce()).deleteActivityEvents(null, "healthCode");
         verify(accountService).deleteAccount(accountId);
+        verify(cacheProvider).removeObject(CacheKey.participantPurgeProgress("userId"));
         
         assertEquals(account.getHealthCode(), "healthCode");
     }
     
+    @Test
+    public void deleteUserSavesProgressOnFailure() {
+        App app = TestUtils.getValidApp(UserAdminServiceTest.class);
+        AccountId accountId = AccountId.forId(app.getIdentifier(),  "userId");
+        
+        doReturn("userId").when(account).getId();
+        doReturn("healthCode").when(account).getHealthCode();
+        doReturn(ImmutableSet.of()).when(account).getEnrollments();
+        doReturn(account).when(accountService).getAccount(accountId);
+        doThrow(new BridgeServiceException("Throughput exceeded")).when(uploadService)
+                .deleteUploadsForHealthCode("healthCode");
+        
+        try {
+            service.deleteUser(app, "userId");
+            fail("Should have thrown exception");
+        } catch(BridgeServiceException e) {
+            assertEquals(e.getMessage(), "Throughput exceeded");
+        }
+        // The other steps still ran, and the account is not deleted.
+        verify(healthDataService).deleteRecordsForHealthCode("healthCode");
+        verify(scheduledActivityService).deleteActivitiesForUser("healthCode");
+        verify(activityEventService).deleteActivityEvents(null, "healthCode");
+        verify(accountService, never()).deleteAccount(any());
+        
+        verify(cacheProvider).setObject(eq(CacheKey.participantPurgeProgress("userId")), stepsCaptor.capture(),
+                eq(UserAdminService.PURGE_PROGRESS_EXPIRE_IN_SECONDS));
+        Set<String> completedSteps = stepsCaptor.getValue();
+        assertEquals(completedSteps, ImmutableSet.of(UserAdminService.HEALTH_DATA_STEP,
+                UserAdminService.HEALTH_DATA_EX3_STEP, UserAdminService.NOTIFICATION_REGISTRATIONS_STEP,
+                UserAdminService.SCHEDULED_ACTIVITIES_STEP, UserAdminService.ACTIVITY_EVENTS_STEP));
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Test
+    public void deleteUserResumesPurge() {
+        App app = TestUtils.getValidApp(UserAdminServiceTest.class);
+        AccountId accountId = AccountId.forId(app.getIdentifier(),  "userId");
+        
+        doReturn("userId").when(account).getId();
+        doReturn("healthCode").when(account).getHealthCode();
+        doReturn(ImmutableSet.of()).when(account).getEnrollments();
+        doReturn(account).when(accountService).getAccount(accountId);
+        when(cacheProvider.getObject(eq(CacheKey.participantPurgeProgress("userId")), any(TypeReference.class)))
+                .thenReturn(Sets.newHashSet(UserAdminService.HEALTH_DATA_STEP, UserAdminService.UPLOADS_STEP));
+        
+        service.deleteUser(app, "userId");
+        
+        // Completed steps are skipped
+        verify(healthDataService, never()).deleteRecordsForHealthCode(any());
+        verify(uploadService, never()).deleteUploadsForHealthCode(any());
+        verify(healthDataEx3Service).deleteRecordsForHealthCode("healthCode");
+        verify(scheduledActivityService).deleteActivitiesForUser("healthCode");
+        verify(accountService).deleteAccount(accountId);
+        verify(cacheProvider).removeObject(CacheKey.participantPurgeProgress("userId"));
+    }
+    
     @Test
     public void deleteUserNotFound() {
         App app = TestUtils.getValidApp(UserAdminServiceTest.class);
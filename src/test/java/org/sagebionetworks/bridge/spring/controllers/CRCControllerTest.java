@@ -17,6 +17,7 @@ import static org.sagebionetworks.bridge.TestConstants.TIMESTAMP;
 import static org.sagebionetworks.bridge.TestConstants.USER_STUDY_IDS;
 import static org.sagebionetworks.bridge.TestUtils.createJson;
 import static org.sagebionetworks.bridge.TestUtils.mockRequestBody;
+import static org.sagebionetworks.bridge.http.PartnerHttpClient.Destination.CUIMC;
 import static org.sagebionetworks.bridge.spring.controllers.CRCController.APPOINTMENT_REPORT;
 import static org.sagebionetworks.bridge.spring.controllers.CRCController.APP_ID;
 import static org.sagebionetworks.bridge.spring.controllers.CRCController.AccountStates.SHIP_TESTS_REQUESTED;
@@ -33,6 +34,7 @@ import static org.sagebionetworks.bridge.spring.controllers.CRCController.USER_I
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -89,6 +91,7 @@ import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.LimitExceededException;
 import org.sagebionetworks.bridge.exceptions.NotAuthenticatedException;
+import org.sagebionetworks.bridge.http.PartnerHttpClient;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.DateRangeResourceList;
 import org.sagebionetworks.bridge.models.StatusMessage;
@@ -299,6 +302,9 @@ public class CRCControllerTest extends Mockito {
     @Mock
     GBFOrderService mockGBFOrderService;
     
+    @Mock
+    PartnerHttpClient mockPartnerHttpClient;
+    
     @Captor
     ArgumentCaptor<SignIn> signInCaptor;
     
@@ -1271,6 +1277,16 @@ public class CRCControllerTest extends Mockito {
         assertEquals(patient.getTelecom().get(0).getSystem(), ContactPointSystem.SMS);
     }
     
+    @Test
+    public void postCallsPartnerHttpClient() throws Exception {
+        Account account = Account.create();
+        HttpResponse mockResponse = mock(HttpResponse.class);
+        when(mockPartnerHttpClient.execute(eq(CUIMC), any(), eq(true))).thenReturn(mockResponse);
+        
+        HttpResponse response = controller.post("http://testServer/location/_search", account, "id=\"foo\"");
+        assertSame(response, mockResponse);
+    }
+    
     @Test
     public void addLocationIOException() throws Exception {
         JsonNode node = BridgeObjectMapper.get().readTree("{}");
@@ -0,0 +1,96 @@
+package org.sagebionetworks.bridge.spring.controllers;
+
+import static org.sagebionetworks.bridge.Roles.ADMIN;
+import static org.sagebionetworks.bridge.Roles.SUPERADMIN;
+import static org.sagebionetworks.bridge.TestConstants.TEST_USER_ID;
+import static org.sagebionetworks.bridge.TestUtils.assertCrossOrigin;
+import static org.sagebionetworks.bridge.TestUtils.assertDelete;
+import static org.sagebionetworks.bridge.TestUtils.assertGet;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableSet;
+
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
+import org.sagebionetworks.bridge.models.StatusMessage;
+import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
+import org.sagebionetworks.bridge.models.accounts.UserSession;
+
+public class MetricsAdminControllerTest extends Mockito {
+
+    @Mock
+    private MetricsRegistry mockMetricsRegistry;
+
+    @InjectMocks
+    @Spy
+    private MetricsAdminController controller = new MetricsAdminController();
+
+    private UserSession session;
+
+    @BeforeMethod
+    private void before() {
+        MockitoAnnotations.initMocks(this);
+
+        session = new UserSession();
+        session.setParticipant(new StudyParticipant.Builder()
+                .withRoles(ImmutableSet.of(SUPERADMIN)).withId(TEST_USER_ID).build());
+        doAnswer(answer -> {
+            if (session.isInRole(SUPERADMIN)) {
+                return session;
+            }
+            throw new UnauthorizedException("Nope");
+        }).when(controller).getAuthenticatedSession(any());
+    }
+
+    @Test
+    public void verifyAnnotations() throws Exception {
+        assertCrossOrigin(MetricsAdminController.class);
+        assertGet(MetricsAdminController.class, "getMetricsSnapshot");
+        assertDelete(MetricsAdminController.class, "resetMetrics");
+    }
+
+    @Test
+    public void getMetricsSnapshot() {
+        ObjectNode snapshot = BridgeObjectMapper.get().createObjectNode();
+        when(mockMetricsRegistry.getSnapshot()).thenReturn(snapshot);
+
+        JsonNode result = controller.getMetricsSnapshot();
+        assertSame(result, snapshot);
+    }
+
+    @Test(expectedExceptions = UnauthorizedException.class)
+    public void getMetricsSnapshotRejectsAppAdmin() {
+        session.setParticipant(new StudyParticipant.Builder()
+                .withRoles(ImmutableSet.of(ADMIN)).withId(TEST_USER_ID).build());
+
+        controller.getMetricsSnapshot();
+    }
+
+    @Test
+    public void resetMetrics() {
+        StatusMessage result = controller.resetMetrics();
+        assertEquals(result.getMessage(), "Metrics reset.");
+
+        verify(mockMetricsRegistry).reset();
+    }
+
+    @Test(expectedExceptions = UnauthorizedException.class)
+    public void resetMetricsRejectsAppAdmin() {
+        session.setParticipant(new StudyParticipant.Builder()
+                .withRoles(ImmutableSet.of(ADMIN)).withId(TEST_USER_ID).build());
+
+        controller.resetMetrics();
+    }
+}
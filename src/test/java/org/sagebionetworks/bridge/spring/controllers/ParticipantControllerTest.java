@@ -111,6 +111,8 @@ import org.sagebionetworks.bridge.models.activities.ActivityEvent;
 import org.sagebionetworks.bridge.models.activities.CustomActivityEventRequest;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.apps.SmsTemplate;
+import org.sagebionetworks.bridge.models.notifications.BulkNotificationRequest;
+import org.sagebionetworks.bridge.models.notifications.BulkNotificationResult;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
 import org.sagebionetworks.bridge.models.schedules.ActivityType;
@@ -323,6 +325,7 @@ public class ParticipantControllerTest extends Mockito {
         assertGet(ParticipantController.class, "getUploads");
         assertGet(ParticipantController.class, "getNotificationRegistrations");
         assertAccept(ParticipantController.class, "sendNotification");
+        assertPost(ParticipantController.class, "sendNotificationToParticipants");
         assertGet(ParticipantController.class, "getActivityEvents");
         assertAccept(ParticipantController.class, "sendSmsMessageForWorker");
         assertPost(ParticipantController.class, "createCustomActivityEvent");
@@ -1178,6 +1181,32 @@ public class ParticipantControllerTest extends Mockito {
                 "Message has been sent to external notification service. Some registrations returned errors: 123, 456.");
     }
 
+    @Test
+    public void sendNotificationToParticipants() throws Exception {
+        BulkNotificationResult bulkResult = new BulkNotificationResult(1, 0, 1, 0, ImmutableSet.of(), 10L, 10L, 15L,
+                ImmutableSet.of());
+        when(mockParticipantService.sendNotificationToParticipants(eq(app), eq(ImmutableSet.of(TEST_USER_ID)),
+                any())).thenReturn(bulkResult);
+        mockRequestBody(mockRequest, new BulkNotificationRequest(ImmutableSet.of(TEST_USER_ID),
+                NOTIFICATION_MESSAGE));
+
+        BulkNotificationResult result = controller.sendNotificationToParticipants();
+        assertSame(result, bulkResult);
+
+        verify(mockParticipantService).sendNotificationToParticipants(eq(app), eq(ImmutableSet.of(TEST_USER_ID)),
+                messageCaptor.capture());
+        NotificationMessage captured = messageCaptor.getValue();
+        assertEquals(captured.getSubject(), "a subject");
+        assertEquals(captured.getMessage(), "a message");
+    }
+
+    @Test(expectedExceptions = BadRequestException.class, expectedExceptionsMessageRegExp = "message is required")
+    public void sendNotificationToParticipantsNoMessage() throws Exception {
+        mockRequestBody(mockRequest, createJson("{'userIds':['" + TEST_USER_ID + "']}"));
+
+        controller.sendNotificationToParticipants();
+    }
+
     @SuppressWarnings("deprecation")
     @Test(expectedExceptions = UnauthorizedException.class)
     public void getParticipantsForWorkerOnly() throws Exception {
@@ -11,12 +11,16 @@ import static org.sagebionetworks.bridge.TestConstants.TEST_USER_ID;
 import static org.sagebionetworks.bridge.TestUtils.createJson;
 import static org.sagebionetworks.bridge.TestUtils.mockRequestBody;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.fail;
 
 import java.net.URL;
 import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -31,6 +35,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -137,7 +142,8 @@ public class UploadControllerTest extends Mockito {
                 .withStatus(UploadStatus.VALIDATION_FAILED).build();
 
         doReturn(status).when(mockUploadService).getUploadValidationStatus(UPLOAD_ID);
-        doReturn(status).when(mockUploadService).pollUploadValidationStatusUntilComplete(UPLOAD_ID);
+        doReturn(CompletableFuture.completedFuture(status)).when(mockUploadService)
+                .getUploadValidationStatusWhenComplete(UPLOAD_ID);
 
         // mock metrics
         doReturn(mockMetrics).when(controller).getMetrics();
@@ -182,7 +188,7 @@ public class UploadControllerTest extends Mockito {
         doReturn(mockWorkerSession).when(controller).getAuthenticatedSession();
 
         // execute and validate
-        String result = controller.uploadComplete(UPLOAD_ID, false, false);
+        String result = (String) controller.uploadComplete(UPLOAD_ID, false, false).getResult();
         validateValidationStatus(result);
 
         // verify back-end calls
@@ -192,7 +198,7 @@ public class UploadControllerTest extends Mockito {
         assertEquals(upload.getHealthCode(), "consented-user-health-code");
 
         verify(mockUploadService).getUploadValidationStatus(UPLOAD_ID);
-        verify(mockUploadService, never()).pollUploadValidationStatusUntilComplete(any());
+        verify(mockUploadService, never()).getUploadValidationStatusWhenComplete(any());
     }
     
     @Test
@@ -204,7 +210,7 @@ public class UploadControllerTest extends Mockito {
         doReturn(TEST_APP_ID).when(mockHealthCodeDao).getAppId(HEALTH_CODE);
 
         // execute and validate
-        String result = controller.uploadComplete(UPLOAD_ID, false, false);
+        String result = (String) controller.uploadComplete(UPLOAD_ID, false, false).getResult();
         validateValidationStatus(result);
 
         // verify back-end calls
@@ -215,7 +221,7 @@ public class UploadControllerTest extends Mockito {
         assertEquals(upload.getHealthCode(), HEALTH_CODE);
 
         verify(mockUploadService).getUploadValidationStatus(UPLOAD_ID);
-        verify(mockUploadService, never()).pollUploadValidationStatusUntilComplete(any());
+        verify(mockUploadService, never()).getUploadValidationStatusWhenComplete(any());
     }
 
     @Test
@@ -225,7 +231,7 @@ public class UploadControllerTest extends Mockito {
         doReturn(mockConsentedUserSession).when(controller).getAuthenticatedAndConsentedSession();
 
         // execute and validate
-        String result = controller.uploadComplete(UPLOAD_ID, false, false);
+        String result = (String) controller.uploadComplete(UPLOAD_ID, false, false).getResult();
         validateValidationStatus(result);
 
         // verify back-end calls
@@ -235,7 +241,7 @@ public class UploadControllerTest extends Mockito {
         assertEquals("consented-user-health-code", upload.getHealthCode());
 
         verify(mockUploadService).getUploadValidationStatus(UPLOAD_ID);
-        verify(mockUploadService, never()).pollUploadValidationStatusUntilComplete(any());
+        verify(mockUploadService, never()).getUploadValidationStatusWhenComplete(any());
     }
     
     @Test
@@ -258,7 +264,7 @@ public class UploadControllerTest extends Mockito {
         // verify back-end calls
         verify(mockUploadService, never()).uploadComplete(any(), any(), any(), anyBoolean());
         verify(mockUploadService, never()).getUploadValidationStatus(any());
-        verify(mockUploadService, never()).pollUploadValidationStatusUntilComplete(any());
+        verify(mockUploadService, never()).getUploadValidationStatusWhenComplete(any());
     }
 
     @Test
@@ -268,16 +274,48 @@ public class UploadControllerTest extends Mockito {
         doReturn(mockConsentedUserSession).when(controller).getAuthenticatedAndConsentedSession();
 
         // execute and validate
-        String result = controller.uploadComplete(UPLOAD_ID, true, false);
+        String result = (String) controller.uploadComplete(UPLOAD_ID, true, false).getResult();
         validateValidationStatus(result);
 
         // verify back-end calls
         verify(mockUploadService).uploadComplete(eq("consented-user-app-id"),
                 eq(UploadCompletionClient.APP), any(), eq(false));
-        verify(mockUploadService).pollUploadValidationStatusUntilComplete(UPLOAD_ID);
+        verify(mockUploadService).getUploadValidationStatusWhenComplete(UPLOAD_ID);
         verify(mockUploadService, never()).getUploadValidationStatus(any());
     }
 
+    @Test
+    public void uploadCompleteSynchronousModeWaitsForValidation() throws Exception {
+        doReturn(mockConsentedUserSession).when(controller).getAuthenticatedSession();
+        doReturn(mockConsentedUserSession).when(controller).getAuthenticatedAndConsentedSession();
+
+        CompletableFuture<UploadValidationStatus> future = new CompletableFuture<>();
+        doReturn(future).when(mockUploadService).getUploadValidationStatusWhenComplete(UPLOAD_ID);
+
+        DeferredResult<String> result = controller.uploadComplete(UPLOAD_ID, true, false);
+        assertFalse(result.hasResult());
+
+        // Validation completes later, on another thread.
+        future.complete(mockUploadService.getUploadValidationStatus(UPLOAD_ID));
+        validateValidationStatus((String) result.getResult());
+    }
+
+    @Test
+    public void uploadCompleteSynchronousModeError() throws Exception {
+        doReturn(mockConsentedUserSession).when(controller).getAuthenticatedSession();
+        doReturn(mockConsentedUserSession).when(controller).getAuthenticatedAndConsentedSession();
+
+        EntityNotFoundException ex = new EntityNotFoundException(Upload.class);
+        CompletableFuture<UploadValidationStatus> future = new CompletableFuture<>();
+        doReturn(future).when(mockUploadService).getUploadValidationStatusWhenComplete(UPLOAD_ID);
+
+        DeferredResult<String> result = controller.uploadComplete(UPLOAD_ID, true, false);
+        future.completeExceptionally(new CompletionException(ex));
+
+        // The exception is unwrapped so that the exception handler reports it as usual.
+        assertSame(result.getResult(), ex);
+    }
+
     @Test
     public void uploadCompleteRedriveFlag() throws Exception {
         // setup controller
@@ -285,14 +323,14 @@ public class UploadControllerTest extends Mockito {
         doReturn(mockConsentedUserSession).when(controller).getAuthenticatedAndConsentedSession();
 
         // execute and validate
-        String result = controller.uploadComplete(UPLOAD_ID, false, true);
+        String result = (String) controller.uploadComplete(UPLOAD_ID, false, true).getResult();
         validateValidationStatus(result);
 
         // verify back-end calls
         verify(mockUploadService).uploadComplete(eq("consented-user-app-id"),
                 eq(UploadCompletionClient.APP), any(), eq(true));
         verify(mockUploadService).getUploadValidationStatus(UPLOAD_ID);
-        verify(mockUploadService, never()).pollUploadValidationStatusUntilComplete(any());
+        verify(mockUploadService, never()).getUploadValidationStatusWhenComplete(any());
     }
 
     @Test
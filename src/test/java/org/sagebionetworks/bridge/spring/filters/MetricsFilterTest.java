@@ -8,6 +8,9 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.FilterChain;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -15,6 +18,7 @@ import javax.servlet.http.HttpServletResponse;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import org.joda.time.DateTimeUtils;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -23,10 +27,12 @@ import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
+import org.springframework.web.servlet.HandlerMapping;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.metrics.MetricsRegistry;
 import org.sagebionetworks.bridge.models.Metrics;
 
 public class MetricsFilterTest extends Mockito {
@@ -40,6 +46,9 @@ public class MetricsFilterTest extends Mockito {
     @Mock
     private FilterChain mockFilterChain;
     
+    @Mock
+    private MetricsRegistry mockMetricsRegistry;
+    
     @InjectMocks
     private MetricsFilter filter = new MetricsFilter();
 
@@ -90,6 +99,29 @@ public class MetricsFilterTest extends Mockito {
         assertFalse(paramNode.has("email"));
 
         verify(mockFilterChain).doFilter(mockRequest, mockResponse);
+        verify(mockMetricsRegistry).recordRequest("GET unmatched", 201, metrics);
+    }
+
+    @Test
+    public void metricsRecordedUnderRoutePattern() throws Exception {
+        when(mockRequest.getMethod()).thenReturn("POST");
+        when(mockRequest.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE))
+                .thenReturn("/v3/participants/{userId}");
+        when(mockResponse.getStatus()).thenReturn(200);
+
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        Metrics metrics = RequestContext.get().getMetrics();
+        verify(mockMetricsRegistry).recordRequest("POST /v3/participants/{userId}", 200, metrics);
+    }
+
+    @Test
+    public void passthroughRequestNotRecorded() throws Exception {
+        when(mockResponse.getHeader(MetricsFilter.X_PASSTHROUGH)).thenReturn("true");
+
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verify(mockMetricsRegistry, never()).recordRequest(any(), anyInt(), any());
     }
 
     @Test
@@ -123,4 +155,28 @@ public class MetricsFilterTest extends Mockito {
         
         assertEquals("5.6.7.8", node.get("remote_address").textValue());
     }
+
+    @Test
+    public void metricsForAsyncRequestRecordedOnCompletion() throws Exception {
+        AsyncContext mockAsyncContext = mock(AsyncContext.class);
+        when(mockRequest.isAsyncStarted()).thenReturn(true);
+        when(mockRequest.getAsyncContext()).thenReturn(mockAsyncContext);
+        when(mockResponse.getStatus()).thenReturn(200);
+
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        Metrics metrics = RequestContext.get().getMetrics();
+        assertFalse(metrics.getJson().has("status"));
+        assertFalse(metrics.getJson().has("end"));
+        verify(mockMetricsRegistry, never()).recordRequest(any(), anyInt(), any());
+
+        ArgumentCaptor<AsyncListener> listenerCaptor = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(mockAsyncContext).addListener(listenerCaptor.capture());
+        listenerCaptor.getValue().onComplete(new AsyncEvent(mockAsyncContext));
+
+        JsonNode node = metrics.getJson();
+        assertEquals(200, node.get("status").intValue());
+        assertEquals(TIMESTAMP.toString(), node.get("end").textValue());
+        verify(mockMetricsRegistry).recordRequest(any(), eq(200), eq(metrics));
+    }
 }
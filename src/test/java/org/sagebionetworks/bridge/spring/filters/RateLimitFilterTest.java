@@ -0,0 +1,181 @@
+package org.sagebionetworks.bridge.spring.filters;
+
+import static org.sagebionetworks.bridge.BridgeConstants.X_FORWARDED_FOR_HEADER;
+import static org.sagebionetworks.bridge.spring.filters.RateLimitFilter.RETRY_AFTER_HEADER;
+import static org.sagebionetworks.bridge.spring.filters.RateLimitFilter.SC_TOO_MANY_REQUESTS;
+import static org.sagebionetworks.bridge.spring.filters.RateLimitFilter.TOO_MANY_REQUESTS_PAYLOAD;
+import static org.sagebionetworks.bridge.spring.util.HttpUtil.CONTENT_TYPE_HEADER;
+import static org.sagebionetworks.bridge.spring.util.HttpUtil.CONTENT_TYPE_JSON;
+import static org.testng.Assert.assertEquals;
+
+import java.io.PrintWriter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.RateLimiter;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+
+public class RateLimitFilterTest extends Mockito {
+    private static final String REMOTE_ADDRESS = "1.2.3.4";
+
+    @Mock
+    private HttpServletRequest mockRequest;
+
+    @Mock
+    private HttpServletResponse mockResponse;
+
+    @Mock
+    private FilterChain mockFilterChain;
+
+    @Mock
+    private PrintWriter mockWriter;
+
+    @Mock
+    private RateLimiter mockRateLimiter;
+
+    @Mock
+    private BridgeConfig mockBridgeConfig;
+
+    private RateLimitFilter filter;
+
+    @BeforeMethod
+    public void before() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(mockResponse.getWriter()).thenReturn(mockWriter);
+        when(mockRequest.getRemoteAddr()).thenReturn(REMOTE_ADDRESS);
+
+        // Sign in and uploads are limited, reports are not.
+        when(mockBridgeConfig.getInt("ratelimit.signin.requests")).thenReturn(10);
+        when(mockBridgeConfig.getInt("ratelimit.signin.window.seconds")).thenReturn(60);
+        when(mockBridgeConfig.getInt("ratelimit.upload.requests")).thenReturn(100);
+        when(mockBridgeConfig.getInt("ratelimit.upload.window.seconds")).thenReturn(300);
+        when(mockBridgeConfig.getInt("ratelimit.reports.requests")).thenReturn(0);
+        when(mockBridgeConfig.getInt("ratelimit.reports.window.seconds")).thenReturn(60);
+        when(mockBridgeConfig.getInt("ratelimit.trusted.proxy.count")).thenReturn(1);
+
+        filter = new RateLimitFilter();
+        filter.setRateLimiter(mockRateLimiter);
+        filter.setBridgeConfig(mockBridgeConfig);
+    }
+
+    @Test
+    public void allowsRequestWithinLimit() throws Exception {
+        mockRequest("POST", "/v3/auth/signIn");
+
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verify(mockRateLimiter).getRetryAfterSeconds(CacheKey.rateLimit("signin", REMOTE_ADDRESS), 10, 60);
+        verify(mockFilterChain).doFilter(mockRequest, mockResponse);
+        verify(mockResponse, never()).setStatus(anyInt());
+    }
+
+    @Test
+    public void rejectsRequestOverLimit() throws Exception {
+        mockRequest("POST", "/v3/uploads");
+        when(mockRateLimiter.getRetryAfterSeconds(CacheKey.rateLimit("upload", REMOTE_ADDRESS), 100, 300))
+                .thenReturn(42);
+
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verify(mockResponse).setStatus(SC_TOO_MANY_REQUESTS);
+        verify(mockResponse).setHeader(RETRY_AFTER_HEADER, "42");
+        verify(mockResponse).setHeader(CONTENT_TYPE_HEADER, CONTENT_TYPE_JSON);
+        verify(mockWriter).write(TOO_MANY_REQUESTS_PAYLOAD);
+        verify(mockFilterChain, never()).doFilter(any(), any());
+    }
+
+    @Test
+    public void usesForwardedForAddressAddedByLoadBalancer() throws Exception {
+        mockRequest("POST", "/v4/auth/signIn");
+        when(mockRequest.getHeader(X_FORWARDED_FOR_HEADER)).thenReturn("5.6.7.8");
+
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verify(mockRateLimiter).getRetryAfterSeconds(CacheKey.rateLimit("signin", "5.6.7.8"), 10, 60);
+    }
+
+    @Test
+    public void spoofedForwardedForAddressIgnored() throws Exception {
+        // The client sends its own X-Forwarded-For header, and the load balancer appends the client's real address.
+        mockRequest("POST", "/v4/auth/signIn");
+        when(mockRequest.getHeader(X_FORWARDED_FOR_HEADER)).thenReturn("9.9.9.9, 8.8.8.8 , 5.6.7.8");
+
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verify(mockRateLimiter).getRetryAfterSeconds(CacheKey.rateLimit("signin", "5.6.7.8"), 10, 60);
+    }
+
+    @Test
+    public void usesForwardedForAddressAtTrustedProxyDepth() throws Exception {
+        when(mockBridgeConfig.getInt("ratelimit.trusted.proxy.count")).thenReturn(2);
+        filter.setBridgeConfig(mockBridgeConfig);
+
+        // The client's address, then the address of the first proxy, appended by the second.
+        assertEquals(getRemoteAddress("9.9.9.9, 5.6.7.8, 10.0.0.1"), "5.6.7.8");
+        // Fewer entries than trusted proxies.
+        assertEquals(getRemoteAddress("5.6.7.8"), "5.6.7.8");
+    }
+
+    @Test
+    public void usesConnectionAddressWithoutForwardedFor() throws Exception {
+        assertEquals(getRemoteAddress(null), REMOTE_ADDRESS);
+        assertEquals(getRemoteAddress("  "), REMOTE_ADDRESS);
+    }
+
+    @Test
+    public void usesConnectionAddressWithNoTrustedProxies() throws Exception {
+        when(mockBridgeConfig.getInt("ratelimit.trusted.proxy.count")).thenReturn(0);
+        filter.setBridgeConfig(mockBridgeConfig);
+
+        assertEquals(getRemoteAddress("9.9.9.9"), REMOTE_ADDRESS);
+    }
+
+    @Test
+    public void signOutNotLimited() throws Exception {
+        mockRequest("POST", "/v3/auth/signOut");
+
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verifyZeroInteractions(mockRateLimiter);
+        verify(mockFilterChain).doFilter(mockRequest, mockResponse);
+    }
+
+    @Test
+    public void disabledClassNotLimited() throws Exception {
+        mockRequest("GET", "/v3/participants/self/reports/foo");
+
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verifyZeroInteractions(mockRateLimiter);
+        verify(mockFilterChain).doFilter(mockRequest, mockResponse);
+    }
+
+    @Test
+    public void otherEndpointsNotLimited() throws Exception {
+        mockRequest("GET", "/v3/uploads/upload-id");
+
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verifyZeroInteractions(mockRateLimiter);
+        verify(mockFilterChain).doFilter(mockRequest, mockResponse);
+    }
+
+    private String getRemoteAddress(String forwardedFor) {
+        when(mockRequest.getHeader(X_FORWARDED_FOR_HEADER)).thenReturn(forwardedFor);
+        return filter.getRemoteAddress(mockRequest);
+    }
+
+    private void mockRequest(String method, String path) {
+        when(mockRequest.getMethod()).thenReturn(method);
+        when(mockRequest.getServletPath()).thenReturn(path);
+    }
+}
@@ -14,6 +14,7 @@ import org.testng.annotations.Test;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.time.DateUtils;
 import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolderImpl;
+import org.sagebionetworks.bridge.models.schedules.SchemaReference;
 import org.sagebionetworks.bridge.models.surveys.Survey;
 import org.sagebionetworks.bridge.models.upload.UploadSchema;
 import org.sagebionetworks.bridge.services.SurveyService;
@@ -35,7 +36,7 @@ public class GenericUploadFormatHandlerGetSchemaTest {
     @BeforeMethod
     public void setup() {
         UploadSchemaService mockSchemaService = mock(UploadSchemaService.class);
-        when(mockSchemaService.getUploadSchemaByIdAndRevNoThrow(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV)).thenReturn(
+        when(mockSchemaService.getUploadSchemaByIdAndRevCached(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV)).thenReturn(
                 DUMMY_SCHEMA);
 
         mockSurveyService = mock(SurveyService.class);
@@ -51,9 +52,9 @@ public class GenericUploadFormatHandlerGetSchemaTest {
         Survey survey = Survey.create();
         survey.setIdentifier(SCHEMA_ID);
         survey.setSchemaRevision(SCHEMA_REV);
-        when(mockSurveyService.getSurvey(TEST_APP_ID,
-                new GuidCreatedOnVersionHolderImpl(SURVEY_GUID, SURVEY_CREATED_ON_MILLIS), false, true))
-                        .thenReturn(survey);
+        when(mockSurveyService.getSurveySchemaReference(TEST_APP_ID,
+                new GuidCreatedOnVersionHolderImpl(SURVEY_GUID, SURVEY_CREATED_ON_MILLIS)))
+                        .thenReturn(new SchemaReference(survey.getIdentifier(), survey.getSchemaRevision()));
 
         // make info.json
         ObjectNode infoJsonNode = BridgeObjectMapper.get().createObjectNode();
@@ -72,9 +73,9 @@ public class GenericUploadFormatHandlerGetSchemaTest {
         Survey survey = Survey.create();
         survey.setIdentifier(SCHEMA_ID);
         survey.setSchemaRevision(null);
-        when(mockSurveyService.getSurvey(TEST_APP_ID,
-                new GuidCreatedOnVersionHolderImpl(SURVEY_GUID, SURVEY_CREATED_ON_MILLIS), false, true))
-                        .thenReturn(survey);
+        when(mockSurveyService.getSurveySchemaReference(TEST_APP_ID,
+                new GuidCreatedOnVersionHolderImpl(SURVEY_GUID, SURVEY_CREATED_ON_MILLIS)))
+                        .thenReturn(new SchemaReference(survey.getIdentifier(), survey.getSchemaRevision()));
 
         // make info.json
         ObjectNode infoJsonNode = BridgeObjectMapper.get().createObjectNode();
@@ -92,9 +93,9 @@ public class GenericUploadFormatHandlerGetSchemaTest {
         Survey survey = Survey.create();
         survey.setIdentifier("missing-schema");
         survey.setSchemaRevision(SCHEMA_REV);
-        when(mockSurveyService.getSurvey(TEST_APP_ID,
-                new GuidCreatedOnVersionHolderImpl(SURVEY_GUID, SURVEY_CREATED_ON_MILLIS), false, true))
-                .thenReturn(survey);
+        when(mockSurveyService.getSurveySchemaReference(TEST_APP_ID,
+                new GuidCreatedOnVersionHolderImpl(SURVEY_GUID, SURVEY_CREATED_ON_MILLIS)))
+                        .thenReturn(new SchemaReference(survey.getIdentifier(), survey.getSchemaRevision()));
 
         // Make info.json.
         ObjectNode infoJsonNode = BridgeObjectMapper.get().createObjectNode();
@@ -455,7 +455,7 @@ public class GenericUploadFormatHandlerTest {
         schema.setRevision(SCHEMA_REV);
         schema.setFieldDefinitions(ImmutableList.copyOf(fieldDefVarargs));
 
-        when(mockSchemaService.getUploadSchemaByIdAndRevNoThrow(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV)).thenReturn(schema);
+        when(mockSchemaService.getUploadSchemaByIdAndRevCached(TEST_APP_ID, SCHEMA_ID, SCHEMA_REV)).thenReturn(schema);
     }
 
     // Makes a realistic info.json for the test.
@@ -17,6 +17,7 @@ import org.testng.annotations.Test;
 import org.sagebionetworks.bridge.dynamodb.DynamoSurvey;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolderImpl;
+import org.sagebionetworks.bridge.models.schedules.SchemaReference;
 import org.sagebionetworks.bridge.models.upload.UploadSchema;
 import org.sagebionetworks.bridge.services.SurveyService;
 import org.sagebionetworks.bridge.services.UploadSchemaService;
@@ -37,14 +38,14 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         survey.setSchemaRevision(4);
 
         SurveyService mockSurveyService = mock(SurveyService.class);
-        when(mockSurveyService.getSurvey(eq(TEST_APP_ID),
-                eq(new GuidCreatedOnVersionHolderImpl("test-guid", TEST_SURVEY_CREATED_ON_MILLIS)), eq(false),
-                eq(true))).thenReturn(survey);
+        when(mockSurveyService.getSurveySchemaReference(eq(TEST_APP_ID),
+                eq(new GuidCreatedOnVersionHolderImpl("test-guid", TEST_SURVEY_CREATED_ON_MILLIS)))).thenReturn(
+                        new SchemaReference(survey.getIdentifier(), survey.getSchemaRevision()));
 
         // mock upload schema service
         UploadSchema dummySchema = UploadSchema.create();
         UploadSchemaService mockSchemaSvc = mock(UploadSchemaService.class);
-        when(mockSchemaSvc.getUploadSchemaByIdAndRevNoThrow(TEST_APP_ID, "test-survey", 4)).thenReturn(
+        when(mockSchemaSvc.getUploadSchemaByIdAndRevCached(TEST_APP_ID, "test-survey", 4)).thenReturn(
                 dummySchema);
 
         // set up test handler
@@ -70,9 +71,9 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         survey.setSchemaRevision(4);
 
         SurveyService mockSurveyService = mock(SurveyService.class);
-        when(mockSurveyService.getSurvey(eq(TEST_APP_ID),
-                eq(new GuidCreatedOnVersionHolderImpl("test-guid", TEST_SURVEY_CREATED_ON_MILLIS)), eq(false),
-                eq(true))).thenReturn(survey);
+        when(mockSurveyService.getSurveySchemaReference(eq(TEST_APP_ID),
+                eq(new GuidCreatedOnVersionHolderImpl("test-guid", TEST_SURVEY_CREATED_ON_MILLIS)))).thenReturn(
+                        new SchemaReference(survey.getIdentifier(), survey.getSchemaRevision()));
 
         // set up test handler
         IosSchemaValidationHandler2 handler = new IosSchemaValidationHandler2();
@@ -96,9 +97,9 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         survey.setIdentifier("test-survey");
 
         SurveyService mockSurveyService = mock(SurveyService.class);
-        when(mockSurveyService.getSurvey(eq(TEST_APP_ID),
-                eq(new GuidCreatedOnVersionHolderImpl("test-guid", TEST_SURVEY_CREATED_ON_MILLIS)), eq(false),
-                eq(true))).thenReturn(survey);
+        when(mockSurveyService.getSurveySchemaReference(eq(TEST_APP_ID),
+                eq(new GuidCreatedOnVersionHolderImpl("test-guid", TEST_SURVEY_CREATED_ON_MILLIS)))).thenReturn(
+                        new SchemaReference(survey.getIdentifier(), survey.getSchemaRevision()));
 
         // set up test handler
         IosSchemaValidationHandler2 handler = new IosSchemaValidationHandler2();
@@ -123,9 +124,9 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         survey.setSchemaRevision(4);
 
         SurveyService mockSurveyService = mock(SurveyService.class);
-        when(mockSurveyService.getSurvey(eq(TEST_APP_ID),
-                eq(new GuidCreatedOnVersionHolderImpl("test-guid", TEST_SURVEY_CREATED_ON_MILLIS)), eq(false),
-                eq(true))).thenReturn(survey);
+        when(mockSurveyService.getSurveySchemaReference(eq(TEST_APP_ID),
+                eq(new GuidCreatedOnVersionHolderImpl("test-guid", TEST_SURVEY_CREATED_ON_MILLIS)))).thenReturn(
+                        new SchemaReference(survey.getIdentifier(), survey.getSchemaRevision()));
 
         // Set up test handler
         IosSchemaValidationHandler2 handler = new IosSchemaValidationHandler2();
@@ -148,7 +149,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         // mock upload schema service
         UploadSchema dummySchema = UploadSchema.create();
         UploadSchemaService mockSchemaSvc = mock(UploadSchemaService.class);
-        when(mockSchemaSvc.getUploadSchemaByIdAndRevNoThrow(TEST_APP_ID, "test-schema", 1)).thenReturn(
+        when(mockSchemaSvc.getUploadSchemaByIdAndRevCached(TEST_APP_ID, "test-schema", 1)).thenReturn(
                 dummySchema);
 
         // set up test handler
@@ -170,7 +171,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         // mock upload schema service
         UploadSchema dummySchema = UploadSchema.create();
         UploadSchemaService mockSchemaSvc = mock(UploadSchemaService.class);
-        when(mockSchemaSvc.getUploadSchemaByIdAndRevNoThrow(TEST_APP_ID, "schema-rev-test", 2)).thenReturn(
+        when(mockSchemaSvc.getUploadSchemaByIdAndRevCached(TEST_APP_ID, "schema-rev-test", 2)).thenReturn(
                 dummySchema);
 
         // set up test handler
@@ -192,7 +193,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         // mock upload schema service
         UploadSchema dummySchema = UploadSchema.create();
         UploadSchemaService mockSchemaSvc = mock(UploadSchemaService.class);
-        when(mockSchemaSvc.getUploadSchemaByIdAndRevNoThrow(TEST_APP_ID, "schema-rev-test", 3))
+        when(mockSchemaSvc.getUploadSchemaByIdAndRevCached(TEST_APP_ID, "schema-rev-test", 3))
                 .thenReturn(dummySchema);
 
         // set up test handler
@@ -215,7 +216,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         // mock upload schema service
         UploadSchema dummySchema = UploadSchema.create();
         UploadSchemaService mockSchemaSvc = mock(UploadSchemaService.class);
-        when(mockSchemaSvc.getUploadSchemaByIdAndRevNoThrow(TEST_APP_ID, "test-schema", 1)).thenReturn(
+        when(mockSchemaSvc.getUploadSchemaByIdAndRevCached(TEST_APP_ID, "test-schema", 1)).thenReturn(
                 dummySchema);
 
         // set up test handler
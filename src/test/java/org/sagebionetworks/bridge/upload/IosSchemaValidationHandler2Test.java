@@ -132,9 +132,9 @@ public class IosSchemaValidationHandler2Test {
 
         // mock upload schema service
         UploadSchemaService mockSchemaService = mock(UploadSchemaService.class);
-        when(mockSchemaService.getUploadSchemaByIdAndRevNoThrow(TEST_APP_ID, "test-survey", 1))
+        when(mockSchemaService.getUploadSchemaByIdAndRevCached(TEST_APP_ID, "test-survey", 1))
                 .thenReturn(surveySchema);
-        when(mockSchemaService.getUploadSchemaByIdAndRevNoThrow(TEST_APP_ID, "non-survey", 1))
+        when(mockSchemaService.getUploadSchemaByIdAndRevCached(TEST_APP_ID, "non-survey", 1))
                 .thenReturn(nonSurveySchema);
 
         // mock upload file helper
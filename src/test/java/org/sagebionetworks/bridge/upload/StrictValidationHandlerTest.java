@@ -70,7 +70,7 @@ public class StrictValidationHandlerTest {
 
         // mock schema service
         UploadSchemaService mockSchemaService = mock(UploadSchemaService.class);
-        when(mockSchemaService.getUploadSchemaByIdAndRev(TEST_APP_ID, "test-schema", 1)).thenReturn(
+        when(mockSchemaService.getUploadSchemaByIdAndRevCached(TEST_APP_ID, "test-schema", 1)).thenReturn(
                 testSchema);
         handler.setUploadSchemaService(mockSchemaService);
 
@@ -0,0 +1,103 @@
+package org.sagebionetworks.bridge.upload;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+public class UploadCompletionRegistryTest {
+    private static final String UPLOAD_ID = "test-upload";
+    private static final String OTHER_UPLOAD_ID = "other-upload";
+
+    @Mock
+    private JedisPool mockJedisPool;
+
+    @Mock
+    private Jedis mockJedis;
+
+    private UploadCompletionRegistry registry;
+
+    @BeforeMethod
+    public void before() {
+        MockitoAnnotations.initMocks(this);
+        when(mockJedisPool.getResource()).thenReturn(mockJedis);
+
+        // Don't start the subscriber, since there's no Redis to subscribe to.
+        registry = new UploadCompletionRegistry();
+        registry.setJedisPool(mockJedisPool);
+    }
+
+    @Test
+    public void completeSignalsAllWaiters() {
+        CompletableFuture<Void> future1 = registry.register(UPLOAD_ID);
+        CompletableFuture<Void> future2 = registry.register(UPLOAD_ID);
+        CompletableFuture<Void> otherFuture = registry.register(OTHER_UPLOAD_ID);
+        assertEquals(registry.getWaitingUploadCount(), 2);
+
+        registry.complete(UPLOAD_ID);
+        assertTrue(future1.isDone());
+        assertTrue(future2.isDone());
+        assertFalse(otherFuture.isDone());
+        assertEquals(registry.getWaitingUploadCount(), 1);
+
+        // Other servers are told too.
+        verify(mockJedis).publish(UploadCompletionRegistry.CHANNEL, UPLOAD_ID);
+        verify(mockJedis).close();
+    }
+
+    @Test
+    public void completeLocalDoesNotPublish() {
+        CompletableFuture<Void> future = registry.register(UPLOAD_ID);
+
+        registry.completeLocal(UPLOAD_ID);
+        assertTrue(future.isDone());
+        assertEquals(registry.getWaitingUploadCount(), 0);
+        verify(mockJedisPool, never()).getResource();
+    }
+
+    @Test
+    public void completeWithoutWaiters() {
+        registry.complete(UPLOAD_ID);
+        assertEquals(registry.getWaitingUploadCount(), 0);
+        verify(mockJedis).publish(UploadCompletionRegistry.CHANNEL, UPLOAD_ID);
+    }
+
+    @Test
+    public void unregister() {
+        CompletableFuture<Void> future1 = registry.register(UPLOAD_ID);
+        CompletableFuture<Void> future2 = registry.register(UPLOAD_ID);
+
+        registry.unregister(UPLOAD_ID, future1);
+        assertEquals(registry.getWaitingUploadCount(), 1);
+
+        registry.unregister(UPLOAD_ID, future2);
+        assertEquals(registry.getWaitingUploadCount(), 0);
+
+        registry.completeLocal(UPLOAD_ID);
+        assertFalse(future1.isDone());
+        assertFalse(future2.isDone());
+    }
+
+    @Test
+    public void publishErrorIsSwallowed() {
+        CompletableFuture<Void> future = registry.register(UPLOAD_ID);
+        when(mockJedisPool.getResource()).thenThrow(new JedisConnectionException("error"));
+
+        registry.complete(UPLOAD_ID);
+
+        // Waiters on this server are still signaled.
+        assertTrue(future.isDone());
+    }
+}
@@ -48,6 +48,7 @@ import org.sagebionetworks.bridge.models.GuidCreatedOnVersionHolderImpl;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.SharingScope;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
+import org.sagebionetworks.bridge.models.schedules.SchemaReference;
 import org.sagebionetworks.bridge.models.studies.Enrollment;
 import org.sagebionetworks.bridge.models.surveys.Survey;
 import org.sagebionetworks.bridge.models.upload.UploadFieldDefinition;
@@ -245,18 +246,16 @@ public class UploadHandlersEndToEndTest {
         // mock schema service
         UploadSchemaService mockUploadSchemaService = mock(UploadSchemaService.class);
         if (schema != null) {
-            when(mockUploadSchemaService.getUploadSchemaByIdAndRev(TEST_APP_ID, schema.getSchemaId(),
-                    schema.getRevision())).thenReturn(schema);
-            when(mockUploadSchemaService.getUploadSchemaByIdAndRevNoThrow(TEST_APP_ID,
+            when(mockUploadSchemaService.getUploadSchemaByIdAndRevCached(TEST_APP_ID,
                     schema.getSchemaId(), schema.getRevision())).thenReturn(schema);
         }
 
         // mock survey service
         SurveyService mockSurveyService = mock(SurveyService.class);
         if (survey != null) {
-            when(mockSurveyService.getSurvey(TEST_APP_ID,
-                    new GuidCreatedOnVersionHolderImpl(survey.getGuid(), survey.getCreatedOn()), false, true))
-                            .thenReturn(survey);
+            when(mockSurveyService.getSurveySchemaReference(TEST_APP_ID,
+                    new GuidCreatedOnVersionHolderImpl(survey.getGuid(), survey.getCreatedOn())))
+                            .thenReturn(new SchemaReference(survey.getIdentifier(), survey.getSchemaRevision()));
         }
 
         // set up IosSchemaValidationHandler
@@ -322,6 +321,7 @@ public class UploadHandlersEndToEndTest {
         taskFactory.setHandlerList(handlerList);
         taskFactory.setUploadDao(mockUploadDao);
         taskFactory.setHealthDataService(mockHealthDataService);
+        taskFactory.setUploadCompletionRegistry(mock(UploadCompletionRegistry.class));
 
         // create task, execute
         UploadValidationTask task = taskFactory.newTask(TEST_APP_ID, upload);
@@ -2,7 +2,9 @@ package org.sagebionetworks.bridge.upload;
 
 import static org.mockito.Mockito.notNull;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -57,6 +59,7 @@ public class UploadValidationTaskTest {
     private UploadValidationContext ctx;
     private InMemoryFileHelper inMemoryFileHelper;
     private UploadDao mockDao;
+    private UploadCompletionRegistry mockCompletionRegistry;
     private UploadValidationTask task;
     private Upload upload;
 
@@ -80,6 +83,7 @@ public class UploadValidationTaskTest {
         // Set up other pre-reqs
         inMemoryFileHelper = new InMemoryFileHelper();
         mockDao = mock(UploadDao.class);
+        mockCompletionRegistry = mock(UploadCompletionRegistry.class);
 
         // Set up task. Spy so we can verify some calls.
         task = spy(new UploadValidationTask(ctx));
@@ -87,6 +91,7 @@ public class UploadValidationTaskTest {
         task.setHandlerList(handlerList);
         task.setHealthDataService(healthDataService);
         task.setUploadDao(mockDao);
+        task.setUploadCompletionRegistry(mockCompletionRegistry);
     }
 
     @Test
@@ -162,6 +167,9 @@ public class UploadValidationTaskTest {
         // validate the upload dao write validation status call
         verify(mockDao).writeValidationStatus(upload, expectedStatus, ctx.getMessageList(), expectedRecordId);
 
+        // Callers waiting on the upload are told it's complete.
+        verify(mockCompletionRegistry).complete("test-upload");
+
         // Validate that we clean up the temp directory.
         assertTrue(inMemoryFileHelper.isEmpty());
     }
@@ -184,6 +192,9 @@ public class UploadValidationTaskTest {
 
         // verify log helper was called
         verify(task).logWriteValidationStatusException(UploadStatus.SUCCEEDED, toThrow);
+
+        // The upload is still in progress, so waiting callers aren't signaled.
+        verify(mockCompletionRegistry, never()).complete(any());
     }
 
     // Test handler that makes its presence known only by writing a message to the validation context.
@@ -0,0 +1,121 @@
+package org.sagebionetworks.bridge.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class CompiledTemplateTest {
+
+    private static final Map<String,String> VALUES = new ImmutableMap.Builder<String,String>()
+            .put("appName", "Test App")
+            .put("sponsorName", "Test Sponsor")
+            .put("supportEmail", "support@example.com")
+            .put("appInstallUrl", "https://example.com/install")
+            .put("emailSignInUrl", "https://example.com/signIn?token=abc")
+            .put("emailSignInExpirationPeriod", "1 hour")
+            .put("emailVerificationUrl", "https://example.com/verify?token=abc")
+            .put("emailVerificationExpirationPeriod", "1 day")
+            .put("resetPasswordUrl", "https://example.com/reset?token=abc")
+            .put("resetPasswordExpirationPeriod", "2 hours").build();
+
+    @Test
+    public void render() {
+        Map<String,String> map = ImmutableMap.of("baz", "Belgium", "box", "Albuquerque");
+
+        String result = CompiledTemplate.compile("foo ${baz} bar ${baz} ${box} ${unused}").render(map);
+        assertEquals(result, "foo Belgium bar Belgium Albuquerque ${unused}");
+    }
+
+    @Test
+    public void renderLeavesNullValues() {
+        Map<String,String> map = new HashMap<>();
+        map.put("baz", null);
+
+        assertEquals(CompiledTemplate.compile("foo ${baz}").render(map), "foo ${baz}");
+    }
+
+    @Test
+    public void renderVariablesAtEdges() {
+        Map<String,String> map = ImmutableMap.of("a", "A", "b", "B");
+
+        assertEquals(CompiledTemplate.compile("${a}${b}").render(map), "AB");
+        assertEquals(CompiledTemplate.compile("${a}").render(map), "A");
+        assertEquals(CompiledTemplate.compile("").render(map), "");
+    }
+
+    @Test
+    public void renderUnterminatedAndNestedVariables() {
+        Map<String,String> map = ImmutableMap.of("a", "A", "b", "B");
+
+        assertEquals(CompiledTemplate.compile("${a} ${b").render(map), "A ${b");
+        assertEquals(CompiledTemplate.compile("${a ${b}").render(map), "${a B");
+        assertEquals(CompiledTemplate.compile("$${a}} {b}").render(map), "$A} {b}");
+    }
+
+    @Test
+    public void renderDoesNotResolveVariablesInValues() {
+        Map<String,String> map = ImmutableMap.of("a", "${b}", "b", "B");
+
+        assertEquals(CompiledTemplate.compile("${a} ${b}").render(map), "${b} B");
+    }
+
+    @Test
+    public void renderWithoutVariablesReturnsTemplate() {
+        String template = new String("No variables here");
+
+        assertSame(CompiledTemplate.compile(template).render(VALUES), template);
+    }
+
+    @Test
+    public void compileCached() {
+        String template = "Hello ${appName}";
+
+        CompiledTemplate compiled = CompiledTemplate.compileCached(template);
+        assertSame(CompiledTemplate.compileCached(template), compiled);
+        assertNotSame(CompiledTemplate.compile(template), compiled);
+        assertEquals(compiled.render(VALUES), "Hello Test App");
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void compileNullTemplate() {
+        CompiledTemplate.compile(null);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void renderNullValues() {
+        CompiledTemplate.compile("${a}").render(null);
+    }
+
+    @DataProvider(name = "defaultTemplates")
+    public static Object[][] defaultTemplates() {
+        return new Object[][] { { "account-exists.txt" }, { "account-exists-subject.txt" },
+                { "app-install-link.txt" }, { "email-sign-in.txt" }, { "email-verification.txt" },
+                { "reset-password.txt" }, { "signed-consent.txt" } };
+    }
+
+    // The compiled template produces the same output as replacing each variable in turn
+    @Test(dataProvider = "defaultTemplates")
+    public void rendersDefaultTemplatesLikeReplace(String fileName) throws IOException {
+        String template;
+        try (InputStream stream = getClass().getResourceAsStream("/conf/app-defaults/" + fileName)) {
+            template = IOUtils.toString(stream, StandardCharsets.UTF_8);
+        }
+        String expected = template;
+        for (Map.Entry<String,String> entry : VALUES.entrySet()) {
+            expected = expected.replace("${" + entry.getKey() + "}", entry.getValue());
+        }
+        assertEquals(CompiledTemplate.compileCached(template).render(VALUES), expected);
+    }
+}